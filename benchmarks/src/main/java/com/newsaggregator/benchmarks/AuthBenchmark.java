@@ -0,0 +1,86 @@
+package com.newsaggregator.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import com.newsaggregator.security.JwtTokenUtil;
+
+
+/*
+ * AuthBenchmark.java
+ * 
+ * This benchmark measures the per-request cost of authentication:
+    - JWT generation (login) and validation (every request that carries the cookie) with JwtTokenUtil.
+    - BCrypt password verification (login), with the same encoder settings as SecurityConfig.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AuthBenchmark {
+
+    private static final String USER_ID = "665f1c2ab9e4a31d7c0f9e21";
+    private static final String PASSWORD = "correct horse battery staple";
+
+    private JwtTokenUtil jwtTokenUtil;
+    private String token;
+    private PasswordEncoder passwordEncoder;
+    private String passwordHash;
+
+
+    @Setup
+    public void setup() throws Exception {
+        // JwtTokenUtil is a Spring component; set its @Value fields and run its @PostConstruct by hand
+        jwtTokenUtil = new JwtTokenUtil();
+        setField(jwtTokenUtil, "secretKey", "benchmark-secret-key-that-is-long-enough-for-hmac-sha-256");
+        setField(jwtTokenUtil, "jwtExpiration", 3600000L);
+        Method init = JwtTokenUtil.class.getDeclaredMethod("init");
+        init.setAccessible(true);
+        init.invoke(jwtTokenUtil);
+        token = jwtTokenUtil.generateToken(USER_ID);
+
+        passwordEncoder = new BCryptPasswordEncoder();
+        passwordHash = passwordEncoder.encode(PASSWORD);
+    }
+
+
+    @Benchmark
+    public String generateToken() {
+        return jwtTokenUtil.generateToken(USER_ID);
+    }
+
+
+    @Benchmark
+    public boolean validateToken() {
+        return jwtTokenUtil.validateToken(token, jwtTokenUtil.getSubjectFromToken(token)); // Same calls as ClientKeyResolver
+    }
+
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean verifyPassword() {
+        return passwordEncoder.matches(PASSWORD, passwordHash);
+    }
+
+
+    private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
@@ -0,0 +1,103 @@
+package com.newsaggregator.benchmarks;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.newsaggregator.model.FavoriteArticle;
+import com.newsaggregator.repository.FavoriteArticleRepository;
+import com.newsaggregator.service.FavoriteArticleService;
+
+
+/*
+ * FavoritesBenchmark.java
+ * 
+ * This benchmark measures the in-process logic of FavoriteArticleService.addFavoriteArticle and
+ * removeFavoriteArticle (the duplicate check and list updates), against an in-memory repository,
+ * for users with few and with many favorites.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FavoritesBenchmark {
+
+    private static final String USER_ID = "user";
+
+    @Param({"10", "1000"})
+    private int favoriteCount; // Favorites the user already has
+
+    private FavoriteArticleService favoriteArticleService;
+    private String newArticleId;
+    private String existingArticleId;
+
+
+    @Setup
+    public void setup() throws Exception {
+        Map<String, FavoriteArticle> store = new HashMap<>();
+        List<String> articleIds = new ArrayList<>();
+        for (int i = 0; i < favoriteCount; i++) {
+            articleIds.add(String.format("%024x", i));
+        }
+        store.put(USER_ID, new FavoriteArticle(USER_ID, articleIds));
+        existingArticleId = articleIds.get(favoriteCount / 2);
+        newArticleId = String.format("%024x", favoriteCount + 1);
+
+        favoriteArticleService = new FavoriteArticleService();
+        Field repository = FavoriteArticleService.class.getDeclaredField("favoriteArticleRepository");
+        repository.setAccessible(true);
+        repository.set(favoriteArticleService, inMemoryRepository(store));
+    }
+
+
+    @Benchmark
+    public boolean addThenRemoveNew() {
+        favoriteArticleService.addFavoriteArticle(USER_ID, newArticleId);
+        return favoriteArticleService.removeFavoriteArticle(USER_ID, newArticleId);
+    }
+
+
+    @Benchmark
+    public void addExisting() {
+        favoriteArticleService.addFavoriteArticle(USER_ID, existingArticleId); // Duplicate: only the contains check runs
+    }
+
+
+    // A repository backed by a map, implementing only the methods FavoriteArticleService calls
+    private static FavoriteArticleRepository inMemoryRepository(Map<String, FavoriteArticle> store) {
+        return (FavoriteArticleRepository) Proxy.newProxyInstance(
+            FavoriteArticleRepository.class.getClassLoader(),
+            new Class<?>[] {FavoriteArticleRepository.class},
+            (proxy, method, args) -> switch (method.getName()) {
+                case "findByUserId" -> Optional.ofNullable(store.get((String) args[0]));
+                case "save" -> {
+                    FavoriteArticle favorite = (FavoriteArticle) args[0];
+                    store.put(favorite.getUserId(), favorite);
+                    yield favorite;
+                }
+                case "delete" -> {
+                    store.remove(((FavoriteArticle) args[0]).getUserId());
+                    yield null;
+                }
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+    }
+}
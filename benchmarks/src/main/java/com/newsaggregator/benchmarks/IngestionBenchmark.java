@@ -0,0 +1,70 @@
+package com.newsaggregator.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.service.ArticleETags;
+import com.newsaggregator.service.NewsApiArticleMapper;
+
+
+/*
+ * IngestionBenchmark.java
+ * 
+ * This benchmark measures the CPU work NewsService.fetchAndSaveArticles does per News API response:
+ * decoding the JSON body, mapping every article node, deriving ids and fingerprinting for change detection.
+ * Network and database time are deliberately excluded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IngestionBenchmark {
+
+    @Param({"20", "100"})
+    private int articleCount; // News API page sizes: the default and the maximum
+
+    private String responseBody;
+
+
+    @Setup
+    public void setup() {
+        responseBody = NewsApiFixtures.responseBody(articleCount);
+    }
+
+
+    @Benchmark
+    public JsonNode decode() throws Exception {
+        return NewsApiArticleMapper.readArticles(responseBody);
+    }
+
+
+    @Benchmark
+    public List<NewsArticle> decodeAndMap() throws Exception {
+        JsonNode articlesNode = NewsApiArticleMapper.readArticles(responseBody);
+        List<NewsArticle> articles = new ArrayList<>(articlesNode.size());
+        for (JsonNode articleNode : articlesNode) {
+            NewsArticle article = new NewsArticle();
+            article.setId(NewsApiArticleMapper.idForUrl(articleNode.path("url").asText()));
+            NewsApiArticleMapper.applyFields(article, articleNode, true);
+            article.setIsHeadline(ArticleETags.fingerprint(article) != 0); // Keeps the fingerprint from being optimized away
+            articles.add(article);
+        }
+        return articles;
+    }
+}
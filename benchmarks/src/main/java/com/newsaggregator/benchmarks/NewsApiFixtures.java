@@ -0,0 +1,85 @@
+package com.newsaggregator.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * NewsApiFixtures.java
+ * 
+ * This helper class generates News API responses and articles for the benchmarks.
+ * Field lengths follow real top-headlines responses (the News API truncates content to about 200 characters).
+ * A fixed seed keeps every run on the same data.
+ */
+final class NewsApiFixtures {
+
+    private static final String[] SOURCES = {"Reuters", "Associated Press", "BBC News", "The Verge", "Bloomberg", "CNN"};
+
+    private NewsApiFixtures() {
+    }
+
+
+    /**
+     * Build a News API response body with the given number of articles.
+     * 
+     * @param articleCount The number of articles in the response
+     * @return The JSON response body
+     */
+    static String responseBody(int articleCount) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{\"status\":\"ok\",\"totalResults\":").append(articleCount).append(",\"articles\":[");
+        for (int i = 0; i < articleCount; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"source\":{\"id\":null,\"name\":\"").append(SOURCES[i % SOURCES.length]).append("\"},")
+                .append("\"author\":\"Staff Writer\",")
+                .append("\"title\":\"").append(words(random, 12)).append("\",")
+                .append("\"description\":\"").append(words(random, 30)).append("\",")
+                .append("\"url\":\"https://news.example.com/2024/05/").append(i).append('-').append(Long.toHexString(random.nextLong())).append("\",")
+                .append("\"urlToImage\":\"https://images.example.com/").append(Long.toHexString(random.nextLong())).append(".jpg\",")
+                .append("\"publishedAt\":\"2024-05-").append(String.format("%02d", 1 + i % 28)).append("T12:00:00Z\",")
+                .append("\"content\":\"").append(words(random, 35)).append(" [+2841 chars]\"}");
+        }
+        return json.append("]}").toString();
+    }
+
+
+    /**
+     * Build a list of stored articles, as a listing endpoint returns them.
+     * 
+     * @param articleCount The number of articles
+     * @return The articles, each with an id
+     */
+    static List<NewsArticle> articles(int articleCount) {
+        Random random = new Random(42);
+        List<NewsArticle> articles = new ArrayList<>(articleCount);
+        for (int i = 0; i < articleCount; i++) {
+            NewsArticle article = new NewsArticle(words(random, 12), words(random, 30),
+                "https://news.example.com/2024/05/" + i, SOURCES[i % SOURCES.length], "2024-05-01T12:00:00Z",
+                words(random, 35) + " [+2841 chars]", "https://images.example.com/" + i + ".jpg", true);
+            article.setId(String.format("%024x", i));
+            articles.add(article);
+        }
+        return articles;
+    }
+
+
+    // Random lowercase words, roughly the length of English ones
+    private static String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            int length = 2 + random.nextInt(8);
+            for (int j = 0; j < length; j++) {
+                text.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+        return text.toString();
+    }
+}
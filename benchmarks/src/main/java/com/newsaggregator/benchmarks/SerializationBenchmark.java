@@ -0,0 +1,61 @@
+package com.newsaggregator.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.service.ArticleETags;
+
+
+/*
+ * SerializationBenchmark.java
+ * 
+ * This benchmark measures the work of a listing response: serializing a page of NewsArticle objects
+ * to JSON bytes (as NewsController and ListingPageCache do) and deriving the page ETag.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"12", "100"})
+    private int pageSize; // The controller default and the largest page the News API returns
+
+    private ObjectMapper objectMapper;
+    private List<NewsArticle> articles;
+
+
+    @Setup
+    public void setup() {
+        objectMapper = JsonMapper.builder().findAndAddModules().build(); // Same modules as the Spring Boot mapper
+        articles = NewsApiFixtures.articles(pageSize);
+    }
+
+
+    @Benchmark
+    public byte[] serializePage() throws Exception {
+        return objectMapper.writeValueAsBytes(articles);
+    }
+
+
+    @Benchmark
+    public String pageETag() {
+        return ArticleETags.pageETag(articles);
+    }
+}
@@ -0,0 +1,132 @@
+package com.newsaggregator.loadtest;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.LongFunction;
+import com.mongodb.ConnectionString;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.InsertManyOptions;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+
+/*
+ * CorpusSeeder.java
+ *
+ * This class fills a local MongoDB with a synthetic corpus in the application's document format:
+    - "news": articles spread over the last 25 days (younger than the application's one-month cleanup),
+      a fifth of them headlines.
+    - "users": verified users who all share SyntheticCorpus.PASSWORD.
+    - "favorites": a fixed number of random favorite articles per user.
+ * Documents are inserted in large unordered batches. Ids follow SyntheticCorpus, so the scenario runner
+ * can address them without reading the database. No indexes are created beyond what the application declares,
+ * so load tests see the same query plans as production.
+ */
+class CorpusSeeder {
+
+    private static final int PROGRESS_STEPS = 10; // Progress lines per collection
+
+    private final String mongoUri;
+    private final long articleCount;
+    private final long userCount;
+    private final int favoritesPerUser;
+    private final int batchSize;
+    private final boolean drop;
+
+
+    CorpusSeeder(Map<String, String> options) {
+        mongoUri = options.getOrDefault("mongo-uri", "mongodb://localhost:27017/newsaggregator");
+        articleCount = Long.parseLong(options.getOrDefault("articles", "2000000"));
+        userCount = Long.parseLong(options.getOrDefault("users", "100000"));
+        favoritesPerUser = Integer.parseInt(options.getOrDefault("favorites-per-user", "20"));
+        batchSize = Integer.parseInt(options.getOrDefault("batch-size", "10000"));
+        drop = Boolean.parseBoolean(options.getOrDefault("drop", "false"));
+    }
+
+
+    /**
+     * Seed all three collections.
+     */
+    void seed() {
+        ConnectionString connectionString = new ConnectionString(mongoUri);
+        String databaseName = connectionString.getDatabase() != null ? connectionString.getDatabase() : "newsaggregator";
+
+        try (MongoClient client = MongoClients.create(connectionString)) {
+            MongoDatabase database = client.getDatabase(databaseName);
+            if (drop) {
+                database.getCollection("news").drop();
+                database.getCollection("users").drop();
+                database.getCollection("favorites").drop();
+            }
+
+            Instant now = Instant.now();
+            insert(database.getCollection("news"), articleCount, n -> article(n, now));
+            insert(database.getCollection("users"), userCount, CorpusSeeder::user);
+            insert(database.getCollection("favorites"), favoritesPerUser > 0 ? userCount : 0, this::favorites);
+        }
+    }
+
+
+    // Insert count generated documents in unordered batches, reporting progress
+    private void insert(MongoCollection<Document> collection, long count, LongFunction<Document> generator) {
+        long start = System.nanoTime();
+        long reportEvery = Math.max(1, count / PROGRESS_STEPS);
+        List<Document> batch = new ArrayList<>(batchSize);
+        InsertManyOptions options = new InsertManyOptions().ordered(false).bypassDocumentValidation(true);
+
+        for (long n = 0; n < count; n++) {
+            batch.add(generator.apply(n));
+            if (batch.size() == batchSize || n == count - 1) {
+                collection.insertMany(batch, options);
+                batch.clear();
+            }
+            if ((n + 1) % reportEvery == 0) {
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%s: %,d / %,d (%.0f docs/s)%n", collection.getNamespace().getCollectionName(), n + 1, count, (n + 1) / seconds);
+            }
+        }
+    }
+
+
+    private static Document article(long n, Instant now) {
+        Random random = new Random(n);
+        Instant publishedAt = now.minus(random.nextInt(25 * 24 * 60), ChronoUnit.MINUTES);
+        return new Document("_id", new ObjectId(SyntheticCorpus.articleId(n)))
+            .append("title", SyntheticCorpus.sentence(random, 8 + random.nextInt(8)))
+            .append("description", SyntheticCorpus.sentence(random, 20 + random.nextInt(20)))
+            .append("url", "https://seed.example.com/articles/" + n)
+            .append("sourceName", SyntheticCorpus.SOURCES[random.nextInt(SyntheticCorpus.SOURCES.length)])
+            .append("publishedAt", publishedAt.truncatedTo(ChronoUnit.SECONDS).toString())
+            .append("content", SyntheticCorpus.sentence(random, 30) + " [+" + (1000 + random.nextInt(4000)) + " chars]")
+            .append("imageUrl", "https://seed.example.com/images/" + n + ".jpg")
+            .append("isHeadline", random.nextInt(5) == 0)
+            .append("_class", "com.newsaggregator.model.NewsArticle");
+    }
+
+    private static Document user(long n) {
+        return new Document("_id", new ObjectId(SyntheticCorpus.userId(n)))
+            .append("username", "user" + n)
+            .append("email", SyntheticCorpus.userEmail(n))
+            .append("password", SyntheticCorpus.PASSWORD_HASH)
+            .append("emailVerified", true)
+            .append("_class", "com.newsaggregator.model.User");
+    }
+
+    private Document favorites(long n) {
+        Random random = new Random(~n);
+        List<String> articleIds = new ArrayList<>(favoritesPerUser);
+        for (int i = 0; i < favoritesPerUser && articleCount > 0; i++) {
+            articleIds.add(SyntheticCorpus.articleId(Math.floorMod(random.nextLong(), articleCount)));
+        }
+        return new Document("userId", SyntheticCorpus.userId(n))
+            .append("articleIds", articleIds)
+            .append("_class", "com.newsaggregator.model.FavoriteArticle");
+    }
+}
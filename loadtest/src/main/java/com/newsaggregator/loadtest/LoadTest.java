@@ -0,0 +1,76 @@
+package com.newsaggregator.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/*
+ * LoadTest.java
+ * 
+ * This is the entry point of the offline load-test harness. It runs one of four commands:
+    - stub: serve a fake News API that replays recorded payloads with configurable latency and errors.
+    - seed: fill a local MongoDB with a synthetic corpus of articles, users and favorites.
+    - run: drive a scenario against the application and report throughput and latency percentiles per endpoint.
+    - startup: start the application repeatedly and check its startup time and time to first request.
+ * Options are passed as --name=value; see loadtest/README.md.
+ */
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+
+        Map<String, String> options = parseOptions(args);
+        switch (args[0]) {
+            case "stub" -> new StubNewsApiServer(options).start();
+            case "seed" -> new CorpusSeeder(options).seed();
+            case "run" -> new ScenarioRunner(options).run();
+            case "startup" -> {
+                if (!new StartupCheck(options).run()) {
+                    System.exit(1);
+                }
+            }
+            default -> usage();
+        }
+    }
+
+
+    // Parse "--name=value" arguments after the command; "--flag" alone means "true"
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 1; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Unexpected argument: " + args[i]);
+            }
+            String option = args[i].substring(2);
+            int equals = option.indexOf('=');
+            if (equals < 0) {
+                options.put(option, "true");
+            } else {
+                options.put(option.substring(0, equals), option.substring(equals + 1));
+            }
+        }
+        return options;
+    }
+
+    private static void usage() {
+        System.out.println("""
+            Usage: java -jar loadtest.jar <command> [--option=value ...]
+
+              stub  --port=9090 --payloads=payloads --latency-ms=150 --jitter-ms=100
+                    --error-rate=0.0 --rate-limit-rate=0.0 --change-rate=0.1
+              seed  --mongo-uri=mongodb://localhost:27017/newsaggregator --articles=2000000
+                    --users=100000 --favorites-per-user=20 --batch-size=10000 --drop
+              run   --scenario=scenarios/browse.txt --base-url=http://localhost:8080
+                    [--rate=...] [--duration=...] [--report=results.csv]
+              startup --dir=../target/app --java-opts="..." --url=http://localhost:8082/health
+                    --runs=3 [--max-startup-ms=...] [--max-first-request-ms=...]
+            """);
+    }
+}
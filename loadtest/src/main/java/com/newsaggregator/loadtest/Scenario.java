@@ -0,0 +1,190 @@
+package com.newsaggregator.loadtest;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/*
+ * Scenario.java
+ *
+ * This class reads a load-test scenario file. A scenario is a list of settings and weighted requests:
+ *
+ *     duration=60s
+ *     rate=200
+ *     request top-headlines 50 GET /api/news/top-headlines?country={country}&page={page}&pageSize=12
+ *     header Accept-Encoding: gzip
+ *
+ * Settings: duration, warmup, rate (requests per second), max-in-flight, articles and users (the size of the
+ * seeded corpus). Paths may use the placeholders {country}, {page}, {query}, {articleId}, {articleIds} and {userId},
+ * which are filled with random values from the synthetic corpus for every request.
+ */
+class Scenario {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{(\\w+)}");
+
+    private final Map<String, String> settings = new HashMap<>();
+    private final Map<String, String> headers = new HashMap<>();
+    private final List<RequestTemplate> requests = new ArrayList<>();
+    private int totalWeight;
+
+
+    /**
+     * Parse a scenario file.
+     *
+     * @param file The scenario file
+     * @return The scenario
+     * @throws IOException If the file cannot be read
+     */
+    static Scenario load(Path file) throws IOException {
+        Scenario scenario = new Scenario();
+        int lineNumber = 0;
+        for (String line : Files.readAllLines(file)) {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            if (line.startsWith("request ")) {
+                String[] parts = line.split("\\s+", 5);
+                if (parts.length != 5) {
+                    throw new IllegalArgumentException(file + ":" + lineNumber + ": expected 'request <name> <weight> <method> <path>'");
+                }
+                RequestTemplate request = new RequestTemplate(parts[1], Integer.parseInt(parts[2]), parts[3].toUpperCase(), parts[4]);
+                scenario.requests.add(request);
+                scenario.totalWeight += request.weight;
+            } else if (line.startsWith("header ")) {
+                String header = line.substring("header ".length());
+                int colon = header.indexOf(':');
+                scenario.headers.put(header.substring(0, colon).strip(), header.substring(colon + 1).strip());
+            } else if (line.contains("=")) {
+                int equals = line.indexOf('=');
+                scenario.settings.put(line.substring(0, equals).strip(), line.substring(equals + 1).strip());
+            } else {
+                throw new IllegalArgumentException(file + ":" + lineNumber + ": cannot parse '" + line + "'");
+            }
+        }
+
+        if (scenario.requests.isEmpty()) {
+            throw new IllegalArgumentException(file + " defines no requests");
+        }
+        return scenario;
+    }
+
+
+    /**
+     * Override a setting, e.g. from the command line.
+     *
+     * @param name The setting name
+     * @param value The new value, ignored if null
+     */
+    void override(String name, String value) {
+        if (value != null) {
+            settings.put(name, value);
+        }
+    }
+
+    String setting(String name, String defaultValue) {
+        return settings.getOrDefault(name, defaultValue);
+    }
+
+    Duration durationSetting(String name, String defaultValue) {
+        String value = setting(name, defaultValue).toLowerCase();
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value.endsWith("s") ? value.substring(0, value.length() - 1) : value));
+    }
+
+    Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    List<RequestTemplate> getRequests() {
+        return requests;
+    }
+
+
+    /**
+     * Pick a request at random, in proportion to the weights.
+     *
+     * @return The request template
+     */
+    RequestTemplate pick() {
+        int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (RequestTemplate request : requests) {
+            roll -= request.weight;
+            if (roll < 0) {
+                return request;
+            }
+        }
+        return requests.get(requests.size() - 1);
+    }
+
+
+    /*
+     * One weighted request of a scenario.
+     */
+    static class RequestTemplate {
+
+        final String name; // Reported endpoint name
+        final int weight;
+        final String method;
+        final String path;
+
+        RequestTemplate(String name, int weight, String method, String path) {
+            this.name = name;
+            this.weight = weight;
+            this.method = method;
+            this.path = path;
+        }
+
+
+        /**
+         * Fill in the placeholders of the path with random corpus values.
+         *
+         * @param articleCount The number of seeded articles
+         * @param userCount The number of seeded users
+         * @return The request path and query
+         */
+        String resolvePath(long articleCount, long userCount) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Matcher matcher = PLACEHOLDER.matcher(path);
+            StringBuilder resolved = new StringBuilder();
+            while (matcher.find()) {
+                String value = switch (matcher.group(1)) {
+                    case "country" -> SyntheticCorpus.COUNTRIES[random.nextInt(SyntheticCorpus.COUNTRIES.length)];
+                    case "page" -> String.valueOf(1 + random.nextInt(5));
+                    case "query" -> URLEncoder.encode(SyntheticCorpus.WORDS[random.nextInt(SyntheticCorpus.WORDS.length)], StandardCharsets.UTF_8);
+                    case "articleId" -> SyntheticCorpus.articleId(random.nextLong(Math.max(1, articleCount)));
+                    case "articleIds" -> {
+                        StringBuilder ids = new StringBuilder();
+                        for (int i = 0; i < 12; i++) {
+                            ids.append(i > 0 ? "," : "").append(SyntheticCorpus.articleId(random.nextLong(Math.max(1, articleCount))));
+                        }
+                        yield ids.toString();
+                    }
+                    case "userId" -> SyntheticCorpus.userId(random.nextLong(Math.max(1, userCount)));
+                    default -> throw new IllegalArgumentException("Unknown placeholder " + matcher.group());
+                };
+                matcher.appendReplacement(resolved, Matcher.quoteReplacement(value));
+            }
+            matcher.appendTail(resolved);
+            return resolved.toString();
+        }
+    }
+}
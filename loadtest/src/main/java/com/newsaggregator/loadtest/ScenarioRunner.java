@@ -0,0 +1,202 @@
+package com.newsaggregator.loadtest;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+
+/*
+ * ScenarioRunner.java
+ *
+ * This class drives a scenario against a running application and reports throughput and latency per endpoint.
+    - Open loop: requests are started at a fixed rate whether or not earlier ones have finished, and latency
+      is measured from the time a request was due, not from when it was sent. A slow server therefore shows up
+      as high latency instead of silently lowering the request rate (coordinated omission).
+    - Requests that cannot start because max-in-flight requests are already outstanding are counted as dropped.
+    - Requests during the warmup are sent but not recorded.
+    - 2xx and 304 responses count as successes; everything else, including timeouts, counts as an error.
+ */
+class ScenarioRunner {
+
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+
+    private final Scenario scenario;
+    private final String baseUrl;
+    private final Path report;
+
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+
+    ScenarioRunner(Map<String, String> options) throws IOException {
+        scenario = Scenario.load(Path.of(options.getOrDefault("scenario", "scenarios/browse.txt")));
+        scenario.override("rate", options.get("rate"));
+        scenario.override("duration", options.get("duration"));
+        scenario.override("warmup", options.get("warmup"));
+        baseUrl = options.getOrDefault("base-url", "http://localhost:8080");
+        report = options.containsKey("report") ? Path.of(options.get("report")) : null;
+    }
+
+
+    /**
+     * Run the scenario and print the report.
+     *
+     * @throws Exception If the report cannot be written or the run is interrupted
+     */
+    void run() throws Exception {
+        double rate = Double.parseDouble(scenario.setting("rate", "100"));
+        Duration warmup = scenario.durationSetting("warmup", "10s");
+        Duration duration = scenario.durationSetting("duration", "60s");
+        Semaphore inFlight = new Semaphore(Integer.parseInt(scenario.setting("max-in-flight", "1000")));
+        long articleCount = Long.parseLong(scenario.setting("articles", "2000000"));
+        long userCount = Long.parseLong(scenario.setting("users", "100000"));
+
+        for (Scenario.RequestTemplate request : scenario.getRequests()) {
+            stats.putIfAbsent(request.name, new EndpointStats());
+        }
+
+        System.out.printf("Running %s/s against %s: %ds warmup, %ds measured%n", rate, baseUrl, warmup.toSeconds(), duration.toSeconds());
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(executor)
+                .build();
+
+            long intervalNanos = (long) (1e9 / rate);
+            long start = System.nanoTime();
+            long measureFrom = start + warmup.toNanos();
+            long end = measureFrom + duration.toNanos();
+
+            for (long due = start; due < end; due += intervalNanos) {
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                Scenario.RequestTemplate template = scenario.pick();
+                EndpointStats endpoint = stats.get(template.name);
+                boolean measured = due >= measureFrom;
+                if (!inFlight.tryAcquire()) {
+                    if (measured) {
+                        endpoint.dropped.increment();
+                    }
+                    continue;
+                }
+
+                HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + template.resolvePath(articleCount, userCount)))
+                    .timeout(Duration.ofSeconds(30))
+                    .method(template.method, HttpRequest.BodyPublishers.noBody());
+                scenario.getHeaders().forEach(request::header);
+
+                long dueNanos = due;
+                client.sendAsync(request.build(), HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> {
+                        inFlight.release();
+                        if (measured) {
+                            endpoint.record(response, error, System.nanoTime() - dueNanos);
+                        }
+                    });
+            }
+
+            // Let outstanding requests finish (or time out) before reporting
+            inFlight.acquire(Integer.parseInt(scenario.setting("max-in-flight", "1000")));
+        }
+
+        printReport(duration);
+    }
+
+
+    // Print one line per endpoint plus a total, and optionally write the same numbers as CSV
+    private void printReport(Duration duration) throws IOException {
+        Map<String, EndpointStats> rows = new LinkedHashMap<>(); // In scenario order
+        scenario.getRequests().forEach(request -> rows.put(request.name, stats.get(request.name)));
+        EndpointStats total = new EndpointStats();
+        stats.values().forEach(total::add);
+        rows.put("TOTAL", total);
+
+        String header = String.format("%-22s %9s %7s %7s %9s %9s %9s %9s %9s %9s",
+            "endpoint", "requests", "errors", "dropped", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+        System.out.println();
+        System.out.println(header);
+
+        PrintWriter csv = report != null ? new PrintWriter(Files.newBufferedWriter(report)) : null;
+        if (csv != null) {
+            csv.println("endpoint,requests,errors,dropped,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms");
+        }
+
+        for (Map.Entry<String, EndpointStats> row : rows.entrySet()) {
+            EndpointStats s = row.getValue();
+            Histogram h = s.latencies;
+            long requests = h.getTotalCount();
+            double throughput = requests / (double) duration.toSeconds();
+            System.out.printf("%-22s %9d %7d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n", row.getKey(), requests, s.errors.sum(), s.dropped.sum(),
+                throughput, millis(h, 50), millis(h, 90), millis(h, 99), millis(h, 99.9), h.getMaxValue() / 1000.0);
+            if (csv != null) {
+                csv.printf("%s,%d,%d,%d,%.1f,%.1f,%.1f,%.1f,%.1f,%.1f%n", row.getKey(), requests, s.errors.sum(), s.dropped.sum(),
+                    throughput, millis(h, 50), millis(h, 90), millis(h, 99), millis(h, 99.9), h.getMaxValue() / 1000.0);
+            }
+        }
+
+        if (csv != null) {
+            csv.close();
+            System.out.println("\nReport written to " + report);
+        }
+
+        for (Map.Entry<String, EndpointStats> row : stats.entrySet()) {
+            if (!row.getValue().statuses.isEmpty()) {
+                System.out.println(row.getKey() + " errors by status: " + row.getValue().statuses);
+            }
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+
+    /*
+     * Latency and error counts of one endpoint.
+     */
+    private static class EndpointStats {
+
+        final Histogram latencies = new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3); // Microseconds, includes errors
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final Map<String, LongAdder> statuses = new ConcurrentHashMap<>(); // Error status (or exception type) -> count
+
+        void record(HttpResponse<?> response, Throwable error, long elapsedNanos) {
+            latencies.recordValue(Math.min(HIGHEST_LATENCY_MICROS, TimeUnit.NANOSECONDS.toMicros(elapsedNanos)));
+            if (error != null) {
+                errors.increment();
+                statuses.computeIfAbsent(error.getClass().getSimpleName(), k -> new LongAdder()).increment();
+            } else if (response.statusCode() / 100 != 2 && response.statusCode() != 304) {
+                errors.increment();
+                statuses.computeIfAbsent(String.valueOf(response.statusCode()), k -> new LongAdder()).increment();
+            }
+        }
+
+        void add(EndpointStats other) {
+            latencies.add(other.latencies);
+            errors.add(other.errors.sum());
+            dropped.add(other.dropped.sum());
+        }
+    }
+}
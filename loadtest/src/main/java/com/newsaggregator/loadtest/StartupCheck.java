@@ -0,0 +1,170 @@
+package com.newsaggregator.loadtest;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/*
+ * StartupCheck.java
+ *
+ * This class measures how quickly a fresh application instance becomes useful, and fails when it is too slow.
+    - Startup: the "process running for" time Spring Boot logs once the application has started.
+    - Time to first request: wall-clock time from launching the JVM until the first response (any status
+      below 500) to a probe URL, which includes the lazy work done by that first request.
+    - Each run starts a new JVM; the median of the runs is compared with the thresholds and the exit code is 1
+      if either is exceeded, so the check can gate a build.
+ * The application's environment (MongoDB URI, secrets, SERVER_PORT) is inherited from this process.
+ */
+class StartupCheck {
+
+    private static final Pattern STARTED = Pattern.compile("Started \\S+ in [\\d.]+ seconds \\(process running for ([\\d.]+)\\)");
+
+    private final Path appDir;
+    private final String jar;
+    private final List<String> javaOptions;
+    private final URI probe;
+    private final int runs;
+    private final long maxStartupMillis;
+    private final long maxFirstRequestMillis;
+    private final Duration timeout;
+    private final Path log;
+
+
+    StartupCheck(Map<String, String> options) {
+        appDir = Path.of(options.getOrDefault("dir", "../target/app"));
+        jar = options.getOrDefault("jar", "newsaggregator-0.0.1-SNAPSHOT.jar");
+        String javaOpts = options.getOrDefault("java-opts", "").strip();
+        javaOptions = javaOpts.isEmpty() ? List.of() : Arrays.asList(javaOpts.split("\\s+"));
+        probe = URI.create(options.getOrDefault("url", "http://localhost:8082/health"));
+        runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        maxStartupMillis = Long.parseLong(options.getOrDefault("max-startup-ms", "0")); // 0: report only
+        maxFirstRequestMillis = Long.parseLong(options.getOrDefault("max-first-request-ms", "0"));
+        timeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout-s", "120")));
+        log = Path.of(options.getOrDefault("log", "startup-check.log"));
+    }
+
+
+    /**
+     * Start the application the configured number of times and report the medians.
+     *
+     * @return True if the medians are within the thresholds
+     * @throws Exception If the application cannot be started or does not answer in time
+     */
+    boolean run() throws Exception {
+        List<Long> startups = new ArrayList<>();
+        List<Long> firstRequests = new ArrayList<>();
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build();
+
+        try (PrintWriter logWriter = new PrintWriter(Files.newBufferedWriter(log))) {
+            for (int run = 1; run <= runs; run++) {
+                long[] result = measure(client, logWriter);
+                startups.add(result[0]);
+                firstRequests.add(result[1]);
+                System.out.printf("run %d: startup %d ms, first request %d ms%n", run, result[0], result[1]);
+            }
+        }
+
+        long startup = median(startups);
+        long firstRequest = median(firstRequests);
+        System.out.printf("%nmedian of %d runs: startup %d ms, first request %d ms (application output in %s)%n", runs, startup, firstRequest, log);
+
+        boolean passed = true;
+        if (maxStartupMillis > 0 && startup > maxStartupMillis) {
+            System.out.printf("FAIL: startup %d ms exceeds %d ms%n", startup, maxStartupMillis);
+            passed = false;
+        }
+        if (maxFirstRequestMillis > 0 && firstRequest > maxFirstRequestMillis) {
+            System.out.printf("FAIL: first request %d ms exceeds %d ms%n", firstRequest, maxFirstRequestMillis);
+            passed = false;
+        }
+        return passed;
+    }
+
+
+    // Launch one JVM, poll the probe until it answers, then stop the JVM. Returns {startup, first request} in ms.
+    private long[] measure(HttpClient client, PrintWriter logWriter) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(javaOptions);
+        command.add("-jar");
+        command.add(jar);
+
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(command).directory(appDir.toFile()).redirectErrorStream(true).start();
+        long[] startupMillis = {-1};
+        Thread reader = Thread.ofVirtual().start(() -> {
+            try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = output.readLine()) != null) {
+                    synchronized (logWriter) {
+                        logWriter.println(line);
+                    }
+                    Matcher matcher = STARTED.matcher(line);
+                    if (matcher.find()) {
+                        startupMillis[0] = Math.round(Double.parseDouble(matcher.group(1)) * 1000);
+                    }
+                }
+            } catch (IOException e) {
+                // The process was stopped
+            }
+        });
+
+        try {
+            long deadline = launched + timeout.toNanos();
+            HttpRequest request = HttpRequest.newBuilder(probe).timeout(timeout).GET().build();
+            while (true) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Application exited with status " + process.exitValue() + " before answering; see " + log);
+                }
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Application did not answer " + probe + " within " + timeout.toSeconds() + " s");
+                }
+                try {
+                    HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                    if (response.statusCode() < 500) {
+                        break;
+                    }
+                } catch (IOException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(10);
+            }
+            long firstRequestMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - launched);
+
+            for (int i = 0; i < 500 && startupMillis[0] < 0 && reader.isAlive(); i++) { // The log line may trail the first response slightly
+                Thread.sleep(10);
+            }
+            return new long[] {startupMillis[0], firstRequestMillis};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+            reader.join();
+        }
+    }
+
+    private static long median(List<Long> values) {
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        return sorted.get(sorted.size() / 2);
+    }
+}
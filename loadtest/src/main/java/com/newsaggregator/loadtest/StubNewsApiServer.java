@@ -0,0 +1,189 @@
+package com.newsaggregator.loadtest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+
+/*
+ * StubNewsApiServer.java
+ *
+ * This class serves a fake News API for load tests, so the application can be driven without spending real quota.
+    - Replays recorded responses: payloads/top-headlines*.json for /v2/top-headlines and payloads/everything*.json
+      for /v2/everything, round-robin. Without recordings, synthetic articles are served.
+    - Honours page and pageSize by slicing the recorded articles.
+    - Adds latency (a base plus uniform jitter) and fails a configurable share of requests with 500 or 429,
+      the errors the real News API returns under load.
+    - Changes the title of a configurable share of served articles, so the application's change detection
+      and cache invalidation see realistic churn.
+ * Point the application at it with NEWSAPI_BASE_URL=http://localhost:<port>/v2.
+ */
+class StubNewsApiServer {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final int port;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final double changeRate;
+    private final Map<String, List<ArrayNode>> payloads = new HashMap<>(); // Endpoint -> recorded article arrays
+    private final AtomicLong served = new AtomicLong();
+
+
+    StubNewsApiServer(Map<String, String> options) throws IOException {
+        port = Integer.parseInt(options.getOrDefault("port", "9090"));
+        latencyMillis = Long.parseLong(options.getOrDefault("latency-ms", "150"));
+        jitterMillis = Long.parseLong(options.getOrDefault("jitter-ms", "100"));
+        errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0.0"));
+        rateLimitRate = Double.parseDouble(options.getOrDefault("rate-limit-rate", "0.0"));
+        changeRate = Double.parseDouble(options.getOrDefault("change-rate", "0.1"));
+
+        Path payloadDir = Path.of(options.getOrDefault("payloads", "payloads"));
+        payloads.put("top-headlines", loadPayloads(payloadDir, "top-headlines"));
+        payloads.put("everything", loadPayloads(payloadDir, "everything"));
+    }
+
+
+    /**
+     * Start serving. Each request runs on its own virtual thread, so latency injection costs no platform threads.
+     *
+     * @throws IOException If the port cannot be bound
+     */
+    void start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/v2/top-headlines", exchange -> handle(exchange, "top-headlines"));
+        server.createContext("/v2/everything", exchange -> handle(exchange, "everything"));
+        server.start();
+        System.out.printf("Stub News API listening on http://localhost:%d/v2 (%d top-headlines and %d everything payloads)%n",
+            port, payloads.get("top-headlines").size(), payloads.get("everything").size());
+    }
+
+
+    // Serve one request: wait, maybe fail, otherwise return a page of a recorded payload
+    private void handle(HttpExchange exchange, String endpoint) throws IOException {
+        try (exchange) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            Thread.sleep(latencyMillis + (jitterMillis > 0 ? random.nextLong(jitterMillis + 1) : 0));
+
+            double roll = random.nextDouble();
+            if (roll < errorRate) {
+                send(exchange, 500, "{\"status\":\"error\",\"code\":\"unexpectedError\",\"message\":\"Stub error\"}");
+                return;
+            }
+            if (roll < errorRate + rateLimitRate) {
+                send(exchange, 429, "{\"status\":\"error\",\"code\":\"rateLimited\",\"message\":\"Stub rate limit\"}");
+                return;
+            }
+
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            int page = Math.max(1, Integer.parseInt(query.getOrDefault("page", "1")));
+            int pageSize = Math.max(1, Math.min(100, Integer.parseInt(query.getOrDefault("pageSize", "20"))));
+
+            List<ArrayNode> recorded = payloads.get(endpoint);
+            ArrayNode articles = recorded.get((int) (served.getAndIncrement() % recorded.size()));
+
+            ArrayNode pageArticles = OBJECT_MAPPER.createArrayNode();
+            int from = ((page - 1) * pageSize) % Math.max(1, articles.size());
+            for (int i = from; i < Math.min(articles.size(), from + pageSize); i++) {
+                JsonNode article = articles.get(i);
+                if (random.nextDouble() < changeRate) {
+                    ObjectNode changed = article.deepCopy();
+                    changed.put("title", article.path("title").asText() + " (updated " + random.nextInt(1000) + ")");
+                    article = changed;
+                }
+                pageArticles.add(article);
+            }
+
+            ObjectNode body = OBJECT_MAPPER.createObjectNode();
+            body.put("status", "ok");
+            body.put("totalResults", articles.size());
+            body.set("articles", pageArticles);
+            send(exchange, 200, OBJECT_MAPPER.writeValueAsString(body));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            send(exchange, 400, "{\"status\":\"error\",\"code\":\"parameterInvalid\",\"message\":\"" + e.getClass().getSimpleName() + "\"}");
+        }
+    }
+
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String pair : rawQuery.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    query.put(pair.substring(0, equals), URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+
+    // Load the "articles" arrays of all recordings for an endpoint, or generate one if there are none
+    private static List<ArrayNode> loadPayloads(Path dir, String endpoint) throws IOException {
+        List<ArrayNode> loaded = new ArrayList<>();
+        if (Files.isDirectory(dir)) {
+            try (Stream<Path> files = Files.list(dir)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().startsWith(endpoint) && f.toString().endsWith(".json")).sorted().toList()) {
+                    JsonNode articles = OBJECT_MAPPER.readTree(file.toFile()).path("articles");
+                    if (articles.isArray() && !articles.isEmpty()) {
+                        loaded.add((ArrayNode) articles);
+                    }
+                }
+            }
+        }
+        if (loaded.isEmpty()) {
+            loaded.add(syntheticArticles(endpoint.hashCode(), 100));
+        }
+        return loaded;
+    }
+
+    private static ArrayNode syntheticArticles(long seed, int count) {
+        Random random = new Random(seed);
+        ArrayNode articles = OBJECT_MAPPER.createArrayNode();
+        for (int i = 0; i < count; i++) {
+            ObjectNode article = articles.addObject();
+            article.putObject("source").putNull("id").put("name", SyntheticCorpus.SOURCES[i % SyntheticCorpus.SOURCES.length]);
+            article.put("author", "Stub Writer");
+            article.put("title", SyntheticCorpus.sentence(random, 10));
+            article.put("description", SyntheticCorpus.sentence(random, 25));
+            article.put("url", "https://stub.example.com/" + seed + "/" + i);
+            article.put("urlToImage", "https://stub.example.com/images/" + i + ".jpg");
+            article.put("publishedAt", "2024-05-01T12:00:00Z");
+            article.put("content", SyntheticCorpus.sentence(random, 30) + " [+2000 chars]");
+        }
+        return articles;
+    }
+}
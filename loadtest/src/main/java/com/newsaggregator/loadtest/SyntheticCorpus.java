@@ -0,0 +1,81 @@
+package com.newsaggregator.loadtest;
+
+import java.util.Random;
+
+
+/*
+ * SyntheticCorpus.java
+ * 
+ * This helper class defines the synthetic corpus shared by the seeder, the stub server and the scenario runner.
+    - Ids are derived from a sequence number, so the runner can pick existing articles and users
+      without reading the database.
+    - Text is random but has realistic lengths; a fixed word list keeps search queries meaningful.
+    - Every seeded user has the same password, so scenarios can log in as any of them.
+ */
+final class SyntheticCorpus {
+
+    static final String PASSWORD = "loadtest-password";
+    static final String PASSWORD_HASH = "$2a$10$14hcvBlksJHKP3q/IUZkqO646r/uzIfllhvHyJ430M3KGoa/O42iy"; // BCrypt hash of PASSWORD, strength 10 like the application
+
+    static final String[] COUNTRIES = {"us", "gb", "ca", "au", "in", "de"};
+    static final String[] SOURCES = {"Reuters", "Associated Press", "BBC News", "The Verge", "Bloomberg", "CNN", "Al Jazeera", "TechCrunch"};
+    static final String[] WORDS = {
+        "election", "market", "climate", "football", "inflation", "space", "energy", "health", "court", "trade",
+        "technology", "vaccine", "storm", "budget", "security", "music", "film", "science", "school", "housing",
+        "bank", "oil", "china", "europe", "india", "startup", "privacy", "ai", "chip", "strike",
+        "summit", "protest", "wildfire", "olympics", "tariff", "rates", "crypto", "earnings", "merger", "drought"
+    };
+
+    private SyntheticCorpus() {
+    }
+
+
+    /**
+     * Return the id of the n-th seeded article.
+     * 
+     * @param n The sequence number
+     * @return A 24-digit hex id (a valid ObjectId)
+     */
+    static String articleId(long n) {
+        return String.format("a0000000%016x", n);
+    }
+
+    /**
+     * Return the id of the n-th seeded user.
+     * 
+     * @param n The sequence number
+     * @return A 24-digit hex id (a valid ObjectId)
+     */
+    static String userId(long n) {
+        return String.format("b0000000%016x", n);
+    }
+
+    /**
+     * Return the email address of the n-th seeded user.
+     * 
+     * @param n The sequence number
+     * @return The email address
+     */
+    static String userEmail(long n) {
+        return "user" + n + "@loadtest.example.com";
+    }
+
+
+    /**
+     * Build a sentence of random corpus words.
+     * 
+     * @param random The random source
+     * @param wordCount The number of words
+     * @return The sentence
+     */
+    static String sentence(Random random, int wordCount) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < wordCount; i++) {
+            if (i > 0) {
+                text.append(' ');
+            }
+            text.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.newsaggregator.config;
+
+import java.util.HashMap;
+import java.util.Map;
+import io.github.cdimascio.dotenv.Dotenv;
+import io.github.cdimascio.dotenv.DotenvEntriesFilter;
+import io.github.cdimascio.dotenv.DotenvEntry;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+
+/*
+ * DotenvEnvironmentPostProcessor.java
+ *
+ * This class makes the variables of a local .env file available to Spring Boot.
+    - The .env entries are added as the lowest-precedence property source, so real environment
+      variables and system properties still win, as they did with the former static initializer.
+    - Nothing is added when there is no .env file (e.g. in containers, where variables come from the environment).
+    - Runs while the environment is prepared instead of in a static initializer of the main class, so build-time
+      AOT processing and CDS training runs can start the application without a .env file or secrets.
+ * Registered in META-INF/spring.factories.
+ */
+public class DotenvEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    private static final String PROPERTY_SOURCE_NAME = "dotenv";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        Dotenv dotenv = Dotenv.configure()
+                      .ignoreIfMissing()
+                      .load();
+
+        Map<String, Object> entries = new HashMap<>();
+        for (DotenvEntry entry : dotenv.entries(DotenvEntriesFilter.DECLARED_IN_ENV_FILE)) {
+            entries.put(entry.getKey(), entry.getValue());
+        }
+        if (!entries.isEmpty()) {
+            environment.getPropertySources().addLast(new MapPropertySource(PROPERTY_SOURCE_NAME, entries));
+        }
+    }
+}
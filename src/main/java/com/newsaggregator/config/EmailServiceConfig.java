@@ -3,6 +3,7 @@ package com.newsaggregator.config;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 
@@ -11,6 +12,7 @@ import org.springframework.mail.javamail.JavaMailSenderImpl;
  * EmailServiceConfig.java
  * 
  * This configuration class sets up the JavaMailSender bean for sending emails.
+ * The sender is lazy: mail classes are only loaded when the first email is sent, not during startup.
  */
 @Configuration
 public class EmailServiceConfig {
@@ -22,6 +24,7 @@ public class EmailServiceConfig {
     private String emailPassword;
 
     @Bean
+    @Lazy
     public JavaMailSender getJavaMailSender() {
         JavaMailSenderImpl mailSender = new JavaMailSenderImpl(); // Create a new instance of JavaMailSenderImpl
         mailSender.setHost("smtp.gmail.com"); // Set the host to Gmail SMTP server
@@ -0,0 +1,117 @@
+package com.newsaggregator.config;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import com.mongodb.MongoClientSettings;
+import com.mongodb.client.MongoClient;
+import com.mongodb.event.CommandEvent;
+import com.mongodb.event.CommandStartedEvent;
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.mongodb.DefaultMongoCommandTagsProvider;
+import io.micrometer.core.instrument.binder.mongodb.MongoCommandTagsProvider;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.mongo.MongoClientFactory;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.RepositoryMethodContext;
+import org.springframework.data.repository.core.RepositoryMethodContextHolder;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+import com.newsaggregator.service.SlowMongoCommandLog;
+
+
+/*
+ * MongoObservabilityConfig.java
+ *
+ * This configuration class makes MongoDB commands traceable to the code that issued them.
+    - Adds a "repository.method" tag (e.g. "NewsArticleRepository.findByUrlIn") to the driver-level
+      mongodb.driver.commands timer, next to the collection and command tags Spring Boot already adds.
+      Commands issued through MongoTemplate directly are tagged "none".
+    - Registers SlowMongoCommandLog as a command listener on the blocking MongoDB client only. The reactive
+      client completes commands on driver threads, outside the repository call, so the log could not tell
+      which repository method issued them.
+ */
+@Configuration
+public class MongoObservabilityConfig {
+
+    /**
+     * Let repositories expose the method being invoked, so the command listeners can read it.
+     * The blocking driver reports a command on the thread that issued it, inside the repository call.
+     *
+     * @return A BeanPostProcessor that enables metadata exposure on every repository factory
+     */
+    @Bean
+    public static BeanPostProcessor repositoryMethodExposingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.setExposeMetadata(true);
+                }
+                return bean;
+            }
+        };
+    }
+
+
+    /**
+     * Tag every driver command with the repository method that issued it.
+     * Replaces Spring Boot's default provider, which is used for all other tags.
+     *
+     * @return The tags provider used by the MongoDB command metrics listener
+     */
+    @Bean
+    public MongoCommandTagsProvider mongoCommandTagsProvider() {
+        DefaultMongoCommandTagsProvider defaults = new DefaultMongoCommandTagsProvider();
+        return new MongoCommandTagsProvider() {
+            @Override
+            public void commandStarted(CommandStartedEvent event) {
+                defaults.commandStarted(event); // Remembers the collection name of the command
+            }
+
+            @Override
+            public Iterable<Tag> commandTags(CommandEvent event) {
+                return Tags.of(defaults.commandTags(event)).and("repository.method", currentRepositoryMethod());
+            }
+        };
+    }
+
+
+    /**
+     * Create the blocking MongoDB client as Spring Boot does, with the slow command log as an extra command listener.
+     * A customizer bean would also be applied to the reactive client, so the listener is added here instead.
+     *
+     * @param builderCustomizers The settings customizers of Spring Boot and the metrics listener
+     * @param settings The base client settings
+     * @param slowMongoCommandLog The listener that records slow commands
+     * @return The blocking MongoDB client
+     */
+    @Bean
+    public MongoClient mongo(ObjectProvider<MongoClientSettingsBuilderCustomizer> builderCustomizers, MongoClientSettings settings,
+            SlowMongoCommandLog slowMongoCommandLog) {
+        List<MongoClientSettingsBuilderCustomizer> customizers = new ArrayList<>(builderCustomizers.orderedStream().toList());
+        customizers.add(builder -> builder.addCommandListener(slowMongoCommandLog));
+        return new MongoClientFactory(customizers).createMongoClient(settings);
+    }
+
+
+    /**
+     * Return the repository method running on the current thread.
+     *
+     * @return "Repository.method", or "none" outside a repository call
+     */
+    public static String currentRepositoryMethod() {
+        RepositoryMethodContext context;
+        try {
+            context = RepositoryMethodContextHolder.getContext();
+        } catch (IllegalStateException e) {
+            return "none"; // Thrown instead of returning null when no repository call is running
+        }
+        Method method = context.getMethod();
+        return context.getMetadata().getRepositoryInterface().getSimpleName() + "." + method.getName();
+    }
+}
@@ -1,5 +1,8 @@
 package com.newsaggregator.config;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -7,6 +10,8 @@ import org.springframework.security.config.annotation.web.configuration.EnableWe
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.util.matcher.AndRequestMatcher;
+import org.springframework.security.web.util.matcher.RequestMatcher;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -17,11 +22,19 @@ import java.util.Arrays;
  * SecurityConfig.java
  * 
  * This class configures security settings for the application.
+    - Actuator endpoints are only open on a management port that differs from the application port.
+      On the application port, only the health status is served; every other endpoint is denied.
  */
 @Configuration
 @EnableWebSecurity
 public class SecurityConfig {
 
+    @Value("${server.port:8080}")
+    private int serverPort; // Public application port
+
+    @Value("${management.server.port:${server.port:8080}}")
+    private int managementPort; // Internal port of the actuator endpoints, if set apart
+
     /**
      * Configure a password encoder bean for encoding and verifying passwords.
      * 
@@ -48,7 +61,10 @@ public class SecurityConfig {
             .and()
             .authorizeHttpRequests(authorizeRequests ->
                 authorizeRequests
-                    .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/verify-email", "/api/auth/logout", "/api/auth/change-password", "/api/auth/verify", "/api/news/top-headlines", "/api/news/search", "/api/news/articles", "/api/favorites/**", "/health").permitAll() // Allow unauthenticated access
+                    .requestMatchers("/api/auth/register", "/api/auth/login", "/api/auth/verify-email", "/api/auth/logout", "/api/auth/change-password", "/api/auth/verify", "/api/news/top-headlines", "/api/news/search", "/api/news/stream", "/api/news/export", "/api/news/articles", "/api/news/articles/*/related", "/api/news/topics", "/api/news/for-you", "/api/news/suggest", "/api/news/reactive/**", "/api/favorites/**", "/health").permitAll() // Allow unauthenticated access
+                    .requestMatchers(onManagementPort(EndpointRequest.toAnyEndpoint())).permitAll() // Internal port, not exposed publicly
+                    .requestMatchers(EndpointRequest.to(HealthEndpoint.class)).permitAll() // Status only for load balancers (see show-details)
+                    .requestMatchers(EndpointRequest.toAnyEndpoint()).denyAll() // Never public on the application port
                     .anyRequest().authenticated() // Secure all other routes
             )
             .csrf().disable() // Disable CSRF for APIs, if you're not using cookies or sessions
@@ -57,6 +73,18 @@ public class SecurityConfig {
     }
 
 
+    /**
+     * Match requests that also arrived on a management port set apart from the application port.
+     * 
+     * @param matcher The requests to match
+     * @return A matcher that never matches when the actuator shares the application port
+     */
+    private RequestMatcher onManagementPort(RequestMatcher matcher) {
+        return new AndRequestMatcher(matcher,
+            request -> managementPort != serverPort && managementPort > 0 && request.getLocalPort() == managementPort);
+    }
+
+
     /**
      * Configure CORS (Cross-Origin Resource Sharing) settings.
      * This allows the frontend to make requests to the backend from a different origin.
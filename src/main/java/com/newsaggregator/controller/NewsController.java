@@ -1,16 +1,46 @@
 package com.newsaggregator.controller;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import com.newsaggregator.dto.AnnotatedNewsArticle;
+import com.newsaggregator.dto.TrendingTopic;
 import com.newsaggregator.model.NewsArticle;
 import com.newsaggregator.repository.NewsArticleRepository;
+import com.newsaggregator.security.ClientKeyResolver;
+import com.newsaggregator.service.ArticleETags;
+import com.newsaggregator.service.FavoriteIdSets;
+import com.newsaggregator.service.FetchContext;
+import com.newsaggregator.service.ForYouFeed;
+import com.newsaggregator.service.HeadlineStreamService;
+import com.newsaggregator.service.ListingPageCache;
+import com.newsaggregator.service.NewsExportService;
 import com.newsaggregator.service.NewsService;
+import com.newsaggregator.service.PagePrefetcher;
+import com.newsaggregator.service.StageMetrics;
+import com.newsaggregator.service.StageTimings;
+import com.newsaggregator.service.SuggestIndex;
+import com.newsaggregator.service.TrendingTopics;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.CrossOrigin;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.context.request.WebRequest;
+import reactor.core.publisher.Flux;
 
 
 /*
@@ -29,6 +59,45 @@ public class NewsController {
     @Autowired
     private NewsArticleRepository newsArticleRepository; // To interact with the database for news articles
 
+    @Autowired
+    private ListingPageCache listingPageCache; // Pre-serialized bytes of hot listing pages
+
+    @Autowired
+    private HeadlineStreamService headlineStreamService; // Pushes newly ingested headlines to subscribers
+
+    @Autowired
+    private NewsExportService newsExportService; // Streams the article corpus as NDJSON
+
+    @Autowired
+    private ClientKeyResolver clientKeyResolver; // Identifies the user or IP address behind a request
+
+    @Autowired
+    private StageMetrics stageMetrics; // Publishes per-stage timers and Server-Timing headers
+
+    @Autowired
+    private ObjectMapper objectMapper; // To serialize search results
+
+    @Autowired
+    private TrendingTopics trendingTopics; // Most frequent terms of recently ingested articles
+
+    @Autowired
+    private ForYouFeed forYouFeed; // Ranks recent articles against the user's favorites
+
+    @Autowired
+    private SuggestIndex suggestIndex; // Search-as-you-type suggestions
+
+    @Autowired
+    private FavoriteIdSets favoriteIdSets; // Cached favorite ids per user, to annotate listings
+
+    @Autowired
+    private PagePrefetcher pagePrefetcher; // Loads the next page of a listing ahead of the client
+
+    @Value("${news.related.max-results:20}")
+    private int maxRelated; // Upper bound of the limit parameter of /articles/{id}/related
+
+    @Value("${news.related.min-similarity:0.2}")
+    private double minRelatedSimilarity; // Less similar articles are not returned as related
+
 
     /**
      * Get top headlines news articles for a specific country.
@@ -36,12 +105,40 @@ public class NewsController {
      * @param country The country code for which to fetch top headlines
      * @param page The page number of results to fetch
      * @param pageSize The number of results per page
-     * @return A list of NewsArticle objects
+     * @param request The HTTP request object, used to identify the client for rate limiting
+     * @param response The HTTP response object, used to add the Server-Timing header
+     * @param webRequest The current request, used to evaluate If-None-Match
+     * @param annotate Mark each article with "favorited" for the logged-in user
+     * @return A list of NewsArticle objects, or 304 Not Modified if the client's copy is current
+     * @throws JsonProcessingException If annotated articles cannot be serialized
      */
     @GetMapping("/top-headlines")
-    public ResponseEntity<?> getTopHeadlines(@RequestParam String country, @RequestParam(defaultValue = "1") int page, @RequestParam(defaultValue = "12") int pageSize) {
-        List<NewsArticle> articles = newsService.fetchTopHeadlinesWithFallback(country, page, pageSize);
-        return ResponseEntity.ok(articles);
+    public ResponseEntity<?> getTopHeadlines(@RequestParam String country, @RequestParam(defaultValue = "1") int page, @RequestParam(defaultValue = "12") int pageSize, HttpServletRequest request, HttpServletResponse response, WebRequest webRequest, @RequestParam(defaultValue = "false") boolean annotate) throws JsonProcessingException {
+        long start = System.nanoTime();
+        FetchContext context = clientKeyResolver.resolveFetchContext(request);
+        StageTimings timings = context.getTimings();
+
+        // Served from pre-serialized bytes until ingestion changes this country's headlines.
+        // The page is shared, so it is loaded within the global budget only, not this client's budget and deadline.
+        timings.describe("cache", "hit");
+        long cacheStart = System.nanoTime();
+        ListingPageCache.CachedPage cachedPage = listingPageCache.getOrLoad(
+            ListingPageCache.headlinesKey(country, page, pageSize),
+            ListingPageCache.headlinesTag(country),
+            () -> {
+                timings.describe("cache", "miss");
+                return newsService.fetchTopHeadlinesPage(country, page, pageSize, FetchContext.cacheFill(timings));
+            });
+        timings.record("cache", cacheStart);
+        pagePrefetcher.afterHeadlines(country, page, pageSize, cachedPage.getArticles().size());
+
+        // Annotated pages are per user: built from the cached articles instead of the shared bytes
+        String userId = annotate ? clientKeyResolver.resolveUserId(request) : null;
+        ResponseEntity<?> result = userId != null
+            ? conditionalResponse(cachedPage.getArticles(), favoriteIdSets.get(userId), webRequest, timings)
+            : cachedResponse(cachedPage, webRequest, response);
+        addServerTiming(response, "top-headlines", timings, start);
+        return result;
     }
 
     
@@ -52,17 +149,154 @@ public class NewsController {
      * @param sortBy The order in which to sort the results (e.g., "publishedAt", "relevancy", "popularity")
      * @param page The page number of results to fetch
      * @param pageSize The number of results per page
-     * @return A list of NewsArticle objects
+     * @param request The HTTP request object, used to identify the client for rate limiting
+     * @param response The HTTP response object, used to add the Server-Timing header
+     * @param webRequest The current request, used to evaluate If-None-Match
+     * @param annotate Mark each article with "favorited" for the logged-in user
+     * @return A list of NewsArticle objects, or 304 Not Modified if the client's copy is current
+     * @throws JsonProcessingException If the articles cannot be serialized
      */
     @GetMapping("/search")
     public ResponseEntity<?> searchNews(
         @RequestParam String query,
         @RequestParam(defaultValue = "publishedAt") String sortBy, // Default to sorting by published date
         @RequestParam(defaultValue = "1") int page, // Default to first page
-        @RequestParam(defaultValue = "12") int pageSize // Default to 12 results per page
-    ) {
-        List<NewsArticle> articles = newsService.fetchAndSaveNewsByQuery(query, sortBy, page, pageSize);
-        return ResponseEntity.ok(articles);
+        @RequestParam(defaultValue = "12") int pageSize, // Default to 12 results per page
+        HttpServletRequest request,
+        HttpServletResponse response,
+        WebRequest webRequest,
+        @RequestParam(defaultValue = "false") boolean annotate
+    ) throws JsonProcessingException {
+        long start = System.nanoTime();
+        FetchContext context = clientKeyResolver.resolveFetchContext(request);
+        String userId = annotate ? clientKeyResolver.resolveUserId(request) : null;
+
+        // Later pages may have been prefetched when the previous page was served
+        ListingPageCache.CachedPage prefetched = page > 1 ? listingPageCache.peek(ListingPageCache.searchKey(query, sortBy, page, pageSize)) : null;
+        if (prefetched != null) {
+            pagePrefetcher.afterSearch(query, sortBy, page, pageSize, prefetched.getArticles().size());
+            ResponseEntity<?> result = userId != null
+                ? conditionalResponse(prefetched.getArticles(), favoriteIdSets.get(userId), webRequest, context.getTimings())
+                : cachedResponse(prefetched, webRequest, response);
+            addServerTiming(response, "search", context.getTimings(), start);
+            return result;
+        }
+
+        List<NewsArticle> articles = newsService.fetchAndSaveNewsByQuery(query, sortBy, page, pageSize, context);
+        if (page == 1 && !articles.isEmpty()) {
+            suggestIndex.recordQuery(query, context.getClientKey()); // Only searches that found something are suggested
+        }
+        pagePrefetcher.afterSearch(query, sortBy, page, pageSize, articles.size());
+
+        ResponseEntity<?> result = conditionalResponse(articles, userId != null ? favoriteIdSets.get(userId) : null, webRequest, context.getTimings());
+        addServerTiming(response, "search", context.getTimings(), start);
+        return result;
+    }
+
+
+    /**
+     * Suggest completions of a partially typed search, for search-as-you-type.
+     * Answered from memory; neither the database nor the News API is called.
+     * 
+     * @param prefix The text typed so far
+     * @param limit The maximum number of suggestions (at most 10)
+     * @return Title words, source names and past searches starting with the prefix, most frequent first
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<List<String>> suggest(@RequestParam String prefix, @RequestParam(defaultValue = "8") int limit) {
+        List<String> suggestions = suggestIndex.suggest(prefix, Math.max(1, limit));
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(Duration.ofMinutes(1)))
+            .body(suggestions);
+    }
+
+
+    /**
+     * Subscribe to newly ingested or changed top headlines for a country (Server-Sent Events).
+     * Replaces polling /top-headlines to find out whether anything changed.
+     * 
+     * @param country The country code for which to receive headlines
+     * @return A stream of "headline" events, each carrying one NewsArticle as JSON, or 404 if the country is not streamed
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<String>>> streamHeadlines(@RequestParam String country) {
+        if (!headlineStreamService.isStreamed(country)) {
+            return ResponseEntity.notFound().build(); // Only countries refreshed in the background get new headlines
+        }
+        return ResponseEntity.ok(headlineStreamService.subscribe(country));
+    }
+
+
+    /**
+     * Get the trending topics: the most frequent words and phrases of recently ingested articles.
+     * Served from in-memory sketches, without database work.
+     * 
+     * @param country The country code of the headlines to consider, or "all" for every ingested article
+     * @param limit The maximum number of topics to return
+     * @return A list of TrendingTopic objects, most frequent first
+     */
+    @GetMapping("/topics")
+    public ResponseEntity<List<TrendingTopic>> getTrendingTopics(@RequestParam(defaultValue = TrendingTopics.ALL) String country, @RequestParam(defaultValue = "20") int limit) {
+        List<TrendingTopic> topics = trendingTopics.top(country, Math.max(1, Math.min(limit, 100)));
+        return ResponseEntity.ok()
+            .cacheControl(CacheControl.maxAge(Duration.ofMinutes(1))) // Topics move slowly
+            .body(topics);
+    }
+
+
+    /**
+     * Get recent articles ranked by how well they match the logged-in user's favorites.
+     * 
+     * @param limit The maximum number of articles to return
+     * @param request The HTTP request object, used to read the JWT cookie
+     * @return A list of NewsArticle objects, best match first (empty if the user has no favorites), or 401 if not logged in
+     */
+    @GetMapping("/for-you")
+    public ResponseEntity<List<NewsArticle>> getForYou(@RequestParam(defaultValue = "12") int limit, HttpServletRequest request) {
+        String userId = clientKeyResolver.resolveUserId(request);
+        if (userId == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(forYouFeed.recommend(userId, Math.max(1, Math.min(limit, 100))));
+    }
+
+
+    /**
+     * Export articles as newline-delimited JSON, streamed straight from a database cursor.
+     * Requires a logged-in user. Responses are gzipped by the server when the client sends Accept-Encoding: gzip.
+     * An interrupted export is resumed by passing the id of the last received article as the cursor.
+     * 
+     * @param from Inclusive lower bound on publishedAt (ISO-8601, e.g. 2024-01-01T00:00:00Z)
+     * @param to Exclusive upper bound on publishedAt (ISO-8601)
+     * @param source Only export articles from this source name
+     * @param isHeadline Only export headlines (true) or search results (false)
+     * @param cursor Resume after the article with this id
+     * @param request The HTTP request object, used to read the JWT cookie
+     * @param response The HTTP response object the articles are written to
+     * @throws IOException If writing the response fails
+     */
+    @GetMapping("/export")
+    public void exportArticles(
+        @RequestParam(required = false) String from,
+        @RequestParam(required = false) String to,
+        @RequestParam(required = false) String source,
+        @RequestParam(required = false) Boolean isHeadline,
+        @RequestParam(required = false) String cursor,
+        HttpServletRequest request,
+        HttpServletResponse response
+    ) throws IOException {
+        if (clientKeyResolver.resolveUserId(request) == null) {
+            response.sendError(HttpStatus.UNAUTHORIZED.value(), "Not authenticated");
+            return;
+        }
+        if (!newsExportService.isValidCursor(cursor)) {
+            response.sendError(HttpStatus.BAD_REQUEST.value(), "Invalid cursor");
+            return;
+        }
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        newsExportService.export(from, to, source, isHeadline, cursor, response.getOutputStream());
     }
 
 
@@ -77,4 +311,122 @@ public class NewsController {
         List<NewsArticle> articles = newsArticleRepository.findAllById(ids);
         return ResponseEntity.ok(articles);
     }
+
+
+    /**
+     * Get articles about stories similar to an article.
+     * Served from the in-memory related-articles index; only the returned articles are read from the database.
+     * 
+     * @param id The id of the article
+     * @param limit The maximum number of articles to return
+     * @return A list of NewsArticle objects, most similar first
+     */
+    @GetMapping("/articles/{id}/related")
+    public ResponseEntity<List<NewsArticle>> getRelatedArticles(@PathVariable String id, @RequestParam(defaultValue = "6") int limit) {
+        List<NewsArticle> articles = newsService.findRelatedArticles(id, Math.max(1, Math.min(limit, maxRelated)), minRelatedSimilarity);
+        return ResponseEntity.ok(articles);
+    }
+
+
+    /**
+     * Build a listing response tagged with a strong ETag of the page.
+     * If the client already holds this page (If-None-Match), a 304 is returned before any serialization.
+     * 
+     * The articles are serialized here rather than by the message converter, so the time shows up as the "ser" stage.
+     * With the user's favorites, each article is annotated with "favorited"; the ETag covers the annotation.
+     * 
+     * @param articles The articles of the page
+     * @param favorites The favorite article ids of the user, or null for a response without annotation
+     * @param webRequest The current request
+     * @param timings The stage timings of the request
+     * @return A 200 response with the articles, or a bodiless 304 response
+     * @throws JsonProcessingException If the articles cannot be serialized
+     */
+    private ResponseEntity<?> conditionalResponse(List<NewsArticle> articles, FavoriteIdSets.FavoriteIdSet favorites, WebRequest webRequest, StageTimings timings) throws JsonProcessingException {
+        String eTag = ArticleETags.pageETag(articles, favorites);
+        if (webRequest.checkNotModified(eTag)) {
+            return null; // 304 and ETag headers are already set on the response, nothing to serialize
+        }
+
+        long start = System.nanoTime();
+        byte[] json = favorites == null
+            ? objectMapper.writeValueAsBytes(articles)
+            : objectMapper.writeValueAsBytes(articles.stream()
+                .map(article -> new AnnotatedNewsArticle(article, favorites.test(article.getId())))
+                .toList());
+        timings.record("ser", start);
+
+        CacheControl cacheControl = CacheControl.noCache(); // Let clients keep the page but revalidate on every poll
+        return ResponseEntity.ok()
+            .eTag(eTag)
+            .cacheControl(favorites == null ? cacheControl : cacheControl.cachePrivate()) // Annotated pages are per user
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(json);
+    }
+
+
+    /**
+     * Record the stage timings of a request and report them in a Server-Timing header.
+     * Set on the servlet response so that 304 responses carry it too.
+     * 
+     * @param response The HTTP response
+     * @param endpoint The endpoint name used as a metric tag
+     * @param timings The stage timings of the request
+     * @param startNanos The System.nanoTime() value when the request handling started
+     */
+    private void addServerTiming(HttpServletResponse response, String endpoint, StageTimings timings, long startNanos) {
+        timings.record("total", startNanos);
+        response.setHeader("Server-Timing", stageMetrics.publish(endpoint, timings));
+    }
+
+
+    /**
+     * Write a cached listing page straight from its pre-serialized bytes.
+     * The gzipped bytes are sent when the client accepts gzip; Tomcat leaves responses
+     * that already carry a Content-Encoding alone, so nothing is compressed twice.
+     * The gzip representation has its own strong ETag, so caches and If-Match/Range requests never mix the two.
+     * 
+     * @param cachedPage The cached page
+     * @param webRequest The current request
+     * @param servletResponse The HTTP response, to set Vary on 304 responses too
+     * @return A 200 response with the page bytes, or a bodiless 304 response
+     */
+    private ResponseEntity<?> cachedResponse(ListingPageCache.CachedPage cachedPage, WebRequest webRequest, HttpServletResponse servletResponse) {
+        boolean gzip = acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String eTag = gzip ? gzipETag(cachedPage.getETag()) : cachedPage.getETag();
+        servletResponse.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING); // The representation depends on it
+        if (webRequest.checkNotModified(eTag)) {
+            return null; // 304 and ETag headers are already set on the response
+        }
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .eTag(eTag)
+            .cacheControl(CacheControl.noCache())
+            .contentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(cachedPage.getGzipJson());
+        }
+        return response.body(cachedPage.getJson());
+    }
+
+
+    // The strong ETag of the gzip representation: the page ETag with "-gz" inside the quotes
+    private static String gzipETag(String eTag) {
+        return eTag.substring(0, eTag.length() - 1) + "-gz\"";
+    }
+
+
+    // Check whether an Accept-Encoding header allows gzip (and does not disable it with q=0)
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length < 2 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
 }
@@ -0,0 +1,115 @@
+package com.newsaggregator.controller;
+
+import java.util.List;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import com.newsaggregator.dto.AnnotatedNewsArticle;
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.security.ClientKeyResolver;
+import com.newsaggregator.service.FavoriteIdSets;
+import com.newsaggregator.service.FetchContext;
+import com.newsaggregator.service.ReactiveNewsService;
+
+
+/*
+ * ReactiveNewsController.java
+ * 
+ * This controller class defines the non-blocking variants of the news read endpoints.
+ * Articles are streamed as newline-delimited JSON with backpressure, so a slow client holds
+ * an open connection but no request thread.
+ */
+@RestController
+@RequestMapping("/api/news/reactive")
+@CrossOrigin(origins = {"http://localhost:3001", "https://quickbyte-t50m.onrender.com"}, allowCredentials = "true") // Allow cross-origin requests from the specified URLs
+public class ReactiveNewsController {
+
+    @Autowired
+    private ReactiveNewsService reactiveNewsService; // Non-blocking service to fetch news articles
+
+    @Autowired
+    private ClientKeyResolver clientKeyResolver; // Identifies the user or IP address behind a request
+
+    @Autowired
+    private FavoriteIdSets favoriteIdSets; // Cached favorite ids per user, to annotate listings
+
+
+    /**
+     * Stream top headlines news articles for a specific country.
+     * 
+     * @param country The country code for which to fetch top headlines
+     * @param page The page number of results to fetch
+     * @param pageSize The number of results per page
+     * @param request The HTTP request object, used to identify the client for rate limiting
+     * @param annotate Mark each article with "favorited" for the logged-in user
+     * @return A stream of NewsArticle objects
+     */
+    @GetMapping(value = "/top-headlines", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<?> streamTopHeadlines(@RequestParam String country, @RequestParam(defaultValue = "1") int page, @RequestParam(defaultValue = "12") int pageSize, HttpServletRequest request, @RequestParam(defaultValue = "false") boolean annotate) {
+        FetchContext context = clientKeyResolver.resolveFetchContext(request);
+        return annotated(reactiveNewsService.streamTopHeadlinesWithFallback(country, page, pageSize, context), annotate, request);
+    }
+
+
+    /**
+     * Stream news articles matching a query string.
+     * 
+     * @param query The search query string
+     * @param sortBy The order in which to sort the results (e.g., "publishedAt", "relevancy", "popularity")
+     * @param page The page number of results to fetch
+     * @param pageSize The number of results per page
+     * @param request The HTTP request object, used to identify the client for rate limiting
+     * @param annotate Mark each article with "favorited" for the logged-in user
+     * @return A stream of NewsArticle objects
+     */
+    @GetMapping(value = "/search", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<?> streamSearch(
+        @RequestParam String query,
+        @RequestParam(defaultValue = "publishedAt") String sortBy, // Default to sorting by published date
+        @RequestParam(defaultValue = "1") int page, // Default to first page
+        @RequestParam(defaultValue = "12") int pageSize, // Default to 12 results per page
+        HttpServletRequest request,
+        @RequestParam(defaultValue = "false") boolean annotate
+    ) {
+        FetchContext context = clientKeyResolver.resolveFetchContext(request);
+        return annotated(reactiveNewsService.streamNewsByQuery(query, sortBy, page, pageSize, context), annotate, request);
+    }
+
+
+    /**
+     * Stream news articles by their IDs.
+     * 
+     * @param ids A list of article IDs
+     * @return A stream of NewsArticle objects
+     */
+    @GetMapping(value = "/articles", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<NewsArticle> streamArticlesByIds(@RequestParam List<String> ids) {
+        return reactiveNewsService.streamArticlesByIds(ids);
+    }
+
+
+    /**
+     * Annotate streamed articles with the favorite state of the logged-in user, if asked for.
+     * The user's favorite ids are resolved once, before the stream starts.
+     * 
+     * @param articles The stream of articles
+     * @param annotate Whether annotation was asked for
+     * @param request The HTTP request object, used to read the JWT cookie
+     * @return The articles, or AnnotatedNewsArticle objects for a logged-in user who asked for annotation
+     */
+    private Flux<?> annotated(Flux<NewsArticle> articles, boolean annotate, HttpServletRequest request) {
+        String userId = annotate ? clientKeyResolver.resolveUserId(request) : null;
+        if (userId == null) {
+            return articles;
+        }
+        FavoriteIdSets.FavoriteIdSet favorites = favoriteIdSets.get(userId);
+        return articles.map(article -> new AnnotatedNewsArticle(article, favorites.test(article.getId())));
+    }
+}
@@ -0,0 +1,36 @@
+package com.newsaggregator.controller;
+
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.service.SlowMongoCommandLog;
+
+
+/*
+ * SlowQueriesEndpoint.java
+ * 
+ * This actuator endpoint (/actuator/slowqueries) lists the most recent slow MongoDB commands,
+ * with their query shape, the repository method that issued them and, once explained,
+ * the number of documents and index keys they examined.
+ */
+@Component
+@Endpoint(id = "slowqueries")
+public class SlowQueriesEndpoint {
+
+    @Autowired
+    private SlowMongoCommandLog slowMongoCommandLog; // Records the slow commands
+
+
+    /**
+     * List the most recent slow MongoDB commands.
+     * 
+     * @return The slow commands, most recent first
+     */
+    @ReadOperation
+    public List<SlowMongoCommandLog.SlowCommand> slowQueries() {
+        return slowMongoCommandLog.getRecent();
+    }
+}
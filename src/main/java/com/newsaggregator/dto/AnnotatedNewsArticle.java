@@ -0,0 +1,36 @@
+package com.newsaggregator.dto;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * AnnotatedNewsArticle.java
+ * 
+ * This class represents a news article in a listing, annotated for the logged-in user.
+ * It is serialized as the article's own fields plus "favorited", so clients can show the favorite state
+ * without fetching the user's favorites separately.
+ */
+public class AnnotatedNewsArticle {
+
+    @JsonUnwrapped
+    private final NewsArticle article;
+
+    private final boolean favorited; // Whether the article is among the user's favorites
+
+    // Constructor
+    public AnnotatedNewsArticle(NewsArticle article, boolean favorited) {
+        this.article = article;
+        this.favorited = favorited;
+    }
+
+    // Getters
+    public NewsArticle getArticle() {
+        return article;
+    }
+
+    public boolean isFavorited() {
+        return favorited;
+    }
+}
@@ -0,0 +1,29 @@
+package com.newsaggregator.dto;
+
+
+/*
+ * TrendingTopic.java
+ * 
+ * This class represents one entry of the trending topics strip.
+ * It holds a term (a word or a two-word phrase) and how often it appeared in recently ingested articles.
+ */
+public class TrendingTopic {
+
+    private final String term;
+    private final long count; // Estimated occurrences within the trending window
+
+    // Constructor
+    public TrendingTopic(String term, long count) {
+        this.term = term;
+        this.count = count;
+    }
+
+    // Getters
+    public String getTerm() {
+        return term;
+    }
+
+    public long getCount() {
+        return count;
+    }
+}
@@ -0,0 +1,38 @@
+package com.newsaggregator.event;
+
+import java.util.Set;
+
+
+/*
+ * ArticlesChangedEvent.java
+ * 
+ * This event is published by ChangeStreamInvalidationBus when articles were written to the database by any node,
+ * this one included. It is coalesced: one event covers every change seen within a few milliseconds.
+ * Caches of articles or article pages evict or refresh the affected entries.
+ */
+public class ArticlesChangedEvent {
+
+    private final Set<String> articleIds; // Ids of the inserted, replaced, updated or deleted articles
+    private final boolean headline; // True if any changed article is (or may be) a headline
+    private final boolean resync; // True if changes may have been missed; caches should drop everything
+
+    // Constructor
+    public ArticlesChangedEvent(Set<String> articleIds, boolean headline, boolean resync) {
+        this.articleIds = Set.copyOf(articleIds);
+        this.headline = headline;
+        this.resync = resync;
+    }
+
+    // Getters
+    public Set<String> getArticleIds() {
+        return articleIds;
+    }
+
+    public boolean isHeadline() {
+        return headline;
+    }
+
+    public boolean isResync() {
+        return resync;
+    }
+}
@@ -0,0 +1,39 @@
+package com.newsaggregator.event;
+
+import java.util.Set;
+
+
+/*
+ * FavoritesChangedEvent.java
+ * 
+ * This event is published by ChangeStreamInvalidationBus when users' favorites were changed by another node.
+ * It is coalesced: one event covers every change seen within a few milliseconds.
+ * Per-user caches of favorites evict the affected users. Deletes do not carry their user, so they are reported
+ * by favorites document id, which the caches remember for the users they hold.
+ */
+public class FavoritesChangedEvent {
+
+    private final Set<String> userIds; // Users whose favorites changed
+    private final Set<String> documentIds; // Favorites documents changed without their user (deletes, partial updates)
+    private final boolean allUsers; // True if changes may have been missed
+
+    // Constructor
+    public FavoritesChangedEvent(Set<String> userIds, Set<String> documentIds, boolean allUsers) {
+        this.userIds = Set.copyOf(userIds);
+        this.documentIds = Set.copyOf(documentIds);
+        this.allUsers = allUsers;
+    }
+
+    // Getters
+    public Set<String> getUserIds() {
+        return userIds;
+    }
+
+    public Set<String> getDocumentIds() {
+        return documentIds;
+    }
+
+    public boolean isAllUsers() {
+        return allUsers;
+    }
+}
@@ -0,0 +1,56 @@
+package com.newsaggregator.event;
+
+import java.util.List;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * NewsIngestedEvent.java
+ * 
+ * This event is published by NewsService after every successful News API fetch.
+ * It carries the articles that were new or changed by the fetch, so listeners
+ * (caches, push channels, indexes) can react to ingestion without polling the database.
+ */
+public class NewsIngestedEvent {
+
+    private final String country; // Country of a headline fetch, null for search results
+    private final boolean headline;
+    private final List<NewsArticle> changedArticles; // Articles that were inserted or whose content changed
+    private final int fetchedCount; // Number of articles returned by the News API
+    private final boolean plannedRefresh; // True if the fetch was a planned refresh of HeadlineRefreshScheduler
+
+    // Constructor
+    public NewsIngestedEvent(String country, boolean headline, List<NewsArticle> changedArticles, int fetchedCount, boolean plannedRefresh) {
+        this.country = country;
+        this.headline = headline;
+        this.changedArticles = List.copyOf(changedArticles);
+        this.fetchedCount = fetchedCount;
+        this.plannedRefresh = plannedRefresh;
+    }
+
+    public NewsIngestedEvent(String country, boolean headline, List<NewsArticle> changedArticles, int fetchedCount) {
+        this(country, headline, changedArticles, fetchedCount, false);
+    }
+
+    // Getters
+    public String getCountry() {
+        return country;
+    }
+
+    public boolean isHeadline() {
+        return headline;
+    }
+
+    public List<NewsArticle> getChangedArticles() {
+        return changedArticles;
+    }
+
+    public int getFetchedCount() {
+        return fetchedCount;
+    }
+
+    public boolean isPlannedRefresh() {
+        return plannedRefresh;
+    }
+}
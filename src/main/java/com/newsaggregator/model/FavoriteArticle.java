@@ -23,6 +23,8 @@ public class FavoriteArticle {
     private String userId;
     
     private List<String> articleIds = new ArrayList<>(); // Storing only article IDs instead of full NewsArticle objects
+
+    private String writtenBy; // Node that saved this version, so it can skip its own change stream events
     
     // Default Constructor
     public FavoriteArticle() {
@@ -55,4 +57,11 @@ public class FavoriteArticle {
     public void setArticleIds(List<String> articleIds) {
         this.articleIds = articleIds;
     }
+
+    public String getWrittenBy() {
+        return writtenBy;
+    }
+    public void setWrittenBy(String writtenBy) {
+        this.writtenBy = writtenBy;
+    }
 }
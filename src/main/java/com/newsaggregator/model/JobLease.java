@@ -0,0 +1,69 @@
+package com.newsaggregator.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/*
+ * JobLease.java
+ * 
+ * This class represents a time-limited lease on a scheduled job, shared by all application nodes.
+ * It is mapped to the "job_leases" collection in the MongoDB database (see JobLeaseService).
+ */
+@Document(collection = "job_leases")
+public class JobLease {
+
+    @Id
+    private String id; // Lease name, e.g. "delete-old-articles" or "headline-refresh-0"
+
+    private String owner; // Node that holds the lease
+
+    private long fencingToken; // Incremented every time the lease changes hands
+
+    private Date expiresAt; // The lease may be taken over by another node after this time
+
+    private Map<String, String> runs = new HashMap<>(); // Last claimed run period per key (see JobLeaseService.claimRun)
+
+    // Default Constructor
+    public JobLease() {
+    }
+
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public long getFencingToken() {
+        return fencingToken;
+    }
+    public void setFencingToken(long fencingToken) {
+        this.fencingToken = fencingToken;
+    }
+
+    public Date getExpiresAt() {
+        return expiresAt;
+    }
+    public void setExpiresAt(Date expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public Map<String, String> getRuns() {
+        return runs;
+    }
+    public void setRuns(Map<String, String> runs) {
+        this.runs = runs;
+    }
+}
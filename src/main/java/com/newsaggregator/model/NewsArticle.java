@@ -1,5 +1,6 @@
 package com.newsaggregator.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
@@ -24,6 +25,9 @@ public class NewsArticle {
     private String content;
     private String imageUrl;
     private boolean isHeadline = false;
+
+    @JsonIgnore // Internal: used for near-duplicate detection, not part of responses
+    private Long simHash; // SimHash of the normalized title and description (see ArticleSimHash), null if too short
     
     // Default Constructor
     public NewsArticle() {
@@ -104,4 +108,11 @@ public class NewsArticle {
     public void setIsHeadline(boolean isHeadline) {
         this.isHeadline = isHeadline;
     }
+
+    public Long getSimHash() {
+        return simHash;
+    }
+    public void setSimHash(Long simHash) {
+        this.simHash = simHash;
+    }
 }
@@ -1,10 +1,8 @@
 package com.newsaggregator.repository;
 
-import java.time.LocalDateTime;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,11 +18,9 @@ import com.newsaggregator.model.NewsArticle;
 public interface NewsArticleRepository extends MongoRepository<NewsArticle, String> {
     boolean existsByUrl(String url);
     Optional<NewsArticle> findByUrl(String url);
-    void deleteByPublishedAtBefore(LocalDateTime dateTime);
+    List<NewsArticle> findByUrlIn(Collection<String> urls);
+    void deleteByPublishedAtBefore(String publishedAt); // ISO-8601 UTC, compared as stored
 
     @Query("{ '_id': { $in: ?0 } }")
     List<NewsArticle> findAllById(List<String> articleIds);
-
-    Page<NewsArticle> findByIsHeadlineTrue(Pageable pageable);
-    Page<NewsArticle> findByTitleContainingIgnoreCaseOrDescriptionContainingIgnoreCase(String titleQuery, String descriptionQuery, Pageable pageable);
 }
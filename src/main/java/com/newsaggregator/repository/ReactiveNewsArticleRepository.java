@@ -0,0 +1,24 @@
+package com.newsaggregator.repository;
+
+import org.springframework.data.mongodb.repository.Query;
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import java.util.List;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * ReactiveNewsArticleRepository.java
+ * 
+ * This repository interface is the non-blocking equivalent of NewsArticleRepository.
+ * It uses the reactive MongoDB driver so the streaming read path never parks a thread on a query.
+ */
+public interface ReactiveNewsArticleRepository extends ReactiveMongoRepository<NewsArticle, String> {
+    Mono<Boolean> existsByUrl(String url);
+    Mono<NewsArticle> findByUrl(String url);
+
+    @Query("{ '_id': { $in: ?0 } }")
+    Flux<NewsArticle> findAllById(List<String> articleIds);
+}
@@ -0,0 +1,82 @@
+package com.newsaggregator.security;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.service.FetchContext;
+
+
+/*
+ * ClientKeyResolver.java
+ * 
+ * This component identifies the client behind a request.
+ * Logged-in users are identified by the user ID in their JWT cookie, everyone else by IP address.
+ * The IP address honours X-Forwarded-For from trusted proxies (server.forward-headers-strategy=native).
+ * It also builds the FetchContext of a request, whose deadline can be shortened with an X-Request-Timeout header (ms).
+ */
+@Component
+public class ClientKeyResolver {
+
+    @Autowired
+    private JwtTokenUtil jwtTokenUtil; // Utility class for JWT token operations
+
+    @Value("${news.upstream.default-deadline-ms:3000}")
+    private long defaultDeadlineMillis; // Time budget of a request that does not send X-Request-Timeout
+
+    @Value("${news.upstream.max-deadline-ms:10000}")
+    private long maxDeadlineMillis; // Clients may ask for less time, never for more than this
+
+
+    /**
+     * Get the ID of the logged-in user from the JWT cookie.
+     * 
+     * @param request The HTTP request
+     * @return The user ID, or null if the request has no valid token
+     */
+    public String resolveUserId(HttpServletRequest request) {
+        String token = jwtTokenUtil.getTokenFromCookies(request);
+        if (token == null) {
+            return null;
+        }
+        try {
+            String userId = jwtTokenUtil.getSubjectFromToken(token);
+            return jwtTokenUtil.validateToken(token, userId) ? userId : null;
+        } catch (IllegalArgumentException e) {
+            return null; // Expired or malformed token
+        }
+    }
+
+
+    /**
+     * Get the rate-limit key of the client behind a request.
+     * 
+     * @param request The HTTP request
+     * @return "user:<id>" for logged-in users, "ip:<address>" otherwise
+     */
+    public String resolveClientKey(HttpServletRequest request) {
+        String userId = resolveUserId(request);
+        return userId != null ? "user:" + userId : "ip:" + request.getRemoteAddr();
+    }
+
+
+    /**
+     * Build the FetchContext of a request: its client key and its deadline.
+     * 
+     * @param request The HTTP request
+     * @return The context to pass to NewsService
+     */
+    public FetchContext resolveFetchContext(HttpServletRequest request) {
+        long budgetMillis = defaultDeadlineMillis;
+        String timeout = request.getHeader("X-Request-Timeout");
+        if (timeout != null) {
+            try {
+                budgetMillis = Math.max(0, Math.min(Long.parseLong(timeout.trim()), maxDeadlineMillis));
+            } catch (NumberFormatException e) {
+                // Ignore a malformed header and keep the default budget
+            }
+        }
+        return FetchContext.forClient(resolveClientKey(request), budgetMillis);
+    }
+}
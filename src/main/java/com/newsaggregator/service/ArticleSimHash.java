@@ -0,0 +1,74 @@
+package com.newsaggregator.service;
+
+import java.util.List;
+
+
+/*
+ * ArticleSimHash.java
+ *
+ * This helper class computes 64-bit SimHash fingerprints of articles for near-duplicate detection.
+    - The input is the title and description, split into normalized words by ArticleTokens.
+    - Features are the words and the pairs of adjacent words. Each feature votes on all 64 bits with its own
+      hash; the fingerprint keeps the majority of each bit. Texts that share most features get fingerprints
+      that differ in only a few bits.
+    - Texts with too few words get no fingerprint; short titles like "[Removed]" are not duplicates of each other.
+ */
+public final class ArticleSimHash {
+
+    private static final int MIN_WORDS = 4; // Fewer words do not identify a story
+
+    private ArticleSimHash() {
+    }
+
+
+    /**
+     * Compute the SimHash of an article's title and description.
+     *
+     * @param title The title as returned by the News API (may be null)
+     * @param description The description (may be null)
+     * @return The fingerprint, or null if the text is too short to fingerprint
+     */
+    public static Long of(String title, String description) {
+        List<String> words = ArticleTokens.words(title, description);
+        if (words.size() < MIN_WORDS) {
+            return null;
+        }
+
+        int[] votes = new int[64];
+        String previous = null;
+        for (String word : words) {
+            vote(votes, ArticleTokens.hash(word));
+            if (previous != null) {
+                vote(votes, ArticleTokens.hash(previous + ' ' + word));
+            }
+            previous = word;
+        }
+
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (votes[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+
+
+    /**
+     * Count the bits in which two fingerprints differ.
+     *
+     * @param a One fingerprint
+     * @param b The other fingerprint
+     * @return The Hamming distance (0 to 64)
+     */
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+
+    private static void vote(int[] votes, long featureHash) {
+        for (int bit = 0; bit < 64; bit++) {
+            votes[bit] += ((featureHash >>> bit) & 1) != 0 ? 1 : -1;
+        }
+    }
+}
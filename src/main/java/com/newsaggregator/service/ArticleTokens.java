@@ -0,0 +1,102 @@
+package com.newsaggregator.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+
+/*
+ * ArticleTokens.java
+ *
+ * This helper class splits article text into the normalized words used by the in-memory article indexes
+ * (ArticleSimHash, RelatedArticleIndex).
+    - Text is lowercased and split on everything that is not a letter or digit; one-character words and
+      very common words are dropped.
+    - The " - Source Name" suffix the News API appends to titles is removed, so the same story from
+      different outlets yields the same words.
+    - hash gives well-mixed 64-bit hashes of words and word sequences.
+ */
+public final class ArticleTokens {
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int MAX_SOURCE_SUFFIX = 40; // Longest " - Source Name" title suffix that is stripped
+
+    private static final Set<String> STOP_WORDS = Set.of(
+        "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "he", "her", "his", "in", "is",
+        "it", "its", "of", "on", "or", "she", "that", "the", "their", "they", "this", "to", "was", "were", "will", "with");
+
+    private ArticleTokens() {
+    }
+
+
+    /**
+     * Split an article's title and further text into normalized words, in order.
+     *
+     * @param title The title as returned by the News API (may be null)
+     * @param texts Further text such as the description or content (each may be null)
+     * @return The words of the title followed by the words of the texts
+     */
+    public static List<String> words(String title, String... texts) {
+        List<String> words = new ArrayList<>();
+        addWords(words, stripSourceSuffix(title));
+        for (String text : texts) {
+            addWords(words, text);
+        }
+        return words;
+    }
+
+
+    /**
+     * Check whether a word is too common to say anything about an article.
+     *
+     * @param word A lowercase word
+     * @return True for stop words
+     */
+    public static boolean isStopWord(String word) {
+        return STOP_WORDS.contains(word);
+    }
+
+
+    /**
+     * Hash a word or a sequence of words to 64 bits.
+     * FNV-1a over the characters, then a full avalanche so that every bit depends on the whole feature.
+     *
+     * @param feature The text to hash
+     * @return The hash
+     */
+    public static long hash(String feature) {
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < feature.length(); i++) {
+            hash = (hash ^ feature.charAt(i)) * FNV_PRIME;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+
+    // "Storm hits coast - BBC News" -> "Storm hits coast"
+    private static String stripSourceSuffix(String title) {
+        if (title == null) {
+            return null;
+        }
+        int dash = title.lastIndexOf(" - ");
+        return dash > 0 && title.length() - dash <= MAX_SOURCE_SUFFIX ? title.substring(0, dash) : title;
+    }
+
+    private static void addWords(List<String> words, String text) {
+        if (text == null) {
+            return;
+        }
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (word.length() > 1 && !STOP_WORDS.contains(word)) {
+                words.add(word);
+            }
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.newsaggregator.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * ArticleWriteBehind.java
+ *
+ * This component persists fetched articles in the background, so requests do not wait for MongoDB.
+    - Articles are queued with their final id already assigned and written later as bulk upserts by id.
+      Upserts are idempotent, so the same article queued twice (e.g. by concurrent requests) is harmless.
+    - One writer thread drains the queue in batches that span requests; within a batch the last
+      version of an article wins.
+    - Queued articles can be looked up by id until they are written (findPending), so ingestion builds on the
+      queued version instead of queueing an older one over it.
+    - The queue is bounded. When it is full, callers wait briefly and then write their articles
+      themselves, which slows ingestion down to the speed of the database instead of dropping data.
+      A caller's own write that keeps failing throws, so the caller sees the error.
+    - A batch whose write keeps failing is kept and retried until it succeeds; meanwhile the queue fills up and
+      callers fall back to writing themselves. Only at shutdown is a failing batch given up (logged and counted).
+ */
+@Component
+public class ArticleWriteBehind {
+
+    private static final Logger logger = LoggerFactory.getLogger(ArticleWriteBehind.class);
+
+    private static final int MAX_ATTEMPTS = 3; // Tries per write before the failure is reported
+
+    @Autowired
+    private MongoTemplate mongoTemplate; // To write batches with bulk operations
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish queue and flush metrics
+
+    @Value("${news.persistence.queue-capacity:5000}")
+    private int queueCapacity; // Articles waiting to be written before callers are slowed down
+
+    @Value("${news.persistence.batch-size:200}")
+    private int batchSize; // Maximum articles per bulk write
+
+    @Value("${news.persistence.flush-interval-ms:200}")
+    private long flushIntervalMillis; // How long the writer waits for a batch to fill up
+
+    @Value("${news.persistence.offer-timeout-ms:500}")
+    private long offerTimeoutMillis; // How long a caller waits for queue space before writing itself
+
+    @Value("${news.persistence.retry-backoff-ms:100}")
+    private long retryBackoffMillis; // Wait before the first retry of a failed write, doubled per attempt
+
+    private BlockingQueue<NewsArticle> queue;
+    private final Map<String, NewsArticle> pending = new ConcurrentHashMap<>(); // Id -> latest queued version, until written
+    private Thread writer;
+    private volatile boolean running;
+
+    private DistributionSummary batchSizes;
+    private Timer flushLatency;
+    private Counter failedArticles;
+    private Counter retriedBatches;
+    private Counter overflowArticles;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("news.persistence.queue.depth", queue, BlockingQueue::size)
+            .description("Articles waiting to be written to MongoDB")
+            .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("news.persistence.batch.size")
+            .description("Articles per bulk write")
+            .register(meterRegistry);
+        flushLatency = Timer.builder("news.persistence.flush.latency")
+            .description("Time to write one batch to MongoDB")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+        failedArticles = Counter.builder("news.persistence.failed")
+            .description("Articles that could not be written: failed caller writes, or batches given up at shutdown")
+            .register(meterRegistry);
+        retriedBatches = Counter.builder("news.persistence.retried")
+            .description("Batch writes that kept failing and were kept for another attempt")
+            .register(meterRegistry);
+        overflowArticles = Counter.builder("news.persistence.overflow")
+            .description("Articles written by the caller because the queue was full")
+            .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::run, "article-write-behind");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+
+    /**
+     * Queue articles to be written. Every article must already have its id.
+     * Blocks for a short time when the queue is full, then writes the remaining articles directly.
+     * Queued articles must not be modified any more; queue a modified copy instead.
+     *
+     * @param articles The articles to persist
+     * @throws RuntimeException If the queue was full and writing the remaining articles directly failed
+     */
+    public void enqueue(Collection<NewsArticle> articles) {
+        List<NewsArticle> overflow = new ArrayList<>();
+        try {
+            for (NewsArticle article : articles) {
+                if (!overflow.isEmpty()) {
+                    overflow.add(article);
+                    continue;
+                }
+                pending.put(article.getId(), article); // Before offering, so the writer cannot finish with it first
+                if (!queue.offer(article, offerTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    pending.remove(article.getId(), article);
+                    overflow.add(article);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!overflow.isEmpty()) {
+            overflowArticles.increment(overflow.size());
+            Collection<NewsArticle> own = coalesce(overflow);
+            try {
+                write(own); // Backpressure: the caller pays for its own writes
+            } catch (RuntimeException e) {
+                failedArticles.increment(own.size());
+                throw e;
+            }
+        }
+    }
+
+
+    /**
+     * Return the queued version of an article that has not been written yet.
+     *
+     * @param id The article id
+     * @return The latest queued version, or null if none is waiting to be written
+     */
+    public NewsArticle findPending(String id) {
+        return pending.get(id);
+    }
+
+
+    /**
+     * Return the number of articles waiting to be written.
+     *
+     * @return The queue depth
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+
+    // Writer loop: wait for the first article, give the batch a moment to fill, then write it.
+    // A batch that cannot be written is kept and written again before anything else.
+    private void run() {
+        List<NewsArticle> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (!batch.isEmpty()) {
+                    Thread.sleep(retryBackoffMillis << MAX_ATTEMPTS); // The kept batch failed: give the database time to recover
+                } else {
+                    NewsArticle first = queue.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    long flushAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+                    while (batch.size() < batchSize) {
+                        long waitNanos = flushAt - System.nanoTime();
+                        NewsArticle next = waitNanos > 0 ? queue.poll(waitNanos, TimeUnit.NANOSECONDS) : queue.poll();
+                        if (next == null) {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                running = false; // Only this component's own thread is interrupted: write what is queued, then stop
+                queue.drainTo(batch);
+            }
+
+            if (!batch.isEmpty()) {
+                Collection<NewsArticle> articles = coalesce(batch);
+                try {
+                    write(articles);
+                } catch (RuntimeException e) {
+                    if (running) {
+                        retriedBatches.increment();
+                        logger.error("Writing {} articles failed {} times, keeping them for another attempt", articles.size(), MAX_ATTEMPTS, e);
+                        continue;
+                    }
+                    failedArticles.increment(articles.size());
+                    logger.error("Giving up writing {} articles at shutdown", articles.size(), e);
+                }
+                articles.forEach(article -> pending.remove(article.getId(), article)); // Unless a newer version was queued
+                batch.clear();
+            }
+        }
+    }
+
+
+    // Keep only the latest version of each article, in queue order
+    private static Collection<NewsArticle> coalesce(List<NewsArticle> articles) {
+        Map<String, NewsArticle> byId = new LinkedHashMap<>();
+        for (NewsArticle article : articles) {
+            byId.put(article.getId(), article);
+        }
+        return byId.values();
+    }
+
+
+    // Upsert a batch by id, retrying transient failures; the last failure is thrown once MAX_ATTEMPTS are used up
+    private void write(Collection<NewsArticle> articles) {
+        batchSizes.record(articles.size());
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                flushLatency.record(() -> {
+                    BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, NewsArticle.class);
+                    for (NewsArticle article : articles) {
+                        bulk.replaceOne(new Query(Criteria.where("_id").is(article.getId())), article, FindAndReplaceOptions.options().upsert());
+                    }
+                    bulk.execute();
+                });
+                return;
+            } catch (RuntimeException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+                logger.warn("Writing {} articles failed (attempt {}), retrying", articles.size(), attempt, e);
+                try {
+                    Thread.sleep(retryBackoffMillis << attempt);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+
+    // Stop accepting new work and write everything still queued before the database connection closes
+    @PreDestroy
+    private void shutdown() throws InterruptedException {
+        running = false; // The writer notices within one flush interval; interrupting it could abort a bulk write
+        writer.join(TimeUnit.SECONDS.toMillis(10));
+        if (!queue.isEmpty()) {
+            logger.warn("{} articles were still queued at shutdown", queue.size());
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.newsaggregator.service;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import com.mongodb.MongoCommandException;
+import com.mongodb.MongoException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.Aggregates;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.event.ArticlesChangedEvent;
+import com.newsaggregator.event.FavoritesChangedEvent;
+
+
+/*
+ * ChangeStreamInvalidationBus.java
+ *
+ * This component keeps the in-process caches of every node consistent with the database, whichever node wrote.
+    - Tails MongoDB change streams on the "news" and "favorites" collections, one daemon thread each.
+      Change streams need a replica set; a local single-node replica set is enough.
+    - Changes are coalesced for news.invalidation.coalesce-ms and published as one ArticlesChangedEvent
+      and one FavoritesChangedEvent, which the caches listen to.
+    - Favorites saved by this node are skipped (FavoriteArticle.writtenBy): FavoriteArticleService already
+      updated the local caches with the write. Deletes carry no user and are passed on by document id.
+    - The resume token of each stream is kept after every batch, so a stream that fails (network error,
+      failover) restarts where it stopped. If the token can no longer be resumed, a resync event tells the
+      caches to drop everything instead of missing changes. A restarted node starts with empty caches, so it
+      needs no resume token.
+    - Disabled by default (news.invalidation.enabled); a single node already evicts on NewsIngestedEvent.
+ */
+@Component
+public class ChangeStreamInvalidationBus {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChangeStreamInvalidationBus.class);
+
+    private static final Set<Integer> RESUME_LOST_CODES = Set.of(260, 280, 286); // InvalidResumeToken, ChangeStreamFatalError, ChangeStreamHistoryLost
+    private static final int NOT_A_REPLICA_SET_CODE = 40573;
+    private static final long MAX_BACKOFF_MILLIS = 30000;
+
+    // Only what the caches need: no full documents are sent for updates and deletes
+    private static final List<Bson> PIPELINE = List.of(
+        Aggregates.match(Filters.in("operationType", List.of("insert", "replace", "update", "delete"))),
+        Aggregates.project(Projections.include("operationType", "ns", "documentKey", "wallTime", "clusterTime",
+            "fullDocument.isHeadline", "fullDocument.userId", "fullDocument.writtenBy")));
+
+    @Autowired
+    private MongoTemplate mongoTemplate; // To open the change streams
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher; // To notify the caches
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish event counts and propagation lag
+
+    @Autowired
+    private JobLeaseService jobLeaseService; // Identifies this node in the favorites it writes
+
+    @Value("${news.invalidation.enabled:false}")
+    private boolean enabled;
+
+    @Value("${news.invalidation.coalesce-ms:20}")
+    private long coalesceMillis; // Changes within this window are published as one event
+
+    @Value("${news.invalidation.max-await-ms:500}")
+    private long maxAwaitMillis; // How long one poll of a stream waits on the server
+
+    private volatile boolean running;
+    private ScheduledExecutorService publisher;
+    private Timer lag;
+
+    // Pending changes, guarded by this
+    private final Set<String> changedArticleIds = new HashSet<>();
+    private boolean headlineChanged;
+    private boolean articlesResync;
+    private final Set<String> changedFavoriteUsers = new HashSet<>();
+    private final Set<String> changedFavoriteDocuments = new HashSet<>(); // Changed without their user
+    private boolean allFavoritesChanged;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        if (!enabled) {
+            return;
+        }
+        lag = Timer.builder("news.invalidation.lag")
+            .description("Time from a write on any node until its change stream event reaches this node")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+
+        running = true;
+        startTail("news", this::onArticleChange);
+        startTail("favorites", this::onFavoriteChange);
+
+        publisher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "change-stream-publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        publisher.scheduleWithFixedDelay(this::publishPending, coalesceMillis, coalesceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void startTail(String collection, Consumer<ChangeStreamDocument<Document>> handler) {
+        Counter events = Counter.builder("news.invalidation.events").tag("collection", collection)
+            .description("Change stream events received").register(meterRegistry);
+        Thread thread = new Thread(() -> tail(collection, change -> {
+            events.increment();
+            if (change.getWallTime() != null) {
+                lag.record(Math.max(0, System.currentTimeMillis() - change.getWallTime().getValue()), TimeUnit.MILLISECONDS);
+            }
+            handler.accept(change);
+        }), "change-stream-" + collection);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    // Follow one collection's change stream until shutdown, resuming after errors
+    private void tail(String collection, Consumer<ChangeStreamDocument<Document>> handler) {
+        BsonDocument resumeToken = null;
+        long backoffMillis = 100;
+
+        while (running) {
+            ChangeStreamIterable<Document> stream = mongoTemplate.getCollection(collection).watch(PIPELINE)
+                .maxAwaitTime(maxAwaitMillis, TimeUnit.MILLISECONDS);
+            if (resumeToken != null) {
+                stream = stream.startAfter(resumeToken);
+            }
+
+            try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = stream.cursor()) {
+                if (resumeToken == null) {
+                    logger.info("Following changes of {}", collection);
+                }
+                backoffMillis = 100;
+                while (running) {
+                    ChangeStreamDocument<Document> change = cursor.tryNext(); // Waits up to maxAwaitMillis
+                    if (change != null) {
+                        handler.accept(change);
+                    }
+                    BsonDocument token = cursor.getResumeToken(); // Advances even when no event matched
+                    if (token != null) {
+                        resumeToken = token;
+                    }
+                }
+            } catch (MongoCommandException e) {
+                if (e.getErrorCode() == NOT_A_REPLICA_SET_CODE) {
+                    logger.error("Change streams need a replica set; cross-node invalidation of {} is off", collection);
+                    return;
+                }
+                if (RESUME_LOST_CODES.contains(e.getErrorCode())) {
+                    logger.warn("Cannot resume the change stream of {}; dropping cached entries", collection, e);
+                    resumeToken = null;
+                    resync(collection);
+                } else {
+                    backoffMillis = backoff(collection, e, backoffMillis);
+                }
+            } catch (MongoException e) {
+                backoffMillis = backoff(collection, e, backoffMillis);
+            }
+        }
+    }
+
+    private long backoff(String collection, MongoException e, long backoffMillis) {
+        if (running) {
+            logger.warn("Change stream of {} failed, retrying in {} ms", collection, backoffMillis, e);
+            try {
+                Thread.sleep(backoffMillis);
+            } catch (InterruptedException interrupted) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+        }
+        return Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+    }
+
+
+    private synchronized void onArticleChange(ChangeStreamDocument<Document> change) {
+        String id = idOf(change.getDocumentKey());
+        if (id != null) {
+            changedArticleIds.add(id);
+        }
+        Document article = change.getFullDocument(); // Present for inserts and replacements
+        if (article == null || article.getBoolean("isHeadline", false)) {
+            headlineChanged = true; // Updates and deletes may concern a headline
+        }
+    }
+
+    synchronized void onFavoriteChange(ChangeStreamDocument<Document> change) {
+        Document favorites = change.getFullDocument(); // Present for inserts and replacements
+        if (favorites != null && jobLeaseService.getNodeId().equals(favorites.getString("writtenBy"))) {
+            return; // Saved by this node, whose caches were updated with the write
+        }
+        String id = idOf(change.getDocumentKey());
+        if (favorites != null && favorites.getString("userId") != null) {
+            changedFavoriteUsers.add(favorites.getString("userId"));
+        } else if (id != null) {
+            changedFavoriteDocuments.add(id); // A deleted or updated document does not carry its user
+        } else {
+            allFavoritesChanged = true;
+        }
+    }
+
+    private synchronized void resync(String collection) {
+        if (collection.equals("news")) {
+            articlesResync = true;
+        } else {
+            allFavoritesChanged = true;
+        }
+    }
+
+
+    // Publish everything that arrived since the last run as one event per collection
+    void publishPending() {
+        ArticlesChangedEvent articles = null;
+        FavoritesChangedEvent favorites = null;
+        synchronized (this) {
+            if (!changedArticleIds.isEmpty() || headlineChanged || articlesResync) {
+                articles = new ArticlesChangedEvent(changedArticleIds, headlineChanged || articlesResync, articlesResync);
+                changedArticleIds.clear();
+                headlineChanged = false;
+                articlesResync = false;
+            }
+            if (!changedFavoriteUsers.isEmpty() || !changedFavoriteDocuments.isEmpty() || allFavoritesChanged) {
+                favorites = new FavoritesChangedEvent(changedFavoriteUsers, changedFavoriteDocuments, allFavoritesChanged);
+                changedFavoriteUsers.clear();
+                changedFavoriteDocuments.clear();
+                allFavoritesChanged = false;
+            }
+        }
+
+        try {
+            if (articles != null) {
+                eventPublisher.publishEvent(articles);
+            }
+            if (favorites != null) {
+                eventPublisher.publishEvent(favorites);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Failed to publish invalidation events", e); // Keep the scheduled task alive
+        }
+    }
+
+    private static String idOf(BsonDocument documentKey) {
+        BsonValue id = documentKey != null ? documentKey.get("_id") : null;
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString() : id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+
+    // Stop following the streams; the tail threads notice within maxAwaitMillis
+    @PreDestroy
+    private void shutdown() {
+        running = false;
+        if (publisher != null) {
+            publisher.shutdownNow();
+        }
+    }
+}
@@ -21,6 +21,8 @@ import com.newsaggregator.repository.NewsArticleRepository;
     - Gets the full news article details for a user's favorite articles.
     - Adds an article to the user's favorites.
     - Removes an article from the user's favorites.
+    - Keeps the user's interest profile for the "for you" feed up to date (see InterestProfiles).
+    - Keeps the user's cached favorite id set, used to mark favorites in listings, up to date (see FavoriteIdSets).
  */
 @Service
 public class FavoriteArticleService {
@@ -31,6 +33,15 @@ public class FavoriteArticleService {
     @Autowired
     private NewsArticleRepository newsArticleRepository; // To interact with the database for news articles
 
+    @Autowired
+    private InterestProfiles interestProfiles; // To update the user's interest vector incrementally
+
+    @Autowired
+    private FavoriteIdSets favoriteIdSets; // To keep the cached favorite ids of the user current
+
+    @Autowired
+    private JobLeaseService jobLeaseService; // Identifies this node in the favorites it saves
+
 
     /**
      * Get the list of article IDs that a user has favorited.
@@ -72,7 +83,10 @@ public class FavoriteArticleService {
         // If the article is not already in the user's favorites, add it
         if (!favoriteArticle.getArticleIds().contains(articleId)) {
             favoriteArticle.getArticleIds().add(articleId);
-            favoriteArticleRepository.save(favoriteArticle);
+            favoriteArticle.setWrittenBy(jobLeaseService.getNodeId()); // This node skips the change stream event of its own write
+            favoriteArticle = favoriteArticleRepository.save(favoriteArticle);
+            favoriteIdSets.update(userId, favoriteArticle.getId(), favoriteArticle.getArticleIds());
+            interestProfiles.favoriteAdded(userId, favoriteArticle.getId(), articleId);
         }
     }
 
@@ -94,11 +108,16 @@ public class FavoriteArticleService {
             boolean removed = favoriteArticle.getArticleIds().remove(articleId);
     
             if (removed) { // Proceed only if an article was actually removed
+                String documentId = null;
                 if (favoriteArticle.getArticleIds().isEmpty()) {
                     favoriteArticleRepository.delete(favoriteArticle); // Delete if empty
                 } else {
-                    favoriteArticleRepository.save(favoriteArticle); // Save changes if not empty
+                    favoriteArticle.setWrittenBy(jobLeaseService.getNodeId()); // This node skips the change stream event of its own write
+                    documentId = favoriteArticleRepository.save(favoriteArticle).getId(); // Save changes if not empty
                 }
+                // A deleted document is no longer cached under its id, so this node ignores its own delete event
+                favoriteIdSets.update(userId, documentId, favoriteArticle.getArticleIds());
+                interestProfiles.favoriteRemoved(userId, documentId, articleId);
             }
             return removed; // Return true if removed, false otherwise
         }
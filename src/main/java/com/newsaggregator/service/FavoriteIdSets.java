@@ -0,0 +1,178 @@
+package com.newsaggregator.service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Predicate;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.event.FavoritesChangedEvent;
+import com.newsaggregator.model.FavoriteArticle;
+import com.newsaggregator.repository.FavoriteArticleRepository;
+
+
+/*
+ * FavoriteIdSets.java
+ *
+ * This component caches the ids of each user's favorite articles as a compact set, to mark favorited articles
+ * in listings without reading the favorites for every page.
+    - Ids are reduced to 64-bit keys in an open-addressing table of longs; a lookup is one or two array reads.
+    - A user's set is read from the database on first use, then replaced by FavoriteArticleService on every
+      add and remove. Sets are immutable, so lookups need no locking.
+    - Sets are kept for the most recently active users only (news.favorites.cache-max-users), and favorites
+      changed on other nodes (FavoritesChangedEvent) evict them. Each set remembers the id of the favorites
+      document it reflects, because deletes are reported by document id only.
+ */
+@Component
+public class FavoriteIdSets {
+
+    @Autowired
+    private FavoriteArticleRepository favoriteArticleRepository; // To read a user's favorites on a cache miss
+
+    @Value("${news.favorites.cache-max-users:50000}")
+    private int maxUsers;
+
+    // Least recently used first; guarded by itself
+    private final LinkedHashMap<String, Cached> sets = new LinkedHashMap<>(16, 0.75f, true);
+
+
+    /**
+     * Get the set of a user's favorite article ids.
+     *
+     * @param userId The ID of the user
+     * @return The set, empty if the user has no favorites
+     */
+    public FavoriteIdSet get(String userId) {
+        synchronized (sets) {
+            Cached cached = sets.get(userId);
+            if (cached != null) {
+                return cached.set;
+            }
+        }
+        FavoriteArticle favorites = favoriteArticleRepository.findByUserId(userId).orElse(null);
+        Cached loaded = favorites != null
+            ? new Cached(favorites.getId(), new FavoriteIdSet(favorites.getArticleIds()))
+            : new Cached(null, new FavoriteIdSet(List.of()));
+        synchronized (sets) {
+            Cached concurrent = sets.putIfAbsent(userId, loaded); // An update that raced the read wins
+            if (sets.size() > maxUsers) {
+                sets.remove(sets.keySet().iterator().next());
+            }
+            return concurrent != null ? concurrent.set : loaded.set;
+        }
+    }
+
+
+    /**
+     * Replace a user's cached set after the user's favorites were saved.
+     *
+     * @param userId The ID of the user
+     * @param documentId The ID of the user's favorites document, or null if it was deleted
+     * @param articleIds All of the user's favorite article ids
+     */
+    public void update(String userId, String documentId, Collection<String> articleIds) {
+        Cached updated = new Cached(documentId, new FavoriteIdSet(articleIds));
+        synchronized (sets) {
+            sets.put(userId, updated);
+        }
+    }
+
+
+    // Drop sets whose favorites changed on another node
+    @EventListener
+    public void onFavoritesChanged(FavoritesChangedEvent event) {
+        synchronized (sets) {
+            if (event.isAllUsers()) {
+                sets.clear();
+                return;
+            }
+            event.getUserIds().forEach(sets::remove);
+            if (!event.getDocumentIds().isEmpty()) {
+                sets.values().removeIf(cached -> cached.documentId != null && event.getDocumentIds().contains(cached.documentId));
+            }
+        }
+    }
+
+
+    /*
+     * A cached set and the favorites document it was built from.
+     */
+    private static class Cached {
+
+        private final String documentId; // Null if the user has no favorites document
+        private final FavoriteIdSet set;
+
+        // Constructor
+        Cached(String documentId, FavoriteIdSet set) {
+            this.documentId = documentId;
+            this.set = set;
+        }
+    }
+
+
+    /*
+     * An immutable set of article ids, stored as 64-bit keys with linear probing in a table at most half full.
+     */
+    public static class FavoriteIdSet implements Predicate<String> {
+
+        private static final long EMPTY = 0; // Keys are never 0 (see key)
+
+        private final long[] table;
+        private final int mask;
+        private final int size;
+
+        // Constructor
+        FavoriteIdSet(Collection<String> articleIds) {
+            int capacity = Integer.highestOneBit(Math.max(2, articleIds.size() * 2 - 1)) << 1;
+            table = new long[capacity];
+            mask = capacity - 1;
+            int added = 0;
+            for (String articleId : articleIds) {
+                long key = key(articleId);
+                int slot = slot(key);
+                if (table[slot] != key) {
+                    table[slot] = key;
+                    added++;
+                }
+            }
+            size = added;
+        }
+
+        /**
+         * Check whether an article is in the set.
+         *
+         * @param articleId The ID of the article
+         * @return True if the article is a favorite
+         */
+        @Override
+        public boolean test(String articleId) {
+            if (size == 0 || articleId == null) {
+                return false;
+            }
+            long key = key(articleId);
+            return table[slot(key)] == key;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        // The slot holding the key, or the empty slot where it belongs
+        private int slot(long key) {
+            int slot = (int) (key ^ key >>> 32) * 0x9E3779B9 >>> 8 & mask;
+            while (table[slot] != EMPTY && table[slot] != key) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        // A 64-bit hash of the whole id: older articles have ObjectId ids, whose leading digits are shared
+        private static long key(String articleId) {
+            long key = ArticleTokens.hash(articleId);
+            return key != EMPTY ? key : 1;
+        }
+    }
+}
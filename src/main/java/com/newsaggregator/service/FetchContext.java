@@ -0,0 +1,114 @@
+package com.newsaggregator.service;
+
+import java.util.concurrent.TimeUnit;
+
+
+/*
+ * FetchContext.java
+ * 
+ * This class carries per-call information from a controller into NewsService:
+    - The client that caused a News API call, for rate limiting.
+    - The deadline by which the caller needs an answer; upstream work is abandoned once it passes.
+    - The StageTimings of the request, filled in as it moves through the service layer.
+ * Scheduled jobs use FetchContext.scheduled(), which has no client and a generous deadline; the planned headline
+ * refreshes use FetchContext.plannedRefresh(), whose results also drive the refresh plan (see HeadlineRefreshScheduler).
+ * Loads of shared listing pages use FetchContext.cacheFill(), so the page does not depend on which client missed first.
+ */
+public class FetchContext {
+
+    private static final long SCHEDULED_BUDGET_MILLIS = 30000; // Background jobs have no client waiting
+    private static final long CACHE_FILL_BUDGET_MILLIS = 10000; // Shared loads are not cut short by one client's deadline
+
+    private final String clientKey; // Rate-limit key of the caller, null for background jobs
+    private final boolean upstreamAllowed; // False: only the database may be used
+    private final long deadlineNanos; // System.nanoTime() value after which the caller no longer waits
+    private final StageTimings timings; // Time spent per stage of this call
+    private final boolean plannedRefresh; // True for the scheduler's own headline refreshes
+
+    // Constructor
+    private FetchContext(String clientKey, long budgetMillis, boolean upstreamAllowed, StageTimings timings, boolean plannedRefresh) {
+        this.clientKey = clientKey;
+        this.upstreamAllowed = upstreamAllowed;
+        this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+        this.timings = timings;
+        this.plannedRefresh = plannedRefresh;
+    }
+
+    /**
+     * Create the context of a background job.
+     * 
+     * @return A context without a client
+     */
+    public static FetchContext scheduled() {
+        return new FetchContext(null, SCHEDULED_BUDGET_MILLIS, true, new StageTimings(), false);
+    }
+
+    /**
+     * Create the context of a planned headline refresh of HeadlineRefreshScheduler.
+     * Only these fetches are spaced by the plan, so only their results are used to measure the change rate.
+     * 
+     * @return A context without a client
+     */
+    public static FetchContext plannedRefresh() {
+        return new FetchContext(null, SCHEDULED_BUDGET_MILLIS, true, new StageTimings(), true);
+    }
+
+    /**
+     * Create the context of a speculative page prefetch (see PagePrefetcher).
+     * 
+     * @param upstreamAllowed Whether the News API may be called, or only the database
+     * @return A context without a client
+     */
+    public static FetchContext prefetch(boolean upstreamAllowed) {
+        return new FetchContext(null, SCHEDULED_BUDGET_MILLIS, upstreamAllowed, new StageTimings(), false);
+    }
+
+    /**
+     * Create the context of a load of a shared cached page (see ListingPageCache).
+     * The page is served to every client, so only the global News API budget applies, and the load is not
+     * cut short by the deadline of the client whose miss started it.
+     * 
+     * @param timings The stage timings of the request that started the load
+     * @return A context without a client
+     */
+    public static FetchContext cacheFill(StageTimings timings) {
+        return new FetchContext(null, CACHE_FILL_BUDGET_MILLIS, true, timings, false);
+    }
+
+    /**
+     * Create the context of a client request.
+     * 
+     * @param clientKey The rate-limit key of the client (see ClientKeyResolver)
+     * @param budgetMillis The time the client is willing to wait, starting now
+     * @return A context for the client
+     */
+    public static FetchContext forClient(String clientKey, long budgetMillis) {
+        return new FetchContext(clientKey, budgetMillis, true, new StageTimings(), false);
+    }
+
+    /**
+     * Return the time left until the deadline.
+     * 
+     * @return Remaining nanoseconds (zero or negative once the deadline has passed)
+     */
+    public long remainingNanos() {
+        return deadlineNanos - System.nanoTime();
+    }
+
+    // Getters
+    public String getClientKey() {
+        return clientKey;
+    }
+
+    public StageTimings getTimings() {
+        return timings;
+    }
+
+    public boolean isUpstreamAllowed() {
+        return upstreamAllowed;
+    }
+
+    public boolean isPlannedRefresh() {
+        return plannedRefresh;
+    }
+}
@@ -0,0 +1,314 @@
+package com.newsaggregator.service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.repository.NewsArticleRepository;
+
+
+/*
+ * ForYouFeed.java
+ *
+ * This service ranks recent articles for a user against the user's interest vector (see InterestProfiles).
+    - Articles are reduced to term features: the words of title and description, hashed into 2^20 features,
+      so no term dictionary has to be kept.
+    - The candidates are the most recently ingested articles (news.foryou.candidates), held in memory as
+      feature arrays together with the number of candidates containing each feature.
+    - An article scores the sum of the user's weights of its features, each times the feature's inverse
+      document frequency, normalized by the article length and halved every news.foryou.half-life-hours of age.
+      A bitset of the user's features rejects the other features of an article with one bit test, and the
+      logarithms of the document frequencies are read from a table.
+    - Scoring is split into ranges scored in parallel on the common fork-join pool, each keeping its own top
+      articles; only the ids of the final top articles are read from the database.
+ */
+@Service
+public class ForYouFeed {
+
+    private static final Logger logger = LoggerFactory.getLogger(ForYouFeed.class);
+
+    static final int FEATURE_BITS = 20;
+    private static final int FEATURE_MASK = (1 << FEATURE_BITS) - 1;
+    private static final int CHUNK_SIZE = 8192; // Candidates scored per parallel task
+
+    @Autowired
+    private InterestProfiles interestProfiles; // The users' interest vectors
+
+    @Autowired
+    private NewsArticleRepository newsArticleRepository; // To read the recommended articles
+
+    @Autowired
+    private SecondaryReads secondaryReads; // To fill the candidates on startup
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish scoring times
+
+    @Value("${news.foryou.candidates:100000}")
+    private int capacity; // Maximum number of candidate articles
+
+    @Value("${news.foryou.window-days:7}")
+    private long windowDays; // Older articles are not recommended
+
+    @Value("${news.foryou.half-life-hours:24}")
+    private double halfLifeHours; // Age at which an article's score is halved
+
+    // Candidates in slots reused in insertion order; guarded by lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[][] features; // Sorted distinct features per slot, null if the slot is unused
+    private String[] ids;
+    private long[] publishedAt; // Epoch seconds per slot
+    private float[] logOnePlus; // log(1 + n) for n up to the capacity, so scoring does not call Math.log
+    private final int[] documentFrequency = new int[1 << FEATURE_BITS]; // Candidates containing each feature
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private int nextSlot;
+    private int size;
+
+    private Timer scoring;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        features = new int[capacity][];
+        ids = new String[capacity];
+        publishedAt = new long[capacity];
+        logOnePlus = new float[capacity + 1];
+        for (int n = 0; n <= capacity; n++) {
+            logOnePlus[n] = (float) Math.log1p(n);
+        }
+        scoring = Timer.builder("news.foryou.scoring")
+            .description("Time to score all candidates for one user")
+            .publishPercentiles(0.5, 0.99)
+            .register(meterRegistry);
+    }
+
+
+    /**
+     * Reduce an article to its sorted, distinct term features.
+     *
+     * @param article The article
+     * @return The features of its title and description
+     */
+    static int[] features(NewsArticle article) {
+        return ArticleTokens.words(article.getTitle(), article.getDescription()).stream()
+            .mapToInt(word -> (int) ArticleTokens.hash(word) & FEATURE_MASK)
+            .sorted()
+            .distinct()
+            .toArray();
+    }
+
+
+    /**
+     * Get the recent articles that match a user's favorites best.
+     *
+     * @param userId The ID of the user
+     * @param limit The maximum number of articles
+     * @return The articles, best match first; empty if the user has no favorites
+     */
+    public List<NewsArticle> recommend(String userId, int limit) {
+        InterestProfiles.InterestVector interests = interestProfiles.get(userId);
+        if (interests.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> recommendedIds = scoring.record(() -> topIds(interests, limit));
+        if (recommendedIds.isEmpty()) {
+            return List.of();
+        }
+        Map<String, NewsArticle> byId = new HashMap<>();
+        newsArticleRepository.findAllById(recommendedIds).forEach(article -> byId.put(article.getId(), article));
+        return recommendedIds.stream().map(byId::get).filter(article -> article != null).toList(); // In ranking order
+    }
+
+
+    // Score every candidate in parallel ranges and merge the per-range top lists
+    private List<String> topIds(InterestProfiles.InterestVector interests, int limit) {
+        lock.readLock().lock();
+        try {
+            long now = Instant.now().getEpochSecond();
+            long oldest = now - TimeUnit.DAYS.toSeconds(windowDays);
+            float logCandidates = logOnePlus[size];
+            double decayPerSecond = Math.log(2) / (halfLifeHours * 3600);
+            long[] filter = interests.featureFilter(); // Most features of an article are not in the profile
+
+            PriorityQueue<Scored> top = IntStream.range(0, (capacity + CHUNK_SIZE - 1) / CHUNK_SIZE).parallel()
+                .mapToObj(chunk -> {
+                    PriorityQueue<Scored> chunkTop = new PriorityQueue<>(limit + 1); // Lowest score first
+                    int end = Math.min(capacity, (chunk + 1) * CHUNK_SIZE);
+                    for (int slot = chunk * CHUNK_SIZE; slot < end; slot++) {
+                        if (features[slot] == null || publishedAt[slot] < oldest) {
+                            continue;
+                        }
+                        double score = score(interests, filter, features[slot], logCandidates, decayPerSecond, now - publishedAt[slot]);
+                        if (score > 0 && (chunkTop.size() < limit || score > chunkTop.peek().score) && !interests.isFavorited(ids[slot])) {
+                            chunkTop.add(new Scored(slot, score));
+                            if (chunkTop.size() > limit) {
+                                chunkTop.poll();
+                            }
+                        }
+                    }
+                    return chunkTop;
+                })
+                .reduce((a, b) -> {
+                    a.addAll(b);
+                    while (a.size() > limit) {
+                        a.poll();
+                    }
+                    return a;
+                })
+                .orElseGet(PriorityQueue::new);
+
+            List<Scored> ranked = new ArrayList<>(top);
+            ranked.sort((a, b) -> Double.compare(b.score, a.score));
+            return ranked.stream().map(scored -> ids[scored.slot]).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double score(InterestProfiles.InterestVector interests, long[] filter, int[] articleFeatures, float logCandidates, double decayPerSecond, long ageSeconds) {
+        float score = 0;
+        for (int feature : articleFeatures) {
+            if ((filter[feature >>> 6] & 1L << feature) == 0) {
+                continue;
+            }
+            float weight = interests.weight(feature);
+            if (weight > 0) {
+                score += weight * (logCandidates - logOnePlus[documentFrequency[feature]]); // Inverse document frequency
+            }
+        }
+        if (score <= 0) {
+            return 0;
+        }
+        double recency = Math.exp(-decayPerSecond * Math.max(0, ageSeconds)); // Halved every half-life
+        return score / Math.sqrt(articleFeatures.length) * recency;
+    }
+
+
+    /**
+     * Add an article to the candidates, or replace it if it is already a candidate.
+     *
+     * @param article The article
+     */
+    public void add(NewsArticle article) {
+        if (article.getId() == null) {
+            return;
+        }
+        int[] articleFeatures = features(article);
+        if (articleFeatures.length == 0) {
+            return;
+        }
+        long published = epochSeconds(article.getPublishedAt());
+
+        lock.writeLock().lock();
+        try {
+            Integer existing = slotsById.get(article.getId());
+            if (existing != null) {
+                remove(existing);
+            }
+            int slot = nextSlot;
+            nextSlot = (nextSlot + 1) % capacity;
+            if (features[slot] != null) {
+                remove(slot); // Full: replace the oldest added article
+            }
+            features[slot] = articleFeatures;
+            ids[slot] = article.getId();
+            publishedAt[slot] = published;
+            slotsById.put(article.getId(), slot);
+            for (int feature : articleFeatures) {
+                documentFrequency[feature]++;
+            }
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(int slot) {
+        for (int feature : features[slot]) {
+            documentFrequency[feature]--;
+        }
+        slotsById.remove(ids[slot]);
+        features[slot] = null;
+        ids[slot] = null;
+        size--;
+    }
+
+    private static long epochSeconds(String publishedAt) {
+        try {
+            return publishedAt != null ? Instant.parse(publishedAt).getEpochSecond() : Instant.now().getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return Instant.now().getEpochSecond();
+        }
+    }
+
+
+    // Add new and changed articles as they are ingested
+    @EventListener
+    public void onNewsIngested(NewsIngestedEvent event) {
+        event.getChangedArticles().forEach(this::add);
+    }
+
+
+    // Fill the candidates with the articles of the window, oldest first, in the background so startup does not wait
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread thread = new Thread(() -> {
+            try {
+                String since = Instant.now().minus(windowDays, ChronoUnit.DAYS).toString(); // publishedAt is an ISO-8601 string
+                Query recent = new Query(Criteria.where("publishedAt").gte(since)).with(Sort.by("publishedAt"));
+                recent.fields().include("title", "description", "publishedAt");
+                secondaryReads.getTemplate().stream(recent, NewsArticle.class).forEach(this::add);
+                logger.info("For-you feed filled with {} candidate articles", size);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to fill the for-you candidates; they fill up with new articles instead", e);
+            }
+        }, "for-you-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    /*
+     * A scored candidate slot.
+     */
+    private static class Scored implements Comparable<Scored> {
+
+        private final int slot;
+        private final double score;
+
+        // Constructor
+        Scored(int slot, double score) {
+            this.slot = slot;
+            this.score = score;
+        }
+
+        @Override
+        public int compareTo(Scored other) {
+            return Double.compare(score, other.score);
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package com.newsaggregator.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+
+
+/*
+ * HeadlineRefreshScheduler.java
+ *
+ * This service class decides when the top headlines of each country are refreshed from the News API.
+    - Tracks a per-country change rate: the fraction of fetched headlines that were new or changed,
+      smoothed over recent planned runs (fetches caused by users are not counted).
+    - Refreshes volatile countries more often and quiet ones less often, between a minimum and maximum interval.
+    - Stretches all intervals when the plan would spend more than the scheduler's share of the daily
+      News API quota, and skips runs while the global budget is nearly exhausted.
+    - With several nodes, countries are split into partitions, each refreshed by the one node holding its
+      lease (see JobLeaseService). Nodes take at most their fair share of partitions, hand extra ones back
+      when nodes join, and take over the partitions of nodes that stop renewing.
+ */
+@Service
+public class HeadlineRefreshScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeadlineRefreshScheduler.class);
+
+    private static final long DAY_MILLIS = 86400000L;
+
+    @Autowired
+    private NewsService newsService; // To fetch and save top headlines
+
+    @Autowired
+    private RateLimitService rateLimitService; // To read the remaining News API budget
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish the current plan
+
+    @Autowired
+    private StageMetrics stageMetrics; // To publish the stage timings of each refresh
+
+    @Autowired
+    private JobLeaseService jobLeaseService; // To refresh each partition of countries on one node only
+
+    @Value("${news.ingestion.countries:us}")
+    private List<String> countries; // Countries whose headlines are refreshed in the background
+
+    @Value("${news.ingestion.page-size:20}")
+    private int pageSize; // Headlines fetched per refresh
+
+    @Value("${news.ingestion.base-interval-minutes:60}")
+    private long baseIntervalMinutes; // Interval used when a country changes at exactly the target rate
+
+    @Value("${news.ingestion.min-interval-minutes:10}")
+    private long minIntervalMinutes;
+
+    @Value("${news.ingestion.max-interval-minutes:360}")
+    private long maxIntervalMinutes;
+
+    @Value("${news.ingestion.target-change-rate:0.3}")
+    private double targetChangeRate; // Fraction of changed headlines per run the plan aims for
+
+    @Value("${news.ingestion.quota-share:0.5}")
+    private double quotaShare; // Fraction of the daily News API quota the scheduler may plan to use
+
+    @Value("${news.ingestion.min-available-calls:2}")
+    private int minAvailableCalls; // Leave this many calls in the global bucket for user requests
+
+    @Value("${news.ingestion.partitions:1}")
+    private int partitions; // Country i belongs to partition i % partitions
+
+    @Value("${news.jobs.lease.ttl-seconds:180}")
+    private long leaseTtlSeconds; // A partition fails over this long after its node stops refreshing
+
+    private static final double SMOOTHING = 0.3; // Weight of the newest observation in the change rate
+
+    private final Map<String, CountryPlan> plans = new ConcurrentHashMap<>();
+
+
+    /**
+     * Refresh the top headlines of every country whose refresh is due.
+     * Runs every minute; the per-country plan decides whether anything is fetched.
+     * The first run waits for news.ingestion.initial-delay-millis, so a new instance serves requests before it ingests.
+     */
+    @Scheduled(fixedDelayString = "${news.ingestion.tick-millis:60000}", initialDelayString = "${news.ingestion.initial-delay-millis:30000}")
+    public void fetchLatestTopHeadlines() {
+        Map<Integer, JobLeaseService.Lease> owned;
+        try {
+            owned = claimPartitions();
+        } catch (RuntimeException e) {
+            logger.warn("Skipping headline refresh: partition leases are unavailable", e);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < countries.size(); i++) {
+            String country = countries.get(i);
+            JobLeaseService.Lease lease = owned.get(i % partitions);
+            if (lease == null) {
+                continue; // Refreshed by another node
+            }
+
+            CountryPlan plan = planFor(country);
+            if (now < plan.nextRunAt) {
+                continue;
+            }
+            if (rateLimitService.availableUpstreamCalls() <= minAvailableCalls) {
+                logger.info("Skipping headline refresh for {}: News API budget is nearly exhausted", country);
+                plan.nextRunAt = now + minIntervalMinutes * 60000L;
+                continue;
+            }
+
+            if (!jobLeaseService.claimRun(lease, country, String.valueOf(now))) {
+                logger.info("Skipping headline refresh for {}: lease {} was lost", country, lease.getName());
+                continue;
+            }
+
+            logger.info("Fetching latest top headlines for {}...", country);
+            plan.lastRunAt = now;
+            FetchContext context = FetchContext.plannedRefresh();
+            newsService.fetchAndSaveTopHeadlines(country, 1, pageSize, context); // Change rate is updated by onNewsIngested
+            stageMetrics.publish("scheduled-headlines", context.getTimings());
+            plan.nextRunAt = now + plan.intervalMillis;
+        }
+    }
+
+
+    // Renew the partition leases this node holds and acquire free ones up to its fair share
+    private Map<Integer, JobLeaseService.Lease> claimPartitions() {
+        long nodes = jobLeaseService.liveNodeCount();
+        long fairShare = (partitions + nodes - 1) / nodes; // Partitions per node, rounded up
+        Duration ttl = Duration.ofSeconds(leaseTtlSeconds);
+
+        Map<Integer, JobLeaseService.Lease> owned = new TreeMap<>();
+        for (int partition = 0; partition < partitions; partition++) {
+            String name = "headline-refresh-" + partition;
+            boolean held = jobLeaseService.holds(name);
+            if (!held && owned.size() >= fairShare) {
+                continue;
+            }
+            JobLeaseService.Lease lease = jobLeaseService.acquire(name, ttl);
+            if (lease != null) {
+                owned.put(partition, lease);
+                if (!held) {
+                    adoptLastRuns(lease);
+                }
+            }
+        }
+
+        // Hand partitions beyond the fair share back, so that nodes that joined get work
+        while (owned.size() > fairShare) {
+            JobLeaseService.Lease extra = owned.remove(((TreeMap<Integer, JobLeaseService.Lease>) owned).lastKey());
+            jobLeaseService.release(extra);
+            logger.info("Released {} to rebalance across nodes", extra.getName());
+        }
+        return owned;
+    }
+
+    // Continue the schedule of a partition taken over from another node instead of refreshing it at once
+    private void adoptLastRuns(JobLeaseService.Lease lease) {
+        lease.getRuns().forEach((country, lastRun) -> {
+            if (countries.contains(country)) {
+                CountryPlan plan = planFor(country);
+                if (plan.lastRunAt == 0) {
+                    plan.lastRunAt = Long.parseLong(lastRun);
+                    plan.nextRunAt = plan.lastRunAt + plan.intervalMillis;
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Update the change rate of a country from a planned refresh, then re-plan all intervals.
+     * Fetches caused by users (other pages, other page sizes, at any time) are not comparable observations and
+     * would make a popular country look quiet, so they are ignored.
+     *
+     * @param event The ingestion event published by NewsService
+     */
+    @EventListener
+    public void onNewsIngested(NewsIngestedEvent event) {
+        if (!event.isPlannedRefresh() || !event.isHeadline() || event.getFetchedCount() == 0 || !countries.contains(event.getCountry())) {
+            return; // Only planned countries are tracked; request parameters must not grow the plan
+        }
+
+        CountryPlan plan = planFor(event.getCountry());
+        double observed = (double) event.getChangedArticles().size() / event.getFetchedCount();
+        synchronized (plan) {
+            plan.changeRate = plan.observed ? SMOOTHING * observed + (1 - SMOOTHING) * plan.changeRate : observed;
+            plan.observed = true;
+        }
+        replan();
+    }
+
+
+    // Recompute every country's interval from its change rate, then fit the plan into the quota share
+    private synchronized void replan() {
+        long minMillis = minIntervalMinutes * 60000L;
+        long maxMillis = maxIntervalMinutes * 60000L;
+        long baseMillis = baseIntervalMinutes * 60000L;
+
+        double plannedCallsPerDay = 0;
+        for (CountryPlan plan : plans.values()) {
+            double rate = Math.max(plan.changeRate, 0.01); // A feed that never changes still gets the maximum interval, not infinity
+            plan.intervalMillis = clamp((long) (baseMillis * targetChangeRate / rate), minMillis, maxMillis);
+            plannedCallsPerDay += (double) DAY_MILLIS / plan.intervalMillis;
+        }
+
+        double allowedCallsPerDay = rateLimitService.getUpstreamDailyQuota() * quotaShare;
+        if (plannedCallsPerDay > allowedCallsPerDay && allowedCallsPerDay > 0) {
+            double stretch = plannedCallsPerDay / allowedCallsPerDay;
+            for (CountryPlan plan : plans.values()) {
+                plan.intervalMillis = (long) (plan.intervalMillis * stretch); // May exceed the maximum: the quota wins
+            }
+        }
+
+        // Move already planned runs to match the new intervals
+        for (CountryPlan plan : plans.values()) {
+            if (plan.lastRunAt > 0) {
+                plan.nextRunAt = plan.lastRunAt + plan.intervalMillis;
+            }
+        }
+    }
+
+
+    // Get or create the plan of a country; new countries are refreshed on the next tick
+    private CountryPlan planFor(String country) {
+        return plans.computeIfAbsent(country, c -> {
+            CountryPlan plan = new CountryPlan(baseIntervalMinutes * 60000L);
+            Gauge.builder("news.ingestion.interval", plan, p -> p.intervalMillis / 60000.0)
+                .description("Planned headline refresh interval in minutes")
+                .tag("country", c)
+                .register(meterRegistry);
+            Gauge.builder("news.ingestion.change.rate", plan, p -> p.changeRate)
+                .description("Smoothed fraction of new or changed headlines per refresh")
+                .tag("country", c)
+                .register(meterRegistry);
+            return plan;
+        });
+    }
+
+    private static long clamp(long value, long min, long max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+
+    /*
+     * The refresh plan of a single country.
+     */
+    private static class CountryPlan {
+        volatile double changeRate;
+        volatile boolean observed; // False until the first fetch has been seen
+        volatile long intervalMillis;
+        volatile long lastRunAt; // Epoch millis of the last background refresh (0 = never)
+        volatile long nextRunAt; // Epoch millis of the next refresh (0 = as soon as possible)
+
+        CountryPlan(long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+    }
+}
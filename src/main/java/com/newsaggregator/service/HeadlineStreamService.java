@@ -0,0 +1,160 @@
+package com.newsaggregator.service;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * HeadlineStreamService.java
+ *
+ * This service class pushes newly ingested or changed headlines to Server-Sent Events subscribers.
+    - Keeps one multicast sink per country, fed by NewsIngestedEvent from the ingestion pipeline.
+      Only the ingested countries (news.ingestion.countries) can be streamed, and a country's sink is
+      dropped when its last subscriber leaves.
+    - Serializes each article once per event, no matter how many clients are subscribed.
+    - Gives every client a bounded buffer; a client that falls behind is disconnected
+      (and reconnects through EventSource) instead of slowing down the others.
+ */
+@Service
+public class HeadlineStreamService {
+
+    private static final Logger logger = LoggerFactory.getLogger(HeadlineStreamService.class);
+
+    @Autowired
+    private ObjectMapper objectMapper; // To serialize each pushed article once
+
+    @Value("${news.stream.client-buffer-size:256}")
+    private int clientBufferSize; // Events buffered per client before it is treated as a slow consumer
+
+    @Value("${news.stream.heartbeat-seconds:25}")
+    private long heartbeatSeconds; // Keeps idle connections open through proxies and detects dead clients
+
+    @Value("${news.stream.max-connection-minutes:30}")
+    private long maxConnectionMinutes; // Streams are closed periodically so clients rebalance across nodes
+
+    @Value("${news.ingestion.countries:us}")
+    private List<String> countries; // Countries with background refreshes, the only ones worth streaming
+
+    private final ConcurrentHashMap<String, Channel> channels = new ConcurrentHashMap<>(); // By country, while subscribed
+
+
+    /**
+     * Check whether headlines of a country can be streamed.
+     *
+     * @param country The country code
+     * @return True if the country's headlines are refreshed in the background
+     */
+    public boolean isStreamed(String country) {
+        return countries.contains(country);
+    }
+
+
+    /**
+     * Subscribe to new and changed headlines for a country.
+     *
+     * @param country The country code to subscribe to
+     * @return A stream of headline events interleaved with keep-alive comments; empty if the country is not streamed
+     */
+    public Flux<ServerSentEvent<String>> subscribe(String country) {
+        if (!isStreamed(country)) {
+            return Flux.empty();
+        }
+        Sinks.Empty<Void> closed = Sinks.empty(); // Signalled when the client's headline stream ends
+
+        Flux<ServerSentEvent<String>> headlines = Flux.defer(() -> join(country).sink.asFlux())
+            .onBackpressureBuffer(clientBufferSize,
+                dropped -> logger.debug("Disconnecting slow headline stream subscriber for {}", country),
+                BufferOverflowStrategy.ERROR)
+            .onErrorResume(e -> Flux.empty()) // Close the slow client's stream cleanly
+            .doFinally(signal -> {
+                leave(country);
+                closed.tryEmitEmpty();
+            });
+
+        // A dropped client must not be kept alive by heartbeats alone
+        Flux<ServerSentEvent<String>> heartbeats = Flux.interval(Duration.ofSeconds(heartbeatSeconds))
+            .map(tick -> ServerSentEvent.<String>builder().comment("keep-alive").build())
+            .takeUntilOther(closed.asMono());
+
+        return Flux.merge(headlines, heartbeats)
+            .take(Duration.ofMinutes(maxConnectionMinutes));
+    }
+
+
+    /**
+     * Push the headlines changed by an ingestion run to the subscribers of its country.
+     *
+     * @param event The ingestion event published by NewsService
+     */
+    @EventListener
+    public void onNewsIngested(NewsIngestedEvent event) {
+        if (!event.isHeadline() || event.getCountry() == null || event.getChangedArticles().isEmpty()) {
+            return;
+        }
+
+        Channel channel = channels.get(event.getCountry());
+        if (channel == null || channel.sink.currentSubscriberCount() == 0) {
+            return; // Nobody is listening, so skip the serialization work
+        }
+        Sinks.Many<ServerSentEvent<String>> sink = channel.sink;
+
+        for (NewsArticle article : event.getChangedArticles()) {
+            try {
+                ServerSentEvent<String> sse = ServerSentEvent.builder(objectMapper.writeValueAsString(article))
+                    .id(article.getId())
+                    .event("headline")
+                    .build();
+                // Ingestion runs on several threads; retry briefly when another thread is emitting
+                sink.emitNext(sse, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+            } catch (JsonProcessingException e) {
+                logger.warn("Failed to serialize headline {} for streaming", article.getUrl(), e);
+            }
+        }
+    }
+
+
+    // Count a subscriber of a country, creating its channel for the first one
+    private Channel join(String country) {
+        return channels.compute(country, (c, channel) -> {
+            Channel joined = channel != null ? channel : new Channel();
+            joined.subscribers++;
+            return joined;
+        });
+    }
+
+    // Count a subscriber out, dropping the channel with the last one; atomic with join, so no subscriber is orphaned
+    private void leave(String country) {
+        channels.computeIfPresent(country, (c, channel) -> --channel.subscribers > 0 ? channel : null);
+    }
+
+    int channelCount() {
+        return channels.size();
+    }
+
+
+    /*
+     * The sink of one country and its number of subscribers, which is only changed inside ConcurrentHashMap.compute.
+     * Best-effort multicast never blocks the publisher on a slow subscriber.
+     */
+    private static class Channel {
+
+        private final Sinks.Many<ServerSentEvent<String>> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+    }
+}
@@ -0,0 +1,339 @@
+package com.newsaggregator.service;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.event.FavoritesChangedEvent;
+import com.newsaggregator.model.FavoriteArticle;
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.repository.FavoriteArticleRepository;
+import com.newsaggregator.repository.NewsArticleRepository;
+
+
+/*
+ * InterestProfiles.java
+ *
+ * This component keeps an interest vector per user, derived from the articles the user favorited.
+    - The vector counts, per term feature (see ForYouFeed.features), how many favorited articles contain it.
+    - A profile is built from the database the first time it is needed, then updated incrementally by
+      FavoriteArticleService when the user adds or removes a favorite; requests never recompute it.
+    - Concurrent requests share one load per user. If the user's favorites change while the profile is being
+      loaded, the load may have missed the change, so it is discarded and the profile loaded again.
+    - Profiles are kept for the most recently active users only (news.foryou.max-profiles).
+    - Favorites changed on other nodes (FavoritesChangedEvent) evict the profile, which is rebuilt on next use.
+      A profile remembers its favorites document id, because deletes are reported by document id only.
+ */
+@Component
+public class InterestProfiles {
+
+    @Autowired
+    private FavoriteArticleRepository favoriteArticleRepository; // To build a profile from the user's favorites
+
+    @Autowired
+    private NewsArticleRepository newsArticleRepository; // To read the text of favorited articles
+
+    @Value("${news.foryou.max-profiles:10000}")
+    private int maxProfiles;
+
+    private static final int MAX_LOAD_ATTEMPTS = 3; // Loads of a user whose favorites keep changing
+
+    // Least recently used first; guarded by itself
+    private final LinkedHashMap<String, Profile> profiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Load> loading = new HashMap<>(); // Loads in progress by user; guarded by profiles
+
+
+    /**
+     * Get the interest vector of a user, building the profile if it is not cached.
+     * Concurrent requests for the same user share one load. A profile whose favorites changed while it was
+     * loaded may miss that change, so it is loaded again instead of cached.
+     *
+     * @param userId The ID of the user
+     * @return The current interest vector; empty if the user has no favorites
+     */
+    public InterestVector get(String userId) {
+        for (int attempt = 1; ; attempt++) {
+            Load load;
+            boolean loader = false;
+            synchronized (profiles) {
+                Profile profile = profiles.get(userId);
+                if (profile != null) {
+                    return profile.vector();
+                }
+                load = loading.get(userId);
+                if (load == null) {
+                    load = new Load();
+                    loading.put(userId, load);
+                    loader = true;
+                }
+            }
+
+            if (!loader) {
+                Profile loaded = load.result.join();
+                if (loaded != null) {
+                    return loaded.vector();
+                }
+                continue; // The load failed or went stale; try again
+            }
+
+            Profile profile = null;
+            try {
+                profile = load(userId);
+            } finally {
+                boolean cached;
+                synchronized (profiles) {
+                    loading.remove(userId);
+                    cached = profile != null && !load.changed;
+                    if (cached) {
+                        profiles.put(userId, profile);
+                        if (profiles.size() > maxProfiles) {
+                            profiles.remove(profiles.keySet().iterator().next());
+                        }
+                    }
+                }
+                load.result.complete(cached ? profile : null);
+            }
+            if (!load.changed || attempt >= MAX_LOAD_ATTEMPTS) {
+                return profile.vector(); // After repeated changes, serve the latest load without caching it
+            }
+        }
+    }
+
+
+    /**
+     * Update a cached profile after the user added a favorite.
+     *
+     * @param userId The ID of the user
+     * @param documentId The ID of the user's favorites document
+     * @param articleId The ID of the favorited article
+     */
+    public void favoriteAdded(String userId, String documentId, String articleId) {
+        Profile profile = cached(userId);
+        if (profile != null) {
+            profile.documentId = documentId; // Created by the first favorite
+            newsArticleRepository.findById(articleId).ifPresentOrElse(
+                article -> profile.add(article),
+                () -> profile.addWithoutText(articleId));
+        }
+    }
+
+
+    /**
+     * Update a cached profile after the user removed a favorite.
+     *
+     * @param userId The ID of the user
+     * @param documentId The ID of the user's favorites document, or null if removing the last favorite deleted it
+     * @param articleId The ID of the removed article
+     */
+    public void favoriteRemoved(String userId, String documentId, String articleId) {
+        Profile profile = cached(userId);
+        if (profile == null) {
+            return;
+        }
+        profile.documentId = documentId;
+        NewsArticle article = newsArticleRepository.findById(articleId).orElse(null);
+        if (article == null) {
+            evict(userId); // Its terms are unknown now; rebuild on next use
+        } else {
+            profile.remove(article);
+        }
+    }
+
+
+    // Drop profiles whose favorites changed on another node
+    @EventListener
+    public void onFavoritesChanged(FavoritesChangedEvent event) {
+        synchronized (profiles) {
+            if (event.isAllUsers()) {
+                profiles.clear();
+                loading.values().forEach(load -> load.changed = true);
+                return;
+            }
+            event.getUserIds().forEach(userId -> {
+                profiles.remove(userId);
+                markChanged(userId);
+            });
+            if (!event.getDocumentIds().isEmpty()) {
+                profiles.values().removeIf(profile -> profile.documentId != null && event.getDocumentIds().contains(profile.documentId));
+                loading.values().forEach(load -> load.changed = true); // The user of a deleted document is not known yet
+            }
+        }
+    }
+
+    // Get a cached profile to update; a load in progress may have read the favorites before the change
+    private Profile cached(String userId) {
+        synchronized (profiles) {
+            Profile profile = profiles.get(userId);
+            if (profile == null) {
+                markChanged(userId);
+            }
+            return profile;
+        }
+    }
+
+    private void evict(String userId) {
+        synchronized (profiles) {
+            profiles.remove(userId);
+            markChanged(userId);
+        }
+    }
+
+    // Called with the profiles lock held
+    private void markChanged(String userId) {
+        Load load = loading.get(userId);
+        if (load != null) {
+            load.changed = true;
+        }
+    }
+
+    private Profile load(String userId) {
+        Profile profile = new Profile();
+        FavoriteArticle favorites = favoriteArticleRepository.findByUserId(userId).orElse(null);
+        profile.documentId = favorites != null ? favorites.getId() : null;
+        List<String> articleIds = favorites != null ? favorites.getArticleIds() : List.of();
+        if (!articleIds.isEmpty()) {
+            newsArticleRepository.findAllById(articleIds).forEach(profile::add);
+            articleIds.forEach(profile::addWithoutText); // Favorites whose article was deleted are still excluded from the feed
+        }
+        return profile;
+    }
+
+
+    /*
+     * A profile being loaded. Requests for the same user wait for it instead of loading it again.
+     */
+    private static class Load {
+
+        private final CompletableFuture<Profile> result = new CompletableFuture<>(); // Null if not cached
+        private boolean changed; // Favorites changed while loading; guarded by profiles
+    }
+
+
+    /*
+     * The mutable profile of one user. Every change publishes a new immutable vector for scoring.
+     */
+    private static class Profile {
+
+        private final Map<Integer, Integer> counts = new HashMap<>(); // Feature -> number of favorited articles containing it
+        private final Set<String> articleIds = new HashSet<>();
+        private volatile InterestVector vector = InterestVector.EMPTY;
+        private volatile String documentId; // The user's favorites document, null if there is none
+
+        synchronized void add(NewsArticle article) {
+            if (articleIds.add(article.getId())) {
+                for (int feature : ForYouFeed.features(article)) {
+                    counts.merge(feature, 1, Integer::sum);
+                }
+                publish();
+            }
+        }
+
+        synchronized void addWithoutText(String articleId) {
+            if (articleIds.add(articleId)) {
+                publish();
+            }
+        }
+
+        synchronized void remove(NewsArticle article) {
+            if (articleIds.remove(article.getId())) {
+                for (int feature : ForYouFeed.features(article)) {
+                    counts.computeIfPresent(feature, (key, count) -> count > 1 ? count - 1 : null);
+                }
+                publish();
+            }
+        }
+
+        InterestVector vector() {
+            return vector;
+        }
+
+        private void publish() {
+            vector = new InterestVector(counts, articleIds);
+        }
+    }
+
+
+    /*
+     * An immutable interest vector: an open-addressing table of feature weights, and the favorited article
+     * ids, which are not recommended again. Read concurrently by the scoring threads.
+     */
+    public static class InterestVector {
+
+        static final InterestVector EMPTY = new InterestVector(Map.of(), Set.of());
+
+        private static final int EMPTY_KEY = -1; // Features are non-negative
+
+        private final int[] keys;
+        private final float[] weights;
+        private final int mask;
+        private final Set<String> articleIds;
+
+        // Constructor
+        InterestVector(Map<Integer, Integer> counts, Set<String> articleIds) {
+            int size = Integer.highestOneBit(Math.max(2, counts.size() * 2 - 1)) << 1; // At most half full
+            keys = new int[size];
+            weights = new float[size];
+            mask = size - 1;
+            Arrays.fill(keys, EMPTY_KEY);
+            counts.forEach((feature, count) -> {
+                int slot = slot(feature);
+                keys[slot] = feature;
+                weights[slot] = count;
+            });
+            this.articleIds = Set.copyOf(articleIds);
+        }
+
+        /**
+         * Build a bitset of the features with a weight, so scoring can skip the other features of an article
+         * with one bit test instead of a table probe. Built per request: 128 KB, too large to keep per profile.
+         *
+         * @return One bit per feature, set if the feature has a weight
+         */
+        long[] featureFilter() {
+            long[] filter = new long[1 << ForYouFeed.FEATURE_BITS >>> 6];
+            for (int key : keys) {
+                if (key != EMPTY_KEY) {
+                    filter[key >>> 6] |= 1L << key;
+                }
+            }
+            return filter;
+        }
+
+        /**
+         * Get the weight of a feature: the number of favorited articles containing it.
+         *
+         * @param feature The feature
+         * @return The weight, 0 if no favorited article contains it
+         */
+        public float weight(int feature) {
+            int slot = slot(feature);
+            return keys[slot] == feature ? weights[slot] : 0;
+        }
+
+        public boolean isEmpty() {
+            return articleIds.isEmpty();
+        }
+
+        public boolean isFavorited(String articleId) {
+            return articleIds.contains(articleId);
+        }
+
+        // Linear probing from the mixed feature
+        private int slot(int feature) {
+            int slot = (feature * 0x9E3779B9) >>> 7 & mask;
+            while (keys[slot] != EMPTY_KEY && keys[slot] != feature) {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.newsaggregator.service;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.newsaggregator.model.JobLease;
+
+
+/*
+ * JobLeaseService.java
+ *
+ * This service coordinates scheduled jobs between application nodes through lease documents in MongoDB.
+    - A lease is held by one node until it expires; the holder renews it, and any node may take it over
+      once it has expired (failover). Acquiring, renewing and taking over are single atomic updates.
+    - Every change of holder increments the lease's fencing token. Work is claimed with claimRun, an update
+      that only matches while the caller still holds the lease with the same token, so a node that lost its
+      lease (e.g. after a long pause) cannot act on it any more.
+    - claimRun also records the claimed period, so a job runs at most once per period across all nodes.
+    - Every node renews a "node:<id>" lease as a heartbeat; the number of live nodes is used to share
+      partitioned jobs fairly (see HeadlineRefreshScheduler).
+ * Expiry compares against the nodes' clocks, which must agree to well within the lease TTL; the fencing token
+ * keeps writes safe when they do not. With news.jobs.lease.enabled=false every lease is granted locally.
+ */
+@Service
+public class JobLeaseService {
+
+    private static final Logger logger = LoggerFactory.getLogger(JobLeaseService.class);
+
+    private static final String NODE_PREFIX = "node:";
+
+    @Autowired
+    private MongoTemplate mongoTemplate; // To read and update lease documents
+
+    @Value("${news.jobs.lease.enabled:true}")
+    private boolean enabled; // False for single-node deployments
+
+    @Value("${news.jobs.lease.ttl-seconds:180}")
+    private long ttlSeconds; // Lifetime of the node heartbeat lease
+
+    private final String nodeId = System.getenv().getOrDefault("HOSTNAME", "node") + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    private final Map<String, Lease> heldLeases = new ConcurrentHashMap<>(); // Leases this node currently holds
+
+
+    /**
+     * Acquire or renew a lease.
+     *
+     * @param name The lease name
+     * @param ttl How long the lease is held without another renewal
+     * @return The lease, or null if another node holds it
+     */
+    public Lease acquire(String name, Duration ttl) {
+        if (!enabled) {
+            return new Lease(name, 0, Map.of());
+        }
+
+        Date now = new Date();
+        Date expiresAt = new Date(now.getTime() + ttl.toMillis());
+        FindAndModifyOptions returnNew = FindAndModifyOptions.options().returnNew(true);
+
+        // Renew a lease this node already holds; the token stays the same
+        JobLease lease = mongoTemplate.findAndModify(
+            new Query(Criteria.where("_id").is(name).and("owner").is(nodeId)),
+            new Update().set("expiresAt", expiresAt),
+            returnNew, JobLease.class);
+
+        if (lease == null) {
+            // Take over an expired lease, or create it. If another node holds it, the query matches nothing
+            // and the upsert fails on the existing _id.
+            try {
+                lease = mongoTemplate.findAndModify(
+                    new Query(Criteria.where("_id").is(name).and("expiresAt").lt(now)),
+                    new Update().set("owner", nodeId).set("expiresAt", expiresAt).inc("fencingToken", 1),
+                    returnNew.upsert(true), JobLease.class);
+            } catch (DuplicateKeyException e) {
+                heldLeases.remove(name);
+                return null;
+            }
+            logger.info("Acquired lease {} with fencing token {}", name, lease.getFencingToken());
+        }
+
+        Lease held = new Lease(name, lease.getFencingToken(), lease.getRuns());
+        heldLeases.put(name, held);
+        return held;
+    }
+
+
+    /**
+     * Claim one run of a job under a lease: succeeds only if this node still holds the lease with the
+     * lease's fencing token and nobody has claimed the same period for the key yet.
+     *
+     * @param lease The lease returned by acquire
+     * @param key What is run (e.g. a country), a valid field name
+     * @param period The period of the run (e.g. a date); a key runs once per period
+     * @return True if the caller may run the job
+     */
+    public boolean claimRun(Lease lease, String key, String period) {
+        if (!enabled) {
+            return true;
+        }
+
+        Query fenced = new Query(Criteria.where("_id").is(lease.getName())
+            .and("owner").is(nodeId)
+            .and("fencingToken").is(lease.getFencingToken())
+            .and("expiresAt").gt(new Date())
+            .and("runs." + key).ne(period));
+        return mongoTemplate.updateFirst(fenced, new Update().set("runs." + key, period), JobLease.class).getModifiedCount() == 1;
+    }
+
+
+    /**
+     * Give up a lease early, so another node can take it over without waiting for it to expire.
+     *
+     * @param lease The lease to release
+     */
+    public void release(Lease lease) {
+        heldLeases.remove(lease.getName());
+        if (!enabled) {
+            return;
+        }
+        mongoTemplate.updateFirst(
+            new Query(Criteria.where("_id").is(lease.getName()).and("owner").is(nodeId).and("fencingToken").is(lease.getFencingToken())),
+            new Update().set("expiresAt", new Date(0)),
+            JobLease.class);
+    }
+
+
+    /**
+     * Whether this node held the lease when it last acquired or renewed it.
+     *
+     * @param name The lease name
+     * @return True if the lease is held by this node
+     */
+    public boolean holds(String name) {
+        return heldLeases.containsKey(name);
+    }
+
+
+    /**
+     * Count the nodes whose heartbeat has not expired, including this one.
+     *
+     * @return The number of live nodes, at least 1
+     */
+    public long liveNodeCount() {
+        if (!enabled) {
+            return 1;
+        }
+        long live = mongoTemplate.count(
+            new Query(Criteria.where("_id").regex("^" + NODE_PREFIX).and("expiresAt").gt(new Date())),
+            JobLease.class);
+        return Math.max(1, live);
+    }
+
+
+    // Renew this node's heartbeat lease and remove heartbeats of nodes that have been gone for a day
+    @Scheduled(fixedRateString = "${news.jobs.lease.heartbeat-millis:30000}", initialDelay = 10000) // First beat before the first headline refresh
+    public void heartbeat() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            acquire(NODE_PREFIX + nodeId, Duration.ofSeconds(ttlSeconds));
+            mongoTemplate.remove(
+                new Query(Criteria.where("_id").regex("^" + NODE_PREFIX).and("expiresAt").lt(new Date(System.currentTimeMillis() - 86400000L))),
+                JobLease.class);
+        } catch (RuntimeException e) {
+            logger.warn("Failed to renew the heartbeat of node {}", nodeId, e);
+        }
+    }
+
+
+    // Release every held lease on shutdown, so other nodes take over without waiting for the TTL
+    @PreDestroy
+    private void shutdown() {
+        if (!enabled) {
+            return;
+        }
+        for (Lease lease : heldLeases.values()) {
+            try {
+                release(lease);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to release lease {}", lease.getName(), e);
+            }
+        }
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+
+    /*
+     * A lease held by this node, identified by its fencing token.
+     */
+    public static class Lease {
+
+        private final String name;
+        private final long fencingToken;
+        private final Map<String, String> runs; // Periods claimed under the lease so far, by key
+
+        // Constructor
+        Lease(String name, long fencingToken, Map<String, String> runs) {
+            this.name = name;
+            this.fencingToken = fencingToken;
+            this.runs = runs != null ? runs : Map.of();
+        }
+
+        // Getters
+        public String getName() {
+            return name;
+        }
+
+        public long getFencingToken() {
+            return fencingToken;
+        }
+
+        public Map<String, String> getRuns() {
+            return runs;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package com.newsaggregator.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.event.ArticlesChangedEvent;
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * ListingPageCache.java
+ *
+ * This component caches hot listing pages as ready-to-write response bytes.
+    - Each page is serialized to UTF-8 JSON once, and gzipped once, when it is loaded.
+    - Concurrent misses for the same page share a single load.
+    - Pages are tagged (e.g. by headline country) and evicted when ingestion changes that tag.
+    - With cross-node invalidation enabled, headline pages are also evicted when any node writes headlines
+      (see ChangeStreamInvalidationBus). Articles do not store their country, so all countries are evicted.
+    - Pages from the database fallback (the caller was throttled, the News API failed or timed out) and empty
+      pages expire after news.cache.listing-fallback-ttl-ms only: the headline fallback is not filtered by
+      country, and the next miss should try the News API again.
+    - Entries also expire after a TTL and the cache is bounded in size. When it is full, expired pages go
+      first, then the least recently used tenth of the pages.
+    - Search pages are only cached when PagePrefetcher loads them ahead of the request; they are not evicted
+      by ingestion and expire after the TTL.
+ */
+@Component
+public class ListingPageCache {
+
+    @Autowired
+    private ObjectMapper objectMapper; // The same mapper MVC uses, so cached bytes match a normal response
+
+    @Value("${news.cache.listing-ttl-ms:300000}")
+    private long ttlMillis; // Upper bound on how long a page is served without re-validation
+
+    @Value("${news.cache.listing-fallback-ttl-ms:5000}")
+    private long fallbackTtlMillis; // How long a fallback or empty page is served, so a miss storm still shares loads
+
+    @Value("${news.cache.listing-max-entries:1000}")
+    private int maxEntries; // Upper bound on the number of cached pages
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish hit and miss counts
+
+    private final ConcurrentHashMap<String, CachedPage> pages = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CompletableFuture<CachedPage>> loads = new ConcurrentHashMap<>(); // In-flight loads, by key
+
+    private Counter hits;
+    private Counter misses;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        hits = Counter.builder("news.cache.requests").tag("cache", "listing").tag("result", "hit")
+            .description("Listing page lookups").register(meterRegistry);
+        misses = Counter.builder("news.cache.requests").tag("cache", "listing").tag("result", "miss")
+            .description("Listing page lookups").register(meterRegistry);
+        Gauge.builder("news.cache.size", pages, ConcurrentHashMap::size).tag("cache", "listing")
+            .description("Cached listing pages").register(meterRegistry);
+    }
+
+
+    /**
+     * Build the cache key of a top-headlines page.
+     *
+     * @param country The country code
+     * @param page The page number
+     * @param pageSize The number of articles per page
+     * @return The cache key
+     */
+    public static String headlinesKey(String country, int page, int pageSize) {
+        return headlinesTag(country) + ":" + page + ":" + pageSize;
+    }
+
+    /**
+     * Build the invalidation tag shared by all top-headlines pages of a country.
+     *
+     * @param country The country code
+     * @return The tag
+     */
+    public static String headlinesTag(String country) {
+        return "headlines:" + country;
+    }
+
+
+    /**
+     * Build the cache key of a search results page.
+     *
+     * @param query The search query
+     * @param sortBy The sort order
+     * @param page The page number
+     * @param pageSize The number of articles per page
+     * @return The cache key
+     */
+    public static String searchKey(String query, String sortBy, int page, int pageSize) {
+        return searchTag(query) + ":" + sortBy + ":" + page + ":" + pageSize;
+    }
+
+    /**
+     * Build the tag of the search results pages of a query.
+     *
+     * @param query The search query
+     * @return The tag
+     */
+    public static String searchTag(String query) {
+        return "search:" + query.length() + ":" + query; // Length first, so ":" inside a query cannot fake another key
+    }
+
+
+    /**
+     * Return the cached page for a key, loading and serializing it on a miss.
+     *
+     * @param key The cache key of the page
+     * @param tag The invalidation tag of the page
+     * @param loader Supplies the articles of the page on a miss; it should not depend on the calling client
+     * @return The cached page
+     */
+    public CachedPage getOrLoad(String key, String tag, Supplier<LoadedPage> loader) {
+        CachedPage cached = pages.get(key);
+        if (cached != null && !cached.isExpired()) {
+            hits.increment();
+            cached.touch();
+            return cached;
+        }
+
+        // Only one caller loads a given page; the others wait for its result
+        CompletableFuture<CachedPage> load = new CompletableFuture<>();
+        CompletableFuture<CachedPage> inFlight = loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            hits.increment(); // Served by another caller's load
+            return inFlight.join();
+        }
+        misses.increment();
+
+        try {
+            CachedPage loaded = serialize(loader.get(), tag);
+            // A concurrent ingestion may evict this key just before the put; the TTL bounds that staleness
+            store(key, loaded);
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+
+    /**
+     * Return the cached page for a key without loading it.
+     *
+     * @param key The cache key of the page
+     * @return The cached page, or null if it is not cached or expired
+     */
+    public CachedPage peek(String key) {
+        CachedPage cached = pages.get(key);
+        if (cached == null || cached.isExpired()) {
+            return null;
+        }
+        hits.increment();
+        cached.touch();
+        return cached;
+    }
+
+    /**
+     * Check whether a page is cached or being loaded.
+     *
+     * @param key The cache key of the page
+     * @return True if a request for the page would not need to load it
+     */
+    public boolean contains(String key) {
+        CachedPage cached = pages.get(key);
+        return (cached != null && !cached.isExpired()) || loads.containsKey(key);
+    }
+
+    /**
+     * Cache a page loaded ahead of its request.
+     *
+     * @param key The cache key of the page
+     * @param tag The invalidation tag of the page
+     * @param loaded The articles of the page and their origin
+     */
+    public void put(String key, String tag, LoadedPage loaded) {
+        store(key, serialize(loaded, tag));
+    }
+
+
+    /**
+     * Evict every page carrying the given tag.
+     *
+     * @param tag The invalidation tag
+     */
+    public void invalidateTag(String tag) {
+        pages.values().removeIf(page -> page.tag.equals(tag));
+    }
+
+
+    /**
+     * Evict cached headline pages of a country when ingestion changed any of its articles.
+     *
+     * @param event The ingestion event published by NewsService
+     */
+    @EventListener
+    public void onNewsIngested(NewsIngestedEvent event) {
+        if (event.isHeadline() && event.getCountry() != null && !event.getChangedArticles().isEmpty()) {
+            invalidateTag(headlinesTag(event.getCountry()));
+        }
+    }
+
+
+    /**
+     * Evict headline pages when articles were written by any node. The written articles do not tell which
+     * country they were fetched for, so the pages of every country are evicted.
+     *
+     * @param event The coalesced change event published by ChangeStreamInvalidationBus
+     */
+    @EventListener
+    public void onArticlesChanged(ArticlesChangedEvent event) {
+        if (event.isResync()) {
+            pages.clear();
+        } else if (event.isHeadline()) {
+            pages.values().removeIf(page -> page.tag.startsWith(headlinesTag("")));
+        }
+    }
+
+
+    // Store a page, making room first if the cache is full: expired pages, then the least recently used tenth
+    private void store(String key, CachedPage page) {
+        if (pages.size() >= maxEntries) {
+            pages.values().removeIf(CachedPage::isExpired);
+            int excess = pages.size() - maxEntries + 1;
+            if (excess > 0) {
+                pages.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().lastAccess))
+                    .limit(Math.max(excess, maxEntries / 10)) // In batches, so a full cache is not sorted on every store
+                    .map(entry -> entry.getKey())
+                    .toList()
+                    .forEach(pages::remove);
+            }
+        }
+        pages.put(key, page);
+    }
+
+    // Serialize the articles once as plain and gzipped JSON
+    private CachedPage serialize(LoadedPage loaded, String tag) {
+        List<NewsArticle> articles = loaded.articles;
+        long ttl = loaded.fallback || articles.isEmpty() ? fallbackTtlMillis : ttlMillis;
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(articles);
+
+            ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.length / 4 + 64);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(gzipped)) {
+                gzip.write(json);
+            }
+
+            return new CachedPage(tag, articles, json, gzipped.toByteArray(), ArticleETags.pageETag(articles), System.currentTimeMillis() + ttl);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize listing page", e);
+        }
+    }
+
+
+    /*
+     * The articles of a loaded page, and whether they came from the News API or from the database fallback.
+     */
+    public static class LoadedPage {
+
+        private final List<NewsArticle> articles;
+        private final boolean fallback;
+
+        // Constructor
+        private LoadedPage(List<NewsArticle> articles, boolean fallback) {
+            this.articles = articles;
+            this.fallback = fallback;
+        }
+
+        public static LoadedPage upstream(List<NewsArticle> articles) {
+            return new LoadedPage(articles, false);
+        }
+
+        public static LoadedPage fallback(List<NewsArticle> articles) {
+            return new LoadedPage(articles, true);
+        }
+
+        // Getters
+        public List<NewsArticle> getArticles() {
+            return articles;
+        }
+
+        public boolean isFallback() {
+            return fallback;
+        }
+    }
+
+
+    /*
+     * A cached listing page. The byte arrays and articles are shared between requests and must never be modified.
+     */
+    public static class CachedPage {
+
+        private final String tag;
+        private final List<NewsArticle> articles; // For responses that cannot use the shared bytes (e.g. annotated per user)
+        private final byte[] json;
+        private final byte[] gzipJson;
+        private final String eTag;
+        private final long expiresAt; // Epoch millis after which the page is reloaded
+        private volatile long lastAccess = System.nanoTime(); // For least-recently-used eviction
+
+        // Constructor
+        CachedPage(String tag, List<NewsArticle> articles, byte[] json, byte[] gzipJson, String eTag, long expiresAt) {
+            this.tag = tag;
+            this.articles = List.copyOf(articles);
+            this.json = json;
+            this.gzipJson = gzipJson;
+            this.eTag = eTag;
+            this.expiresAt = expiresAt;
+        }
+
+        // Getters
+        public List<NewsArticle> getArticles() {
+            return articles;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzipJson() {
+            return gzipJson;
+        }
+
+        public String getETag() {
+            return eTag;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+
+        void touch() {
+            lastAccess = System.nanoTime();
+        }
+    }
+}
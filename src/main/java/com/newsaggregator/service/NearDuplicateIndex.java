@@ -0,0 +1,240 @@
+package com.newsaggregator.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * NearDuplicateIndex.java
+ *
+ * This component finds articles that tell the same story as an article seen before: the same wire story
+ * published by many outlets under different URLs.
+    - Articles are compared by their SimHash (see ArticleSimHash). Two articles are near-duplicates if their
+      fingerprints differ in at most news.dedup.max-distance bits.
+    - Fingerprints are split into 4 bands of 16 bits and indexed by band. Two fingerprints that differ in at
+      most 3 bits share at least one band exactly, so a lookup only compares against the few fingerprints
+      in 4 buckets: O(1) expected time instead of a scan of all articles.
+    - The first article of a story seen is its representative; later near-duplicates are not stored
+      (see NewsService.ingestResponse), so listings return one article per story.
+    - Only articles added within news.dedup.window-days are kept, and at most news.dedup.max-entries.
+      The index is per node and is filled from the database on startup; stored articles count as added when
+      they were published, so the window does not restart with every deployment.
+ */
+@Component
+public class NearDuplicateIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(NearDuplicateIndex.class);
+
+    private static final int BANDS = 4;
+    private static final int BAND_BITS = 16;
+    private static final int MAX_SUPPORTED_DISTANCE = BANDS - 1; // Larger distances would not share a band
+
+    @Autowired
+    private SecondaryReads secondaryReads; // To fill the index on startup
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To count the dropped duplicates
+
+    @Value("${news.dedup.enabled:true}")
+    private boolean enabled; // False: every article is stored
+
+    @Value("${news.dedup.max-distance:3}")
+    private int maxDistance; // Maximum number of differing bits of near-duplicates
+
+    @Value("${news.dedup.window-days:3}")
+    private long windowDays; // Stories older than this are not compared against any more
+
+    @Value("${news.dedup.max-entries:200000}")
+    private int maxEntries; // Bound of the index size (about 100 bytes per entry)
+
+    // Entries by band key, and in the order they were added for eviction; guarded by this
+    private final Map<Integer, List<Entry>> buckets = new HashMap<>();
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    private Counter duplicates;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        maxDistance = Math.min(maxDistance, MAX_SUPPORTED_DISTANCE);
+        duplicates = Counter.builder("news.dedup.duplicates")
+            .description("Ingested articles dropped as near-duplicates of a stored article")
+            .register(meterRegistry);
+        Gauge.builder("news.dedup.entries", this, NearDuplicateIndex::size)
+            .description("Articles in the near-duplicate index")
+            .register(meterRegistry);
+    }
+
+
+    /**
+     * Find a near-duplicate of an article that is not the article itself.
+     *
+     * @param id The id of the article
+     * @param simHash The SimHash of the article, or null
+     * @return The id of the representative the article duplicates, or null if it is not a duplicate
+     */
+    public synchronized String findDuplicate(String id, Long simHash) {
+        if (!enabled || simHash == null) {
+            return null;
+        }
+        for (int band = 0; band < BANDS; band++) {
+            List<Entry> bucket = buckets.get(bandKey(simHash, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (Entry entry : bucket) {
+                if (!entry.id.equals(id) && ArticleSimHash.distance(entry.simHash, simHash) <= maxDistance) {
+                    duplicates.increment();
+                    return entry.id;
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Add an article to the index, making it the representative of its story.
+     *
+     * @param id The id of the article
+     * @param simHash The SimHash of the article; nothing is added if null
+     */
+    public void add(String id, Long simHash) {
+        add(id, simHash, Instant.now());
+    }
+
+    synchronized void add(String id, Long simHash, Instant addedAt) {
+        if (!enabled || simHash == null) {
+            return;
+        }
+        Entry entry = new Entry(id, simHash, addedAt);
+        for (int band = 0; band < BANDS; band++) {
+            buckets.computeIfAbsent(bandKey(simHash, band), key -> new ArrayList<>(2)).add(entry);
+        }
+        entries.addLast(entry);
+        evict();
+    }
+
+    /**
+     * Remove an article from the index, e.g. because it was never stored and so cannot represent its story.
+     *
+     * @param id The id of the article
+     */
+    public synchronized void remove(String id) {
+        for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); ) {
+            Entry entry = iterator.next();
+            if (entry.id.equals(id)) {
+                iterator.remove();
+                unbucket(entry);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+
+    // Remove the oldest entries that are out of the window or over the size bound
+    private void evict() {
+        Instant cutoff = Instant.now().minus(windowDays, ChronoUnit.DAYS);
+        while (!entries.isEmpty() && (entries.size() > maxEntries || entries.peekFirst().addedAt.isBefore(cutoff))) {
+            unbucket(entries.pollFirst());
+        }
+    }
+
+    private void unbucket(Entry entry) {
+        for (int band = 0; band < BANDS; band++) {
+            int key = bandKey(entry.simHash, band);
+            List<Entry> bucket = buckets.get(key);
+            bucket.remove(entry);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+    }
+
+    // The band number in the upper bits, so equal values of different bands do not share a bucket
+    private static int bandKey(long simHash, int band) {
+        return band << BAND_BITS | (int) (simHash >>> (band * BAND_BITS)) & 0xFFFF;
+    }
+
+
+    // Fill the index with the articles published within the window, in the background so startup does not wait
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                String since = Instant.now().minus(windowDays, ChronoUnit.DAYS).toString(); // publishedAt is an ISO-8601 string
+                Query recent = new Query(Criteria.where("publishedAt").gte(since)).with(Sort.by("publishedAt"));
+                recent.fields().include("title", "description", "publishedAt", "simHash");
+                int[] count = {0};
+                secondaryReads.getTemplate().stream(recent, NewsArticle.class).forEach(article -> {
+                    Long simHash = article.getSimHash() != null ? article.getSimHash()
+                        : ArticleSimHash.of(article.getTitle(), article.getDescription()); // Stored before fingerprints existed
+                    add(article.getId(), simHash, publishedAt(article));
+                    count[0]++;
+                });
+                logger.info("Near-duplicate index filled with {} recent articles", count[0]);
+            } catch (RuntimeException e) {
+                logger.warn("Failed to fill the near-duplicate index; it fills up with new articles instead", e);
+            }
+        }, "near-duplicate-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+
+    // When a stored article was published, or now if its timestamp cannot be read
+    private static Instant publishedAt(NewsArticle article) {
+        try {
+            return Instant.parse(article.getPublishedAt());
+        } catch (RuntimeException e) {
+            return Instant.now();
+        }
+    }
+
+
+    /*
+     * An indexed article.
+     */
+    private static class Entry {
+
+        private final String id;
+        private final long simHash;
+        private final Instant addedAt;
+
+        // Constructor
+        Entry(String id, long simHash, Instant addedAt) {
+            this.id = id;
+            this.simHash = simHash;
+            this.addedAt = addedAt;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.newsaggregator.service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * NewsApiArticleMapper.java
+ *
+ * This helper class decodes News API responses and maps article nodes onto NewsArticle objects.
+ * It is shared by the blocking and reactive news services so both read paths store articles the same way.
+ */
+public final class NewsApiArticleMapper {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(); // Thread-safe once configured, so one instance is shared
+
+    private NewsApiArticleMapper() {
+    }
+
+
+    /**
+     * Parse a raw News API response body and return its articles node.
+     *
+     * @param responseBody The JSON response body returned by the News API
+     * @return The "articles" node of the response (a missing node if the response has none)
+     * @throws Exception If the response body is not valid JSON
+     */
+    public static JsonNode readArticles(String responseBody) throws Exception {
+        JsonNode rootNode = OBJECT_MAPPER.readTree(responseBody); // Parse the JSON response
+        return rootNode.path("articles"); // Extract the articles node from the JSON response
+    }
+
+
+    /**
+     * Copy all fields of a News API article node onto a NewsArticle.
+     *
+     * @param article The article to update
+     * @param articleNode The JSON node of a single article from the News API response
+     * @param isHeadline Indicates whether the article is a top headline (true) or a search result (false)
+     */
+    public static void applyFields(NewsArticle article, JsonNode articleNode, boolean isHeadline) {
+        article.setTitle(articleNode.path("title").asText());
+        article.setDescription(articleNode.path("description").asText());
+        article.setUrl(articleNode.path("url").asText());
+        article.setSourceName(articleNode.path("source").path("name").asText());
+        article.setPublishedAt(articleNode.path("publishedAt").asText());
+        article.setContent(articleNode.path("content").asText());
+        article.setImageUrl(articleNode.path("urlToImage").asText());
+        article.setIsHeadline(isHeadline);
+    }
+
+
+    /**
+     * Derive the id of a new article from its URL.
+     * The id has the shape of an ObjectId (24 hex digits), so it is stored like the ids MongoDB generates,
+     * and the same URL always gets the same id, so concurrent fetches of a new article converge on one document.
+     *
+     * @param url The URL of the article
+     * @return The id to store the article under
+     */
+    public static String idForUrl(String url) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(url.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 12);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Every JVM is required to provide it
+        }
+    }
+}
@@ -0,0 +1,267 @@
+package com.newsaggregator.service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/*
+ * NewsApiClient.java
+ *
+ * This component performs the News API calls of NewsService (blocking) and ReactiveNewsService (asynchronous).
+    - Headline and search calls go through separate bulkheads (bounded concurrency), so a slow
+      search endpoint cannot starve headline requests and vice versa. A full bulkhead rejects immediately.
+    - Every call is bounded by the caller's deadline: the HTTP request timeout and the wait are both
+      set to the time the caller has left, and the call is abandoned once it is gone. Abandoning a call aborts
+      its HTTP exchanges; its bulkhead place is given back only when they have finished.
+    - Callers take the call's News API budget first (RateLimitService.tryAcquireUpstream); it is given back
+      when the call is not sent because the bulkhead is full or the deadline has already passed.
+    - Optionally hedges: if the first attempt has not answered after a delay, a second attempt is sent
+      (when the News API budget allows) and whichever succeeds first is used.
+ */
+@Component
+public class NewsApiClient {
+
+    @Autowired
+    private RateLimitService rateLimitService; // Hedged attempts spend News API budget too; unsent calls are refunded
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish bulkhead and deadline metrics
+
+    @Value("${news.upstream.bulkhead.headlines.max-concurrent:8}")
+    private int headlinesMaxConcurrent; // Upstream headline calls allowed in flight at once
+
+    @Value("${news.upstream.bulkhead.search.max-concurrent:8}")
+    private int searchMaxConcurrent; // Upstream search calls allowed in flight at once
+
+    @Value("${news.upstream.connect-timeout-ms:2000}")
+    private long connectTimeoutMillis;
+
+    @Value("${news.upstream.hedge.enabled:false}")
+    private boolean hedgeEnabled; // Hedged requests cost extra quota, so they are opt-in
+
+    @Value("${news.upstream.hedge.delay-ms:800}")
+    private long hedgeDelayMillis; // Roughly the p95 latency of the News API
+
+    private HttpClient httpClient;
+    private Semaphore headlinesBulkhead;
+    private Semaphore searchBulkhead;
+    private Counter headlinesRejected;
+    private Counter searchRejected;
+    private Counter deadlineExceeded;
+    private Counter hedgesSent;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+        headlinesBulkhead = new Semaphore(headlinesMaxConcurrent);
+        searchBulkhead = new Semaphore(searchMaxConcurrent);
+
+        headlinesRejected = Counter.builder("news.upstream.bulkhead.rejected").tag("bulkhead", "headlines")
+            .description("Upstream calls rejected because the bulkhead was full").register(meterRegistry);
+        searchRejected = Counter.builder("news.upstream.bulkhead.rejected").tag("bulkhead", "search")
+            .description("Upstream calls rejected because the bulkhead was full").register(meterRegistry);
+        deadlineExceeded = Counter.builder("news.upstream.deadline.exceeded")
+            .description("Upstream calls abandoned because the caller's deadline passed").register(meterRegistry);
+        hedgesSent = Counter.builder("news.upstream.hedges")
+            .description("Second attempts sent because the first one was slow").register(meterRegistry);
+    }
+
+
+    /**
+     * Send a GET request to the News API and return the response body.
+     *
+     * @param uri The request URI
+     * @param isHeadline Selects the headlines bulkhead (true) or the search bulkhead (false)
+     * @param context The caller, whose deadline bounds the call
+     * @return The response body
+     * @throws RejectedExecutionException If the bulkhead is full
+     * @throws TimeoutException If the caller's deadline passes before a response arrives
+     * @throws IOException If the request fails or the News API returns an error status
+     * @throws InterruptedException If the calling thread is interrupted while waiting
+     */
+    public String get(URI uri, boolean isHeadline, FetchContext context) throws TimeoutException, IOException, InterruptedException {
+        CompletableFuture<String> result = start(uri, isHeadline, context);
+        try {
+            return result.get(Math.max(0, context.remainingNanos()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            result.cancel(true);
+            deadlineExceeded.increment();
+            throw e;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof HttpTimeoutException) {
+                deadlineExceeded.increment();
+                throw new TimeoutException("News API call timed out");
+            }
+            throw cause instanceof IOException io ? io : new IOException(cause);
+        }
+    }
+
+
+    /**
+     * Send a GET request to the News API without blocking the calling thread.
+     * The same bulkheads, deadline and hedging apply as for get; cancelling the result abandons the call.
+     *
+     * @param uri The request URI
+     * @param isHeadline Selects the headlines bulkhead (true) or the search bulkhead (false)
+     * @param context The caller, whose deadline bounds the call
+     * @return The response body, or a failure if the bulkhead is full, the deadline passed or the request failed
+     */
+    public CompletableFuture<String> getAsync(URI uri, boolean isHeadline, FetchContext context) {
+        try {
+            return start(uri, isHeadline, context);
+        } catch (TimeoutException | RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+
+    // Take a place in the bulkhead and send the request; the place is given back once the call has finished
+    private CompletableFuture<String> start(URI uri, boolean isHeadline, FetchContext context) throws TimeoutException {
+        if (context.remainingNanos() <= 0) {
+            rateLimitService.refundUpstream(context.getClientKey());
+            deadlineExceeded.increment();
+            throw new TimeoutException("Deadline passed before the News API call");
+        }
+
+        Semaphore bulkhead = isHeadline ? headlinesBulkhead : searchBulkhead;
+        if (!bulkhead.tryAcquire()) {
+            rateLimitService.refundUpstream(context.getClientKey()); // The caller's budget was taken for a call that is not made
+            (isHeadline ? headlinesRejected : searchRejected).increment();
+            throw new RejectedExecutionException("News API bulkhead is full");
+        }
+
+        Call call = new Call(uri, context, bulkhead);
+        call.attempt();
+        if (hedgeEnabled) {
+            CompletableFuture.delayedExecutor(hedgeDelayMillis, TimeUnit.MILLISECONDS).execute(() -> hedge(call));
+        }
+        return call.result;
+    }
+
+    // Send a second attempt if the first one is still running after the hedge delay and the budget allows
+    private void hedge(Call call) {
+        if (call.result.isDone() || call.context.remainingNanos() <= 0 || !rateLimitService.tryAcquireUpstream(null)) {
+            return;
+        }
+        if (call.attempt()) {
+            hedgesSent.increment();
+        } else {
+            rateLimitService.refundUpstream(null); // The first attempt finished meanwhile
+        }
+    }
+
+
+    /*
+     * One News API call: its attempts (two when hedged) and its place in the bulkhead.
+     * The first successful attempt, or else the last failed one, decides the result. Cancelling the result
+     * aborts the HTTP exchanges still running, and the bulkhead place is given back only when the result is
+     * decided and no exchange is running any more.
+     */
+    private final class Call {
+
+        private final URI uri;
+        private final FetchContext context; // Its deadline is the HTTP timeout of every attempt
+        private final Semaphore bulkhead;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+
+        // Guarded by this
+        private int running; // Exchanges that have not finished
+        private boolean decided; // The result was set by an attempt; no attempt may start after that
+        private boolean released; // The bulkhead place was given back
+
+        // Constructor
+        Call(URI uri, FetchContext context, Semaphore bulkhead) {
+            this.uri = uri;
+            this.context = context;
+            this.bulkhead = bulkhead;
+            result.whenComplete((body, error) -> releaseIfFinished()); // Also runs when the caller cancels
+        }
+
+        // Start an attempt whose HTTP timeout is the caller's remaining time, unless the result is already known
+        boolean attempt() {
+            synchronized (this) {
+                if (decided || result.isDone()) {
+                    return false;
+                }
+                running++;
+            }
+
+            CompletableFuture<HttpResponse<String>> exchange = send();
+            exchange.whenComplete(this::finished);
+            result.whenComplete((body, error) -> exchange.cancel(true)); // No-op once the exchange has finished
+            return true;
+        }
+
+        private CompletableFuture<HttpResponse<String>> send() {
+            long remainingNanos = context.remainingNanos();
+            if (remainingNanos <= 0) {
+                return CompletableFuture.failedFuture(new HttpTimeoutException("Deadline passed"));
+            }
+            try {
+                HttpRequest request = HttpRequest.newBuilder(uri)
+                    .timeout(Duration.ofNanos(remainingNanos))
+                    .GET()
+                    .build();
+                return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString());
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        private void finished(HttpResponse<String> response, Throwable error) {
+            Throwable failure = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (failure == null && response.statusCode() / 100 != 2) {
+                failure = new IOException("News API returned status " + response.statusCode());
+            }
+
+            boolean succeeded;
+            boolean failed;
+            synchronized (this) {
+                running--;
+                succeeded = failure == null && !decided;
+                failed = failure != null && !decided && running == 0; // The last attempt failed too
+                decided |= succeeded || failed;
+            }
+            if (succeeded) {
+                result.complete(response.body());
+            } else if (failed) {
+                result.completeExceptionally(failure);
+            }
+            releaseIfFinished();
+        }
+
+        private void releaseIfFinished() {
+            synchronized (this) {
+                if (released || running > 0 || !(decided || result.isDone())) {
+                    return;
+                }
+                released = true;
+            }
+            bulkhead.release();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.newsaggregator.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.stream.Stream;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * NewsExportService.java
+ *
+ * This service class streams the news collection as newline-delimited JSON (NDJSON).
+    - Reads straight from a MongoDB cursor in _id order, so memory use does not depend on the export size.
+    - Reads from a secondary when one is available (see SecondaryReads), so exports do not load the primary.
+    - Filters by publishedAt range, source name and headline flag.
+    - Resumes after a cursor token, which is simply the id of the last exported article.
+    - Flushes the output once per batch instead of once per article.
+ */
+@Service
+public class NewsExportService {
+
+    @Autowired
+    private SecondaryReads secondaryReads; // To stream articles from a secondary's cursor
+
+    @Autowired
+    private ObjectMapper objectMapper; // To serialize each article as one JSON line
+
+    @Value("${news.export.batch-size:500}")
+    private int batchSize; // Documents per cursor batch and per output flush
+
+
+    /**
+     * Validate a cursor token.
+     *
+     * @param cursor The cursor token to check (may be null)
+     * @return true if the token is absent or a valid article id
+     */
+    public boolean isValidCursor(String cursor) {
+        return cursor == null || cursor.isBlank() || ObjectId.isValid(cursor);
+    }
+
+
+    /**
+     * Write all articles matching the filters to the output stream, one JSON document per line.
+     *
+     * @param from Inclusive lower bound on publishedAt (ISO-8601), or null
+     * @param to Exclusive upper bound on publishedAt (ISO-8601), or null
+     * @param source Only export articles from this source name, or null
+     * @param isHeadline Only export headlines (true) or search results (false), or null for both
+     * @param cursor Resume after the article with this id, or null to start from the beginning
+     * @param out The stream to write to (not closed by this method)
+     * @return The number of articles written
+     * @throws IOException If writing to the output stream fails (e.g. the client disconnected)
+     */
+    public long export(String from, String to, String source, Boolean isHeadline, String cursor, OutputStream out) throws IOException {
+        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "_id")).cursorBatchSize(batchSize);
+
+        if (from != null || to != null) {
+            Criteria publishedAt = Criteria.where("publishedAt");
+            if (from != null) {
+                publishedAt = publishedAt.gte(from);
+            }
+            if (to != null) {
+                publishedAt = publishedAt.lt(to);
+            }
+            query.addCriteria(publishedAt);
+        }
+        if (source != null) {
+            query.addCriteria(Criteria.where("sourceName").is(source));
+        }
+        if (isHeadline != null) {
+            query.addCriteria(Criteria.where("isHeadline").is(isHeadline));
+        }
+        if (cursor != null && !cursor.isBlank()) {
+            query.addCriteria(Criteria.where("_id").gt(new ObjectId(cursor)));
+        }
+
+        // One generator for the whole export; flushing is done per batch, not per document
+        ObjectWriter writer = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        generator.setRootValueSeparator(null); // Lines are separated by '\n' below, not by Jackson's default space
+
+        long written = 0;
+        try (Stream<NewsArticle> articles = secondaryReads.getTemplate().stream(query, NewsArticle.class)) {
+            for (NewsArticle article : (Iterable<NewsArticle>) articles::iterator) {
+                writer.writeValue(generator, article);
+                generator.writeRaw('\n');
+                if (++written % batchSize == 0) {
+                    generator.flush();
+                }
+            }
+        }
+        generator.flush();
+        return written;
+    }
+}
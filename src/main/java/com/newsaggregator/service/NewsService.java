@@ -1,21 +1,28 @@
 package com.newsaggregator.service;
 
-import java.time.LocalDateTime;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import org.springframework.data.domain.Page;
+import java.util.Map;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.ResponseEntity;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.web.util.UriComponentsBuilder;
 
+import com.newsaggregator.event.NewsIngestedEvent;
 import com.newsaggregator.model.NewsArticle;
 import com.newsaggregator.repository.NewsArticleRepository;
 
@@ -25,9 +32,11 @@ import com.newsaggregator.repository.NewsArticleRepository;
  * 
  * This service class handles fetching news articles from the News API and saving them to the database.
     - Uses the News API to fetch news articles based on the provided parameters.
-    - Saves the fetched articles to the database.
+    - Saves the fetched articles to the database in the background (see ArticleWriteBehind).
     - Provides methods to fetch top headlines and news articles based on a search query.
-    - Includes scheduled tasks to fetch top headlines every 3 hours and delete old articles every day.
+    - Database fallbacks read from secondaries (see SecondaryReads); ingestion reads and writes use the primary.
+    - Includes a scheduled task to delete old articles every day.
+    - Background headline refreshes are planned by HeadlineRefreshScheduler.
  */
 @Service
 public class NewsService {
@@ -35,72 +44,220 @@ public class NewsService {
     @Autowired
     private NewsArticleRepository newsArticleRepository; // To interact with the database for news articles
 
+    @Autowired
+    private ApplicationEventPublisher eventPublisher; // To notify listeners about newly ingested articles
+
+    @Autowired
+    private RateLimitService rateLimitService; // To keep News API usage within the per-client and global budgets
+
+    @Autowired
+    private NewsApiClient newsApiClient; // To call the News API through bulkheads and within deadlines
+
+    @Autowired
+    private ArticleWriteBehind articleWriteBehind; // To save fetched articles without making the caller wait
+
+    @Autowired
+    private UpstreamJournal upstreamJournal; // To keep raw responses for replay and recovery
+
+    @Autowired
+    private SecondaryReads secondaryReads; // To serve the database fallbacks from secondaries
+
+    @Autowired
+    private JobLeaseService jobLeaseService; // To run the daily cleanup on one node only
+
+    @Autowired
+    private NearDuplicateIndex nearDuplicateIndex; // To drop copies of a story already stored under another URL
+
+    @Autowired
+    private RelatedArticleIndex relatedArticleIndex; // To find similar stories without querying the database
+
     @Value("${newsapi.key}")
     private String apiKey; // API key for the News API
 
+    @Value("${newsapi.base-url}")
+    private String apiBaseUrl; // Base URL of the News API (overridable to point at a stub server)
+
 
     /**
     * Helper method to fetch articles from the News API and save them to the database.
+    * The raw response is appended to the UpstreamJournal before it is decoded, so it is kept even if ingestion fails.
+    * No request is sent if the caller or the deployment is over its News API budget, and the
+    * request is abandoned if it does not complete before the caller's deadline.
+    *
+    * @param url The API endpoint URL to fetch articles from.
+    * @param isHeadline Indicates whether the articles are top headlines (true) or search results (false).
+    * @param country The country of a headline fetch, or null for search results.
+    * @param context The caller of the fetch, used for rate limiting.
+    * @return A list of saved NewsArticle objects. Returns an empty list if an error occurs, the call is throttled or the deadline passes.
+    */
+    private List<NewsArticle> fetchAndSaveArticles(URI url, boolean isHeadline, String country, FetchContext context) {
+        if (!context.isUpstreamAllowed() || !rateLimitService.tryAcquireUpstream(context.getClientKey())) {
+            return new ArrayList<>(); // Over budget (or database only): return empty list to trigger database fallback
+        }
+
+        String responseBody;
+        try {
+            long start = System.nanoTime();
+            responseBody = newsApiClient.get(url, isHeadline, context); // Send a GET request within the caller's deadline and bulkhead
+            context.getTimings().record("upstream", start);
+        } catch (Exception e) {
+            // Return empty list to trigger database fallback
+            return new ArrayList<>();
+        }
+
+        upstreamJournal.append(url, isHeadline, country, responseBody);
+        return ingestResponse(responseBody, isHeadline, country, context);
+    }
+
+
+    /**
+    * Save the articles of a News API response to the database.
+    * Articles are returned as soon as the response is decoded; the writes are done by ArticleWriteBehind.
     * For headlines: updates existing articles if they already exist by URL.
     * For search: skips saving articles that already exist to avoid duplicates.
+    * New articles that are near-duplicates of a stored article (same story, other outlet) are not saved; the article
+    * representing the story is returned in their place (marked as a headline if needed), once per response.
+    * If that representative was never stored, the first duplicate is saved and represents the story instead.
+    * Articles are only kept in the near-duplicate index if their write could be queued.
     * Parses the JSON response, extracts article data, and stores it in the database.
+    * Only articles that are new or whose content changed are written, and a NewsIngestedEvent
+    * listing them is published after a successful ingestion.
+    * Also used by UpstreamJournalReplayer to re-run ingestion from journaled responses.
     *
-    * @param url The API endpoint URL to fetch articles from.
+    * @param responseBody The raw News API response.
     * @param isHeadline Indicates whether the articles are top headlines (true) or search results (false).
-    * @return A list of saved NewsArticle objects. Returns an empty list if an error occurs.
+    * @param country The country of a headline fetch, or null for search results.
+    * @param context The caller of the fetch, used for stage timings.
+    * @return A list of saved NewsArticle objects. Returns an empty list if the response cannot be ingested.
     */
-    private List<NewsArticle> fetchAndSaveArticles(String url, boolean isHeadline) {
-        List<NewsArticle> savedArticles = new ArrayList<>();
-        
+    public List<NewsArticle> ingestResponse(String responseBody, boolean isHeadline, String country, FetchContext context) {
+        Map<String, NewsArticle> returnedById = new LinkedHashMap<>(); // In response order; null until a representative is loaded
+        List<NewsArticle> changedArticles = new ArrayList<>(); // New or modified articles, reported to listeners
+        Map<String, NewsArticle> duplicateByRepresentativeId = new HashMap<>(); // First dropped duplicate of each representative
+        List<String> indexedIds = new ArrayList<>(); // Added to the near-duplicate index by this call
 
+        StageTimings timings = context.getTimings();
         try {
-            RestTemplate restTemplate = new RestTemplate(); 
-            ResponseEntity<String> response = restTemplate.getForEntity(url, String.class); // Send a GET request to the API endpoint
+            long start = System.nanoTime();
+            JsonNode articlesNode = NewsApiArticleMapper.readArticles(responseBody); // Parse the JSON response and extract the articles node
+            timings.record("decode", start);
 
-            ObjectMapper objectMapper = new ObjectMapper(); // Create an object mapper to parse JSON
-            JsonNode rootNode = objectMapper.readTree(response.getBody()); // Parse the JSON response
-            JsonNode articlesNode = rootNode.path("articles"); // Extract the articles node from the JSON response
+            // Look up all articles of the response that are already stored with one query instead of one per article
+            Map<String, NewsArticle> existingByUrl = new HashMap<>();
+            if (articlesNode.isArray()) {
+                List<String> urls = new ArrayList<>();
+                articlesNode.forEach(articleNode -> urls.add(articleNode.path("url").asText()));
+                start = System.nanoTime();
+                newsArticleRepository.findByUrlIn(urls).forEach(existing -> existingByUrl.put(existing.getUrl(), existing));
+                timings.record("db-read", start);
+
+                // Articles still waiting in the write-behind queue count as stored; a copy keeps the queued version intact
+                for (String url : urls) {
+                    NewsArticle queued = existingByUrl.containsKey(url) ? null : articleWriteBehind.findPending(NewsApiArticleMapper.idForUrl(url));
+                    if (queued != null) {
+                        existingByUrl.put(url, copyOf(queued));
+                    }
+                }
+            }
 
             // Iterate over each article in the response
             if (articlesNode.isArray()) {
                 for (JsonNode articleNode : articlesNode) {
                     String articleUrl = articleNode.path("url").asText(); // Extract the URL of the article
 
-                    NewsArticle article;
+                    NewsArticle article = existingByUrl.get(articleUrl);
+                    Long previousFingerprint = null; // Fingerprint of the stored version, if any
 
                     // For headlines, update existing articles if they already exist by URL
-                    if (isHeadline) {
-                        article = newsArticleRepository.findByUrl(articleUrl)
-                            .orElse(new NewsArticle());
-                    } else {
-                        // For search results, skip saving articles that already exist to avoid duplicates
-                        if (newsArticleRepository.existsByUrl(articleUrl)) {
-                            continue;
+                    if (article != null) {
+                        if (!isHeadline) {
+                            continue; // For search results, skip saving articles that already exist to avoid duplicates
                         }
+                        previousFingerprint = ArticleETags.fingerprint(article);
+                    } else {
                         article = new NewsArticle();
+                        article.setId(NewsApiArticleMapper.idForUrl(articleUrl)); // Assigned now, so the article can be returned before it is written
                     }
                     
                     // Update/set all fields of the article from the JSON node
-                    article.setTitle(articleNode.path("title").asText());
-                    article.setDescription(articleNode.path("description").asText());
-                    article.setUrl(articleUrl);
-                    article.setSourceName(articleNode.path("source").path("name").asText());
-                    article.setPublishedAt(articleNode.path("publishedAt").asText());
-                    article.setContent(articleNode.path("content").asText());
-                    article.setImageUrl(articleNode.path("urlToImage").asText());
-                    article.setIsHeadline(isHeadline);
+                    NewsApiArticleMapper.applyFields(article, articleNode, isHeadline);
+                    article.setSimHash(ArticleSimHash.of(article.getTitle(), article.getDescription()));
+
+                    // New articles that repeat a story already stored are not saved; the first one seen represents it
+                    if (previousFingerprint == null) {
+                        String representativeId = nearDuplicateIndex.findDuplicate(article.getId(), article.getSimHash());
+                        if (representativeId != null) {
+                            returnedById.putIfAbsent(representativeId, null); // Loaded below unless it is in this response
+                            duplicateByRepresentativeId.putIfAbsent(representativeId, article);
+                            continue;
+                        }
+                        nearDuplicateIndex.add(article.getId(), article.getSimHash());
+                        indexedIds.add(article.getId());
+                    }
                     
-                    // Save the article to the database
-                    newsArticleRepository.save(article);
+                    // Queue the article for saving, skipping the write if nothing changed
+                    if (previousFingerprint == null || previousFingerprint != ArticleETags.fingerprint(article)) {
+                        changedArticles.add(article);
+                    }
 
                     // Add the saved article to the list
-                    savedArticles.add(article);
+                    returnedById.put(article.getId(), article);
+                }
+            }
+
+            // Load the representatives of dropped duplicates: queued ones from the write-behind queue, stored ones with one query.
+            // The queue is checked first, as an article leaves it only after it has been written
+            Map<String, NewsArticle> representatives = new HashMap<>();
+            List<String> storedIds = new ArrayList<>();
+            returnedById.forEach((id, article) -> {
+                if (article == null) {
+                    NewsArticle queued = articleWriteBehind.findPending(id);
+                    if (queued != null) {
+                        representatives.put(id, copyOf(queued));
+                    } else {
+                        storedIds.add(id);
+                    }
                 }
+            });
+            if (!storedIds.isEmpty()) {
+                start = System.nanoTime();
+                newsArticleRepository.findAllById(storedIds).forEach(stored -> representatives.put(stored.getId(), stored));
+                timings.record("db-read", start);
             }
+            for (Map.Entry<String, NewsArticle> duplicate : duplicateByRepresentativeId.entrySet()) {
+                String representativeId = duplicate.getKey();
+                if (returnedById.get(representativeId) != null) {
+                    continue; // The representative is part of this response
+                }
+                NewsArticle representative = representatives.get(representativeId);
+                if (representative == null) {
+                    // The representative was never stored (its write failed): the duplicate represents the story instead
+                    representative = duplicate.getValue();
+                    nearDuplicateIndex.remove(representativeId);
+                    nearDuplicateIndex.add(representative.getId(), representative.getSimHash());
+                    indexedIds.add(representative.getId());
+                    changedArticles.add(representative);
+                } else if (isHeadline && !representative.getIsHeadline()) {
+                    representative.setIsHeadline(true); // The story is a headline now, under another outlet's URL
+                    changedArticles.add(representative);
+                }
+                returnedById.put(representativeId, representative); // Keeps the position of the story in the response
+            }
+
+            // Persist in the background; the caller gets the articles without waiting for the database
+            start = System.nanoTime();
+            articleWriteBehind.enqueue(changedArticles);
+            timings.record("db-write", start); // Only queueing time, unless the queue is full and the caller writes itself
         } catch (Exception e) { 
+            // Nothing of this response is stored, so none of its articles can represent a story
+            indexedIds.forEach(nearDuplicateIndex::remove);
             // Return empty list to trigger database fallback
             return new ArrayList<>();
         }
+
+        List<NewsArticle> savedArticles = new ArrayList<>(returnedById.values());
+
+        eventPublisher.publishEvent(new NewsIngestedEvent(country, isHeadline, changedArticles, savedArticles.size(), context.isPlannedRefresh()));
         return savedArticles;
     }
 
@@ -108,6 +265,7 @@ public class NewsService {
     /**
      * Fetch and save top headlines from the News API based on the country code.
      * Saves the articles to the database and returns a list of saved NewsArticle objects.
+     * Used by background jobs; only the global News API budget applies.
      * 
      * @param country The country code for which to fetch top headlines (e.g., "us" for United States).
      * @param page The page number.
@@ -115,11 +273,26 @@ public class NewsService {
      * @return A list of saved NewsArticle objects. Returns an empty list if an error occurs.
      */
     public List<NewsArticle> fetchAndSaveTopHeadlines(String country, int page, int pageSize) {
-        String url = "https://newsapi.org/v2/top-headlines?country=" + country 
-                + "&page=" + page
-                + "&pageSize=" + pageSize
-                + "&apiKey=" + apiKey;
-        return fetchAndSaveArticles(url, true); // isHeadline = true for top headlines
+        return fetchAndSaveTopHeadlines(country, page, pageSize, FetchContext.scheduled());
+    }
+
+    /**
+     * Fetch and save top headlines from the News API on behalf of a caller.
+     * 
+     * @param country The country code for which to fetch top headlines (e.g., "us" for United States).
+     * @param page The page number.
+     * @param pageSize The number of articles per page to fetch.
+     * @param context The caller of the fetch.
+     * @return A list of saved NewsArticle objects. Returns an empty list if an error occurs or the call is throttled.
+     */
+    public List<NewsArticle> fetchAndSaveTopHeadlines(String country, int page, int pageSize, FetchContext context) {
+        URI url = UriComponentsBuilder.fromUriString(apiBaseUrl).path("/top-headlines")
+                .queryParam("country", country)
+                .queryParam("page", page)
+                .queryParam("pageSize", pageSize)
+                .queryParam("apiKey", apiKey)
+                .encode().build().toUri();
+        return fetchAndSaveArticles(url, true, country, context); // isHeadline = true for top headlines
     }
 
     /**
@@ -133,15 +306,45 @@ public class NewsService {
      * @return A list of NewsArticle objects representing the top headlines.
      */
     public List<NewsArticle> fetchTopHeadlinesWithFallback(String country, int page, int pageSize) {
-        List<NewsArticle> apiArticles = fetchAndSaveTopHeadlines(country, page, pageSize);
+        return fetchTopHeadlinesWithFallback(country, page, pageSize, FetchContext.scheduled());
+    }
+
+    /**
+     * Fetch top headlines on behalf of a caller, falling back to the database if the API
+     * returns nothing, fails, or the caller is over its News API budget.
+     * 
+     * @param country The country code for which to fetch top headlines (e.g., "us" for United States).
+     * @param page The page number.
+     * @param pageSize The number of articles per page to fetch.
+     * @param context The caller of the fetch.
+     * @return A list of NewsArticle objects representing the top headlines.
+     */
+    public List<NewsArticle> fetchTopHeadlinesWithFallback(String country, int page, int pageSize, FetchContext context) {
+        return fetchTopHeadlinesPage(country, page, pageSize, context).getArticles();
+    }
+
+    /**
+     * Fetch a top-headlines page for ListingPageCache, telling whether it came from the database fallback.
+     * The fallback is not filtered by country, so the cache keeps it only briefly.
+     * 
+     * @param country The country code for which to fetch top headlines (e.g., "us" for United States).
+     * @param page The page number.
+     * @param pageSize The number of articles per page to fetch.
+     * @param context The caller of the fetch.
+     * @return The articles of the page and their origin.
+     */
+    public ListingPageCache.LoadedPage fetchTopHeadlinesPage(String country, int page, int pageSize, FetchContext context) {
+        List<NewsArticle> apiArticles = fetchAndSaveTopHeadlines(country, page, pageSize, context);
 
         if (!apiArticles.isEmpty()) {
-            return apiArticles;
+            return ListingPageCache.LoadedPage.upstream(apiArticles);
         }
 
         Pageable pageable = PageRequest.of(page - 1, pageSize, Sort.by(Sort.Direction.DESC, "publishedAt"));
-        Page<NewsArticle> dbPage = newsArticleRepository.findByIsHeadlineTrue(pageable);
-        return dbPage.getContent();
+        long start = System.nanoTime();
+        List<NewsArticle> dbArticles = secondaryReads.findHeadlines(pageable); // Secondary, and no count query
+        context.getTimings().record("db-read", start);
+        return ListingPageCache.LoadedPage.fallback(dbArticles);
     }
 
 
@@ -157,39 +360,105 @@ public class NewsService {
      * @return A list of NewsArticle objects representing the search results.
      */
     public List<NewsArticle> fetchAndSaveNewsByQuery(String query, String sortBy, int page, int pageSize) {
-        String url = "https://newsapi.org/v2/everything?q=" + query
-                + "&sortBy=" + sortBy
-                + "&language=en"
-                + "&page=" + page
-                + "&pageSize=" + pageSize
-                + "&apiKey=" + apiKey;
+        return fetchAndSaveNewsByQuery(query, sortBy, page, pageSize, FetchContext.scheduled());
+    }
+
+    /**
+     * Fetch and save search results on behalf of a caller, falling back to a database search
+     * if the API returns nothing, fails, or the caller is over its News API budget.
+     * 
+     * @param query The search query to fetch news articles for.
+     * @param sortBy The sorting criteria for the articles (e.g., "publishedAt").
+     * @param page The page number.
+     * @param pageSize The number of articles per page to fetch.
+     * @param context The caller of the fetch.
+     * @return A list of NewsArticle objects representing the search results.
+     */
+    public List<NewsArticle> fetchAndSaveNewsByQuery(String query, String sortBy, int page, int pageSize, FetchContext context) {
+        return fetchSearchPage(query, sortBy, page, pageSize, context).getArticles();
+    }
+
+    /**
+     * Fetch a search results page for ListingPageCache, telling whether it came from the database fallback.
+     * 
+     * @param query The search query to fetch news articles for.
+     * @param sortBy The sorting criteria for the articles (e.g., "publishedAt").
+     * @param page The page number.
+     * @param pageSize The number of articles per page to fetch.
+     * @param context The caller of the fetch.
+     * @return The articles of the page and their origin.
+     */
+    public ListingPageCache.LoadedPage fetchSearchPage(String query, String sortBy, int page, int pageSize, FetchContext context) {
+        URI url = UriComponentsBuilder.fromUriString(apiBaseUrl).path("/everything")
+                .queryParam("q", query)
+                .queryParam("sortBy", sortBy)
+                .queryParam("language", "en")
+                .queryParam("page", page)
+                .queryParam("pageSize", pageSize)
+                .queryParam("apiKey", apiKey)
+                .encode().build().toUri();
 
         // Fetch and save articles from the API
-        List<NewsArticle> apiArticles = fetchAndSaveArticles(url, false);
+        List<NewsArticle> apiArticles = fetchAndSaveArticles(url, false, null, context);
 
         if (!apiArticles.isEmpty()) {
-            return apiArticles;
+            return ListingPageCache.LoadedPage.upstream(apiArticles);
         }
 
         Pageable pageable = PageRequest.of(page - 1, pageSize, Sort.by(Sort.Direction.DESC, "publishedAt"));
-        Page<NewsArticle> dbPage = newsArticleRepository.findByTitleContainingIgnoreCaseOrDescriptionContainingIgnoreCase(
-            query, query, pageable);
-        return dbPage.getContent();
+        long start = System.nanoTime();
+        List<NewsArticle> dbArticles = secondaryReads.search(query, pageable); // Secondary, and no count query
+        context.getTimings().record("db-read", start);
+        return ListingPageCache.LoadedPage.fallback(dbArticles);
     }
 
-    
-    // Periodically fetch top headlines every 3 hours
-    @Scheduled(fixedRate = 10800000) // 3 hours in milliseconds
-    public void fetchLatestTopHeadlines() {
-        System.out.println("Fetching latest top headlines...");
-        fetchAndSaveTopHeadlines("us", 1, 20);
+
+    /**
+     * Find stored articles about stories similar to an article, most similar first.
+     * Only the final ids are read from the database (see RelatedArticleIndex).
+     *
+     * @param id The id of the article
+     * @param limit The maximum number of articles to return
+     * @param minSimilarity The minimum estimated similarity (0 to 1) of returned articles
+     * @return The related articles; empty if the article is unknown or has none
+     */
+    public List<NewsArticle> findRelatedArticles(String id, int limit, double minSimilarity) {
+        List<String> relatedIds = relatedArticleIndex.findRelated(id, limit, minSimilarity);
+        if (relatedIds.isEmpty()) {
+            return List.of();
+        }
+        Map<String, NewsArticle> byId = new HashMap<>();
+        newsArticleRepository.findAllById(relatedIds).forEach(article -> byId.put(article.getId(), article));
+        return relatedIds.stream().map(byId::get).filter(article -> article != null).toList(); // In ranking order
     }
 
+
     // Periodically delete articles older than 30 days to stop database from growing indefinitely
+    // Every node fires the job; only the holder of the lease runs it, once per day
     @Scheduled(cron = "0 0 12 * * ?") // Everyday at 12:00 PM
     public void deleteOldArticles() {
-        LocalDateTime oneMonthAgo = LocalDateTime.now().minusDays(30);
-        newsArticleRepository.deleteByPublishedAtBefore(oneMonthAgo);
+        Instant oneMonthAgo = Instant.now().minus(30, ChronoUnit.DAYS).truncatedTo(ChronoUnit.SECONDS); // Formats like the News API timestamps
+        relatedArticleIndex.removePublishedBefore(oneMonthAgo); // Every node prunes its own index
+
+        JobLeaseService.Lease lease = jobLeaseService.acquire("delete-old-articles", Duration.ofMinutes(30));
+        if (lease == null || !jobLeaseService.claimRun(lease, "daily", LocalDate.now(ZoneOffset.UTC).toString())) {
+            return; // Another node runs (or has run) today's cleanup; days are UTC so all nodes agree
+        }
+        try {
+            newsArticleRepository.deleteByPublishedAtBefore(oneMonthAgo.toString()); // publishedAt is an ISO-8601 string
+        } finally {
+            jobLeaseService.release(lease);
+        }
+    }
+
+
+    // Copy an article, so a version handed to ArticleWriteBehind is never modified while it waits to be written
+    private static NewsArticle copyOf(NewsArticle article) {
+        NewsArticle copy = new NewsArticle(article.getTitle(), article.getDescription(), article.getUrl(), article.getSourceName(),
+            article.getPublishedAt(), article.getContent(), article.getImageUrl(), article.getIsHeadline());
+        copy.setId(article.getId());
+        copy.setSimHash(article.getSimHash());
+        return copy;
     }
 
 }
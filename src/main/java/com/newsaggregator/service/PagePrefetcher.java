@@ -0,0 +1,195 @@
+package com.newsaggregator.service;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/*
+ * PagePrefetcher.java
+ *
+ * This component loads the next page of a listing into ListingPageCache after a page was served, because
+ * infinite-scroll clients almost always ask for it next.
+    - Only after a full page, and only within the results the News API returns (news.prefetch.max-results).
+    - Prefetches are cancelled when the page is already cached or being loaded, when the same page is
+      already queued, and when the global prefetch budget (news.prefetch.per-minute) is spent.
+    - The News API is only used while more than news.prefetch.upstream-reserve calls are left in its budget,
+      so prefetching never takes calls from interactive requests; otherwise the page is read from the database.
+    - Prefetches run on a small pool with a bounded queue; when it is full, prefetches are dropped.
+ */
+@Component
+public class PagePrefetcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(PagePrefetcher.class);
+
+    @Autowired
+    private NewsService newsService; // To load the pages
+
+    @Autowired
+    private ListingPageCache listingPageCache; // Where prefetched pages are kept
+
+    @Autowired
+    private RateLimitService rateLimitService; // To leave the News API budget to interactive requests
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To count prefetches by outcome
+
+    @Value("${news.prefetch.enabled:true}")
+    private boolean enabled;
+
+    @Value("${news.prefetch.per-minute:60}")
+    private double perMinute; // Global prefetch budget
+
+    @Value("${news.prefetch.burst:10}")
+    private int burst;
+
+    @Value("${news.prefetch.upstream-reserve:20}")
+    private int upstreamReserve; // News API calls kept for interactive requests
+
+    @Value("${news.prefetch.max-results:100}")
+    private int maxResults; // The News API returns no results past this position
+
+    @Value("${news.prefetch.threads:2}")
+    private int threads;
+
+    @Value("${news.prefetch.queue-size:32}")
+    private int queueSize;
+
+    private TokenBucket budget;
+    private AtomicLong budgetBucket;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet(); // Keys queued or running
+    private ThreadPoolExecutor executor;
+
+    private Counter scheduled;
+    private Counter cancelled;
+    private Counter throttled;
+    private Counter dropped;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        budget = new TokenBucket(perMinute / 60.0, burst);
+        budgetBucket = budget.newBucket();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queueSize), runnable -> {
+            Thread thread = new Thread(runnable, "page-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+
+        scheduled = counter("scheduled");
+        cancelled = counter("cancelled");
+        throttled = counter("throttled");
+        dropped = counter("dropped");
+    }
+
+    private Counter counter(String result) {
+        return Counter.builder("news.prefetch.requests").tag("result", result)
+            .description("Next-page prefetches by outcome").register(meterRegistry);
+    }
+
+
+    /**
+     * Prefetch the top-headlines page after a served one.
+     *
+     * @param country The country code
+     * @param servedPage The page that was served
+     * @param pageSize The number of articles per page
+     * @param servedCount The number of articles on the served page
+     */
+    public void afterHeadlines(String country, int servedPage, int pageSize, int servedCount) {
+        int page = servedPage + 1;
+        if (!hasNextPage(page, pageSize, servedCount)) {
+            return;
+        }
+        String key = ListingPageCache.headlinesKey(country, page, pageSize);
+        schedule(key, () -> listingPageCache.getOrLoad(key, ListingPageCache.headlinesTag(country),
+            () -> newsService.fetchTopHeadlinesPage(country, page, pageSize, context())));
+    }
+
+
+    /**
+     * Prefetch the search results page after a served one.
+     *
+     * @param query The search query
+     * @param sortBy The sort order
+     * @param servedPage The page that was served
+     * @param pageSize The number of articles per page
+     * @param servedCount The number of articles on the served page
+     */
+    public void afterSearch(String query, String sortBy, int servedPage, int pageSize, int servedCount) {
+        int page = servedPage + 1;
+        if (!hasNextPage(page, pageSize, servedCount)) {
+            return;
+        }
+        String key = ListingPageCache.searchKey(query, sortBy, page, pageSize);
+        schedule(key, () -> {
+            ListingPageCache.LoadedPage loaded = newsService.fetchSearchPage(query, sortBy, page, pageSize, context());
+            if (!loaded.getArticles().isEmpty()) {
+                listingPageCache.put(key, ListingPageCache.searchTag(query), loaded);
+            }
+        });
+    }
+
+
+    private boolean hasNextPage(int page, int pageSize, int servedCount) {
+        return enabled && servedCount >= pageSize && (long) page * pageSize <= maxResults;
+    }
+
+    // Use the News API only while enough of its budget is left for interactive requests
+    private FetchContext context() {
+        return FetchContext.prefetch(rateLimitService.availableUpstreamCalls() > upstreamReserve);
+    }
+
+    private void schedule(String key, Runnable load) {
+        if (listingPageCache.contains(key) || !pending.add(key)) {
+            cancelled.increment();
+            return;
+        }
+        if (!budget.tryAcquire(budgetBucket)) {
+            pending.remove(key);
+            throttled.increment();
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    if (listingPageCache.contains(key)) {
+                        cancelled.increment(); // Requested (or loaded) while queued
+                        return;
+                    }
+                    load.run();
+                } catch (RuntimeException e) {
+                    logger.warn("Failed to prefetch {}", key, e);
+                } finally {
+                    pending.remove(key);
+                }
+            });
+            scheduled.increment();
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            dropped.increment();
+        }
+    }
+
+
+    @PreDestroy
+    private void shutdown() {
+        executor.shutdownNow();
+    }
+}
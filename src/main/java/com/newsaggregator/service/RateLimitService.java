@@ -0,0 +1,229 @@
+package com.newsaggregator.service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+
+/*
+ * RateLimitService.java
+ * 
+ * This service class protects the News API quota with token buckets.
+    - Each client (user or IP address) gets its own bucket for upstream calls.
+    - All upstream calls share one global bucket sized to the daily News API quota. The bucket is per node, so
+      every node gets the quota and burst divided by the number of live nodes (see JobLeaseService), re-checked
+      at every heartbeat.
+    - Callers that are over budget are expected to fall back to the database instead of calling upstream.
+    - Client buckets that have refilled are indistinguishable from new ones, so they are swept away.
+    - At most news.ratelimit.client.max-tracked clients are tracked. When the map is full, the buckets closest
+      to full are dropped until a tenth of it is free again, so the cost is paid once per many new clients.
+    - A client token is given back when the global budget then refuses the call, and both tokens are given
+      back (refundUpstream) when a granted call is not sent after all, e.g. because the bulkhead is full.
+ */
+@Service
+public class RateLimitService {
+
+    private static final Logger logger = LoggerFactory.getLogger(RateLimitService.class);
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish throttling metrics
+
+    @Autowired
+    private JobLeaseService jobLeaseService; // To share the global budget between the live nodes
+
+    @Value("${news.ratelimit.client.requests-per-minute:30}")
+    private double clientRequestsPerMinute; // Upstream calls a single client may cause per minute
+
+    @Value("${news.ratelimit.client.burst:10}")
+    private int clientBurst; // Upstream calls a single client may cause back to back
+
+    @Value("${news.ratelimit.upstream.daily-quota:100}")
+    private double upstreamDailyQuota; // News API requests allowed per day for the whole deployment
+
+    @Value("${news.ratelimit.upstream.burst:20}")
+    private int upstreamBurst; // News API requests that may be spent back to back
+
+    @Value("${news.ratelimit.client.max-tracked:100000}")
+    private int maxTrackedClients; // Upper bound on the number of client buckets
+
+    private TokenBucket clientLimit;
+    private volatile TokenBucket upstreamLimit; // This node's share of the global budget
+    private volatile long liveNodes; // Nodes the global budget is currently shared between
+    private volatile AtomicLong upstreamBucket;
+    private final ConcurrentHashMap<String, AtomicLong> clientBuckets = new ConcurrentHashMap<>(); // Client key -> bucket state
+    private final ReentrantLock trimming = new ReentrantLock(); // Only one caller trims a full client map
+
+    private Counter clientThrottled;
+    private Counter upstreamThrottled;
+    private Counter upstreamGranted;
+    private Counter upstreamRefunded;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        clientLimit = new TokenBucket(clientRequestsPerMinute / 60.0, clientBurst);
+        liveNodes = 1;
+        upstreamLimit = new TokenBucket(upstreamDailyQuota / 86400.0, upstreamBurst);
+        upstreamBucket = upstreamLimit.newBucket();
+        shareAmongLiveNodes(); // Before the first call, so a restarted deployment does not burst once per node
+
+        clientThrottled = Counter.builder("news.ratelimit.throttled")
+            .description("Upstream calls replaced by the database fallback because of rate limits")
+            .tag("scope", "client")
+            .register(meterRegistry);
+        upstreamThrottled = Counter.builder("news.ratelimit.throttled")
+            .description("Upstream calls replaced by the database fallback because of rate limits")
+            .tag("scope", "upstream")
+            .register(meterRegistry);
+        upstreamGranted = Counter.builder("news.ratelimit.granted")
+            .description("Upstream calls allowed by the rate limits")
+            .register(meterRegistry);
+        upstreamRefunded = Counter.builder("news.ratelimit.refunded")
+            .description("Allowed upstream calls that were not sent after all")
+            .register(meterRegistry);
+        Gauge.builder("news.ratelimit.upstream.available", this, RateLimitService::availableUpstreamCalls)
+            .description("News API calls that can be made right now without exceeding the budget")
+            .register(meterRegistry);
+        Gauge.builder("news.ratelimit.clients.tracked", clientBuckets, ConcurrentHashMap::size)
+            .description("Clients with a partially used bucket")
+            .register(meterRegistry);
+    }
+
+
+    /**
+     * Try to reserve one News API call for a client.
+     * 
+     * @param clientKey The client the call is made for, or null for background jobs (only the global budget applies)
+     * @return true if the call may go upstream, false if the caller should use the database instead
+     */
+    public boolean tryAcquireUpstream(String clientKey) {
+        AtomicLong clientBucket = null;
+        if (clientKey != null) {
+            if (clientBuckets.size() >= maxTrackedClients) {
+                trimClients();
+            }
+            clientBucket = clientBuckets.computeIfAbsent(clientKey, key -> clientLimit.newBucket());
+            if (!clientLimit.tryAcquire(clientBucket)) {
+                clientThrottled.increment();
+                return false;
+            }
+        }
+
+        if (!upstreamLimit.tryAcquire(upstreamBucket)) {
+            if (clientBucket != null) {
+                clientLimit.refund(clientBucket); // No call was made for the client
+            }
+            upstreamThrottled.increment();
+            return false;
+        }
+        upstreamGranted.increment();
+        return true;
+    }
+
+
+    /**
+     * Give back the tokens of a call allowed by tryAcquireUpstream that was not sent after all.
+     * 
+     * @param clientKey The client the call was allowed for, or null for background jobs
+     */
+    public void refundUpstream(String clientKey) {
+        upstreamLimit.refund(upstreamBucket);
+        if (clientKey != null) {
+            AtomicLong clientBucket = clientBuckets.get(clientKey);
+            if (clientBucket != null) {
+                clientLimit.refund(clientBucket); // A swept bucket was full already
+            }
+        }
+        upstreamRefunded.increment();
+    }
+
+
+    /**
+     * Return the number of News API calls that can be made right now.
+     * 
+     * @return The tokens currently available in the global bucket
+     */
+    public int availableUpstreamCalls() {
+        return upstreamLimit.available(upstreamBucket);
+    }
+
+
+    /**
+     * Return the long-run News API budget.
+     * 
+     * @return News API calls allowed per day
+     */
+    public double getUpstreamDailyQuota() {
+        return upstreamDailyQuota;
+    }
+
+
+    // Resize this node's global bucket to its share of the quota when the number of live nodes changed.
+    // The tokens already spent stay spent (up to the new capacity); calls racing with the swap may be lost.
+    @Scheduled(fixedRateString = "${news.jobs.lease.heartbeat-millis:30000}", initialDelay = 15000) // After the first heartbeat
+    public void shareAmongLiveNodes() {
+        long nodes;
+        try {
+            nodes = Math.max(1, jobLeaseService.liveNodeCount());
+        } catch (RuntimeException e) {
+            logger.warn("Failed to count the live nodes, keeping the News API budget shared between {}", liveNodes, e);
+            return;
+        }
+        if (nodes != liveNodes) {
+            TokenBucket limit = new TokenBucket(upstreamDailyQuota / 86400.0 / nodes, (int) Math.max(1, upstreamBurst / nodes));
+            AtomicLong bucket = limit.newBucket();
+            int spent = upstreamLimit.getCapacity() - upstreamLimit.available(upstreamBucket);
+            for (int i = 0; i < spent; i++) {
+                limit.tryAcquire(bucket); // Carry the spent tokens over; fails once the new capacity is used up
+            }
+            upstreamBucket = bucket;
+            upstreamLimit = limit;
+            liveNodes = nodes;
+            logger.info("News API budget shared between {} nodes", nodes);
+        }
+    }
+
+    // Drop client buckets that have refilled completely; they are equivalent to new buckets
+    @Scheduled(fixedRate = 60000) // Every minute
+    public void sweepIdleClients() {
+        clientBuckets.values().removeIf(clientLimit::isFull);
+    }
+
+    // Make room in a full client map: sweep, then drop the buckets closest to full until a tenth is free
+    private void trimClients() {
+        if (!trimming.tryLock()) {
+            return; // Another caller is trimming; the map may overshoot by the callers arriving meanwhile
+        }
+        try {
+            sweepIdleClients();
+            int excess = clientBuckets.size() - maxTrackedClients * 9 / 10;
+            if (excess > 0) {
+                clientBuckets.entrySet().stream()
+                    .map(entry -> Map.entry(entry.getKey(), entry.getValue().get())) // Snapshot, buckets change while sorting
+                    .sorted(Map.Entry.comparingByValue()) // Earliest theoretical arrival time first: closest to full
+                    .limit(excess)
+                    .map(Map.Entry::getKey)
+                    .toList()
+                    .forEach(clientBuckets::remove);
+            }
+        } finally {
+            trimming.unlock();
+        }
+    }
+
+    int trackedClients() {
+        return clientBuckets.size();
+    }
+}
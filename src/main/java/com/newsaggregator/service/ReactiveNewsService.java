@@ -0,0 +1,142 @@
+package com.newsaggregator.service;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.repository.ReactiveNewsArticleRepository;
+
+
+/*
+ * ReactiveNewsService.java
+ * 
+ * This service class is the non-blocking counterpart of NewsService for the streaming read path.
+    - Calls the News API asynchronously, through the same bulkheads as the blocking path (see NewsApiClient),
+      so no thread waits for the upstream response.
+    - Journals and ingests the response with NewsService.ingestResponse on the bounded-elastic scheduler:
+      the same duplicate rules, write-behind and NewsIngestedEvent as the blocking path, off the event loop.
+    - Database fallbacks stream from the reactive MongoDB repositories with backpressure.
+    - Scheduled jobs keep using the blocking NewsService.
+ */
+@Service
+public class ReactiveNewsService {
+
+    @Autowired
+    private ReactiveNewsArticleRepository reactiveNewsArticleRepository; // To interact with the database for news articles without blocking
+
+    @Autowired
+    private NewsService newsService; // To ingest responses exactly like the blocking path
+
+    @Autowired
+    private NewsApiClient newsApiClient; // To call the News API through its bulkheads
+
+    @Autowired
+    private RateLimitService rateLimitService; // Shares the News API budget with the blocking path
+
+    @Autowired
+    private SecondaryReads secondaryReads; // To serve the database fallbacks from secondaries
+
+    @Autowired
+    private UpstreamJournal upstreamJournal; // To keep raw responses for replay and recovery
+
+    @Value("${newsapi.key}")
+    private String apiKey; // API key for the News API
+
+    @Value("${newsapi.base-url}")
+    private String apiBaseUrl; // Base URL of the News API
+
+    private static final Duration UPSTREAM_TIMEOUT = Duration.ofSeconds(10); // Give up on the News API and use the database instead
+
+
+
+    /**
+    * Helper method to fetch articles from the News API and save them to the database without blocking.
+    * The upstream call is asynchronous; journaling and ingestion (NewsService.ingestResponse) block,
+    * so they run on the bounded-elastic scheduler.
+    *
+    * @param path The API path to call (e.g. "/top-headlines")
+    * @param queryParams The query parameters to append, as alternating name/value pairs
+    * @param isHeadline Indicates whether the articles are top headlines (true) or search results (false).
+    * @param country The country of a headline fetch, or null for search results.
+    * @param context The caller of the fetch, used for rate limiting and as the deadline of the upstream call.
+    * @return A Flux of ingested NewsArticle objects, in upstream order. Completes empty if an error occurs, the call is throttled or the deadline passes.
+    */
+    private Flux<NewsArticle> fetchAndSaveArticles(String path, List<String> queryParams, boolean isHeadline, String country, FetchContext context) {
+        if (!context.isUpstreamAllowed() || !rateLimitService.tryAcquireUpstream(context.getClientKey())) {
+            return Flux.empty(); // Over budget (or database only): complete empty to trigger database fallback
+        }
+
+        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(apiBaseUrl).path(path);
+        for (int i = 0; i + 1 < queryParams.size(); i += 2) {
+            uriBuilder.queryParam(queryParams.get(i), queryParams.get(i + 1));
+        }
+        URI uri = uriBuilder.queryParam("apiKey", apiKey).encode().build().toUri();
+
+        return Mono.fromFuture(() -> newsApiClient.getAsync(uri, isHeadline, context)) // Cancelling abandons the call
+            .timeout(Duration.ofNanos(Math.max(0, Math.min(context.remainingNanos(), UPSTREAM_TIMEOUT.toNanos())))) // Never wait past the caller's deadline
+            .publishOn(Schedulers.boundedElastic()) // Journal writes and ingestion block: keep them off the event loop
+            .map(body -> {
+                upstreamJournal.append(uri, isHeadline, country, body);
+                return newsService.ingestResponse(body, isHeadline, country, context);
+            })
+            .flatMapMany(Flux::fromIterable)
+            .onErrorResume(e -> Flux.empty()); // Complete empty to trigger database fallback
+    }
+
+
+    /**
+     * Stream top headlines for a country, falling back to the database if the API returns nothing.
+     * 
+     * @param country The country code for which to fetch top headlines (e.g., "us" for United States).
+     * @param page The page number.
+     * @param pageSize The number of articles per page to fetch.
+     * @param context The caller of the fetch.
+     * @return A Flux of NewsArticle objects representing the top headlines.
+     */
+    public Flux<NewsArticle> streamTopHeadlinesWithFallback(String country, int page, int pageSize, FetchContext context) {
+        Pageable pageable = PageRequest.of(page - 1, pageSize, Sort.by(Sort.Direction.DESC, "publishedAt"));
+        return fetchAndSaveArticles("/top-headlines",
+                List.of("country", country, "page", String.valueOf(page), "pageSize", String.valueOf(pageSize)), true, country, context)
+            .switchIfEmpty(Flux.defer(() -> secondaryReads.streamHeadlines(pageable)));
+    }
+
+
+    /**
+     * Stream search results for a query, falling back to a database search if the API returns nothing.
+     * 
+     * @param query The search query to fetch news articles for.
+     * @param sortBy The sorting criteria for the articles (e.g., "publishedAt").
+     * @param page The page number.
+     * @param pageSize The number of articles per page to fetch.
+     * @param context The caller of the fetch.
+     * @return A Flux of NewsArticle objects representing the search results.
+     */
+    public Flux<NewsArticle> streamNewsByQuery(String query, String sortBy, int page, int pageSize, FetchContext context) {
+        Pageable pageable = PageRequest.of(page - 1, pageSize, Sort.by(Sort.Direction.DESC, "publishedAt"));
+        return fetchAndSaveArticles("/everything",
+                List.of("q", query, "sortBy", sortBy, "language", "en", "page", String.valueOf(page), "pageSize", String.valueOf(pageSize)), false, null, context)
+            .switchIfEmpty(Flux.defer(() -> secondaryReads.streamSearch(query, pageable)));
+    }
+
+
+    /**
+     * Stream news articles by their IDs.
+     * 
+     * @param ids A list of article IDs
+     * @return A Flux of NewsArticle objects
+     */
+    public Flux<NewsArticle> streamArticlesByIds(List<String> ids) {
+        return reactiveNewsArticleRepository.findAllById(ids);
+    }
+}
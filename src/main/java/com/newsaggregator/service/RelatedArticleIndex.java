@@ -0,0 +1,312 @@
+package com.newsaggregator.service;
+
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.regex.Pattern;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * RelatedArticleIndex.java
+ *
+ * This component finds articles about similar stories, for the related-articles endpoint, without querying MongoDB.
+    - Each article is reduced to the set of words of its title, description and content, and that set to a
+      MinHash signature of 32 values: the share of equal values of two signatures estimates the Jaccard
+      similarity of the two sets.
+    - Signatures are split into 16 bands of 2 values (locality-sensitive hashing). Articles that share a band
+      are candidates; candidates are ranked by their estimated similarity. Pairs with a similarity of 0.3 share
+      a band with a probability of about 78%, pairs with 0.5 of more than 99%.
+    - Storage is a fixed number of slots (news.related.capacity) in primitive arrays: signatures, the
+      publication time, and for each band a hash table of chains through the slots. Only the article ids are
+      objects. Slots are reused in insertion order, so once the index is full the oldest added article is replaced.
+    - Articles are added as they are ingested, pruned when NewsService.deleteOldArticles runs, and the
+      index is filled from the database on startup.
+ */
+@Component
+public class RelatedArticleIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(RelatedArticleIndex.class);
+
+    private static final int HASHES = 32; // MinHash signature length
+    private static final int BANDS = 16;
+    private static final int ROWS = HASHES / BANDS; // Signature values per band
+    private static final int NONE = -1; // End of a chain
+    private static final Pattern TRUNCATION_MARK = Pattern.compile("\\[\\+\\d+ chars\\]"); // Appended to content by the News API
+
+    @Autowired
+    private SecondaryReads secondaryReads; // To fill the index on startup
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish the index size
+
+    @Value("${news.related.enabled:true}")
+    private boolean enabled;
+
+    @Value("${news.related.capacity:50000}")
+    private int capacity; // Maximum number of indexed articles (about 300 bytes each)
+
+    @Value("${news.related.warm-up-days:30}")
+    private long warmUpDays; // Articles published this many days back are indexed on startup
+
+    private final long[] seeds = new SplittableRandom(0x5eedL).longs(HASHES).toArray(); // One hash function per signature value
+
+    // All guarded by this
+    private int[] signatures; // HASHES values per slot
+    private long[] publishedAt; // Epoch seconds per slot
+    private String[] ids; // Article id per slot, null if the slot is unused
+    private int[] bandHeads; // BANDS tables of tableSize chain heads
+    private int[] bandNext; // Next slot in the chain, BANDS entries per slot
+    private int tableMask;
+    private final Map<String, Integer> slotsById = new HashMap<>();
+    private int nextSlot; // Slots are reused in insertion order
+    private int size;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        int tableSize = Integer.highestOneBit(Math.max(capacity, 16) * 2 - 1); // Power of two, at least the capacity
+        tableMask = tableSize - 1;
+        signatures = new int[capacity * HASHES];
+        publishedAt = new long[capacity];
+        ids = new String[capacity];
+        bandHeads = new int[BANDS * tableSize];
+        bandNext = new int[capacity * BANDS];
+        Arrays.fill(bandHeads, NONE);
+
+        Gauge.builder("news.related.entries", this, RelatedArticleIndex::size)
+            .description("Articles in the related-articles index")
+            .register(meterRegistry);
+    }
+
+
+    /**
+     * Find the indexed articles most similar to an article.
+     *
+     * @param id The id of the article
+     * @param limit The maximum number of ids to return
+     * @param minSimilarity The minimum estimated Jaccard similarity (0 to 1) of returned articles
+     * @return The ids of related articles, most similar first; empty if the article is not indexed
+     */
+    public synchronized List<String> findRelated(String id, int limit, double minSimilarity) {
+        Integer slot = slotsById.get(id);
+        if (slot == null) {
+            return List.of();
+        }
+
+        // Candidates sharing at least one band, each scored once
+        Map<Integer, Integer> matches = new HashMap<>();
+        for (int band = 0; band < BANDS; band++) {
+            int head = bandHeads[band * (tableMask + 1) + bandBucket(slot, band)];
+            for (int candidate = head; candidate != NONE; candidate = bandNext[candidate * BANDS + band]) {
+                if (candidate != slot && !matches.containsKey(candidate) && sameBand(slot, candidate, band)) {
+                    matches.put(candidate, equalValues(slot, candidate));
+                }
+            }
+        }
+
+        int minMatches = (int) Math.ceil(minSimilarity * HASHES);
+        return matches.entrySet().stream()
+            .filter(match -> match.getValue() >= minMatches)
+            .sorted(Map.Entry.<Integer, Integer>comparingByValue().reversed()
+                .thenComparing(match -> -publishedAt[match.getKey()])) // Newer first among equals
+            .limit(limit)
+            .map(match -> ids[match.getKey()])
+            .toList();
+    }
+
+
+    /**
+     * Add an article, or replace its signature if it is already indexed.
+     *
+     * @param article The article
+     */
+    public void add(NewsArticle article) {
+        if (!enabled || article.getId() == null) {
+            return;
+        }
+        int[] signature = signature(article);
+        if (signature == null) {
+            return;
+        }
+        add(article.getId(), signature, epochSeconds(article.getPublishedAt()));
+    }
+
+    private synchronized void add(String id, int[] signature, long published) {
+        Integer existing = slotsById.get(id);
+        if (existing != null) {
+            remove(existing);
+        }
+        int slot = nextSlot;
+        nextSlot = (nextSlot + 1) % capacity;
+        if (ids[slot] != null) {
+            remove(slot); // Full: replace the oldest added article
+        }
+
+        System.arraycopy(signature, 0, signatures, slot * HASHES, HASHES);
+        publishedAt[slot] = published;
+        ids[slot] = id;
+        slotsById.put(id, slot);
+        for (int band = 0; band < BANDS; band++) {
+            int head = band * (tableMask + 1) + bandBucket(slot, band);
+            bandNext[slot * BANDS + band] = bandHeads[head];
+            bandHeads[head] = slot;
+        }
+        size++;
+    }
+
+
+    /**
+     * Remove the articles published before a time, as the database cleanup deletes them.
+     *
+     * @param cutoff Articles published before this are removed
+     * @return The number of removed articles
+     */
+    public synchronized int removePublishedBefore(Instant cutoff) {
+        long cutoffSeconds = cutoff.getEpochSecond();
+        int removed = 0;
+        for (int slot = 0; slot < capacity; slot++) {
+            if (ids[slot] != null && publishedAt[slot] < cutoffSeconds) {
+                remove(slot);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+
+    // Unlink a slot from its band chains and free it
+    private void remove(int slot) {
+        for (int band = 0; band < BANDS; band++) {
+            int head = band * (tableMask + 1) + bandBucket(slot, band);
+            if (bandHeads[head] == slot) {
+                bandHeads[head] = bandNext[slot * BANDS + band];
+            } else {
+                int previous = bandHeads[head];
+                while (bandNext[previous * BANDS + band] != slot) {
+                    previous = bandNext[previous * BANDS + band];
+                }
+                bandNext[previous * BANDS + band] = bandNext[slot * BANDS + band];
+            }
+        }
+        slotsById.remove(ids[slot]);
+        ids[slot] = null;
+        size--;
+    }
+
+    // The hash table bucket of a slot's band values
+    private int bandBucket(int slot, int band) {
+        int hash = band;
+        for (int row = 0; row < ROWS; row++) {
+            hash = 31 * hash + signatures[slot * HASHES + band * ROWS + row];
+        }
+        return (hash ^ hash >>> 16) & tableMask;
+    }
+
+    // Chains also hold slots whose band only collides in the table
+    private boolean sameBand(int a, int b, int band) {
+        int offset = band * ROWS;
+        return Arrays.equals(signatures, a * HASHES + offset, a * HASHES + offset + ROWS,
+            signatures, b * HASHES + offset, b * HASHES + offset + ROWS);
+    }
+
+    private int equalValues(int a, int b) {
+        int equal = 0;
+        for (int i = 0; i < HASHES; i++) {
+            if (signatures[a * HASHES + i] == signatures[b * HASHES + i]) {
+                equal++;
+            }
+        }
+        return equal;
+    }
+
+
+    // MinHash of the words of title, description and content; null if the article has too little text
+    private int[] signature(NewsArticle article) {
+        String content = article.getContent() != null ? TRUNCATION_MARK.matcher(article.getContent()).replaceAll("") : null;
+        List<String> words = ArticleTokens.words(article.getTitle(), article.getDescription(), content);
+        if (words.size() < 3) {
+            return null;
+        }
+
+        int[] signature = new int[HASHES];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String word : words) {
+            long shingle = ArticleTokens.hash(word);
+            for (int h = 0; h < HASHES; h++) {
+                int value = (int) (mix(shingle ^ seeds[h]) >>> 33); // Non-negative, so MAX_VALUE is above all values
+                if (value < signature[h]) {
+                    signature[h] = value;
+                }
+            }
+        }
+        return signature;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long epochSeconds(String publishedAt) {
+        try {
+            return publishedAt != null ? Instant.parse(publishedAt).getEpochSecond() : Instant.now().getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return Instant.now().getEpochSecond();
+        }
+    }
+
+
+    // Add new and changed articles as they are ingested
+    @EventListener
+    public void onNewsIngested(NewsIngestedEvent event) {
+        event.getChangedArticles().forEach(this::add);
+    }
+
+
+    // Fill the index with recent articles, oldest first, in the background so startup does not wait
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            try {
+                String since = Instant.now().minusSeconds(warmUpDays * 86400).toString(); // publishedAt is an ISO-8601 string
+                Query recent = new Query(Criteria.where("publishedAt").gte(since)).with(Sort.by("publishedAt"));
+                recent.fields().include("title", "description", "content", "publishedAt");
+                secondaryReads.getTemplate().stream(recent, NewsArticle.class).forEach(this::add);
+                logger.info("Related-articles index filled with {} articles", size());
+            } catch (RuntimeException e) {
+                logger.warn("Failed to fill the related-articles index; it fills up with new articles instead", e);
+            }
+        }, "related-articles-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
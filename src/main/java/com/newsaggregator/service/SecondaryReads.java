@@ -0,0 +1,140 @@
+package com.newsaggregator.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import com.mongodb.ReadPreference;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * SecondaryReads.java
+ *
+ * This component routes read-mostly article queries to MongoDB secondaries, away from the primary that takes
+ * the ingestion writes.
+    - Used for the listing fallbacks (headlines and search) of both the blocking and the reactive path, and for
+      the NDJSON export. These tolerate data that is a little behind: secondaries lagging more than
+      news.mongo.secondary-reads.max-staleness-seconds are not used.
+    - secondaryPreferred: a standalone server or a replica set without a healthy secondary serves the reads
+      from the primary, so nothing breaks in development.
+    - Everything else keeps using the repositories and the primary: ingestion lookups, favorites (read right
+      after the user's own write) and user/auth reads.
+ * The templates are private to this component rather than beans, so Spring Boot's primary-reading
+ * MongoTemplate and ReactiveMongoTemplate stay in place for the repositories.
+ */
+@Component
+public class SecondaryReads {
+
+    @Autowired
+    private MongoDatabaseFactory mongoDatabaseFactory;
+
+    @Autowired
+    private ReactiveMongoDatabaseFactory reactiveMongoDatabaseFactory;
+
+    @Autowired
+    private MongoConverter mongoConverter; // The same mapping as the repositories
+
+    @Value("${news.mongo.secondary-reads.enabled:true}")
+    private boolean enabled; // False: all reads go to the primary
+
+    @Value("${news.mongo.secondary-reads.max-staleness-seconds:90}")
+    private long maxStalenessSeconds; // MongoDB requires at least 90
+
+    private MongoTemplate template;
+    private ReactiveMongoTemplate reactiveTemplate;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        ReadPreference readPreference = enabled
+            ? ReadPreference.secondaryPreferred(maxStalenessSeconds, TimeUnit.SECONDS)
+            : ReadPreference.primary();
+
+        template = new MongoTemplate(mongoDatabaseFactory, mongoConverter);
+        template.setReadPreference(readPreference);
+        reactiveTemplate = new ReactiveMongoTemplate(reactiveMongoDatabaseFactory, mongoConverter);
+        reactiveTemplate.setReadPreference(readPreference);
+    }
+
+
+    /**
+     * Read a page of stored headlines, newest first as given by the pageable.
+     *
+     * @param pageable The page to read
+     * @return The headlines of the page
+     */
+    public List<NewsArticle> findHeadlines(Pageable pageable) {
+        return template.find(headlinesQuery(pageable), NewsArticle.class);
+    }
+
+    /**
+     * Non-blocking variant of findHeadlines.
+     *
+     * @param pageable The page to read
+     * @return The headlines of the page
+     */
+    public Flux<NewsArticle> streamHeadlines(Pageable pageable) {
+        return reactiveTemplate.find(headlinesQuery(pageable), NewsArticle.class);
+    }
+
+
+    /**
+     * Search stored articles whose title or description contains the query, ignoring case.
+     *
+     * @param query The search text (matched literally)
+     * @param pageable The page to read
+     * @return The matching articles of the page
+     */
+    public List<NewsArticle> search(String query, Pageable pageable) {
+        return template.find(searchQuery(query, pageable), NewsArticle.class);
+    }
+
+    /**
+     * Non-blocking variant of search.
+     *
+     * @param query The search text (matched literally)
+     * @param pageable The page to read
+     * @return The matching articles of the page
+     */
+    public Flux<NewsArticle> streamSearch(String query, Pageable pageable) {
+        return reactiveTemplate.find(searchQuery(query, pageable), NewsArticle.class);
+    }
+
+
+    /**
+     * Return the secondary-reading template for other tolerant reads (e.g. exports).
+     *
+     * @return The template
+     */
+    public MongoTemplate getTemplate() {
+        return template;
+    }
+
+
+    // Headlines; and a case-insensitive literal match in the title or description
+    private static Query headlinesQuery(Pageable pageable) {
+        return new Query(Criteria.where("isHeadline").is(true)).with(pageable);
+    }
+
+    private static Query searchQuery(String query, Pageable pageable) {
+        String contains = Pattern.quote(query);
+        return new Query(new Criteria().orOperator(
+            Criteria.where("title").regex(contains, "i"),
+            Criteria.where("description").regex(contains, "i"))).with(pageable);
+    }
+}
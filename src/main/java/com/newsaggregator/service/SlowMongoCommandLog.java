@@ -0,0 +1,304 @@
+package com.newsaggregator.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.config.MongoObservabilityConfig;
+
+
+/*
+ * SlowMongoCommandLog.java
+ *
+ * This component records MongoDB commands that take longer than a threshold.
+    - Each slow command is logged with its collection, the repository method that issued it and its
+      query shape: the filter, sort and pipeline with every literal value replaced by "?".
+    - Slow reads (find, count, distinct, aggregate) are explained in the background to record how many
+      documents and index keys they examined and whether they scanned the whole collection.
+    - The most recent slow commands are kept for the "slowqueries" actuator endpoint.
+ */
+@Component
+public class SlowMongoCommandLog implements CommandListener {
+
+    private static final Logger logger = LoggerFactory.getLogger(SlowMongoCommandLog.class);
+
+    private static final Set<String> EXPLAINABLE = Set.of("find", "count", "distinct", "aggregate"); // Reads that can be explained without side effects
+    private static final Set<String> SHAPE_FIELDS = Set.of("filter", "query", "sort", "pipeline", "key"); // Command fields that describe the query
+    private static final Set<String> SESSION_FIELDS = Set.of("$db", "lsid", "$clusterTime", "$readPreference", "txnNumber", "signature"); // Stripped before explaining
+
+    @Autowired
+    private ObjectProvider<MongoTemplate> mongoTemplate; // Looked up lazily: the template depends on the client this listener is registered with
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To count slow commands
+
+    @Value("${news.mongo.slow-command-ms:100}")
+    private long slowCommandMillis; // Commands slower than this are recorded
+
+    @Value("${news.mongo.slow-command-log-size:100}")
+    private int logSize; // Slow commands kept for the actuator endpoint
+
+    private final Map<Integer, BsonDocument> pendingReads = new ConcurrentHashMap<>(); // Request id -> command of in-flight explainable reads
+    private final Deque<SlowCommand> recent = new ArrayDeque<>(); // Most recent first, guarded by itself
+
+    // One background thread for explains; when it falls behind, further explains are skipped
+    private final ThreadPoolExecutor explainer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(16), runnable -> {
+            Thread thread = new Thread(runnable, "mongo-slow-command-explain");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+
+
+    /**
+     * Keep a copy of explainable reads until they finish; the driver reuses the command buffer afterwards.
+     *
+     * @param event The command started event
+     */
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        if (EXPLAINABLE.contains(event.getCommandName())) {
+            pendingReads.put(event.getRequestId(), event.getCommand().clone());
+        }
+    }
+
+    /**
+     * Record the command if it was slow.
+     *
+     * @param event The command succeeded event
+     */
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        BsonDocument command = pendingReads.remove(event.getRequestId());
+        long elapsedMillis = event.getElapsedTime(TimeUnit.MILLISECONDS);
+        if (elapsedMillis < slowCommandMillis) {
+            return;
+        }
+        record(event.getCommandName(), event.getDatabaseName(), command, elapsedMillis, null);
+    }
+
+    /**
+     * Record the command if it was slow, together with the failure.
+     *
+     * @param event The command failed event
+     */
+    @Override
+    public void commandFailed(CommandFailedEvent event) {
+        BsonDocument command = pendingReads.remove(event.getRequestId());
+        long elapsedMillis = event.getElapsedTime(TimeUnit.MILLISECONDS);
+        if (elapsedMillis < slowCommandMillis) {
+            return;
+        }
+        record(event.getCommandName(), event.getDatabaseName(), command, elapsedMillis, event.getThrowable().getClass().getSimpleName());
+    }
+
+
+    /**
+     * Return the most recent slow commands.
+     *
+     * @return The slow commands, most recent first
+     */
+    public List<SlowCommand> getRecent() {
+        synchronized (recent) {
+            return new ArrayList<>(recent);
+        }
+    }
+
+
+    // Log the slow command, keep it for the endpoint and explain it in the background
+    private void record(String commandName, String database, BsonDocument command, long elapsedMillis, String error) {
+        String collection = command != null && command.isString(commandName) ? command.getString(commandName).getValue() : null;
+        String shape = command != null ? shapeOf(command).toJson() : null;
+        String repositoryMethod = MongoObservabilityConfig.currentRepositoryMethod(); // Still on the issuing thread
+
+        SlowCommand slow = new SlowCommand(System.currentTimeMillis(), commandName, collection, repositoryMethod, shape, elapsedMillis, error);
+        synchronized (recent) {
+            recent.addFirst(slow);
+            while (recent.size() > logSize) {
+                recent.removeLast();
+            }
+        }
+        meterRegistry.counter("mongodb.slow.commands", "command", commandName,
+            "collection", collection != null ? collection : "unknown").increment();
+        logger.warn("Slow MongoDB {} on {} took {} ms from {}: {}", commandName, collection, elapsedMillis, repositoryMethod, shape);
+
+        if (command != null && error == null) {
+            explainer.execute(() -> explain(slow, database, command));
+        }
+    }
+
+
+    // Run the command again with explain and copy the execution statistics into the record
+    private void explain(SlowCommand slow, String database, BsonDocument command) {
+        try {
+            BsonDocument explained = command.clone();
+            SESSION_FIELDS.forEach(explained::remove);
+            Document result = mongoTemplate.getObject().getMongoDatabaseFactory().getMongoDatabase(database)
+                .runCommand(new Document("explain", explained).append("verbosity", "executionStats"));
+
+            Document stats = executionStatsOf(result);
+            if (stats != null) {
+                slow.docsExamined = ((Number) stats.getOrDefault("totalDocsExamined", 0)).longValue();
+                slow.keysExamined = ((Number) stats.getOrDefault("totalKeysExamined", 0)).longValue();
+                slow.returned = ((Number) stats.getOrDefault("nReturned", 0)).longValue();
+            }
+            slow.collectionScan = result.toJson().contains("\"COLLSCAN\"");
+            logger.warn("Slow MongoDB {} on {} examined {} documents and {} keys for {} results{}", slow.command, slow.collection,
+                slow.docsExamined, slow.keysExamined, slow.returned, slow.collectionScan ? " (collection scan)" : "");
+        } catch (RuntimeException e) {
+            logger.debug("Failed to explain slow MongoDB {}", slow.command, e);
+        }
+    }
+
+    // Find the execution statistics in an explain result (aggregations nest them under their first stage)
+    private static Document executionStatsOf(Document explain) {
+        if (explain.get("executionStats") instanceof Document stats) {
+            return stats;
+        }
+        if (explain.get("stages") instanceof List<?> stages && !stages.isEmpty()
+                && stages.get(0) instanceof Document first && first.get("$cursor") instanceof Document cursor
+                && cursor.get("executionStats") instanceof Document stats) {
+            return stats;
+        }
+        return null;
+    }
+
+
+    // Keep the query-describing fields of a command with every literal replaced by "?"
+    static BsonDocument shapeOf(BsonDocument command) {
+        BsonDocument shape = new BsonDocument();
+        for (String field : SHAPE_FIELDS) {
+            if (command.containsKey(field)) {
+                shape.put(field, mask(command.get(field)));
+            }
+        }
+        return shape;
+    }
+
+    static BsonValue mask(BsonValue value) {
+        if (value.isDocument()) {
+            BsonDocument masked = new BsonDocument();
+            value.asDocument().forEach((key, nested) -> masked.put(key, mask(nested)));
+            return masked;
+        }
+        if (value.isArray()) {
+            BsonArray array = value.asArray();
+            if (!array.isEmpty() && array.get(0).isDocument()) {
+                BsonArray masked = new BsonArray(); // $and, $or and pipelines: keep the structure of each element
+                array.forEach(element -> masked.add(mask(element)));
+                return masked;
+            }
+            return new BsonString("[?]");
+        }
+        if (value.isRegularExpression()) {
+            return new BsonString("/?/");
+        }
+        return new BsonString("?");
+    }
+
+
+    @PreDestroy
+    private void shutdown() {
+        explainer.shutdownNow();
+    }
+
+
+    /*
+     * A slow command. The explain statistics are filled in later and stay -1 if the command was not explained.
+     */
+    public static class SlowCommand {
+
+        private final long timestamp; // Epoch millis when the command finished
+        private final String command;
+        private final String collection;
+        private final String repositoryMethod;
+        private final String shape;
+        private final long elapsedMillis;
+        private final String error; // Exception type if the command failed
+        private volatile long docsExamined = -1;
+        private volatile long keysExamined = -1;
+        private volatile long returned = -1;
+        private volatile boolean collectionScan;
+
+        // Constructor
+        SlowCommand(long timestamp, String command, String collection, String repositoryMethod, String shape, long elapsedMillis, String error) {
+            this.timestamp = timestamp;
+            this.command = command;
+            this.collection = collection;
+            this.repositoryMethod = repositoryMethod;
+            this.shape = shape;
+            this.elapsedMillis = elapsedMillis;
+            this.error = error;
+        }
+
+        // Getters
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getCollection() {
+            return collection;
+        }
+
+        public String getRepositoryMethod() {
+            return repositoryMethod;
+        }
+
+        public String getShape() {
+            return shape;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        public long getDocsExamined() {
+            return docsExamined;
+        }
+
+        public long getKeysExamined() {
+            return keysExamined;
+        }
+
+        public long getReturned() {
+            return returned;
+        }
+
+        public boolean isCollectionScan() {
+            return collectionScan;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.newsaggregator.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/*
+ * StageTimings.java
+ * 
+ * This class collects how long each stage of a request took (upstream fetch, JSON decode, database reads
+ * and writes, serialization, cache lookup), in the order the stages first ran.
+ * A stage that runs several times accumulates. The timings travel with the FetchContext and are
+ * turned into a Server-Timing header and stage timers by StageMetrics.
+ */
+public class StageTimings {
+
+    private final Map<String, Long> nanosByStage = new LinkedHashMap<>(); // Stage -> accumulated nanoseconds, guarded by itself
+    private final Map<String, String> descriptions = new LinkedHashMap<>(); // Stage -> Server-Timing description (e.g. "hit"), guarded by nanosByStage
+
+
+    /**
+     * Add time spent in a stage.
+     * 
+     * @param stage The stage name (a Server-Timing metric name: no spaces or separators)
+     * @param startNanos The System.nanoTime() value when the stage started
+     */
+    public void record(String stage, long startNanos) {
+        long elapsed = System.nanoTime() - startNanos;
+        synchronized (nanosByStage) {
+            nanosByStage.merge(stage, elapsed, Long::sum);
+        }
+    }
+
+    /**
+     * Attach a short description to a stage, e.g. whether a cache lookup was a hit or a miss.
+     * 
+     * @param stage The stage name
+     * @param description The description
+     */
+    public void describe(String stage, String description) {
+        synchronized (nanosByStage) {
+            descriptions.put(stage, description);
+        }
+    }
+
+
+    /**
+     * Return a snapshot of the recorded stages.
+     * 
+     * @return Stage name -> nanoseconds, in the order the stages first ran
+     */
+    public Map<String, Long> snapshot() {
+        synchronized (nanosByStage) {
+            return new LinkedHashMap<>(nanosByStage);
+        }
+    }
+
+    /**
+     * Return the description of a stage.
+     * 
+     * @param stage The stage name
+     * @return The description, or null if the stage has none
+     */
+    public String getDescription(String stage) {
+        synchronized (nanosByStage) {
+            return descriptions.get(stage);
+        }
+    }
+}
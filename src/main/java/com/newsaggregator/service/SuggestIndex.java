@@ -0,0 +1,368 @@
+package com.newsaggregator.service;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * SuggestIndex.java
+ *
+ * This component answers search-as-you-type suggestions from memory, without MongoDB or the News API.
+    - Suggestions are title words, source names and past searches that returned articles, each with a
+      frequency: the number of ingested articles containing the word or from the source, and
+      news.suggest.query-weight per search.
+    - A search is only suggested once news.suggest.min-query-clients different clients made it within one
+      decay period, so the text one user typed is never shown to others.
+    - They are kept in a trie keyed by the lowercase text. Every trie node holds the most frequent
+      suggestions below it, updated as frequencies grow, so a lookup only walks the prefix.
+    - Lookups take no lock. Nodes are changed by replacing their child and top arrays, never in place, and
+      only by writers holding the lock.
+    - Frequencies are halved every news.suggest.decay-millis and suggestions that reach zero are dropped,
+      so suggestions follow the news. The trie is then rebuilt without the lock and swapped in; suggestions
+      that grew meanwhile are replayed into it. At most news.suggest.max-terms are kept.
+    - Filled from ingestion (NewsIngestedEvent) and from recent articles on startup.
+ */
+@Component
+public class SuggestIndex {
+
+    private static final Logger logger = LoggerFactory.getLogger(SuggestIndex.class);
+
+    private static final int TOP = 10; // Suggestions kept per trie node, the maximum limit of a lookup
+    private static final int MAX_QUERY_LENGTH = 60;
+
+    @Autowired
+    private SecondaryReads secondaryReads; // To fill the index on startup
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish the index size
+
+    @Value("${news.suggest.max-terms:50000}")
+    private int maxTerms; // New suggestions are ignored beyond this until the next decay
+
+    @Value("${news.suggest.query-weight:5}")
+    private int queryWeight; // A search counts like this many articles
+
+    @Value("${news.suggest.min-query-clients:3}")
+    private int minQueryClients; // Different clients that must make a search before it is suggested
+
+    @Value("${news.suggest.warm-up-days:2}")
+    private long warmUpDays;
+
+    // Guarded by this
+    private final Map<String, Term> terms = new HashMap<>(); // By key
+    private final Map<String, Set<String>> pendingQueries = new HashMap<>(); // Searches not suggested yet -> clients
+    private final Set<Term> grownWhileRebuilding = new HashSet<>();
+    private boolean rebuilding;
+
+    private volatile Node root = new Node('\0'); // Replaced by decay; read without the lock
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        Gauge.builder("news.suggest.terms", this, SuggestIndex::size)
+            .description("Suggestions in the autocomplete index")
+            .register(meterRegistry);
+    }
+
+
+    /**
+     * Get the most frequent suggestions starting with a prefix.
+     *
+     * @param prefix The typed text
+     * @param limit The maximum number of suggestions (at most 10)
+     * @return The suggestions, most frequent first
+     */
+    public List<String> suggest(String prefix, int limit) {
+        String key = normalize(prefix);
+        if (key.isEmpty()) {
+            return List.of();
+        }
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        if (node == null) {
+            return List.of();
+        }
+        Term[] top = node.top;
+        List<String> suggestions = new ArrayList<>(Math.min(limit, top.length));
+        for (int i = 0; i < top.length && i < limit; i++) {
+            suggestions.add(top[i].text);
+        }
+        return suggestions;
+    }
+
+
+    /**
+     * Count a search that returned articles, so it is suggested to others once enough clients made it.
+     *
+     * @param query The search query
+     * @param clientKey The rate-limit key of the client that searched; searches without one are not counted
+     */
+    public void recordQuery(String query, String clientKey) {
+        String text = normalize(query);
+        if (clientKey == null || text.isEmpty() || text.length() > MAX_QUERY_LENGTH) {
+            return;
+        }
+        synchronized (this) {
+            int weight = queryWeight;
+            if (!terms.containsKey(text)) {
+                Set<String> clients = pendingQueries.get(text);
+                if (clients == null) {
+                    if (pendingQueries.size() >= maxTerms) {
+                        return;
+                    }
+                    clients = new HashSet<>();
+                    pendingQueries.put(text, clients);
+                }
+                clients.add(clientKey);
+                if (clients.size() < minQueryClients) {
+                    return;
+                }
+                pendingQueries.remove(text);
+                weight = queryWeight * clients.size(); // Every client's search counts
+            }
+            add(text, text, weight);
+        }
+    }
+
+    public synchronized int size() {
+        return terms.size();
+    }
+
+
+    // Count the words and source of every new or changed article
+    @EventListener
+    public void onNewsIngested(NewsIngestedEvent event) {
+        event.getChangedArticles().forEach(this::addArticle);
+    }
+
+    private synchronized void addArticle(NewsArticle article) {
+        Set<String> words = new HashSet<>(ArticleTokens.words(article.getTitle()));
+        for (String word : words) {
+            if (word.length() > 2 && word.chars().anyMatch(Character::isLetter)) {
+                add(word, word, 1);
+            }
+        }
+        if (article.getSourceName() != null && !article.getSourceName().isBlank()) {
+            add(normalize(article.getSourceName()), article.getSourceName().trim(), 1);
+        }
+    }
+
+
+    // Raise a suggestion's frequency and move it up the top lists along its key
+    private void add(String key, String text, int weight) {
+        Term term = terms.get(key);
+        if (term == null) {
+            if (terms.size() >= maxTerms) {
+                return;
+            }
+            term = new Term(key, text);
+            terms.put(key, term);
+        }
+        term.count += weight;
+        insert(root, term);
+        if (rebuilding) {
+            grownWhileRebuilding.add(term); // Replayed into the new trie
+        }
+    }
+
+    // Offer a term to the top lists along its key
+    private static void insert(Node root, Term term) {
+        Node node = root;
+        for (int i = 0; i < term.key.length(); i++) {
+            node = node.childOrCreate(term.key.charAt(i));
+            node.offer(term);
+        }
+    }
+
+
+    // Halve all frequencies, drop the suggestions that reach zero and rebuild the trie
+    @Scheduled(fixedRateString = "${news.suggest.decay-millis:3600000}", initialDelayString = "${news.suggest.decay-millis:3600000}")
+    public void decay() {
+        List<Term> remaining;
+        synchronized (this) {
+            if (rebuilding) {
+                return;
+            }
+            terms.values().removeIf(term -> (term.count /= 2) == 0);
+            pendingQueries.clear(); // Searches have to reach the minimum clients within one period
+            remaining = new ArrayList<>(terms.values());
+            rebuilding = true;
+        }
+
+        // Build the new trie without blocking ingestion; lookups keep using the old one
+        Node rebuilt = new Node('\0');
+        try {
+            for (Term term : remaining) {
+                insert(rebuilt, term);
+            }
+        } finally {
+            synchronized (this) {
+                for (Term term : grownWhileRebuilding) {
+                    if (terms.get(term.key) == term) {
+                        insert(rebuilt, term); // Frequencies only grew since, so offering again keeps the lists exact
+                    }
+                }
+                grownWhileRebuilding.clear();
+                rebuilding = false;
+                root = rebuilt;
+            }
+        }
+    }
+
+
+    // Fill the index with recent articles, in the background so startup does not wait
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        Thread thread = new Thread(() -> {
+            try {
+                String since = Instant.now().minus(warmUpDays, ChronoUnit.DAYS).toString(); // publishedAt is an ISO-8601 string
+                Query recent = new Query(Criteria.where("publishedAt").gte(since));
+                recent.fields().include("title", "sourceName");
+                secondaryReads.getTemplate().stream(recent, NewsArticle.class).forEach(this::addArticle);
+                logger.info("Suggest index filled with {} suggestions", size());
+            } catch (RuntimeException e) {
+                logger.warn("Failed to fill the suggest index; it fills up with new articles instead", e);
+            }
+        }, "suggest-warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+
+    /*
+     * A suggestion and its frequency.
+     */
+    private static class Term {
+
+        private final String key; // Lowercase, what prefixes are matched against
+        private final String text; // As shown
+        private int count;
+
+        // Constructor
+        Term(String key, String text) {
+            this.key = key;
+            this.text = text;
+        }
+    }
+
+
+    /*
+     * A trie node: children sorted by character, and the most frequent suggestions below it.
+     * Both arrays are replaced, never changed, so lookups can read them without the lock.
+     */
+    private static class Node {
+
+        private static final Node[] NO_CHILDREN = new Node[0];
+        private static final Term[] NO_TERMS = new Term[0];
+
+        private final char label;
+        private volatile Node[] children = NO_CHILDREN; // Sorted by label
+        private volatile Term[] top = NO_TERMS; // Most frequent first, at most TOP
+
+        // Constructor
+        Node(char label) {
+            this.label = label;
+        }
+
+        Node child(char label) {
+            Node[] current = children;
+            int index = indexOf(current, label);
+            return index >= 0 ? current[index] : null;
+        }
+
+        // Called with the index lock held
+        Node childOrCreate(char label) {
+            Node[] current = children;
+            int index = indexOf(current, label);
+            if (index >= 0) {
+                return current[index];
+            }
+            int insertAt = -index - 1;
+            Node[] updated = new Node[current.length + 1];
+            System.arraycopy(current, 0, updated, 0, insertAt);
+            updated[insertAt] = new Node(label);
+            System.arraycopy(current, insertAt, updated, insertAt + 1, current.length - insertAt);
+            children = updated;
+            return updated[insertAt];
+        }
+
+        // Binary search by label, with the insertion point encoded like Arrays.binarySearch
+        private static int indexOf(Node[] nodes, char label) {
+            int low = 0;
+            int high = nodes.length - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                if (nodes[middle].label < label) {
+                    low = middle + 1;
+                } else if (nodes[middle].label > label) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+
+        // Place a term whose count grew; frequencies only grow between rebuilds, so the list stays exact.
+        // Called with the index lock held, or on a trie that is not published yet.
+        void offer(Term term) {
+            Term[] current = top;
+            int index = 0;
+            while (index < current.length && current[index] != term) {
+                index++;
+            }
+            Term[] updated;
+            if (index == current.length) {
+                if (current.length < TOP) {
+                    updated = Arrays.copyOf(current, current.length + 1);
+                } else if (term.count > current[TOP - 1].count) {
+                    updated = current.clone();
+                    index = TOP - 1;
+                } else {
+                    return;
+                }
+                updated[index] = term;
+            } else if (index > 0 && current[index - 1].count < term.count) {
+                updated = current.clone();
+            } else {
+                return; // Still in place
+            }
+            while (index > 0 && updated[index - 1].count < term.count) {
+                updated[index] = updated[index - 1];
+                updated[--index] = term;
+            }
+            top = updated;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.newsaggregator.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/*
+ * TokenBucket.java
+ *
+ * This class implements a lock-free token bucket.
+ * The bucket is stored in the equivalent "theoretical arrival time" form (GCRA): a single long
+ * per bucket that is updated with compare-and-set, so a bucket costs one AtomicLong and
+ * acquiring a token never takes a lock. One TokenBucket holds the rate settings and can
+ * operate on many bucket states (e.g. one per client).
+ */
+public class TokenBucket {
+
+    private final long emissionIntervalNanos; // Time it takes to refill one token
+    private final long burstToleranceNanos; // Capacity expressed as time (capacity * emission interval)
+    private final int capacity;
+
+    // Constructor
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity < 1) {
+            throw new IllegalArgumentException("Token bucket needs a positive rate and a capacity of at least 1");
+        }
+        this.emissionIntervalNanos = Math.max(1L, (long) (1_000_000_000L / tokensPerSecond));
+        this.burstToleranceNanos = emissionIntervalNanos * capacity;
+        this.capacity = capacity;
+    }
+
+
+    /**
+     * Create the state of a new, full bucket.
+     *
+     * @return A new bucket state
+     */
+    public AtomicLong newBucket() {
+        return new AtomicLong(System.nanoTime());
+    }
+
+
+    /**
+     * Try to take one token from a bucket.
+     *
+     * @param bucket The bucket state
+     * @return true if a token was taken, false if the bucket is empty
+     */
+    public boolean tryAcquire(AtomicLong bucket) {
+        while (true) {
+            long now = System.nanoTime();
+            long arrival = bucket.get();
+            long newArrival = (arrival - now > 0 ? arrival : now) + emissionIntervalNanos;
+            if (newArrival - now > burstToleranceNanos) {
+                return false; // Taking a token would exceed the burst capacity
+            }
+            if (bucket.compareAndSet(arrival, newArrival)) {
+                return true;
+            }
+        }
+    }
+
+
+    /**
+     * Give back a token taken by tryAcquire, e.g. when another limit then refused the call.
+     *
+     * @param bucket The bucket state
+     */
+    public void refund(AtomicLong bucket) {
+        bucket.addAndGet(-emissionIntervalNanos); // An arrival time in the past is read as a full bucket
+    }
+
+
+    /**
+     * Return the number of tokens currently available in a bucket.
+     *
+     * @param bucket The bucket state
+     * @return The number of whole tokens available
+     */
+    public int available(AtomicLong bucket) {
+        long debt = bucket.get() - System.nanoTime(); // How far the bucket is from being full, as time
+        if (debt <= 0) {
+            return capacity;
+        }
+        return (int) Math.max(0, (burstToleranceNanos - debt) / emissionIntervalNanos);
+    }
+
+
+    /**
+     * Check whether a bucket has refilled completely, i.e. its state is equivalent to a new bucket.
+     *
+     * @param bucket The bucket state
+     * @return true if the bucket is full
+     */
+    public boolean isFull(AtomicLong bucket) {
+        return bucket.get() - System.nanoTime() <= 0;
+    }
+
+
+    /**
+     * Return the long-run refill rate of the bucket.
+     *
+     * @return Tokens added per second
+     */
+    public double getTokensPerSecond() {
+        return 1_000_000_000.0 / emissionIntervalNanos;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+}
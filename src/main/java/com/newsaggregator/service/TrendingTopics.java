@@ -0,0 +1,263 @@
+package com.newsaggregator.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.newsaggregator.dto.TrendingTopic;
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * TrendingTopics.java
+ *
+ * This component tracks the most frequent terms of recently ingested articles, per headline country,
+ * without querying the database.
+    - Terms are the words and two-word phrases of titles and descriptions (see ArticleTokens); words
+      without letters are skipped.
+    - Counts are kept in a Count-Min sketch (conservative update), and the candidates for the top terms
+      in a Space-Saving summary of news.topics.candidates terms: a new term replaces the least frequent
+      candidate once its estimated count is higher.
+    - The window slides in buckets: a sketch and summary per bucket, news.topics.buckets buckets of
+      news.topics.bucket-minutes. The oldest bucket is cleared and reused as time moves on; a query sums
+      the buckets. Memory is constant per country, and the number of countries is bounded.
+    - Search results (no country) and all headlines are also counted under "all".
+ */
+@Component
+public class TrendingTopics {
+
+    public static final String ALL = "all";
+
+    private static final int DEPTH = 4; // Hash rows of the sketch
+    private static final int WIDTH = 2048; // Counters per row, a power of two
+
+    @Value("${news.topics.bucket-minutes:60}")
+    private long bucketMinutes;
+
+    @Value("${news.topics.buckets:6}")
+    private int bucketCount; // The window is bucketCount * bucketMinutes long
+
+    @Value("${news.topics.candidates:200}")
+    private int candidates; // Space-Saving capacity per bucket
+
+    @Value("${news.topics.max-countries:30}")
+    private int maxCountries; // Countries beyond this are only counted under "all"
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+
+    /**
+     * Get the most frequent terms of the window.
+     *
+     * @param country The country code, or "all"
+     * @param limit The maximum number of terms
+     * @return The top terms, most frequent first; empty for a country without ingested headlines
+     */
+    public List<TrendingTopic> top(String country, int limit) {
+        return top(country, limit, currentBucket());
+    }
+
+    // The top terms of the window ending with a given period
+    List<TrendingTopic> top(String country, int limit, long bucket) {
+        Window window = windows.get(country);
+        return window != null ? window.top(limit, bucket) : List.of();
+    }
+
+
+    // Count the terms of new and changed articles
+    @EventListener
+    public void onNewsIngested(NewsIngestedEvent event) {
+        add(event, currentBucket());
+    }
+
+    // Count the terms of an ingestion in a given period
+    void add(NewsIngestedEvent event, long bucket) {
+        if (event.getChangedArticles().isEmpty()) {
+            return;
+        }
+        List<String> terms = new ArrayList<>();
+        for (NewsArticle article : event.getChangedArticles()) {
+            addTerms(terms, article);
+        }
+
+        window(ALL).add(terms, bucket);
+        if (event.isHeadline() && event.getCountry() != null) {
+            Window countryWindow = windows.size() < maxCountries || windows.containsKey(event.getCountry())
+                ? window(event.getCountry()) : null;
+            if (countryWindow != null) {
+                countryWindow.add(terms, bucket);
+            }
+        }
+    }
+
+    private Window window(String country) {
+        return windows.computeIfAbsent(country, key -> new Window(bucketCount, candidates));
+    }
+
+    private long currentBucket() {
+        return System.currentTimeMillis() / (bucketMinutes * 60000);
+    }
+
+    // Words and pairs of adjacent words; each term counts once per article
+    private static void addTerms(List<String> terms, NewsArticle article) {
+        Set<String> articleTerms = new HashSet<>();
+        String previous = null;
+        for (String word : ArticleTokens.words(article.getTitle(), article.getDescription())) {
+            if (!word.chars().anyMatch(Character::isLetter)) {
+                previous = null;
+                continue;
+            }
+            articleTerms.add(word);
+            if (previous != null) {
+                articleTerms.add(previous + ' ' + word);
+            }
+            previous = word;
+        }
+        terms.addAll(articleTerms);
+    }
+
+
+    /*
+     * The sliding window of one country: a ring of buckets.
+     */
+    private static class Window {
+
+        private final Bucket[] buckets;
+
+        // Constructor
+        Window(int bucketCount, int candidates) {
+            buckets = new Bucket[bucketCount];
+            for (int i = 0; i < bucketCount; i++) {
+                buckets[i] = new Bucket(candidates);
+            }
+        }
+
+        synchronized void add(List<String> terms, long bucketNumber) {
+            Bucket bucket = bucket(bucketNumber);
+            for (String term : terms) {
+                bucket.add(term);
+            }
+        }
+
+        // Sum the estimates of every bucket's candidates over the buckets of the window
+        synchronized List<TrendingTopic> top(int limit, long bucketNumber) {
+            Set<String> terms = new HashSet<>();
+            for (Bucket bucket : buckets) {
+                if (bucket.number > bucketNumber - buckets.length) {
+                    terms.addAll(bucket.candidates.keySet());
+                }
+            }
+
+            List<TrendingTopic> topics = new ArrayList<>(terms.size());
+            for (String term : terms) {
+                long count = 0;
+                for (Bucket bucket : buckets) {
+                    if (bucket.number > bucketNumber - buckets.length) {
+                        count += bucket.estimate(term);
+                    }
+                }
+                topics.add(new TrendingTopic(term, count));
+            }
+            topics.sort((a, b) -> Long.compare(b.getCount(), a.getCount()));
+            return topics.subList(0, Math.min(limit, topics.size()));
+        }
+
+        // The bucket of a period, cleared first if it still holds an older period
+        private Bucket bucket(long bucketNumber) {
+            Bucket bucket = buckets[(int) (bucketNumber % buckets.length)];
+            if (bucket.number != bucketNumber) {
+                bucket.reset(bucketNumber);
+            }
+            return bucket;
+        }
+    }
+
+
+    /*
+     * The counts of one period: a Count-Min sketch and a Space-Saving summary of the top candidates.
+     */
+    private static class Bucket {
+
+        private final int[] counters = new int[DEPTH * WIDTH];
+        private final Map<String, Integer> candidates = new HashMap<>(); // Term -> estimated count
+        private final int capacity;
+        private long number = Long.MIN_VALUE; // The period this bucket counts
+        private int minCandidate; // Lowest count in candidates once full
+
+        // Constructor
+        Bucket(int capacity) {
+            this.capacity = capacity;
+        }
+
+        void reset(long bucketNumber) {
+            Arrays.fill(counters, 0);
+            candidates.clear();
+            number = bucketNumber;
+            minCandidate = 0;
+        }
+
+        void add(String term) {
+            long hash = ArticleTokens.hash(term);
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                estimate = Math.min(estimate, counters[index(hash, row)]);
+            }
+            estimate++;
+            for (int row = 0; row < DEPTH; row++) { // Conservative update: only raise counters below the new estimate
+                int index = index(hash, row);
+                if (counters[index] < estimate) {
+                    counters[index] = estimate;
+                }
+            }
+
+            if (candidates.containsKey(term) || candidates.size() < capacity) {
+                candidates.put(term, estimate);
+                if (candidates.size() == capacity) {
+                    minCandidate = minCount();
+                }
+            } else if (estimate > minCandidate) {
+                String least = null;
+                for (Map.Entry<String, Integer> candidate : candidates.entrySet()) {
+                    if (candidate.getValue() == minCandidate) {
+                        least = candidate.getKey();
+                        break;
+                    }
+                }
+                candidates.remove(least);
+                candidates.put(term, estimate);
+                minCandidate = minCount();
+            }
+        }
+
+        int estimate(String term) {
+            long hash = ArticleTokens.hash(term);
+            int estimate = Integer.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                estimate = Math.min(estimate, counters[index(hash, row)]);
+            }
+            return estimate;
+        }
+
+        private int minCount() {
+            int min = Integer.MAX_VALUE;
+            for (int count : candidates.values()) {
+                min = Math.min(min, count);
+            }
+            return min;
+        }
+
+        // Row r uses bits of the hash rotated by a different amount
+        private static int index(long hash, int row) {
+            return row * WIDTH + (int) (Long.rotateRight(hash, row * 16) & (WIDTH - 1));
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package com.newsaggregator.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UriComponentsBuilder;
+
+
+/*
+ * UpstreamJournal.java
+ *
+ * This component keeps every raw News API response in an append-only journal on disk, so that a payload
+ * is never lost when ingestion fails and a past day of ingestion can be replayed (see UpstreamJournalReplayer).
+    - The journal is a directory of fixed-size, memory-mapped segment files; appending is a memory copy.
+      A full segment is flushed and a new one is started.
+    - Each record holds the fetch time, the kind of call, the country, the request URI (without the API key)
+      and the deflate-compressed response body, protected by a CRC32. Readers stop at the first zero or
+      corrupt record, so a torn write at the end of a segment only loses that record.
+    - Segments older than the retention period are deleted.
+ * Record layout: int length (of the rest), int crc32 (of the rest), long fetchedAt, byte isHeadline,
+ * short + UTF-8 country, short + UTF-8 request URI, int body length, compressed body.
+ */
+@Component
+public class UpstreamJournal {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamJournal.class);
+
+    private static final String SEGMENT_PREFIX = "upstream-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int RECORD_HEADER_BYTES = 8; // Length and CRC
+
+    @Autowired
+    private MeterRegistry meterRegistry; // To publish journal metrics
+
+    @Value("${news.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${news.journal.directory:journal}")
+    private Path directory; // Where segment files are kept
+
+    @Value("${news.journal.segment-size-mb:64}")
+    private int segmentSizeMb; // Size of each memory-mapped segment
+
+    @Value("${news.journal.retention-hours:72}")
+    private long retentionHours; // Segments older than this are deleted
+
+    private FileChannel channel; // Current segment, opened on the first append
+    private MappedByteBuffer segment;
+    private long lastSegmentStart; // Segment names must be unique and increasing
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED); // Guarded by this
+    private final CRC32 crc = new CRC32(); // Guarded by this
+
+    private Counter appended;
+    private Counter appendedBytes;
+    private Counter failures;
+
+
+    // This method will be called after the bean is initialized and dependencies are injected
+    @PostConstruct
+    private void init() {
+        appended = Counter.builder("news.journal.records").description("Upstream responses appended to the journal").register(meterRegistry);
+        appendedBytes = Counter.builder("news.journal.bytes").description("Compressed bytes appended to the journal").register(meterRegistry);
+        failures = Counter.builder("news.journal.failures").description("Upstream responses that could not be journaled").register(meterRegistry);
+    }
+
+
+    /**
+     * Append an upstream response. Never throws: a journal problem must not break ingestion.
+     *
+     * @param uri The request URI (the API key is removed before it is stored)
+     * @param isHeadline Whether the call fetched top headlines (true) or search results (false)
+     * @param country The country of a headline fetch, or null
+     * @param body The raw response body
+     */
+    public void append(URI uri, boolean isHeadline, String country, String body) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            String path = UriComponentsBuilder.fromUri(uri).replaceQueryParam("apiKey").build().toUriString();
+            write(System.currentTimeMillis(), isHeadline, country, path, body.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            logger.warn("Failed to journal upstream response for {}", country, e);
+        }
+    }
+
+
+    // Encode and append one record, starting a new segment if it does not fit
+    private synchronized void write(long fetchedAt, boolean isHeadline, String country, String path, byte[] body) throws IOException {
+        byte[] compressed = compress(body);
+        byte[] countryBytes = (country != null ? country : "").getBytes(StandardCharsets.UTF_8);
+        byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+        int length = 8 + 1 + 2 + countryBytes.length + 2 + pathBytes.length + 4 + compressed.length;
+
+        long segmentBytes = segmentSizeMb * 1024L * 1024L;
+        if (RECORD_HEADER_BYTES + length + RECORD_HEADER_BYTES > segmentBytes) {
+            throw new IOException("Response of " + body.length + " bytes does not fit in a journal segment");
+        }
+        if (segment == null || segment.remaining() < RECORD_HEADER_BYTES + length + RECORD_HEADER_BYTES) { // Keep room for the zero end marker
+            rotate(segmentBytes);
+        }
+
+        int start = segment.position();
+        segment.position(start + RECORD_HEADER_BYTES);
+        segment.putLong(fetchedAt);
+        segment.put((byte) (isHeadline ? 1 : 0));
+        segment.putShort((short) countryBytes.length).put(countryBytes);
+        segment.putShort((short) pathBytes.length).put(pathBytes);
+        segment.putInt(body.length);
+        segment.put(compressed);
+
+        crc.reset();
+        crc.update(segment.slice(start + RECORD_HEADER_BYTES, length));
+        segment.putInt(start + 4, (int) crc.getValue());
+        segment.putInt(start, length); // Written last: a reader never sees a length without its record
+
+        appended.increment();
+        appendedBytes.increment(RECORD_HEADER_BYTES + length);
+    }
+
+    private byte[] compress(byte[] body) {
+        deflater.reset();
+        deflater.setInput(body);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        byte[] buffer = new byte[16384];
+        while (!deflater.finished()) {
+            out.write(buffer, 0, deflater.deflate(buffer));
+        }
+        return out.toByteArray();
+    }
+
+
+    // Flush and close the current segment and map a new one
+    private void rotate(long segmentBytes) throws IOException {
+        closeSegment();
+        Files.createDirectories(directory);
+        lastSegmentStart = Math.max(System.currentTimeMillis(), lastSegmentStart + 1);
+        Path file = directory.resolve(SEGMENT_PREFIX + String.format("%015d", lastSegmentStart) + SEGMENT_SUFFIX);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes); // Sparse until written
+        logger.info("Started journal segment {}", file);
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.force();
+            channel.close(); // The mapping stays valid until it is garbage collected
+            segment = null;
+            channel = null;
+        }
+    }
+
+
+    /**
+     * Delete segments older than the retention period. The segment being written is never deleted.
+     */
+    @Scheduled(fixedRate = 3600000, initialDelay = 60000) // Hourly, not during startup
+    public void deleteExpiredSegments() {
+        if (!enabled || !Files.isDirectory(directory)) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - retentionHours * 3600000L;
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size() - 1; i++) { // The newest may be in use
+            Path next = segments.get(i + 1);
+            if (segmentStart(next) < cutoff) { // Every record of this segment is older than the next segment's start
+                try {
+                    Files.deleteIfExists(segments.get(i));
+                    logger.info("Deleted expired journal segment {}", segments.get(i));
+                } catch (IOException e) {
+                    logger.warn("Failed to delete journal segment {}", segments.get(i), e);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Read every intact record fetched within a time range, oldest first.
+     *
+     * @param fromMillis Inclusive lower bound on the fetch time (epoch millis)
+     * @param toMillis Exclusive upper bound on the fetch time (epoch millis)
+     * @param consumer Receives each record
+     * @return The number of records read
+     */
+    public long read(long fromMillis, long toMillis, Consumer<JournalRecord> consumer) {
+        long count = 0;
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size(); i++) {
+            if (i + 1 < segments.size() && segmentStart(segments.get(i + 1)) <= fromMillis) {
+                continue; // Ends before the range starts
+            }
+            if (segmentStart(segments.get(i)) >= toMillis) {
+                break;
+            }
+            count += readSegment(segments.get(i), fromMillis, toMillis, consumer);
+        }
+        return count;
+    }
+
+    private long readSegment(Path file, long fromMillis, long toMillis, Consumer<JournalRecord> consumer) {
+        long count = 0;
+        try (FileChannel readChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = readChannel.map(FileChannel.MapMode.READ_ONLY, 0, readChannel.size());
+            Inflater inflater = new Inflater();
+            CRC32 checksum = new CRC32();
+
+            while (buffer.remaining() >= RECORD_HEADER_BYTES) {
+                int start = buffer.position();
+                int length = buffer.getInt();
+                int expectedCrc = buffer.getInt();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break; // End of the written part, or a torn write
+                }
+                checksum.reset();
+                checksum.update(buffer.slice(start + RECORD_HEADER_BYTES, length));
+                if ((int) checksum.getValue() != expectedCrc) {
+                    logger.warn("Corrupt journal record at {}:{}, skipping the rest of the segment", file, start);
+                    break;
+                }
+
+                long fetchedAt = buffer.getLong();
+                boolean isHeadline = buffer.get() == 1;
+                String country = readString(buffer);
+                String path = readString(buffer);
+                int bodyLength = buffer.getInt();
+                byte[] compressed = new byte[length - (buffer.position() - start - RECORD_HEADER_BYTES)];
+                buffer.get(compressed);
+
+                if (fetchedAt >= fromMillis && fetchedAt < toMillis) {
+                    inflater.reset();
+                    inflater.setInput(compressed);
+                    byte[] body = new byte[bodyLength];
+                    inflater.inflate(body);
+                    consumer.accept(new JournalRecord(fetchedAt, isHeadline, country.isEmpty() ? null : country, path, new String(body, StandardCharsets.UTF_8)));
+                    count++;
+                }
+            }
+            inflater.end();
+        } catch (IOException | DataFormatException | BufferUnderflowException e) {
+            logger.warn("Failed to read journal segment {}", file, e);
+        }
+        return count;
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+
+    // Segment files, oldest first (names sort by their start time)
+    private List<Path> segments() {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(f -> f.getFileName().toString().startsWith(SEGMENT_PREFIX) && f.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                .sorted()
+                .toList();
+        } catch (IOException e) {
+            logger.warn("Failed to list journal segments in {}", directory, e);
+            return List.of();
+        }
+    }
+
+    private static long segmentStart(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+
+    // Flush the current segment so the page cache reaches the disk before the process exits
+    @PreDestroy
+    private synchronized void shutdown() throws IOException {
+        closeSegment();
+        deflater.end();
+    }
+
+
+    /*
+     * One journaled upstream response.
+     */
+    public static class JournalRecord {
+
+        private final long fetchedAt; // Epoch millis
+        private final boolean isHeadline;
+        private final String country;
+        private final String path; // Request URI, without the API key
+        private final String body;
+
+        // Constructor
+        JournalRecord(long fetchedAt, boolean isHeadline, String country, String path, String body) {
+            this.fetchedAt = fetchedAt;
+            this.isHeadline = isHeadline;
+            this.country = country;
+            this.path = path;
+            this.body = body;
+        }
+
+        // Getters
+        public long getFetchedAt() {
+            return fetchedAt;
+        }
+
+        public boolean isHeadline() {
+            return isHeadline;
+        }
+
+        public String getCountry() {
+            return country;
+        }
+
+        public String getPath() {
+            return path;
+        }
+
+        public String getBody() {
+            return body;
+        }
+    }
+}
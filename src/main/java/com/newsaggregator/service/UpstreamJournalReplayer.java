@@ -0,0 +1,93 @@
+package com.newsaggregator.service;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+
+/*
+ * UpstreamJournalReplayer.java
+ *
+ * This component re-runs ingestion from the UpstreamJournal instead of the News API when replay is enabled:
+    - Every journaled response in the configured time range is passed to NewsService.ingestResponse, oldest first,
+      as fast as the database accepts the writes. No News API calls are made and nothing is journaled again.
+    - Use it to rebuild the articles collection after data loss, to reproduce an ingestion problem from a
+      production journal, or as an offline ingestion benchmark (throughput is logged when the replay ends).
+    - Start the application with --news.journal.replay.enabled=true (optionally with from/to instants) and
+      news.ingestion.countries empty so the background refresh does not call the News API meanwhile.
+ */
+@Component
+public class UpstreamJournalReplayer implements ApplicationRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(UpstreamJournalReplayer.class);
+
+    private static final long DRAIN_POLL_MILLIS = 50; // How often to check whether the write-behind queue is empty
+
+    @Autowired
+    private UpstreamJournal upstreamJournal; // The responses to replay
+
+    @Autowired
+    private NewsService newsService; // Runs the same ingestion pipeline as live fetches
+
+    @Autowired
+    private ArticleWriteBehind articleWriteBehind; // Waited on, so the reported time includes the writes
+
+    @Autowired
+    private ApplicationContext applicationContext; // To shut down after the replay
+
+    @Value("${news.journal.replay.enabled:false}")
+    private boolean enabled;
+
+    @Value("${news.journal.replay.from:1970-01-01T00:00:00Z}")
+    private Instant from; // Inclusive start of the replayed fetch times
+
+    @Value("${news.journal.replay.to:9999-12-31T23:59:59Z}")
+    private Instant to; // Exclusive end of the replayed fetch times
+
+    @Value("${news.journal.replay.exit-when-done:true}")
+    private boolean exitWhenDone; // Stop the application once the replay has been written
+
+
+    /**
+     * Replay the journal if replay is enabled.
+     *
+     * @param args The application arguments (unused; configuration comes from properties)
+     */
+    @Override
+    public void run(ApplicationArguments args) throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+
+        logger.info("Replaying upstream journal from {} to {}", from, to);
+        AtomicLong articles = new AtomicLong();
+        AtomicLong bytes = new AtomicLong();
+        long start = System.nanoTime();
+
+        long records = upstreamJournal.read(from.toEpochMilli(), to.toEpochMilli(), record -> {
+            bytes.addAndGet(record.getBody().length());
+            articles.addAndGet(newsService.ingestResponse(record.getBody(), record.isHeadline(), record.getCountry(), FetchContext.scheduled()).size());
+        });
+
+        while (articleWriteBehind.getQueueDepth() > 0) { // The last batch may still be in flight; it is flushed on shutdown
+            Thread.sleep(DRAIN_POLL_MILLIS);
+        }
+
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        logger.info("Replayed {} responses ({} articles, {} MB) in {} s: {} responses/s, {} articles/s",
+            records, articles.get(), String.format("%.1f", bytes.get() / 1e6), String.format("%.2f", seconds),
+            String.format("%.0f", records / seconds), String.format("%.0f", articles.get() / seconds));
+
+        if (exitWhenDone) {
+            System.exit(SpringApplication.exit(applicationContext, () -> 0));
+        }
+    }
+}
@@ -7,6 +7,7 @@ import jakarta.mail.internet.MimeMessage;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
@@ -33,8 +34,9 @@ public class UserService {
     private UserRepository userRepository; // To interact with the database for user operations
 
 
+    @Lazy
     @Autowired
-    private JavaMailSender mailSender; // To send verification and notification emails
+    private JavaMailSender mailSender; // To send verification and notification emails (created on first use)
 
     @Autowired
     private PasswordEncoder passwordEncoder; // To securely hash user passwords
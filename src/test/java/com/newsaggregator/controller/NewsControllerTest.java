@@ -0,0 +1,321 @@
+package com.newsaggregator.controller;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.OutputStream;
+import java.util.List;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.newsaggregator.config.SecurityConfig;
+import com.newsaggregator.dto.TrendingTopic;
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.repository.NewsArticleRepository;
+import com.newsaggregator.security.ClientKeyResolver;
+import com.newsaggregator.service.FavoriteIdSets;
+import com.newsaggregator.service.FetchContext;
+import com.newsaggregator.service.ForYouFeed;
+import com.newsaggregator.service.HeadlineStreamService;
+import com.newsaggregator.service.ListingPageCache;
+import com.newsaggregator.service.NewsExportService;
+import com.newsaggregator.service.NewsService;
+import com.newsaggregator.service.PagePrefetcher;
+import com.newsaggregator.service.StageMetrics;
+import com.newsaggregator.service.StageTimings;
+import com.newsaggregator.service.SuggestIndex;
+import com.newsaggregator.service.TrendingTopics;
+
+
+/*
+ * NewsControllerTest.java
+ *
+ * MockMvc tests of the news endpoints, with the real security configuration and listing page cache.
+ * Runs without MongoDB, mail or News API settings.
+ */
+@WebMvcTest(controllers = NewsController.class, properties = {"server.port=0", "news.cache.listing-fallback-ttl-ms=0"}) // No environment needed
+@Import({SecurityConfig.class, ListingPageCache.class, NewsControllerTest.Metrics.class})
+class NewsControllerTest {
+
+    @TestConfiguration
+    static class Metrics {
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+    }
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockitoBean
+    private NewsService newsService;
+
+    @MockitoBean
+    private NewsArticleRepository newsArticleRepository;
+
+    @MockitoBean
+    private HeadlineStreamService headlineStreamService;
+
+    @MockitoBean
+    private NewsExportService newsExportService;
+
+    @MockitoBean
+    private ClientKeyResolver clientKeyResolver;
+
+    @MockitoBean
+    private StageMetrics stageMetrics;
+
+    @MockitoBean
+    private TrendingTopics trendingTopics;
+
+    @MockitoBean
+    private ForYouFeed forYouFeed;
+
+    @MockitoBean
+    private SuggestIndex suggestIndex;
+
+    @MockitoBean
+    private FavoriteIdSets favoriteIdSets;
+
+    @MockitoBean
+    private PagePrefetcher pagePrefetcher;
+
+    @BeforeEach
+    void setUp() {
+        when(clientKeyResolver.resolveFetchContext(any())).thenAnswer(invocation -> FetchContext.forClient("127.0.0.1", 5000));
+        when(stageMetrics.publish(anyString(), any())).thenReturn("total;dur=1");
+    }
+
+    private static NewsArticle article(String id) {
+        NewsArticle article = new NewsArticle("Title " + id, "Description", "https://example.com/" + id, "Example", "2024-05-01T10:00:00Z", null, null, true);
+        article.setId(id);
+        return article;
+    }
+
+    @Test
+    void responsesCarryTheServerTimingOfTheirStages() throws Exception {
+        when(newsService.fetchTopHeadlinesPage(eq("us"), anyInt(), anyInt(), any())).thenReturn(ListingPageCache.LoadedPage.upstream(List.of(article("a"))));
+        when(stageMetrics.publish(anyString(), any())).thenAnswer(invocation -> {
+            StageTimings timings = invocation.getArgument(1);
+            return String.join(", ", timings.snapshot().keySet().stream().map(stage -> stage + ";dur=1.0").toList());
+        });
+
+        String eTag = mockMvc.perform(get("/api/news/top-headlines").param("country", "us"))
+            .andExpect(status().isOk())
+            .andExpect(header().string("Server-Timing", matchesPattern("([\\w-]+;dur=1\\.0, )*total;dur=1\\.0")))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string("Server-Timing", endsWith("total;dur=1.0"))); // Also on 304 responses
+        verify(stageMetrics, times(2)).publish(eq("top-headlines"), any(StageTimings.class));
+    }
+
+    @Test
+    void topHeadlinesAnswersNotModifiedForAMatchingETag() throws Exception {
+        when(newsService.fetchTopHeadlinesPage(eq("us"), anyInt(), anyInt(), any())).thenReturn(ListingPageCache.LoadedPage.upstream(List.of(article("a"))));
+
+        String eTag = mockMvc.perform(get("/api/news/top-headlines").param("country", "us"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, eTag));
+    }
+
+    @Test
+    void searchAnswersNotModifiedForAMatchingETag() throws Exception {
+        when(newsService.fetchAndSaveNewsByQuery(eq("mars"), anyString(), anyInt(), anyInt(), any())).thenReturn(List.of(article("a")));
+
+        String eTag = mockMvc.perform(get("/api/news/search").param("query", "mars"))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/news/search").param("query", "mars").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void relatedArticlesAreServedWithoutAuthentication() throws Exception {
+        when(newsService.findRelatedArticles(eq("a"), anyInt(), anyDouble())).thenReturn(List.of(article("b")));
+
+        mockMvc.perform(get("/api/news/articles/a/related"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value("b"));
+    }
+
+    @Test
+    void trendingTopicsAreServedWithoutAuthentication() throws Exception {
+        when(trendingTopics.top(eq(TrendingTopics.ALL), anyInt())).thenReturn(List.of(new TrendingTopic("mars", 3)));
+
+        mockMvc.perform(get("/api/news/topics"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].term").value("mars"));
+    }
+
+    @Test
+    void forYouIsCheckedByTheControllerNotTheFilterChain() throws Exception {
+        mockMvc.perform(get("/api/news/for-you"))
+            .andExpect(status().isUnauthorized()); // No JWT cookie
+
+        when(clientKeyResolver.resolveUserId(any())).thenReturn("u1");
+        when(forYouFeed.recommend(eq("u1"), anyInt())).thenReturn(List.of(article("a")));
+
+        mockMvc.perform(get("/api/news/for-you"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].id").value("a"));
+    }
+
+    @Test
+    void suggestionsAreServedWithoutAuthentication() throws Exception {
+        when(suggestIndex.suggest(eq("ma"), anyInt())).thenReturn(List.of("mars"));
+
+        mockMvc.perform(get("/api/news/suggest").param("prefix", "ma"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0]").value("mars"));
+    }
+
+    @Test
+    void searchesAreRecordedForSuggestionsWithTheClientKey() throws Exception {
+        when(newsService.fetchAndSaveNewsByQuery(eq("mars"), anyString(), anyInt(), anyInt(), any())).thenReturn(List.of(article("a")));
+
+        mockMvc.perform(get("/api/news/search").param("query", "mars"))
+            .andExpect(status().isOk());
+
+        verify(suggestIndex).recordQuery("mars", "127.0.0.1");
+    }
+
+    @Test
+    void annotatedListingsGetANewETagWhenTheFavoritedStateChanges() throws Exception {
+        when(newsService.fetchTopHeadlinesPage(eq("us"), anyInt(), anyInt(), any())).thenReturn(ListingPageCache.LoadedPage.upstream(List.of(article("a"))));
+        when(clientKeyResolver.resolveUserId(any())).thenReturn("u1");
+        FavoriteIdSets.FavoriteIdSet favorites = mock(FavoriteIdSets.FavoriteIdSet.class);
+        when(favoriteIdSets.get("u1")).thenReturn(favorites);
+
+        String eTag = mockMvc.perform(get("/api/news/top-headlines").param("country", "us").param("annotate", "true"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].favorited").value(false))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        when(favorites.test("a")).thenReturn(true);
+
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us").param("annotate", "true").header(HttpHeaders.IF_NONE_MATCH, eTag))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$[0].favorited").value(true));
+    }
+
+    @Test
+    void gzipPagesHaveTheirOwnStrongETag() throws Exception {
+        when(newsService.fetchTopHeadlinesPage(eq("us"), anyInt(), anyInt(), any())).thenReturn(ListingPageCache.LoadedPage.upstream(List.of(article("a"))));
+
+        String identityETag = mockMvc.perform(get("/api/news/top-headlines").param("country", "us"))
+            .andExpect(status().isOk())
+            .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT_ENCODING)))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String gzipETag = mockMvc.perform(get("/api/news/top-headlines").param("country", "us").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        assertThat(gzipETag).isEqualTo(identityETag.substring(0, identityETag.length() - 1) + "-gz\"").doesNotStartWith("W/");
+
+        // The identity tag does not validate the gzip representation, nor the other way round
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us").header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, identityETag))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us").header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+            .andExpect(status().isOk());
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us").header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().stringValues(HttpHeaders.VARY, hasItem(HttpHeaders.ACCEPT_ENCODING)));
+    }
+
+    @Test
+    void headlinePagesAreLoadedOutsideTheClientBudgetAndFallbacksAreNotKept() throws Exception {
+        ArgumentCaptor<FetchContext> fillContext = ArgumentCaptor.forClass(FetchContext.class);
+        when(newsService.fetchTopHeadlinesPage(eq("us"), anyInt(), anyInt(), fillContext.capture()))
+            .thenReturn(ListingPageCache.LoadedPage.fallback(List.of(article("other-country"))))
+            .thenReturn(ListingPageCache.LoadedPage.upstream(List.of(article("a"))));
+
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us"))
+            .andExpect(jsonPath("$[0].id").value("other-country"));
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us"))
+            .andExpect(jsonPath("$[0].id").value("a"));
+        mockMvc.perform(get("/api/news/top-headlines").param("country", "us"))
+            .andExpect(jsonPath("$[0].id").value("a"));
+
+        verify(newsService, times(2)).fetchTopHeadlinesPage(eq("us"), anyInt(), anyInt(), any());
+        assertThat(fillContext.getAllValues()).allSatisfy(context -> assertThat(context.getClientKey()).isNull());
+    }
+
+    @Test
+    void exportRequiresAJwt() throws Exception {
+        mockMvc.perform(get("/api/news/export"))
+            .andExpect(status().isUnauthorized());
+
+        verify(newsExportService, never()).export(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void exportRejectsABadCursor() throws Exception {
+        when(clientKeyResolver.resolveUserId(any())).thenReturn("u1");
+        when(newsExportService.isValidCursor("not-an-id")).thenReturn(false);
+
+        mockMvc.perform(get("/api/news/export").param("cursor", "not-an-id"))
+            .andExpect(status().isBadRequest());
+
+        verify(newsExportService, never()).export(any(), any(), any(), any(), any(), any());
+    }
+
+    @Test
+    void exportStreamsNdjsonWithTheFilters() throws Exception {
+        String cursor = "65f000000000000000000001";
+        when(clientKeyResolver.resolveUserId(any())).thenReturn("u1");
+        when(newsExportService.isValidCursor(cursor)).thenReturn(true);
+        when(newsExportService.export(any(), any(), any(), any(), any(), any())).thenAnswer(invocation -> {
+            invocation.getArgument(5, OutputStream.class).write("{\"id\":\"a\"}\n".getBytes());
+            return 1L;
+        });
+
+        mockMvc.perform(get("/api/news/export")
+                .param("from", "2024-01-01T00:00:00Z").param("to", "2024-02-01T00:00:00Z")
+                .param("source", "Example").param("isHeadline", "true").param("cursor", cursor))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+            .andExpect(content().string("{\"id\":\"a\"}\n"));
+
+        verify(newsExportService).export(eq("2024-01-01T00:00:00Z"), eq("2024-02-01T00:00:00Z"), eq("Example"), eq(true), eq(cursor), any());
+    }
+}
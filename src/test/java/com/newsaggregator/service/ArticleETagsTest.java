@@ -0,0 +1,64 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * ArticleETagsTest.java
+ *
+ * Unit tests for the article fingerprints and page ETags.
+ */
+class ArticleETagsTest {
+
+    static NewsArticle article(String id, String title) {
+        NewsArticle article = new NewsArticle(title, "Description of " + title, "https://example.com/" + id,
+            "Example", "2024-05-01T10:00:00Z", null, null, true);
+        article.setId(id);
+        return article;
+    }
+
+    @Test
+    void pageETagIsStableForTheSameContent() {
+        assertThat(ArticleETags.pageETag(List.of(article("a", "One"), article("b", "Two"))))
+            .isEqualTo(ArticleETags.pageETag(List.of(article("a", "One"), article("b", "Two"))))
+            .startsWith("\"v1-")
+            .endsWith("\"");
+    }
+
+    @Test
+    void pageETagChangesWhenAnArticleIsEditedAddedOrReordered() {
+        String eTag = ArticleETags.pageETag(List.of(article("a", "One"), article("b", "Two")));
+
+        assertThat(ArticleETags.pageETag(List.of(article("a", "One"), article("b", "Two (updated)")))).isNotEqualTo(eTag);
+        assertThat(ArticleETags.pageETag(List.of(article("b", "Two"), article("a", "One")))).isNotEqualTo(eTag);
+        assertThat(ArticleETags.pageETag(List.of(article("a", "One")))).isNotEqualTo(eTag);
+    }
+
+    @Test
+    void fingerprintCoversTheHeadlineFlagAndKeepsNullDistinctFromEmpty() {
+        NewsArticle headline = article("a", "One");
+        NewsArticle searchResult = article("a", "One");
+        searchResult.setIsHeadline(false);
+        assertThat(ArticleETags.fingerprint(headline)).isNotEqualTo(ArticleETags.fingerprint(searchResult));
+
+        NewsArticle emptyContent = article("a", "One");
+        emptyContent.setContent("");
+        assertThat(ArticleETags.fingerprint(headline)).isNotEqualTo(ArticleETags.fingerprint(emptyContent));
+    }
+
+    @Test
+    void annotatedETagDependsOnTheFavoritedState() {
+        List<NewsArticle> page = List.of(article("a", "One"), article("b", "Two"));
+
+        String none = ArticleETags.pageETag(page, id -> false);
+        String first = ArticleETags.pageETag(page, "a"::equals);
+        assertThat(first).isNotEqualTo(none);
+        assertThat(ArticleETags.pageETag(page, "b"::equals)).isNotEqualTo(first);
+        assertThat(none).isNotEqualTo(ArticleETags.pageETag(page)); // Annotated and plain pages never share a tag
+    }
+}
@@ -0,0 +1,48 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+
+/*
+ * ArticleSimHashTest.java
+ *
+ * Unit tests for the SimHash fingerprints of articles.
+ */
+class ArticleSimHashTest {
+
+    private static final String DESCRIPTION = "The central bank raised its benchmark interest rate by a quarter point on Wednesday";
+
+    @Test
+    void sameStoryFromOtherOutletsGetsCloseFingerprints() {
+        Long reuters = ArticleSimHash.of("Central bank raises interest rates again - Reuters", DESCRIPTION);
+        Long bbc = ArticleSimHash.of("Central bank raises interest rates again - BBC News", DESCRIPTION + ".");
+        Long edited = ArticleSimHash.of("Central bank raises interest rates again", DESCRIPTION + " afternoon");
+
+        assertThat(ArticleSimHash.distance(reuters, bbc)).isZero();
+        assertThat(ArticleSimHash.distance(reuters, edited)).isLessThanOrEqualTo(12);
+    }
+
+    @Test
+    void differentStoriesGetDistantFingerprints() {
+        Long rates = ArticleSimHash.of("Central bank raises interest rates again", DESCRIPTION);
+        Long football = ArticleSimHash.of("Local team wins championship final after penalty shootout",
+            "Fans celebrated through the night after the dramatic match in the capital");
+
+        assertThat(ArticleSimHash.distance(rates, football)).isGreaterThan(3);
+    }
+
+    @Test
+    void shortTextsGetNoFingerprint() {
+        assertThat(ArticleSimHash.of("[Removed]", "[Removed]")).isNull();
+        assertThat(ArticleSimHash.of(null, null)).isNull();
+    }
+
+    @Test
+    void distanceCountsDifferingBits() {
+        assertThat(ArticleSimHash.distance(0L, 0L)).isZero();
+        assertThat(ArticleSimHash.distance(0b1011L, 0b0001L)).isEqualTo(2);
+        assertThat(ArticleSimHash.distance(0L, -1L)).isEqualTo(64);
+    }
+}
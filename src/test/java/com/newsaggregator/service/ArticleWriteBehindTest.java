@@ -0,0 +1,250 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * ArticleWriteBehindTest.java
+ *
+ * Unit tests for the write-behind queue: batching, coalescing, overflow, retries and the drain on shutdown.
+ * Bulk writes go to a mocked MongoTemplate that records every executed batch; writes can be made to block or fail.
+ */
+class ArticleWriteBehindTest {
+
+    private final MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<List<NewsArticle>> batches = new CopyOnWriteArrayList<>(); // Successfully executed bulk writes
+    private final AtomicInteger executions = new AtomicInteger(); // Bulk writes attempted
+    private final AtomicInteger failuresLeft = new AtomicInteger(); // The next executions that fail
+    private final CountDownLatch firstWriteMayFinish = new CountDownLatch(1);
+    private volatile boolean blockFirstWrite;
+    private ArticleWriteBehind writeBehind;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(NewsArticle.class))).thenAnswer(invocation -> bulk());
+    }
+
+    @AfterEach
+    void tearDown() {
+        firstWriteMayFinish.countDown();
+        if (writeBehind != null) {
+            ReflectionTestUtils.invokeMethod(writeBehind, "shutdown");
+        }
+    }
+
+    private BulkOperations bulk() {
+        List<NewsArticle> articles = new ArrayList<>();
+        BulkOperations bulk = mock(BulkOperations.class);
+        when(bulk.replaceOne(any(Query.class), any(), any(FindAndReplaceOptions.class))).thenAnswer(invocation -> {
+            articles.add(invocation.getArgument(1));
+            return bulk;
+        });
+        when(bulk.execute()).thenAnswer(invocation -> {
+            if (executions.incrementAndGet() == 1 && blockFirstWrite) {
+                firstWriteMayFinish.await(10, TimeUnit.SECONDS);
+            }
+            if (failuresLeft.getAndDecrement() > 0) {
+                throw new IllegalStateException("MongoDB is unavailable");
+            }
+            batches.add(List.copyOf(articles));
+            return null;
+        });
+        return bulk;
+    }
+
+    private void start(int queueCapacity, int batchSize, long flushIntervalMillis) {
+        writeBehind = new ArticleWriteBehind();
+        ReflectionTestUtils.setField(writeBehind, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(writeBehind, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(writeBehind, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", batchSize);
+        ReflectionTestUtils.setField(writeBehind, "flushIntervalMillis", flushIntervalMillis);
+        ReflectionTestUtils.setField(writeBehind, "offerTimeoutMillis", 10L);
+        ReflectionTestUtils.setField(writeBehind, "retryBackoffMillis", 10L);
+        ReflectionTestUtils.invokeMethod(writeBehind, "init");
+    }
+
+    private static NewsArticle article(String id, String title) {
+        return ArticleETagsTest.article(id, title);
+    }
+
+    private List<String> writtenIds() {
+        return batches.stream().flatMap(List::stream).map(NewsArticle::getId).toList();
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    @Test
+    void articlesOfSeveralCallsAreWrittenInBatchesOfBoundedSize() throws Exception {
+        start(100, 2, 200);
+
+        writeBehind.enqueue(List.of(article("a", "A")));
+        writeBehind.enqueue(List.of(article("b", "B"), article("c", "C")));
+        writeBehind.enqueue(List.of(article("d", "D"), article("e", "E")));
+
+        await(() -> writtenIds().size() == 5);
+        assertThat(writtenIds()).containsExactly("a", "b", "c", "d", "e");
+        assertThat(batches).hasSize(3).allSatisfy(batch -> assertThat(batch).hasSizeLessThanOrEqualTo(2));
+    }
+
+    @Test
+    void onlyTheLatestQueuedVersionIsWrittenAndCanBeLookedUpUntilThen() throws Exception {
+        start(100, 100, 200);
+        NewsArticle headline = article("a", "Headline version");
+        NewsArticle search = article("a", "Search version");
+
+        writeBehind.enqueue(List.of(headline));
+        writeBehind.enqueue(List.of(search));
+        assertThat(writeBehind.findPending("a")).isSameAs(search);
+
+        await(() -> writeBehind.findPending("a") == null);
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).containsExactly(search);
+    }
+
+    @Test
+    void aVersionQueuedDuringTheWriteOfAnOlderOneStaysPending() throws Exception {
+        blockFirstWrite = true;
+        start(100, 100, 10);
+        NewsArticle older = article("a", "Older");
+        NewsArticle newer = article("a", "Newer");
+
+        writeBehind.enqueue(List.of(older));
+        await(() -> executions.get() == 1); // The older version is being written
+        writeBehind.enqueue(List.of(newer));
+        firstWriteMayFinish.countDown();
+
+        await(() -> batches.size() == 1);
+        assertThat(writeBehind.findPending("a")).isSameAs(newer);
+        await(() -> batches.size() == 2);
+        assertThat(batches.get(1)).containsExactly(newer);
+        await(() -> writeBehind.findPending("a") == null);
+    }
+
+    @Test
+    void callersWriteThemselvesWhenTheQueueIsFull() throws Exception {
+        blockFirstWrite = true;
+        start(1, 100, 10);
+
+        writeBehind.enqueue(List.of(article("a", "A")));
+        await(() -> executions.get() == 1); // The writer is stuck writing "a"
+        writeBehind.enqueue(List.of(article("b", "B"))); // Fills the queue
+        writeBehind.enqueue(List.of(article("c", "C"), article("d", "D"))); // Written by the caller
+
+        assertThat(batches).hasSize(1);
+        assertThat(batches.get(0)).extracting(NewsArticle::getId).containsExactly("c", "d");
+        assertThat(count("news.persistence.overflow")).isEqualTo(2);
+        assertThat(writeBehind.findPending("c")).isNull();
+
+        firstWriteMayFinish.countDown();
+        await(() -> writtenIds().size() == 4);
+        assertThat(writtenIds()).containsExactlyInAnyOrder("a", "b", "c", "d");
+    }
+
+    @Test
+    void aFailingWriteByTheCallerIsThrownToTheCaller() throws Exception {
+        blockFirstWrite = true;
+        start(1, 100, 10);
+
+        writeBehind.enqueue(List.of(article("a", "A")));
+        await(() -> executions.get() == 1);
+        writeBehind.enqueue(List.of(article("b", "B")));
+        failuresLeft.set(3); // Every attempt of the caller's write
+
+        assertThatThrownBy(() -> writeBehind.enqueue(List.of(article("c", "C"))))
+            .isInstanceOf(IllegalStateException.class);
+        assertThat(count("news.persistence.failed")).isEqualTo(1);
+    }
+
+    @Test
+    void transientFailuresAreRetried() throws Exception {
+        start(100, 100, 10);
+        failuresLeft.set(2);
+
+        writeBehind.enqueue(List.of(article("a", "A")));
+
+        await(() -> writtenIds().contains("a"));
+        assertThat(executions.get()).isEqualTo(3);
+        assertThat(count("news.persistence.retried")).isZero();
+    }
+
+    @Test
+    void aBatchThatKeepsFailingIsKeptUntilItIsWritten() throws Exception {
+        start(100, 100, 10);
+        failuresLeft.set(7); // More than one round of attempts
+
+        writeBehind.enqueue(List.of(article("a", "A"), article("b", "B")));
+
+        await(() -> writtenIds().size() == 2);
+        assertThat(writtenIds()).containsExactly("a", "b");
+        assertThat(count("news.persistence.retried")).isEqualTo(2);
+        assertThat(count("news.persistence.failed")).isZero();
+        assertThat(writeBehind.findPending("a")).isNull();
+    }
+
+    @Test
+    void shutdownWritesEverythingStillQueued() {
+        start(1000, 100, 500);
+        List<NewsArticle> articles = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            articles.add(article("id-" + i, "Title " + i));
+        }
+
+        writeBehind.enqueue(articles);
+        ReflectionTestUtils.invokeMethod(writeBehind, "shutdown");
+
+        assertThat(writtenIds()).hasSize(250);
+        assertThat(writeBehind.getQueueDepth()).isZero();
+        writeBehind = null;
+    }
+
+    @Test
+    void shutdownGivesUpABatchThatKeepsFailing() {
+        start(100, 100, 200);
+        failuresLeft.set(Integer.MAX_VALUE);
+
+        writeBehind.enqueue(List.of(article("a", "A")));
+        ReflectionTestUtils.invokeMethod(writeBehind, "shutdown");
+
+        assertThat(batches).isEmpty();
+        assertThat(count("news.persistence.failed")).isEqualTo(1);
+        assertThat(writeBehind.findPending("a")).isNull();
+        writeBehind = null;
+    }
+}
@@ -0,0 +1,81 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.event.FavoritesChangedEvent;
+
+
+/*
+ * ChangeStreamInvalidationBusTest.java
+ *
+ * Unit tests for turning favorites change stream events into FavoritesChangedEvents.
+ */
+class ChangeStreamInvalidationBusTest {
+
+    private final List<Object> published = new ArrayList<>();
+    private ChangeStreamInvalidationBus bus;
+    private String nodeId;
+
+    @BeforeEach
+    void setUp() {
+        JobLeaseService jobLeaseService = new JobLeaseService();
+        nodeId = jobLeaseService.getNodeId();
+        bus = new ChangeStreamInvalidationBus();
+        ReflectionTestUtils.setField(bus, "jobLeaseService", jobLeaseService);
+        ReflectionTestUtils.setField(bus, "eventPublisher", (ApplicationEventPublisher) published::add);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ChangeStreamDocument<Document> change(String documentId, Document fullDocument) {
+        ChangeStreamDocument<Document> change = mock(ChangeStreamDocument.class);
+        when(change.getDocumentKey()).thenReturn(new BsonDocument("_id", new BsonString(documentId)));
+        when(change.getFullDocument()).thenReturn(fullDocument);
+        return change;
+    }
+
+    private FavoritesChangedEvent publishedEvent() {
+        bus.publishPending();
+        assertThat(published).hasSize(1);
+        return (FavoritesChangedEvent) published.get(0);
+    }
+
+    @Test
+    void writesOfOtherNodesAreReportedByUser() {
+        bus.onFavoriteChange(change("d1", new Document("userId", "u1").append("writtenBy", "other-node")));
+
+        FavoritesChangedEvent event = publishedEvent();
+        assertThat(event.getUserIds()).containsExactly("u1");
+        assertThat(event.isAllUsers()).isFalse();
+    }
+
+    @Test
+    void writesOfThisNodeAreSkipped() {
+        bus.onFavoriteChange(change("d1", new Document("userId", "u1").append("writtenBy", nodeId)));
+
+        bus.publishPending();
+        assertThat(published).isEmpty();
+    }
+
+    @Test
+    void deletesAreReportedByDocumentIdInsteadOfEvictingEveryone() {
+        bus.onFavoriteChange(change("d1", null));
+
+        FavoritesChangedEvent event = publishedEvent();
+        assertThat(event.getDocumentIds()).containsExactly("d1");
+        assertThat(event.getUserIds()).isEmpty();
+        assertThat(event.isAllUsers()).isFalse();
+    }
+}
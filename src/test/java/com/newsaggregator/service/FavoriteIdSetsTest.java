@@ -0,0 +1,135 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.event.FavoritesChangedEvent;
+import com.newsaggregator.model.FavoriteArticle;
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.repository.FavoriteArticleRepository;
+
+
+/*
+ * FavoriteIdSetsTest.java
+ *
+ * Unit tests for the favorite id sets, their cache, and the page ETags of annotated listings.
+ */
+class FavoriteIdSetsTest {
+
+    private final FavoriteArticleRepository favoriteArticleRepository = mock(FavoriteArticleRepository.class);
+    private FavoriteIdSets favoriteIdSets;
+
+    @BeforeEach
+    void setUp() {
+        favoriteIdSets = new FavoriteIdSets();
+        ReflectionTestUtils.setField(favoriteIdSets, "favoriteArticleRepository", favoriteArticleRepository);
+        ReflectionTestUtils.setField(favoriteIdSets, "maxUsers", 2);
+    }
+
+    private void stored(String userId, String documentId, String... articleIds) {
+        FavoriteArticle favorites = new FavoriteArticle(userId, List.of(articleIds));
+        favorites.setId(documentId);
+        when(favoriteArticleRepository.findByUserId(userId)).thenReturn(Optional.of(favorites));
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(String.format("%024x", 0x65f0_0000_0000L + i)); // ObjectId-like ids sharing their leading digits
+        }
+        return ids;
+    }
+
+    @Test
+    void setsOfEverySizeHoldExactlyTheirIds() {
+        for (int count : new int[] {0, 1, 2, 3, 4, 5, 17, 100, 1000}) {
+            List<String> ids = ids(count + 50);
+            FavoriteIdSets.FavoriteIdSet set = new FavoriteIdSets.FavoriteIdSet(ids.subList(0, count));
+
+            assertThat(set.size()).isEqualTo(count);
+            ids.subList(0, count).forEach(id -> assertThat(set.test(id)).as("%s of %d", id, count).isTrue());
+            ids.subList(count, count + 50).forEach(id -> assertThat(set.test(id)).as("%s of %d", id, count).isFalse());
+            assertThat(set.test(null)).isFalse();
+        }
+    }
+
+    @Test
+    void duplicateIdsAreCountedOnce() {
+        assertThat(new FavoriteIdSets.FavoriteIdSet(List.of("a", "b", "a")).size()).isEqualTo(2);
+    }
+
+    @Test
+    void removedFavoritesLeaveTheRebuiltSet() {
+        stored("u1", "doc-u1", "a", "b", "c");
+        assertThat(favoriteIdSets.get("u1").test("b")).isTrue();
+
+        favoriteIdSets.update("u1", "doc-u1", List.of("a", "c")); // Sets are rebuilt, there are no tombstones
+        FavoriteIdSets.FavoriteIdSet set = favoriteIdSets.get("u1");
+
+        assertThat(set.test("b")).isFalse();
+        assertThat(set.test("a")).isTrue();
+        assertThat(set.test("c")).isTrue();
+        assertThat(set.size()).isEqualTo(2);
+        verify(favoriteArticleRepository, times(1)).findByUserId("u1");
+    }
+
+    @Test
+    void pageETagChangesWithTheFavoritedState() {
+        List<NewsArticle> page = List.of(ArticleETagsTest.article("a", "One"), ArticleETagsTest.article("b", "Two"));
+        stored("u1", "doc-u1", "a");
+        String favoritedA = ArticleETags.pageETag(page, favoriteIdSets.get("u1"));
+
+        favoriteIdSets.update("u1", "doc-u1", List.of("a", "b"));
+        String favoritedBoth = ArticleETags.pageETag(page, favoriteIdSets.get("u1"));
+
+        favoriteIdSets.update("u1", "doc-u1", List.of("a", "x")); // An article not on the page
+        String favoritedAAgain = ArticleETags.pageETag(page, favoriteIdSets.get("u1"));
+
+        assertThat(favoritedBoth).isNotEqualTo(favoritedA);
+        assertThat(favoritedAAgain).isEqualTo(favoritedA);
+        assertThat(ArticleETags.pageETag(page, null)).isNotEqualTo(favoritedA);
+    }
+
+    @Test
+    void deletedDocumentsEvictOnlyTheirUser() {
+        stored("u1", "doc-u1", "a");
+        stored("u2", "doc-u2", "b");
+        favoriteIdSets.get("u1");
+        favoriteIdSets.get("u2");
+
+        favoriteIdSets.onFavoritesChanged(new FavoritesChangedEvent(Set.of(), Set.of("doc-u1"), false));
+        favoriteIdSets.get("u1");
+        favoriteIdSets.get("u2");
+
+        verify(favoriteArticleRepository, times(2)).findByUserId("u1");
+        verify(favoriteArticleRepository, times(1)).findByUserId("u2");
+    }
+
+    @Test
+    void leastRecentlyUsedSetsAreEvictedOverTheBound() {
+        stored("u1", "doc-u1", "a");
+        stored("u2", "doc-u2", "b");
+        stored("u3", "doc-u3", "c");
+        favoriteIdSets.get("u1");
+        favoriteIdSets.get("u2");
+        favoriteIdSets.get("u1"); // u2 is now the least recently used
+        favoriteIdSets.get("u3");
+
+        favoriteIdSets.get("u1");
+        favoriteIdSets.get("u2");
+
+        verify(favoriteArticleRepository, times(1)).findByUserId("u1");
+        verify(favoriteArticleRepository, times(2)).findByUserId("u2");
+    }
+}
@@ -0,0 +1,137 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.repository.NewsArticleRepository;
+
+
+/*
+ * ForYouFeedTest.java
+ *
+ * Unit tests for ranking the for-you candidates against an interest vector.
+ */
+class ForYouFeedTest {
+
+    private final InterestProfiles interestProfiles = mock(InterestProfiles.class);
+    private final NewsArticleRepository newsArticleRepository = mock(NewsArticleRepository.class);
+    private final Map<String, NewsArticle> articles = new HashMap<>();
+    private ForYouFeed feed;
+
+    @BeforeEach
+    void setUp() {
+        feed = newFeed(100);
+        when(newsArticleRepository.findAllById(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).stream()
+            .map(articles::get).toList());
+
+        // Unrelated candidates, so the terms of the story are rare and weigh more
+        for (int i = 0; i < 20; i++) {
+            add("filler" + i, "Local council approves budget for road repairs number " + i, 1);
+        }
+    }
+
+    private ForYouFeed newFeed(int capacity) {
+        ForYouFeed feed = new ForYouFeed();
+        ReflectionTestUtils.setField(feed, "interestProfiles", interestProfiles);
+        ReflectionTestUtils.setField(feed, "newsArticleRepository", newsArticleRepository);
+        ReflectionTestUtils.setField(feed, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(feed, "capacity", capacity);
+        ReflectionTestUtils.setField(feed, "windowDays", 7L);
+        ReflectionTestUtils.setField(feed, "halfLifeHours", 24.0);
+        ReflectionTestUtils.invokeMethod(feed, "init");
+        return feed;
+    }
+
+    private void add(String id, String title, long ageHours) {
+        NewsArticle article = new NewsArticle(title, null, "https://example.com/" + id, "Example",
+            Instant.now().minus(ageHours, ChronoUnit.HOURS).toString(), null, null, true);
+        article.setId(id);
+        articles.put(id, article);
+        feed.add(article);
+    }
+
+    // A user who favorited articles with these words
+    private void interests(Set<String> favorited, String... words) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (String word : words) {
+            counts.merge((int) ArticleTokens.hash(word) & (1 << ForYouFeed.FEATURE_BITS) - 1, 1, Integer::sum);
+        }
+        when(interestProfiles.get("u1")).thenReturn(new InterestProfiles.InterestVector(counts, favorited));
+    }
+
+    private List<String> recommended(int limit) {
+        return feed.recommend("u1", limit).stream().map(NewsArticle::getId).toList();
+    }
+
+    @Test
+    void articlesSharingMoreInterestsRankFirst() {
+        add("both", "Rover finds water ice on Mars", 1);
+        add("mars", "Mars mission delayed again by budget", 1);
+        add("none", "Election results announced tonight", 1);
+        interests(Set.of("fav"), "mars", "rover");
+
+        assertThat(recommended(10)).containsExactly("both", "mars");
+    }
+
+    @Test
+    void newerArticlesRankBeforeOlderOnesOfTheSameStory() {
+        add("old", "Rover finds water ice on Mars", 48);
+        add("new", "Rover finds water ice on Mars", 2);
+        interests(Set.of("fav"), "mars", "rover");
+
+        assertThat(recommended(10)).containsExactly("new", "old");
+    }
+
+    @Test
+    void favoritedAndOutOfWindowArticlesAreNotRecommended() {
+        add("fav", "Rover finds water ice on Mars", 1);
+        add("stale", "Rover finds water ice on Mars", 24 * 8);
+        add("fresh", "Rover finds water ice on Mars", 3);
+        interests(Set.of("fav"), "mars", "rover");
+
+        assertThat(recommended(10)).containsExactly("fresh");
+    }
+
+    @Test
+    void onlyTheBestArticlesUpToTheLimitAreReturned() {
+        for (int i = 0; i < 30; i++) {
+            add("mars" + i, "Mars report " + i, i + 1);
+        }
+        interests(Set.of("fav"), "mars");
+
+        assertThat(recommended(3)).containsExactly("mars0", "mars1", "mars2");
+    }
+
+    @Test
+    void usersWithoutFavoritesGetNothing() {
+        add("mars", "Rover finds water ice on Mars", 1);
+        interests(Set.of());
+
+        assertThat(recommended(10)).isEmpty();
+    }
+
+    @Test
+    void theOldestCandidatesAreReplacedWhenFull() {
+        feed = newFeed(2);
+        add("first", "Rover finds water ice on Mars", 3);
+        add("second", "Mars rover drills into the crater", 2);
+        add("third", "Mars rover sends back panoramic images", 1);
+        interests(Set.of("fav"), "water", "crater", "images"); // Words of one article each; the shared ones weigh nothing
+
+        assertThat(recommended(10)).containsExactlyInAnyOrder("second", "third");
+    }
+}
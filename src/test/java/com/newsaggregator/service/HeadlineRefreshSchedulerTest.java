@@ -0,0 +1,157 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * HeadlineRefreshSchedulerTest.java
+ *
+ * Unit tests for the adaptive headline refresh plan: change rates, interval bounds and the quota share.
+ */
+class HeadlineRefreshSchedulerTest {
+
+    private final NewsService newsService = mock(NewsService.class);
+    private final RateLimitService rateLimitService = mock(RateLimitService.class);
+    private final JobLeaseService jobLeaseService = mock(JobLeaseService.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HeadlineRefreshScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        when(rateLimitService.getUpstreamDailyQuota()).thenReturn(100000.0); // Not limiting unless a test lowers it
+
+        scheduler = new HeadlineRefreshScheduler();
+        ReflectionTestUtils.setField(scheduler, "newsService", newsService);
+        ReflectionTestUtils.setField(scheduler, "rateLimitService", rateLimitService);
+        ReflectionTestUtils.setField(scheduler, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(scheduler, "stageMetrics", mock(StageMetrics.class));
+        ReflectionTestUtils.setField(scheduler, "jobLeaseService", jobLeaseService);
+        ReflectionTestUtils.setField(scheduler, "countries", List.of("us", "gb"));
+        ReflectionTestUtils.setField(scheduler, "pageSize", 20);
+        ReflectionTestUtils.setField(scheduler, "baseIntervalMinutes", 60L);
+        ReflectionTestUtils.setField(scheduler, "minIntervalMinutes", 20L);
+        ReflectionTestUtils.setField(scheduler, "maxIntervalMinutes", 360L);
+        ReflectionTestUtils.setField(scheduler, "targetChangeRate", 0.3);
+        ReflectionTestUtils.setField(scheduler, "quotaShare", 0.5);
+        ReflectionTestUtils.setField(scheduler, "minAvailableCalls", 2);
+        ReflectionTestUtils.setField(scheduler, "partitions", 1);
+        ReflectionTestUtils.setField(scheduler, "leaseTtlSeconds", 180L);
+    }
+
+    // A planned refresh of a country that fetched 10 headlines, of which changed were new or modified
+    private static NewsIngestedEvent refreshed(String country, int changed) {
+        return ingested(country, changed, true);
+    }
+
+    private static NewsIngestedEvent ingested(String country, int changed, boolean plannedRefresh) {
+        List<NewsArticle> changedArticles = new ArrayList<>();
+        for (int i = 0; i < changed; i++) {
+            changedArticles.add(ArticleETagsTest.article(country + i, "Title " + i));
+        }
+        return new NewsIngestedEvent(country, true, changedArticles, 10, plannedRefresh);
+    }
+
+    private double intervalMinutes(String country) {
+        return meterRegistry.get("news.ingestion.interval").tag("country", country).gauge().value();
+    }
+
+    private double changeRate(String country) {
+        return meterRegistry.get("news.ingestion.change.rate").tag("country", country).gauge().value();
+    }
+
+    @Test
+    void volatileCountriesAreRefreshedMoreOftenThanQuietOnes() {
+        scheduler.onNewsIngested(refreshed("us", 6)); // Twice the target change rate
+        scheduler.onNewsIngested(refreshed("gb", 1));
+
+        assertThat(intervalMinutes("us")).isEqualTo(30.0);
+        assertThat(intervalMinutes("gb")).isEqualTo(180.0);
+    }
+
+    @Test
+    void changeRateIsSmoothedOverRuns() {
+        scheduler.onNewsIngested(refreshed("us", 10));
+        scheduler.onNewsIngested(refreshed("us", 0));
+
+        assertThat(changeRate("us")).isCloseTo(0.7, within(1e-9)); // 0.3 * 0.0 + 0.7 * 1.0
+    }
+
+    @Test
+    void intervalsAreClampedToTheBounds() {
+        scheduler.onNewsIngested(refreshed("us", 10)); // 18 minutes, below the minimum
+        scheduler.onNewsIngested(refreshed("gb", 0)); // Never changes: would be 1800 minutes
+
+        assertThat(intervalMinutes("us")).isEqualTo(20.0);
+        assertThat(intervalMinutes("gb")).isEqualTo(360.0);
+    }
+
+    @Test
+    void intervalsAreStretchedToFitTheQuotaShare() {
+        when(rateLimitService.getUpstreamDailyQuota()).thenReturn(100.0); // 50 calls a day for the scheduler
+
+        scheduler.onNewsIngested(refreshed("us", 10));
+        scheduler.onNewsIngested(refreshed("gb", 10)); // 2 * 72 calls a day at the minimum interval
+
+        double stretched = 20.0 * 144 / 50;
+        assertThat(intervalMinutes("us")).isCloseTo(stretched, within(0.01)).isGreaterThan(20.0);
+        assertThat(intervalMinutes("gb")).isCloseTo(stretched, within(0.01));
+        assertThat(2 * 1440 / intervalMinutes("us")).isCloseTo(50.0, within(0.01));
+    }
+
+    @Test
+    void theQuotaWinsOverTheMaximumInterval() {
+        when(rateLimitService.getUpstreamDailyQuota()).thenReturn(4.0); // 2 calls a day for the scheduler
+
+        scheduler.onNewsIngested(refreshed("us", 0));
+        scheduler.onNewsIngested(refreshed("gb", 0)); // 2 * 4 calls a day at the maximum interval
+
+        assertThat(intervalMinutes("us")).isCloseTo(1440.0, within(0.01));
+    }
+
+    @Test
+    void fetchesCausedByUsersDoNotChangeThePlan() {
+        scheduler.onNewsIngested(refreshed("us", 3));
+        scheduler.onNewsIngested(ingested("us", 0, false)); // A user paging through headlines that are already stored
+        scheduler.onNewsIngested(ingested("gb", 10, false));
+
+        assertThat(changeRate("us")).isEqualTo(0.3);
+        assertThat(intervalMinutes("us")).isCloseTo(60.0, within(0.01));
+        assertThat(meterRegistry.find("news.ingestion.interval").tag("country", "gb").gauge()).isNull();
+    }
+
+    @Test
+    void plannedRunsAreMarkedAsPlannedRefreshes() {
+        when(jobLeaseService.liveNodeCount()).thenReturn(1L);
+        when(jobLeaseService.acquire(anyString(), any())).thenAnswer(invocation -> new JobLeaseService.Lease(invocation.getArgument(0), 1, Map.of()));
+        when(jobLeaseService.claimRun(any(), anyString(), anyString())).thenReturn(true);
+        when(rateLimitService.availableUpstreamCalls()).thenReturn(20);
+
+        scheduler.fetchLatestTopHeadlines();
+
+        ArgumentCaptor<FetchContext> context = ArgumentCaptor.forClass(FetchContext.class);
+        verify(newsService).fetchAndSaveTopHeadlines(eq("us"), eq(1), anyInt(), context.capture());
+        assertThat(context.getValue().isPlannedRefresh()).isTrue();
+        assertThat(context.getValue().getClientKey()).isNull();
+    }
+}
@@ -0,0 +1,72 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+
+
+/*
+ * HeadlineStreamServiceTest.java
+ *
+ * Unit tests for the per-country headline sinks: which countries can be streamed and when sinks are dropped.
+ */
+class HeadlineStreamServiceTest {
+
+    private HeadlineStreamService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new HeadlineStreamService();
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "clientBufferSize", 16);
+        ReflectionTestUtils.setField(service, "heartbeatSeconds", 60L);
+        ReflectionTestUtils.setField(service, "maxConnectionMinutes", 30L);
+        ReflectionTestUtils.setField(service, "countries", List.of("us", "gb"));
+    }
+
+    @Test
+    void unknownCountriesGetNoSink() {
+        assertThat(service.isStreamed("xx")).isFalse();
+        Flux<ServerSentEvent<String>> stream = service.subscribe("xx");
+
+        assertThat(stream.collectList().block(Duration.ofSeconds(1))).isEmpty();
+        assertThat(service.channelCount()).isZero();
+    }
+
+    @Test
+    void sinkIsDroppedWhenTheLastSubscriberLeaves() {
+        Disposable first = service.subscribe("us").subscribe();
+        Disposable second = service.subscribe("us").subscribe();
+        assertThat(service.channelCount()).isEqualTo(1);
+
+        first.dispose();
+        assertThat(service.channelCount()).isEqualTo(1);
+        second.dispose();
+        assertThat(service.channelCount()).isZero();
+    }
+
+    @Test
+    void changedHeadlinesArePushedToSubscribersOfTheirCountry() {
+        List<ServerSentEvent<String>> received = new CopyOnWriteArrayList<>();
+        Disposable us = service.subscribe("us").subscribe(received::add);
+        try {
+            service.onNewsIngested(new NewsIngestedEvent("us", true, List.of(ArticleETagsTest.article("a", "One")), 1));
+            service.onNewsIngested(new NewsIngestedEvent("gb", true, List.of(ArticleETagsTest.article("b", "Two")), 1));
+
+            assertThat(received).extracting(ServerSentEvent::id).containsExactly("a");
+        } finally {
+            us.dispose();
+        }
+    }
+}
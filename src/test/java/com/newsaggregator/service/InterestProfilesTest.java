@@ -0,0 +1,150 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.event.FavoritesChangedEvent;
+import com.newsaggregator.model.FavoriteArticle;
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.repository.FavoriteArticleRepository;
+import com.newsaggregator.repository.NewsArticleRepository;
+
+
+/*
+ * InterestProfilesTest.java
+ *
+ * Unit tests for the interest vectors and for loading profiles while favorites change.
+ */
+class InterestProfilesTest {
+
+    private final FavoriteArticleRepository favoriteArticleRepository = mock(FavoriteArticleRepository.class);
+    private final NewsArticleRepository newsArticleRepository = mock(NewsArticleRepository.class);
+    private final Map<String, NewsArticle> articles = new HashMap<>();
+    private InterestProfiles interestProfiles;
+
+    @BeforeEach
+    void setUp() {
+        interestProfiles = new InterestProfiles();
+        ReflectionTestUtils.setField(interestProfiles, "favoriteArticleRepository", favoriteArticleRepository);
+        ReflectionTestUtils.setField(interestProfiles, "newsArticleRepository", newsArticleRepository);
+        ReflectionTestUtils.setField(interestProfiles, "maxProfiles", 10);
+        when(newsArticleRepository.findAllById(anyList())).thenAnswer(invocation -> ((List<?>) invocation.getArgument(0)).stream()
+            .map(articles::get).filter(article -> article != null).toList());
+        when(newsArticleRepository.findById(anyString()))
+            .thenAnswer(invocation -> Optional.ofNullable(articles.get(invocation.<String>getArgument(0))));
+
+        article("mars", "Rover finds water ice near the Mars equator");
+        article("moon", "Lander finds water ice near the Moon south pole");
+    }
+
+    private void article(String id, String title) {
+        NewsArticle article = new NewsArticle(title, null, "https://example.com/" + id, "Example", "2024-05-01T10:00:00Z", null, null, true);
+        article.setId(id);
+        articles.put(id, article);
+    }
+
+    private static FavoriteArticle favorites(String... articleIds) {
+        FavoriteArticle favorites = new FavoriteArticle("u1", List.of(articleIds));
+        favorites.setId("doc-u1");
+        return favorites;
+    }
+
+    private static int feature(String word) {
+        return (int) ArticleTokens.hash(word) & (1 << ForYouFeed.FEATURE_BITS) - 1;
+    }
+
+    @Test
+    void weightsCountTheFavoritesContainingAFeature() {
+        when(favoriteArticleRepository.findByUserId("u1")).thenReturn(Optional.of(favorites("mars", "moon")));
+
+        InterestProfiles.InterestVector vector = interestProfiles.get("u1");
+
+        assertThat(vector.weight(feature("water"))).isEqualTo(2);
+        assertThat(vector.weight(feature("rover"))).isEqualTo(1);
+        assertThat(vector.weight(feature("election"))).isZero();
+        assertThat(vector.isFavorited("mars")).isTrue();
+        assertThat(vector.isFavorited("other")).isFalse();
+    }
+
+    @Test
+    void usersWithoutFavoritesGetAnEmptyVector() {
+        when(favoriteArticleRepository.findByUserId("u1")).thenReturn(Optional.empty());
+
+        assertThat(interestProfiles.get("u1").isEmpty()).isTrue();
+    }
+
+    @Test
+    void cachedProfilesAreUpdatedIncrementally() {
+        when(favoriteArticleRepository.findByUserId("u1")).thenReturn(Optional.of(favorites("mars")));
+        interestProfiles.get("u1");
+
+        interestProfiles.favoriteAdded("u1", "doc-u1", "moon");
+        assertThat(interestProfiles.get("u1").weight(feature("water"))).isEqualTo(2);
+
+        interestProfiles.favoriteRemoved("u1", "doc-u1", "mars");
+        InterestProfiles.InterestVector vector = interestProfiles.get("u1");
+        assertThat(vector.weight(feature("water"))).isEqualTo(1);
+        assertThat(vector.weight(feature("rover"))).isZero();
+        assertThat(vector.isFavorited("mars")).isFalse();
+
+        verify(favoriteArticleRepository, times(1)).findByUserId("u1");
+    }
+
+    @Test
+    void aProfileThatChangedWhileLoadingIsLoadedAgain() {
+        // The first load reads the favorites, then the user adds one before the profile is cached
+        when(favoriteArticleRepository.findByUserId("u1"))
+            .thenAnswer(invocation -> {
+                interestProfiles.favoriteAdded("u1", "doc-u1", "moon");
+                return Optional.of(favorites("mars"));
+            })
+            .thenReturn(Optional.of(favorites("mars", "moon")));
+
+        assertThat(interestProfiles.get("u1").isFavorited("moon")).isTrue();
+        assertThat(interestProfiles.get("u1").isFavorited("moon")).isTrue(); // Cached now
+
+        verify(favoriteArticleRepository, times(2)).findByUserId("u1");
+    }
+
+    @Test
+    void deletedFavoritesDocumentsEvictTheirProfile() {
+        when(favoriteArticleRepository.findByUserId("u1")).thenReturn(Optional.of(favorites("mars")));
+        interestProfiles.get("u1");
+
+        interestProfiles.onFavoritesChanged(new FavoritesChangedEvent(Set.of(), Set.of("doc-u1"), false));
+        interestProfiles.get("u1");
+
+        verify(favoriteArticleRepository, times(2)).findByUserId("u1");
+    }
+
+    @Test
+    void vectorsHoldManyFeatures() {
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int feature = 0; feature < 1000; feature++) {
+            counts.put(feature * 7919 & (1 << ForYouFeed.FEATURE_BITS) - 1, feature % 5 + 1);
+        }
+        InterestProfiles.InterestVector vector = new InterestProfiles.InterestVector(counts, Set.of("a"));
+        long[] filter = vector.featureFilter();
+
+        counts.forEach((feature, count) -> {
+            assertThat(vector.weight(feature)).isEqualTo((float) count);
+            assertThat(filter[feature >>> 6] & 1L << feature).isNotZero();
+        });
+        assertThat(vector.weight(1)).isZero();
+        assertThat(filter[0] & 1L << 1).isZero();
+    }
+}
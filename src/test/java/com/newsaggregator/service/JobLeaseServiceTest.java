@@ -0,0 +1,147 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.Duration;
+import java.util.Date;
+import java.util.Map;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.model.JobLease;
+
+
+/*
+ * JobLeaseServiceTest.java
+ *
+ * Unit tests for lease renewal, takeover and fenced run claims. MongoDB is mocked: the tests check the
+ * conditions of the atomic updates, which is where the guarantees come from.
+ */
+class JobLeaseServiceTest {
+
+    private MongoTemplate mongoTemplate;
+    private JobLeaseService service;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        service = new JobLeaseService();
+        ReflectionTestUtils.setField(service, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "ttlSeconds", 180L);
+    }
+
+    private JobLease lease(long fencingToken) {
+        JobLease lease = new JobLease();
+        lease.setId("job");
+        lease.setOwner(service.getNodeId());
+        lease.setFencingToken(fencingToken);
+        lease.setExpiresAt(new Date(System.currentTimeMillis() + 60000));
+        return lease;
+    }
+
+    @Test
+    void renewingAHeldLeaseKeepsItsToken() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(JobLease.class)))
+            .thenReturn(lease(7));
+
+        JobLeaseService.Lease held = service.acquire("job", Duration.ofMinutes(1));
+
+        assertThat(held.getFencingToken()).isEqualTo(7);
+        assertThat(service.holds("job")).isTrue();
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate, times(1)).findAndModify(query.capture(), any(Update.class), any(FindAndModifyOptions.class), eq(JobLease.class));
+        assertThat(query.getValue().getQueryObject()).containsEntry("owner", service.getNodeId());
+    }
+
+    @Test
+    void expiredLeaseIsTakenOverWithANewToken() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(JobLease.class)))
+            .thenReturn(null) // Not held by this node
+            .thenReturn(lease(8));
+
+        JobLeaseService.Lease held = service.acquire("job", Duration.ofMinutes(1));
+
+        assertThat(held.getFencingToken()).isEqualTo(8);
+        ArgumentCaptor<Query> queries = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> updates = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate, times(2)).findAndModify(queries.capture(), updates.capture(), options.capture(), eq(JobLease.class));
+
+        Document takeover = queries.getAllValues().get(1).getQueryObject();
+        assertThat(takeover.get("expiresAt", Document.class)).containsKey("$lt"); // Only an expired (or missing) lease
+        assertThat(updates.getAllValues().get(1).getUpdateObject().get("$inc", Document.class)).containsEntry("fencingToken", 1);
+        assertThat(options.getAllValues().get(1).isUpsert()).isTrue();
+    }
+
+    @Test
+    void leaseHeldByAnotherNodeIsRefused() {
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(JobLease.class)))
+            .thenReturn(lease(3))
+            .thenReturn(null)
+            .thenThrow(new DuplicateKeyException("E11000")); // Live lease of another node: the upsert collides
+        service.acquire("job", Duration.ofMinutes(1));
+
+        assertThat(service.acquire("job", Duration.ofMinutes(1))).isNull();
+        assertThat(service.holds("job")).isFalse();
+    }
+
+    @Test
+    void claimRunIsFencedByOwnerTokenExpiryAndPeriod() {
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(JobLease.class)))
+            .thenReturn(UpdateResult.acknowledged(1, 1L, null))
+            .thenReturn(UpdateResult.acknowledged(0, 0L, null));
+        JobLeaseService.Lease lease = new JobLeaseService.Lease("job", 5, Map.of());
+
+        assertThat(service.claimRun(lease, "daily", "2024-05-01")).isTrue();
+        assertThat(service.claimRun(lease, "daily", "2024-05-01")).isFalse(); // Already claimed, or the lease was lost
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(query.capture(), update.capture(), eq(JobLease.class));
+        Document fenced = query.getValue().getQueryObject();
+        assertThat(fenced).containsEntry("_id", "job").containsEntry("owner", service.getNodeId()).containsEntry("fencingToken", 5L);
+        assertThat(fenced.get("expiresAt", Document.class)).containsKey("$gt");
+        assertThat(fenced.get("runs.daily", Document.class)).containsEntry("$ne", "2024-05-01");
+        assertThat(update.getValue().getUpdateObject().get("$set", Document.class)).containsEntry("runs.daily", "2024-05-01");
+    }
+
+    @Test
+    void releaseOnlyExpiresTheLeaseItHolds() {
+        JobLeaseService.Lease lease = new JobLeaseService.Lease("job", 5, Map.of());
+
+        service.release(lease);
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoTemplate).updateFirst(query.capture(), any(Update.class), eq(JobLease.class));
+        assertThat(query.getValue().getQueryObject()).containsEntry("owner", service.getNodeId()).containsEntry("fencingToken", 5L);
+    }
+
+    @Test
+    void disabledLeasesAreGrantedLocally() {
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        JobLeaseService.Lease lease = service.acquire("job", Duration.ofMinutes(1));
+
+        assertThat(lease).isNotNull();
+        assertThat(service.claimRun(lease, "daily", "2024-05-01")).isTrue();
+        assertThat(service.liveNodeCount()).isEqualTo(1);
+        verify(mongoTemplate, never()).findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(JobLease.class));
+    }
+}
@@ -0,0 +1,153 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * ListingPageCacheTest.java
+ *
+ * Unit tests for single-flight loading, tag eviction and size-bounded eviction of the listing page cache.
+ */
+class ListingPageCacheTest {
+
+    private ListingPageCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ListingPageCache();
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "ttlMillis", 60000L);
+        ReflectionTestUtils.setField(cache, "fallbackTtlMillis", 60000L);
+        ReflectionTestUtils.setField(cache, "maxEntries", 10);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+    }
+
+    private static ListingPageCache.LoadedPage page(String id) {
+        return ListingPageCache.LoadedPage.upstream(articles(id));
+    }
+
+    private static List<NewsArticle> articles(String id) {
+        return List.of(ArticleETagsTest.article(id, "Title " + id));
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        String key = ListingPageCache.headlinesKey("us", 1, 12);
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<ListingPageCache.CachedPage> first = executor.submit(() -> cache.getOrLoad(key, "headlines:us", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                await(release);
+                return page("a");
+            }));
+            assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(cache.contains(key)).isTrue(); // Being loaded counts as present
+
+            List<Future<ListingPageCache.CachedPage>> waiters = List.of(
+                executor.submit(() -> cache.getOrLoad(key, "headlines:us", () -> { loads.incrementAndGet(); return page("b"); })),
+                executor.submit(() -> cache.getOrLoad(key, "headlines:us", () -> { loads.incrementAndGet(); return page("b"); })));
+            Thread.sleep(100); // Let the waiters find the load in flight
+            release.countDown();
+
+            ListingPageCache.CachedPage loaded = first.get(5, TimeUnit.SECONDS);
+            for (Future<ListingPageCache.CachedPage> waiter : waiters) {
+                assertThat(waiter.get(5, TimeUnit.SECONDS)).isSameAs(loaded);
+            }
+            assertThat(loads).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    void cachedPageCarriesSerializedBytesAndETag() {
+        ListingPageCache.CachedPage cached = cache.getOrLoad("k", "t", () -> page("a"));
+
+        assertThat(new String(cached.getJson())).contains("\"title\":\"Title a\"");
+        assertThat(cached.getGzipJson()).startsWith((byte) 0x1f, (byte) 0x8b);
+        assertThat(cached.getETag()).isEqualTo(ArticleETags.pageETag(articles("a")));
+        assertThat(cache.getOrLoad("k", "t", () -> page("b"))).isSameAs(cached);
+    }
+
+    @Test
+    void invalidateTagEvictsOnlyThatTag() {
+        cache.getOrLoad(ListingPageCache.headlinesKey("us", 1, 12), ListingPageCache.headlinesTag("us"), () -> page("a"));
+        cache.getOrLoad(ListingPageCache.headlinesKey("us", 2, 12), ListingPageCache.headlinesTag("us"), () -> page("b"));
+        cache.getOrLoad(ListingPageCache.headlinesKey("gb", 1, 12), ListingPageCache.headlinesTag("gb"), () -> page("c"));
+
+        cache.invalidateTag(ListingPageCache.headlinesTag("us"));
+
+        assertThat(cache.peek(ListingPageCache.headlinesKey("us", 1, 12))).isNull();
+        assertThat(cache.peek(ListingPageCache.headlinesKey("us", 2, 12))).isNull();
+        assertThat(cache.peek(ListingPageCache.headlinesKey("gb", 1, 12))).isNotNull();
+    }
+
+    @Test
+    void fullCacheEvictsTheLeastRecentlyUsedPages() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            cache.put("page" + i, "t", page("a" + i));
+            Thread.sleep(1);
+        }
+        cache.peek("page0"); // Oldest, but just used
+
+        cache.put("page10", "t", page("a10"));
+
+        assertThat(cache.peek("page0")).isNotNull();
+        assertThat(cache.peek("page1")).isNull();
+        assertThat(cache.peek("page10")).isNotNull();
+        for (int i = 2; i < 10; i++) {
+            assertThat(cache.peek("page" + i)).isNotNull();
+        }
+    }
+
+    @Test
+    void expiredPagesAreNeitherServedNorCounted() {
+        ReflectionTestUtils.setField(cache, "ttlMillis", 0L);
+        cache.put("k", "t", page("a"));
+
+        assertThat(cache.peek("k")).isNull();
+        assertThat(cache.contains("k")).isFalse();
+    }
+
+    @Test
+    void fallbackAndEmptyPagesExpireAfterTheShortTtl() {
+        ReflectionTestUtils.setField(cache, "fallbackTtlMillis", 0L);
+        cache.getOrLoad("fallback", "t", () -> ListingPageCache.LoadedPage.fallback(articles("a")));
+        cache.getOrLoad("empty", "t", () -> ListingPageCache.LoadedPage.upstream(List.of()));
+        cache.getOrLoad("upstream", "t", () -> page("b"));
+
+        assertThat(cache.peek("fallback")).isNull();
+        assertThat(cache.peek("empty")).isNull();
+        assertThat(cache.peek("upstream")).isNotNull();
+        assertThat(cache.getOrLoad("fallback", "t", () -> page("c")).getArticles()).extracting(NewsArticle::getId).containsExactly("c");
+    }
+}
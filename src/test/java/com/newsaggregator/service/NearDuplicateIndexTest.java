@@ -0,0 +1,108 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+/*
+ * NearDuplicateIndexTest.java
+ *
+ * Unit tests for the near-duplicate lookup, its Hamming threshold, and eviction.
+ */
+class NearDuplicateIndexTest {
+
+    private static final long HASH = 0x0123_4567_89AB_CDEFL;
+
+    private NearDuplicateIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = newIndex(100);
+    }
+
+    private static NearDuplicateIndex newIndex(int maxEntries) {
+        NearDuplicateIndex index = new NearDuplicateIndex();
+        ReflectionTestUtils.setField(index, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "maxDistance", 3);
+        ReflectionTestUtils.setField(index, "windowDays", 3L);
+        ReflectionTestUtils.setField(index, "maxEntries", maxEntries);
+        ReflectionTestUtils.invokeMethod(index, "init");
+        return index;
+    }
+
+    @Test
+    void fingerprintsWithinTheMaximumDistanceAreDuplicates() {
+        index.add("a", HASH);
+
+        assertThat(index.findDuplicate("b", HASH)).isEqualTo("a");
+        assertThat(index.findDuplicate("b", HASH ^ 0b111)).isEqualTo("a"); // 3 bits
+        assertThat(index.findDuplicate("b", HASH ^ 0b1111)).isNull(); // 4 bits
+    }
+
+    @Test
+    void anArticleIsNotADuplicateOfItself() {
+        index.add("a", HASH);
+
+        assertThat(index.findDuplicate("a", HASH)).isNull();
+    }
+
+    @Test
+    void duplicatesAreFoundThroughAnyUnchangedBand() {
+        index.add("a", HASH);
+
+        // One bit flipped in each of three bands: only the fourth band still matches
+        assertThat(index.findDuplicate("b", HASH ^ (1L | 1L << 16 | 1L << 32))).isEqualTo("a");
+        assertThat(index.findDuplicate("b", HASH ^ (1L << 16 | 1L << 32 | 1L << 48))).isEqualTo("a");
+        // One bit in every band: no band matches, and the distance is over the threshold anyway
+        assertThat(index.findDuplicate("b", HASH ^ (1L | 1L << 16 | 1L << 32 | 1L << 48))).isNull();
+    }
+
+    @Test
+    void articlesWithoutFingerprintAreIgnored() {
+        index.add("a", null);
+
+        assertThat(index.size()).isZero();
+        assertThat(index.findDuplicate("b", null)).isNull();
+    }
+
+    @Test
+    void oldestEntriesAreEvictedOverTheSizeBound() {
+        NearDuplicateIndex small = newIndex(2);
+        small.add("a", HASH);
+        small.add("b", ~HASH);
+        small.add("c", HASH ^ 0xFFFF_0000_FFFF_0000L);
+
+        assertThat(small.size()).isEqualTo(2);
+        assertThat(small.findDuplicate("x", HASH)).isNull();
+        assertThat(small.findDuplicate("x", ~HASH)).isEqualTo("b");
+    }
+
+    @Test
+    void entriesOutsideTheWindowAreEvicted() {
+        index.add("old", HASH, Instant.now().minus(4, ChronoUnit.DAYS)); // E.g. published 4 days ago, loaded on startup
+        index.add("recent", ~HASH, Instant.now().minus(1, ChronoUnit.DAYS));
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findDuplicate("x", HASH)).isNull();
+        assertThat(index.findDuplicate("x", ~HASH)).isEqualTo("recent");
+    }
+
+    @Test
+    void removedArticlesAreNoLongerFound() {
+        index.add("a", HASH);
+        index.add("b", ~HASH);
+
+        index.remove("a");
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findDuplicate("x", HASH)).isNull();
+        assertThat(index.findDuplicate("x", ~HASH)).isEqualTo("b");
+    }
+}
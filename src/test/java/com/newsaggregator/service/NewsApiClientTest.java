@@ -0,0 +1,229 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+/*
+ * NewsApiClientTest.java
+ *
+ * Unit tests for the News API client against a local HTTP server: bulkheads, deadlines and hedged requests.
+ * The n-th request the server receives is answered by the handler set for it, e.g. slowly or with an error.
+ */
+class NewsApiClientTest {
+
+    private final RateLimitService rateLimitService = mock(RateLimitService.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger requests = new AtomicInteger();
+    private final CountDownLatch slowRequestsMayAnswer = new CountDownLatch(1);
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private volatile int slowRequests; // The first slowRequests requests wait for slowRequestsMayAnswer
+    private volatile int status = 200;
+    private HttpServer server;
+    private URI uri;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverThreads);
+        server.createContext("/", this::answer);
+        server.start();
+        uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v2/top-headlines");
+    }
+
+    @AfterEach
+    void tearDown() {
+        slowRequestsMayAnswer.countDown();
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private void answer(HttpExchange exchange) throws IOException {
+        int request = requests.incrementAndGet();
+        if (request <= slowRequests) {
+            try {
+                slowRequestsMayAnswer.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        byte[] body = ("attempt-" + request).getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        } catch (IOException e) {
+            // The client has gone away
+        }
+    }
+
+    private NewsApiClient client(int maxConcurrent, boolean hedgeEnabled) {
+        NewsApiClient client = new NewsApiClient();
+        ReflectionTestUtils.setField(client, "rateLimitService", rateLimitService);
+        ReflectionTestUtils.setField(client, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(client, "headlinesMaxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(client, "searchMaxConcurrent", maxConcurrent);
+        ReflectionTestUtils.setField(client, "connectTimeoutMillis", 2000L);
+        ReflectionTestUtils.setField(client, "hedgeEnabled", hedgeEnabled);
+        ReflectionTestUtils.setField(client, "hedgeDelayMillis", 100L);
+        ReflectionTestUtils.invokeMethod(client, "init");
+        return client;
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+
+    @Test
+    void answersWithTheResponseBody() throws Exception {
+        NewsApiClient client = client(1, false);
+
+        assertThat(client.get(uri, true, FetchContext.forClient("a", 5000))).isEqualTo("attempt-1");
+    }
+
+    @Test
+    void errorStatusesFailTheCall() {
+        NewsApiClient client = client(1, false);
+        status = 429;
+
+        assertThatThrownBy(() -> client.get(uri, true, FetchContext.forClient("a", 5000)))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("429");
+    }
+
+    @Test
+    void aFullBulkheadRejectsAndRefundsTheBudget() throws Exception {
+        NewsApiClient client = client(1, false);
+        slowRequests = 1;
+
+        CompletableFuture<String> inFlight = client.getAsync(uri, true, FetchContext.forClient("a", 5000));
+        CompletableFuture<String> rejected = client.getAsync(uri, true, FetchContext.forClient("b", 5000));
+        CompletableFuture<String> search = client.getAsync(uri, false, FetchContext.forClient("c", 5000)); // Separate bulkhead
+
+        assertThatThrownBy(rejected::get).hasCauseInstanceOf(RejectedExecutionException.class);
+        verify(rateLimitService).refundUpstream("b");
+        verify(rateLimitService, never()).refundUpstream("a");
+        assertThat(count("news.upstream.bulkhead.rejected")).isEqualTo(1);
+
+        slowRequestsMayAnswer.countDown();
+        assertThat(inFlight.get(5, TimeUnit.SECONDS)).startsWith("attempt-");
+        assertThat(search.get(5, TimeUnit.SECONDS)).startsWith("attempt-");
+
+        // The place is free again once the call has finished
+        assertThat(client.getAsync(uri, true, FetchContext.forClient("b", 5000)).get(5, TimeUnit.SECONDS)).startsWith("attempt-");
+    }
+
+    @Test
+    void theCallIsAbandonedAtTheCallersDeadline() throws Exception {
+        NewsApiClient client = client(1, false);
+        slowRequests = 1;
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> client.get(uri, true, FetchContext.forClient("a", 200)))
+            .isInstanceOf(TimeoutException.class);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2000);
+        assertThat(count("news.upstream.deadline.exceeded")).isEqualTo(1);
+
+        // Abandoning the call aborted its exchange, so its bulkhead place is free although the server never answered
+        assertThat(client.getAsync(uri, true, FetchContext.forClient("a", 5000)).isCompletedExceptionally()).isFalse();
+    }
+
+    @Test
+    void aCallPastItsDeadlineIsNotSentAndRefunded() {
+        NewsApiClient client = client(1, false);
+
+        assertThatThrownBy(() -> client.get(uri, true, FetchContext.forClient("a", 0)))
+            .isInstanceOf(TimeoutException.class);
+
+        verify(rateLimitService).refundUpstream("a");
+        assertThat(requests.get()).isZero();
+    }
+
+    @Test
+    void cancellingTheResultAbortsTheExchangeAndFreesTheBulkhead() throws Exception {
+        NewsApiClient client = client(1, false);
+        slowRequests = 1;
+
+        CompletableFuture<String> abandoned = client.getAsync(uri, true, FetchContext.forClient("a", 5000));
+        awaitRequests(1);
+        abandoned.cancel(true);
+
+        CompletableFuture<String> next = client.getAsync(uri, true, FetchContext.forClient("a", 5000));
+        assertThat(next.get(5, TimeUnit.SECONDS)).isEqualTo("attempt-2");
+    }
+
+    @Test
+    void aSlowFirstAttemptIsHedgedAndTheFasterAnswerWins() throws Exception {
+        when(rateLimitService.tryAcquireUpstream(null)).thenReturn(true);
+        NewsApiClient client = client(1, true);
+        slowRequests = 1;
+
+        assertThat(client.get(uri, true, FetchContext.forClient("a", 5000))).isEqualTo("attempt-2");
+        assertThat(count("news.upstream.hedges")).isEqualTo(1);
+    }
+
+    @Test
+    void noHedgeIsSentWhenTheBudgetRefuses() throws Exception {
+        when(rateLimitService.tryAcquireUpstream(null)).thenReturn(false);
+        NewsApiClient client = client(1, true);
+        slowRequests = 1;
+
+        CompletableFuture<String> result = client.getAsync(uri, true, FetchContext.forClient("a", 5000));
+        Thread.sleep(300); // Well past the hedge delay
+        slowRequestsMayAnswer.countDown();
+
+        assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("attempt-1");
+        assertThat(requests.get()).isEqualTo(1);
+        assertThat(count("news.upstream.hedges")).isZero();
+    }
+
+    @Test
+    void noHedgeIsSentAfterTheFirstAttemptFailed() throws Exception {
+        when(rateLimitService.tryAcquireUpstream(null)).thenReturn(true);
+        NewsApiClient client = client(1, true);
+        status = 500;
+
+        CompletableFuture<String> result = client.getAsync(uri, true, FetchContext.forClient("a", 5000));
+        assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IOException.class);
+        Thread.sleep(300); // Well past the hedge delay
+
+        assertThat(requests.get()).isEqualTo(1);
+        verify(rateLimitService, never()).tryAcquireUpstream(any());
+    }
+
+    private void awaitRequests(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (requests.get() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(requests.get()).isEqualTo(count);
+    }
+}
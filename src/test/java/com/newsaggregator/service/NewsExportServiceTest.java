@@ -0,0 +1,176 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * NewsExportServiceTest.java
+ *
+ * Unit tests for the NDJSON export: the query built from the filters and the cursor, and resuming an export.
+ * The secondary-reading template is a mock that applies the export's criteria to an in-memory collection.
+ */
+class NewsExportServiceTest {
+
+    private final MongoTemplate template = mock(MongoTemplate.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<NewsArticle> collection = new ArrayList<>();
+    private final List<Query> queries = new ArrayList<>();
+    private NewsExportService newsExportService;
+
+    @BeforeEach
+    void setUp() {
+        SecondaryReads secondaryReads = mock(SecondaryReads.class);
+        when(secondaryReads.getTemplate()).thenReturn(template);
+        when(template.stream(any(Query.class), eq(NewsArticle.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            queries.add(query);
+            return collection.stream()
+                .filter(article -> matches(article, query.getQueryObject()))
+                .sorted(Comparator.comparing(NewsArticle::getId));
+        });
+
+        newsExportService = new NewsExportService();
+        ReflectionTestUtils.setField(newsExportService, "secondaryReads", secondaryReads);
+        ReflectionTestUtils.setField(newsExportService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(newsExportService, "batchSize", 2);
+    }
+
+    // The subset of MongoDB's matching that the export's criteria use
+    private static boolean matches(NewsArticle article, Document criteria) {
+        if (criteria.get("_id") instanceof Document id && new ObjectId(article.getId()).compareTo(id.get("$gt", ObjectId.class)) <= 0) {
+            return false;
+        }
+        if (criteria.get("publishedAt") instanceof Document publishedAt) {
+            String from = publishedAt.getString("$gte");
+            String to = publishedAt.getString("$lt");
+            if ((from != null && article.getPublishedAt().compareTo(from) < 0) || (to != null && article.getPublishedAt().compareTo(to) >= 0)) {
+                return false;
+            }
+        }
+        if (criteria.containsKey("sourceName") && !criteria.get("sourceName").equals(article.getSourceName())) {
+            return false;
+        }
+        return !criteria.containsKey("isHeadline") || criteria.get("isHeadline").equals(article.getIsHeadline());
+    }
+
+    private void stored(int id, String sourceName, String publishedAt, boolean isHeadline) {
+        NewsArticle article = new NewsArticle("Title " + id, "Description", "https://example.com/" + id, sourceName, publishedAt, null, null, isHeadline);
+        article.setId(id(id));
+        collection.add(article);
+    }
+
+    private static String id(int id) {
+        return String.format("%024x", 0x65f0_0000_0000L + id);
+    }
+
+    private List<JsonNode> export(String from, String to, String source, Boolean isHeadline, String cursor) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = newsExportService.export(from, to, source, isHeadline, cursor, out);
+
+        String ndjson = out.toString(StandardCharsets.UTF_8);
+        List<JsonNode> lines = new ArrayList<>();
+        if (!ndjson.isEmpty()) {
+            assertThat(ndjson).endsWith("\n");
+            for (String line : ndjson.split("\n")) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        assertThat(lines).hasSize((int) written);
+        return lines;
+    }
+
+    private static List<String> ids(List<JsonNode> lines) {
+        return lines.stream().map(line -> line.get("id").asText()).toList();
+    }
+
+    @Test
+    void writesOneJsonDocumentPerLineInIdOrder() throws Exception {
+        stored(3, "Example", "2024-05-03T00:00:00Z", true);
+        stored(1, "Example", "2024-05-01T00:00:00Z", false);
+        stored(2, "Other", "2024-05-02T00:00:00Z", true);
+
+        List<JsonNode> lines = export(null, null, null, null, null);
+
+        assertThat(ids(lines)).containsExactly(id(1), id(2), id(3));
+        assertThat(lines.get(1).get("sourceName").asText()).isEqualTo("Other");
+        assertThat(queries.get(0).getSortObject()).isEqualTo(new Document("_id", 1));
+        assertThat(queries.get(0).getQueryObject()).isEmpty();
+    }
+
+    @Test
+    void filtersByPublishedAtRangeSourceAndHeadlineFlag() throws Exception {
+        stored(1, "Example", "2024-04-30T23:59:59Z", true); // Before the range
+        stored(2, "Example", "2024-05-01T00:00:00Z", true); // From is inclusive
+        stored(3, "Other", "2024-05-02T00:00:00Z", true);
+        stored(4, "Example", "2024-05-03T00:00:00Z", false);
+        stored(5, "Example", "2024-06-01T00:00:00Z", true); // To is exclusive
+
+        List<JsonNode> lines = export("2024-05-01T00:00:00Z", "2024-06-01T00:00:00Z", "Example", true, null);
+
+        assertThat(ids(lines)).containsExactly(id(2));
+        assertThat(queries.get(0).getQueryObject())
+            .containsEntry("publishedAt", new Document("$gte", "2024-05-01T00:00:00Z").append("$lt", "2024-06-01T00:00:00Z"))
+            .containsEntry("sourceName", "Example")
+            .containsEntry("isHeadline", true);
+    }
+
+    @Test
+    void anInterruptedExportResumesAfterTheLastReceivedId() throws Exception {
+        for (int i = 1; i <= 5; i++) {
+            stored(i, "Example", "2024-05-0" + i + "T00:00:00Z", i % 2 == 1);
+        }
+        List<String> complete = ids(export(null, null, null, true, null));
+
+        // The client received the first two lines, then resumes with the last id it saw as the cursor
+        String cursor = complete.get(1);
+        assertThat(newsExportService.isValidCursor(cursor)).isTrue();
+        List<String> resumed = ids(export(null, null, null, true, cursor));
+
+        assertThat(complete).containsExactly(id(1), id(3), id(5));
+        assertThat(resumed).containsExactly(id(5));
+        assertThat(queries.get(1).getQueryObject()).containsEntry("_id", new Document("$gt", new ObjectId(cursor)));
+    }
+
+    @Test
+    void aBlankCursorStartsFromTheBeginning() throws Exception {
+        stored(1, "Example", "2024-05-01T00:00:00Z", true);
+
+        assertThat(ids(export(null, null, null, null, " "))).containsExactly(id(1));
+        assertThat(queries.get(0).getQueryObject()).doesNotContainKey("_id");
+    }
+
+    @Test
+    void onlyAbsentBlankOrObjectIdCursorsAreValid() {
+        assertThat(newsExportService.isValidCursor(null)).isTrue();
+        assertThat(newsExportService.isValidCursor("")).isTrue();
+        assertThat(newsExportService.isValidCursor(id(1))).isTrue();
+        assertThat(newsExportService.isValidCursor("not-an-id")).isFalse();
+        assertThat(newsExportService.isValidCursor(id(1) + "0")).isFalse();
+    }
+
+    @Test
+    void anEmptyExportWritesNothing() throws Exception {
+        assertThat(export(null, null, "Nobody", null, null)).isEmpty();
+    }
+}
@@ -0,0 +1,175 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collection;
+import java.util.List;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.model.NewsArticle;
+import com.newsaggregator.repository.NewsArticleRepository;
+
+
+/*
+ * NewsServiceTest.java
+ *
+ * Unit tests for ingesting News API responses with near-duplicate articles.
+ */
+class NewsServiceTest {
+
+    private static final String TITLE = "Central bank raises interest rates again";
+    private static final String DESCRIPTION = "The central bank raised its benchmark interest rate by a quarter point on Wednesday";
+
+    private final NewsArticleRepository newsArticleRepository = mock(NewsArticleRepository.class);
+    private final ArticleWriteBehind articleWriteBehind = mock(ArticleWriteBehind.class);
+    private NearDuplicateIndex nearDuplicateIndex;
+    private NewsService newsService;
+
+    @BeforeEach
+    void setUp() {
+        nearDuplicateIndex = new NearDuplicateIndex();
+        ReflectionTestUtils.setField(nearDuplicateIndex, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(nearDuplicateIndex, "enabled", true);
+        ReflectionTestUtils.setField(nearDuplicateIndex, "maxDistance", 3);
+        ReflectionTestUtils.setField(nearDuplicateIndex, "windowDays", 3L);
+        ReflectionTestUtils.setField(nearDuplicateIndex, "maxEntries", 100);
+        ReflectionTestUtils.invokeMethod(nearDuplicateIndex, "init");
+
+        newsService = new NewsService();
+        ReflectionTestUtils.setField(newsService, "newsArticleRepository", newsArticleRepository);
+        ReflectionTestUtils.setField(newsService, "articleWriteBehind", articleWriteBehind);
+        ReflectionTestUtils.setField(newsService, "nearDuplicateIndex", nearDuplicateIndex);
+        ReflectionTestUtils.setField(newsService, "eventPublisher", (ApplicationEventPublisher) event -> { });
+        when(newsArticleRepository.findByUrlIn(anyCollection())).thenReturn(List.of());
+    }
+
+    private static String response(String... sources) {
+        StringBuilder articles = new StringBuilder();
+        for (String source : sources) {
+            if (articles.length() > 0) {
+                articles.append(',');
+            }
+            articles.append("{\"source\":{\"name\":\"").append(source).append("\"},")
+                .append("\"title\":\"").append(TITLE).append(" - ").append(source).append("\",")
+                .append("\"description\":\"").append(DESCRIPTION).append("\",")
+                .append("\"url\":\"https://").append(source).append(".example.com/rates\",")
+                .append("\"publishedAt\":\"2024-05-01T10:00:00Z\"}");
+        }
+        return "{\"status\":\"ok\",\"articles\":[" + articles + "]}";
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<NewsArticle> written() {
+        ArgumentCaptor<Collection<NewsArticle>> captor = ArgumentCaptor.forClass(Collection.class);
+        verify(articleWriteBehind).enqueue(captor.capture());
+        return List.copyOf(captor.getValue());
+    }
+
+    @Test
+    void duplicatesInOneResponseReturnTheirRepresentativeOnce() {
+        List<NewsArticle> articles = newsService.ingestResponse(response("reuters", "bbc", "cnn"), true, "us", FetchContext.scheduled());
+
+        assertThat(articles).extracting(NewsArticle::getSourceName).containsExactly("reuters");
+        assertThat(written()).extracting(NewsArticle::getSourceName).containsExactly("reuters");
+    }
+
+    @Test
+    void duplicatesOfAStoredArticleReturnItMarkedAsHeadline() {
+        NewsArticle stored = new NewsArticle(TITLE + " - ap", DESCRIPTION, "https://ap.example.com/rates", "ap",
+            "2024-05-01T09:00:00Z", null, null, false);
+        stored.setId("stored");
+        nearDuplicateIndex.add("stored", ArticleSimHash.of(stored.getTitle(), stored.getDescription()));
+        when(newsArticleRepository.findAllById(anyList())).thenReturn(List.of(stored));
+
+        List<NewsArticle> articles = newsService.ingestResponse(response("bbc"), true, "us", FetchContext.scheduled());
+
+        assertThat(articles).containsExactly(stored);
+        assertThat(stored.getIsHeadline()).isTrue();
+        assertThat(written()).containsExactly(stored);
+    }
+
+    @Test
+    void aQueuedRepresentativeIsTakenFromTheWriteBehindQueue() {
+        NewsArticle queued = new NewsArticle(TITLE + " - ap", DESCRIPTION, "https://ap.example.com/rates", "ap",
+            "2024-05-01T09:00:00Z", null, null, false);
+        queued.setId("queued");
+        nearDuplicateIndex.add("queued", ArticleSimHash.of(queued.getTitle(), queued.getDescription()));
+        when(articleWriteBehind.findPending("queued")).thenReturn(queued);
+
+        List<NewsArticle> articles = newsService.ingestResponse(response("bbc"), true, "us", FetchContext.scheduled());
+
+        assertThat(articles).singleElement().satisfies(article -> {
+            assertThat(article.getId()).isEqualTo("queued");
+            assertThat(article.getIsHeadline()).isTrue();
+        });
+        assertThat(written()).containsExactlyElementsOf(articles);
+        assertThat(queued.getIsHeadline()).isFalse(); // The queued version is left as it was queued
+        verify(newsArticleRepository, never()).findAllById(anyList());
+    }
+
+    @Test
+    void theDuplicateIsKeptWhenItsRepresentativeWasNeverStored() {
+        nearDuplicateIndex.add("lost", ArticleSimHash.of(TITLE, DESCRIPTION));
+        when(newsArticleRepository.findAllById(anyList())).thenReturn(List.of());
+
+        List<NewsArticle> articles = newsService.ingestResponse(response("bbc", "cnn"), false, null, FetchContext.scheduled());
+
+        assertThat(articles).extracting(NewsArticle::getSourceName).containsExactly("bbc");
+        assertThat(written()).containsExactlyElementsOf(articles);
+        String bbcId = articles.get(0).getId();
+        assertThat(nearDuplicateIndex.findDuplicate("other", ArticleSimHash.of(TITLE, DESCRIPTION))).isEqualTo(bbcId);
+        assertThat(nearDuplicateIndex.size()).isEqualTo(1);
+    }
+
+    @Test
+    void articlesWhoseWriteFailedAreRemovedFromTheIndex() {
+        doThrow(new IllegalStateException("MongoDB is unavailable")).when(articleWriteBehind).enqueue(anyCollection());
+
+        assertThat(newsService.ingestResponse(response("reuters"), true, "us", FetchContext.scheduled())).isEmpty();
+
+        assertThat(nearDuplicateIndex.size()).isZero();
+        assertThat(nearDuplicateIndex.findDuplicate("other", ArticleSimHash.of(TITLE, DESCRIPTION))).isNull();
+    }
+
+    @Test
+    void searchResultsDoNotOverwriteAQueuedHeadline() {
+        String url = "https://bbc.example.com/rates";
+        NewsArticle queued = new NewsArticle(TITLE + " - bbc", DESCRIPTION, url, "bbc", "2024-05-01T10:00:00Z", null, null, true);
+        queued.setId(NewsApiArticleMapper.idForUrl(url));
+        when(articleWriteBehind.findPending(queued.getId())).thenReturn(queued);
+
+        newsService.ingestResponse(response("bbc"), false, null, FetchContext.scheduled());
+
+        assertThat(written()).isEmpty(); // Treated like a stored article, so the search does not queue its own version
+        assertThat(queued.getIsHeadline()).isTrue();
+    }
+
+    @Test
+    void headlineUpdatesOfAQueuedArticleAreQueuedAsACopy() {
+        String url = "https://bbc.example.com/rates";
+        NewsArticle queued = new NewsArticle(TITLE + " - bbc", DESCRIPTION, url, "bbc", "2024-05-01T10:00:00Z", null, "old.png", true);
+        queued.setId(NewsApiArticleMapper.idForUrl(url));
+        when(articleWriteBehind.findPending(queued.getId())).thenReturn(queued);
+
+        newsService.ingestResponse(response("bbc"), true, "us", FetchContext.scheduled());
+
+        List<NewsArticle> written = written();
+        assertThat(written).hasSize(1);
+        assertThat(written.get(0)).isNotSameAs(queued);
+        assertThat(written.get(0).getId()).isEqualTo(queued.getId());
+        assertThat(written.get(0).getImageUrl()).isEmpty(); // The response has no image any more
+        assertThat(queued.getImageUrl()).isEqualTo("old.png"); // The queued version is left as it was queued
+    }
+}
@@ -0,0 +1,224 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * PagePrefetcherTest.java
+ *
+ * Unit tests for next-page prefetching into a real ListingPageCache: the global budget, skipping pages that are
+ * cached, loading or queued, the News API reserve, and serving a prefetched page.
+ */
+class PagePrefetcherTest {
+
+    private final NewsService newsService = mock(NewsService.class);
+    private final RateLimitService rateLimitService = mock(RateLimitService.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch loadsMayFinish = new CountDownLatch(1);
+    private ListingPageCache listingPageCache;
+    private PagePrefetcher prefetcher;
+
+    @BeforeEach
+    void setUp() {
+        listingPageCache = new ListingPageCache();
+        ReflectionTestUtils.setField(listingPageCache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(listingPageCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(listingPageCache, "ttlMillis", 60000L);
+        ReflectionTestUtils.setField(listingPageCache, "fallbackTtlMillis", 60000L);
+        ReflectionTestUtils.setField(listingPageCache, "maxEntries", 100);
+        ReflectionTestUtils.invokeMethod(listingPageCache, "init");
+
+        when(rateLimitService.availableUpstreamCalls()).thenReturn(100);
+        when(newsService.fetchSearchPage(anyString(), anyString(), anyInt(), anyInt(), any()))
+            .thenAnswer(invocation -> ListingPageCache.LoadedPage.upstream(articles("search-" + invocation.getArgument(2))));
+        when(newsService.fetchTopHeadlinesPage(anyString(), anyInt(), anyInt(), any()))
+            .thenAnswer(invocation -> ListingPageCache.LoadedPage.upstream(articles("headline-" + invocation.getArgument(1))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        loadsMayFinish.countDown();
+        if (prefetcher != null) {
+            ReflectionTestUtils.invokeMethod(prefetcher, "shutdown");
+        }
+    }
+
+    private void start(int burst) {
+        prefetcher = new PagePrefetcher();
+        ReflectionTestUtils.setField(prefetcher, "newsService", newsService);
+        ReflectionTestUtils.setField(prefetcher, "listingPageCache", listingPageCache);
+        ReflectionTestUtils.setField(prefetcher, "rateLimitService", rateLimitService);
+        ReflectionTestUtils.setField(prefetcher, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(prefetcher, "enabled", true);
+        ReflectionTestUtils.setField(prefetcher, "perMinute", 0.001); // No refill during a test
+        ReflectionTestUtils.setField(prefetcher, "burst", burst);
+        ReflectionTestUtils.setField(prefetcher, "upstreamReserve", 20);
+        ReflectionTestUtils.setField(prefetcher, "maxResults", 100);
+        ReflectionTestUtils.setField(prefetcher, "threads", 2);
+        ReflectionTestUtils.setField(prefetcher, "queueSize", 8);
+        ReflectionTestUtils.invokeMethod(prefetcher, "init");
+    }
+
+    private static List<NewsArticle> articles(String id) {
+        return List.of(ArticleETagsTest.article(id, "Title " + id));
+    }
+
+    private double count(String result) {
+        return meterRegistry.get("news.prefetch.requests").tag("result", result).counter().count();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    // Make loads of search pages wait until loadsMayFinish
+    private void blockSearchLoads() {
+        when(newsService.fetchSearchPage(anyString(), anyString(), anyInt(), anyInt(), any())).thenAnswer(invocation -> {
+            loadsMayFinish.await(5, TimeUnit.SECONDS);
+            return ListingPageCache.LoadedPage.upstream(articles("search-" + invocation.getArgument(2)));
+        });
+    }
+
+    @Test
+    void aPrefetchedSearchPageIsPickedUpByPeek() throws Exception {
+        start(10);
+        String key = ListingPageCache.searchKey("mars", "publishedAt", 2, 20);
+
+        prefetcher.afterSearch("mars", "publishedAt", 1, 20, 20);
+
+        await(() -> listingPageCache.peek(key) != null);
+        assertThat(listingPageCache.peek(key).getArticles()).extracting(NewsArticle::getId).containsExactly("search-2");
+        assertThat(count("scheduled")).isEqualTo(1);
+    }
+
+    @Test
+    void aPrefetchedHeadlinesPageIsCached() throws Exception {
+        start(10);
+        String key = ListingPageCache.headlinesKey("us", 3, 20);
+
+        prefetcher.afterHeadlines("us", 2, 20, 20);
+
+        await(() -> listingPageCache.peek(key) != null);
+        verify(newsService).fetchTopHeadlinesPage(eq("us"), eq(3), eq(20), any());
+    }
+
+    @Test
+    void theGlobalBudgetLimitsPrefetches() throws Exception {
+        start(2);
+
+        prefetcher.afterSearch("mars", "publishedAt", 1, 20, 20);
+        prefetcher.afterSearch("venus", "publishedAt", 1, 20, 20);
+        prefetcher.afterHeadlines("us", 1, 20, 20); // Other listings share the budget
+
+        assertThat(count("scheduled")).isEqualTo(2);
+        assertThat(count("throttled")).isEqualTo(1);
+        verify(newsService, timeout(5000).times(2)).fetchSearchPage(anyString(), anyString(), eq(2), eq(20), any());
+        verify(newsService, never()).fetchTopHeadlinesPage(anyString(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void aCachedPageIsNotPrefetched() {
+        start(10);
+        listingPageCache.put(ListingPageCache.searchKey("mars", "publishedAt", 2, 20), ListingPageCache.searchTag("mars"),
+            ListingPageCache.LoadedPage.upstream(articles("cached")));
+
+        prefetcher.afterSearch("mars", "publishedAt", 1, 20, 20);
+
+        assertThat(count("cancelled")).isEqualTo(1);
+        assertThat(count("scheduled")).isZero();
+        verify(newsService, never()).fetchSearchPage(anyString(), anyString(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void aPageBeingLoadedIsNotPrefetched() throws Exception {
+        start(10);
+        String key = ListingPageCache.headlinesKey("us", 2, 20);
+        CountDownLatch loading = new CountDownLatch(1);
+        CompletableFuture<ListingPageCache.CachedPage> request = CompletableFuture.supplyAsync(() ->
+            listingPageCache.getOrLoad(key, ListingPageCache.headlinesTag("us"), () -> {
+                loading.countDown();
+                try {
+                    loadsMayFinish.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return ListingPageCache.LoadedPage.upstream(articles("requested"));
+            }));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        prefetcher.afterHeadlines("us", 1, 20, 20);
+        loadsMayFinish.countDown();
+
+        assertThat(request.get(5, TimeUnit.SECONDS).getArticles()).extracting(NewsArticle::getId).containsExactly("requested");
+        assertThat(count("cancelled")).isEqualTo(1);
+        verify(newsService, never()).fetchTopHeadlinesPage(anyString(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void aPageAlreadyQueuedIsNotPrefetchedTwice() throws Exception {
+        blockSearchLoads();
+        start(10);
+
+        prefetcher.afterSearch("mars", "publishedAt", 1, 20, 20);
+        prefetcher.afterSearch("mars", "publishedAt", 1, 20, 20);
+        loadsMayFinish.countDown();
+
+        assertThat(count("scheduled")).isEqualTo(1);
+        assertThat(count("cancelled")).isEqualTo(1);
+        await(() -> listingPageCache.contains(ListingPageCache.searchKey("mars", "publishedAt", 2, 20)));
+        verify(newsService, times(1)).fetchSearchPage(anyString(), anyString(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void theNewsApiReserveIsLeftToInteractiveRequests() throws Exception {
+        start(10);
+        when(rateLimitService.availableUpstreamCalls()).thenReturn(20);
+
+        prefetcher.afterSearch("mars", "publishedAt", 1, 20, 20);
+
+        ArgumentCaptor<FetchContext> context = ArgumentCaptor.forClass(FetchContext.class);
+        verify(newsService, timeout(5000)).fetchSearchPage(eq("mars"), eq("publishedAt"), eq(2), eq(20), context.capture());
+        assertThat(context.getValue().isUpstreamAllowed()).isFalse(); // Read from the database instead
+    }
+
+    @Test
+    void noPrefetchAfterAShortPageOrPastTheLastResults() {
+        start(10);
+
+        prefetcher.afterSearch("mars", "publishedAt", 1, 20, 12); // The last page
+        prefetcher.afterHeadlines("us", 5, 20, 20); // Page 6 would start past result 100
+
+        assertThat(count("scheduled")).isZero();
+        assertThat(count("throttled")).isZero();
+    }
+}
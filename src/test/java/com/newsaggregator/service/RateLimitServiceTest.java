@@ -0,0 +1,116 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+/*
+ * RateLimitServiceTest.java
+ *
+ * Unit tests for the per-client and global News API budgets.
+ */
+class RateLimitServiceTest {
+
+    private final JobLeaseService jobLeaseService = mock(JobLeaseService.class);
+
+    private RateLimitService service(int clientBurst, int upstreamBurst, int maxTrackedClients) {
+        RateLimitService service = new RateLimitService();
+        ReflectionTestUtils.setField(service, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(service, "jobLeaseService", jobLeaseService);
+        ReflectionTestUtils.setField(service, "clientRequestsPerMinute", 0.01); // No refill during the test
+        ReflectionTestUtils.setField(service, "clientBurst", clientBurst);
+        ReflectionTestUtils.setField(service, "upstreamDailyQuota", 1.0);
+        ReflectionTestUtils.setField(service, "upstreamBurst", upstreamBurst);
+        ReflectionTestUtils.setField(service, "maxTrackedClients", maxTrackedClients);
+        ReflectionTestUtils.invokeMethod(service, "init");
+        return service;
+    }
+
+    @Test
+    void clientBudgetIsIndependentOfOtherClients() {
+        RateLimitService service = service(2, 100, 1000);
+
+        assertThat(service.tryAcquireUpstream("a")).isTrue();
+        assertThat(service.tryAcquireUpstream("a")).isTrue();
+        assertThat(service.tryAcquireUpstream("a")).isFalse();
+        assertThat(service.tryAcquireUpstream("b")).isTrue();
+    }
+
+    @Test
+    void clientTokenIsRefundedWhenTheGlobalBudgetRefuses() {
+        RateLimitService service = service(1, 1, 1000);
+
+        assertThat(service.tryAcquireUpstream(null)).isTrue(); // Background job spends the global budget
+        assertThat(service.tryAcquireUpstream("a")).isFalse();
+        assertThat(service.availableUpstreamCalls()).isZero();
+
+        ReflectionTestUtils.setField(service, "upstreamBucket", new TokenBucket(1, 1).newBucket()); // Global budget back
+        assertThat(service.tryAcquireUpstream("a")).isTrue(); // The client's only token was not lost
+    }
+
+    @Test
+    void fullClientMapIsTrimmedBelowItsBound() {
+        RateLimitService service = service(5, 100000, 100);
+
+        for (int i = 0; i < 1000; i++) {
+            service.tryAcquireUpstream("client-" + i); // Every bucket stays partly used
+        }
+
+        assertThat(service.trackedClients()).isLessThanOrEqualTo(100);
+    }
+
+    @Test
+    void globalBudgetIsSharedBetweenTheLiveNodes() {
+        when(jobLeaseService.liveNodeCount()).thenReturn(3L);
+        RateLimitService service = service(100, 9, 1000);
+
+        assertThat(service.availableUpstreamCalls()).isEqualTo(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(service.tryAcquireUpstream(null)).isTrue();
+        }
+        assertThat(service.tryAcquireUpstream(null)).isFalse();
+
+        when(jobLeaseService.liveNodeCount()).thenReturn(1L); // The other nodes left
+        service.shareAmongLiveNodes();
+        assertThat(service.availableUpstreamCalls()).isEqualTo(6); // The three spent tokens stay spent
+        assertThat(service.tryAcquireUpstream(null)).isTrue();
+    }
+
+    @Test
+    void eachNodeKeepsAtLeastOneToken() {
+        when(jobLeaseService.liveNodeCount()).thenReturn(50L);
+        RateLimitService service = service(100, 20, 1000);
+
+        assertThat(service.availableUpstreamCalls()).isEqualTo(1);
+    }
+
+    @Test
+    void nodeCountFailuresKeepTheCurrentShare() {
+        when(jobLeaseService.liveNodeCount()).thenReturn(2L);
+        RateLimitService service = service(100, 4, 1000);
+        when(jobLeaseService.liveNodeCount()).thenThrow(new IllegalStateException("MongoDB is down"));
+
+        service.shareAmongLiveNodes();
+
+        assertThat(service.availableUpstreamCalls()).isEqualTo(2);
+    }
+
+    @Test
+    void refundGivesBackTheClientAndTheGlobalToken() {
+        RateLimitService service = service(1, 1, 1000);
+
+        assertThat(service.tryAcquireUpstream("a")).isTrue();
+        assertThat(service.tryAcquireUpstream("b")).isFalse(); // Global budget spent
+        assertThat(service.availableUpstreamCalls()).isZero();
+
+        service.refundUpstream("a"); // The call was not sent
+
+        assertThat(service.availableUpstreamCalls()).isEqualTo(1);
+        assertThat(service.tryAcquireUpstream("a")).isTrue();
+    }
+}
@@ -0,0 +1,146 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * RelatedArticleIndexTest.java
+ *
+ * Unit tests for the MinHash/LSH related-articles index: candidate selection, the similarity threshold,
+ * ranking, and pruning on delete. Articles are made of numbered words, so their word sets overlap exactly as chosen.
+ */
+class RelatedArticleIndexTest {
+
+    private RelatedArticleIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = newIndex(100);
+    }
+
+    private static RelatedArticleIndex newIndex(int capacity) {
+        RelatedArticleIndex index = new RelatedArticleIndex();
+        ReflectionTestUtils.setField(index, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "enabled", true);
+        ReflectionTestUtils.setField(index, "capacity", capacity);
+        ReflectionTestUtils.invokeMethod(index, "init");
+        return index;
+    }
+
+    // An article whose text is the words "term<from>" up to "term<to - 1>"
+    private static NewsArticle article(String id, int from, int to, String publishedAt) {
+        String text = IntStream.range(from, to).mapToObj(i -> "term" + i).collect(Collectors.joining(" "));
+        NewsArticle article = new NewsArticle(text, null, "https://example.com/" + id, "Example", publishedAt, null, null, false);
+        article.setId(id);
+        return article;
+    }
+
+    private static NewsArticle article(String id, int from, int to) {
+        return article(id, from, to, "2024-05-01T10:00:00Z");
+    }
+
+    @Test
+    void articlesWithTheSameWordsAreRelated() {
+        index.add(article("a", 0, 20));
+        index.add(article("b", 0, 20));
+
+        assertThat(index.findRelated("a", 10, 1.0)).containsExactly("b");
+        assertThat(index.findRelated("b", 10, 1.0)).containsExactly("a");
+    }
+
+    @Test
+    void onlyArticlesSharingABandAreCandidates() {
+        index.add(article("a", 0, 20));
+        index.add(article("close", 0, 18)); // Jaccard similarity 0.9: shares a band
+        index.add(article("unrelated", 100, 120)); // No common word
+
+        assertThat(index.findRelated("a", 10, 0.0)).containsExactly("close"); // Even without a threshold
+    }
+
+    @Test
+    void candidatesBelowTheThresholdAreLeftOut() {
+        index.add(article("a", 0, 20));
+        index.add(article("same", 0, 20)); // Jaccard similarity 1
+        index.add(article("half", 0, 15)); // 15 of 20 words: 0.75
+
+        assertThat(index.findRelated("a", 10, 1.0)).containsExactly("same");
+        assertThat(index.findRelated("a", 10, 0.3)).containsExactly("same", "half"); // Most similar first
+    }
+
+    @Test
+    void equallySimilarArticlesAreRankedNewerFirstAndLimited() {
+        index.add(article("a", 0, 20));
+        index.add(article("older", 0, 20, "2024-05-01T08:00:00Z"));
+        index.add(article("newer", 0, 20, "2024-05-01T12:00:00Z"));
+        index.add(article("middle", 0, 20, "2024-05-01T10:00:00Z"));
+
+        assertThat(index.findRelated("a", 2, 0.5)).containsExactly("newer", "middle");
+    }
+
+    @Test
+    void unknownAndTooShortArticlesHaveNoRelatedArticles() {
+        index.add(article("a", 0, 20));
+        index.add(article("short", 0, 2)); // Fewer than 3 words: not indexed
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.findRelated("short", 10, 0.0)).isEmpty();
+        assertThat(index.findRelated("missing", 10, 0.0)).isEmpty();
+        assertThat(index.findRelated("a", 10, 0.0)).isEmpty();
+    }
+
+    @Test
+    void addingAnIndexedArticleAgainReplacesItsSignature() {
+        index.add(article("a", 0, 20));
+        index.add(article("b", 0, 20));
+        index.add(article("b", 100, 120)); // Edited into another story
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.findRelated("a", 10, 0.0)).isEmpty();
+    }
+
+    @Test
+    void articlesPublishedBeforeTheCutoffArePruned() {
+        index.add(article("old", 0, 20, "2024-04-01T00:00:00Z"));
+        index.add(article("a", 0, 20, "2024-05-01T00:00:00Z"));
+        index.add(article("b", 0, 20, "2024-05-02T00:00:00Z"));
+
+        assertThat(index.removePublishedBefore(Instant.parse("2024-04-15T00:00:00Z"))).isEqualTo(1);
+
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.findRelated("old", 10, 0.0)).isEmpty();
+        assertThat(index.findRelated("a", 10, 0.0)).containsExactly("b"); // The band chains still hold the others
+        assertThat(index.findRelated("b", 10, 0.0)).containsExactly("a");
+    }
+
+    @Test
+    void theOldestAddedArticleIsReplacedWhenFull() {
+        RelatedArticleIndex small = newIndex(3);
+        small.add(article("a", 0, 20));
+        small.add(article("b", 0, 20));
+        small.add(article("c", 0, 20));
+        small.add(article("d", 0, 20));
+
+        assertThat(small.size()).isEqualTo(3);
+        assertThat(small.findRelated("a", 10, 0.0)).isEmpty();
+        assertThat(small.findRelated("d", 10, 0.0)).containsExactlyInAnyOrder("b", "c");
+    }
+
+    @Test
+    void ingestedArticlesAreAdded() {
+        index.onNewsIngested(new NewsIngestedEvent("us", true, List.of(article("a", 0, 20), article("b", 0, 20)), 2));
+
+        assertThat(index.findRelated("a", 10, 1.0)).containsExactly("b");
+    }
+}
@@ -0,0 +1,189 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_SELF;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import com.mongodb.ReadPreference;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.FindIterable;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoDatabaseFactory;
+import org.springframework.data.mongodb.ReactiveMongoDatabaseFactory;
+import org.springframework.data.mongodb.core.MongoExceptionTranslator;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.convert.NoOpDbRefResolver;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.repository.NewsArticleRepository;
+
+
+/*
+ * SecondaryReadsTest.java
+ *
+ * Unit tests for routing tolerant reads to secondaries. The MongoDB driver is mocked: every read preference the
+ * templates apply to the news collection is recorded, and reads and writes are seen on the collection they used.
+ */
+class SecondaryReadsTest {
+
+    private static final ReadPreference SECONDARY_PREFERRED = ReadPreference.secondaryPreferred(90, TimeUnit.SECONDS);
+
+    private final MongoDatabaseFactory mongoDatabaseFactory = mock(MongoDatabaseFactory.class);
+    private final MongoDatabase database = mock(MongoDatabase.class);
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> primaryCollection = mock(MongoCollection.class); // As the database returns it
+    @SuppressWarnings("unchecked")
+    private final MongoCollection<Document> secondaryCollection = mock(MongoCollection.class); // With a read preference applied
+    private final List<ReadPreference> readPreferences = new ArrayList<>();
+    private final List<Bson> secondaryFilters = new ArrayList<>();
+    private MappingMongoConverter mongoConverter;
+
+    @BeforeEach
+    void setUp() {
+        when(mongoDatabaseFactory.getMongoDatabase()).thenReturn(database);
+        when(mongoDatabaseFactory.getExceptionTranslator()).thenReturn(new MongoExceptionTranslator());
+        when(database.getCollection("news", Document.class)).thenReturn(primaryCollection);
+        when(database.getCollection("news")).thenReturn(primaryCollection);
+        when(primaryCollection.getReadPreference()).thenReturn(ReadPreference.primary());
+        when(primaryCollection.withReadPreference(any())).thenAnswer(invocation -> {
+            readPreferences.add(invocation.getArgument(0));
+            when(secondaryCollection.getReadPreference()).thenReturn(invocation.getArgument(0));
+            return secondaryCollection;
+        });
+        when(secondaryCollection.withReadPreference(any())).thenReturn(secondaryCollection);
+        when(secondaryCollection.find(any(Bson.class), eq(Document.class))).thenAnswer(invocation -> {
+            secondaryFilters.add(invocation.getArgument(0));
+            return emptyResult();
+        });
+        when(primaryCollection.find(any(Bson.class), eq(Document.class))).thenAnswer(invocation -> emptyResult());
+
+        mongoConverter = new MappingMongoConverter(NoOpDbRefResolver.INSTANCE, new MongoMappingContext());
+        mongoConverter.afterPropertiesSet();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static FindIterable<Document> emptyResult() {
+        FindIterable<Document> iterable = mock(FindIterable.class, RETURNS_SELF);
+        MongoCursor<Document> cursor = mock(MongoCursor.class);
+        when(iterable.iterator()).thenReturn(cursor);
+        when(iterable.cursor()).thenReturn(cursor);
+        return iterable;
+    }
+
+    private SecondaryReads secondaryReads(boolean enabled) {
+        SecondaryReads secondaryReads = new SecondaryReads();
+        ReflectionTestUtils.setField(secondaryReads, "mongoDatabaseFactory", mongoDatabaseFactory);
+        ReflectionTestUtils.setField(secondaryReads, "reactiveMongoDatabaseFactory", mock(ReactiveMongoDatabaseFactory.class));
+        ReflectionTestUtils.setField(secondaryReads, "mongoConverter", mongoConverter);
+        ReflectionTestUtils.setField(secondaryReads, "enabled", enabled);
+        ReflectionTestUtils.setField(secondaryReads, "maxStalenessSeconds", 90L);
+        ReflectionTestUtils.invokeMethod(secondaryReads, "init");
+        return secondaryReads;
+    }
+
+    private static ReadPreference reactiveReadPreference(SecondaryReads secondaryReads) {
+        ReactiveMongoTemplate reactiveTemplate = (ReactiveMongoTemplate) ReflectionTestUtils.getField(secondaryReads, "reactiveTemplate");
+        return (ReadPreference) ReflectionTestUtils.getField(reactiveTemplate, "readPreference");
+    }
+
+    @Test
+    void listingAndSearchFallbacksReadFromSecondaries() {
+        NewsArticleRepository newsArticleRepository = mock(NewsArticleRepository.class);
+        NewsService newsService = new NewsService();
+        ReflectionTestUtils.setField(newsService, "newsArticleRepository", newsArticleRepository);
+        ReflectionTestUtils.setField(newsService, "rateLimitService", mock(RateLimitService.class)); // Over budget: the database answers
+        ReflectionTestUtils.setField(newsService, "secondaryReads", secondaryReads(true));
+        ReflectionTestUtils.setField(newsService, "apiBaseUrl", "https://newsapi.org/v2");
+        ReflectionTestUtils.setField(newsService, "apiKey", "key");
+
+        assertThat(newsService.fetchTopHeadlinesPage("us", 2, 20, FetchContext.forClient("a", 5000)).getArticles()).isEmpty();
+        assertThat(newsService.fetchSearchPage("mars", "publishedAt", 1, 20, FetchContext.forClient("a", 5000)).getArticles()).isEmpty();
+
+        assertThat(readPreferences).containsExactly(SECONDARY_PREFERRED, SECONDARY_PREFERRED);
+        assertThat(secondaryFilters).hasSize(2);
+        assertThat(secondaryFilters.get(0).toBsonDocument()).containsKey("isHeadline");
+        assertThat(secondaryFilters.get(1).toBsonDocument()).containsKey("$or");
+        verifyNoInteractions(newsArticleRepository); // Not the primary-reading repository
+    }
+
+    @Test
+    void exportsReadFromSecondaries() throws Exception {
+        NewsExportService newsExportService = new NewsExportService();
+        ReflectionTestUtils.setField(newsExportService, "secondaryReads", secondaryReads(true));
+        ReflectionTestUtils.setField(newsExportService, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(newsExportService, "batchSize", 100);
+
+        assertThat(newsExportService.export(null, null, "BBC News", null, null, new ByteArrayOutputStream())).isZero();
+
+        assertThat(readPreferences).containsExactly(SECONDARY_PREFERRED);
+        assertThat(secondaryFilters).singleElement().satisfies(filter -> assertThat(filter.toBsonDocument()).containsKey("sourceName"));
+        verify(primaryCollection, never()).find(any(Bson.class), eq(Document.class));
+    }
+
+    @Test
+    void theReactiveFallbacksReadFromSecondariesToo() {
+        assertThat(reactiveReadPreference(secondaryReads(true))).isEqualTo(SECONDARY_PREFERRED);
+    }
+
+    @Test
+    void disabledSecondaryReadsUseThePrimary() {
+        SecondaryReads secondaryReads = secondaryReads(false);
+
+        secondaryReads.findHeadlines(PageRequest.of(0, 20, Sort.by(Sort.Direction.DESC, "publishedAt")));
+
+        assertThat(readPreferences).isEmpty(); // The collection already reads from the primary
+        verify(primaryCollection).find(any(Bson.class), eq(Document.class));
+        assertThat(secondaryReads.getTemplate().getReadPreference()).isEqualTo(ReadPreference.primary());
+        assertThat(reactiveReadPreference(secondaryReads)).isEqualTo(ReadPreference.primary());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void writesStayOnThePrimary() {
+        when(primaryCollection.bulkWrite(anyList(), any(BulkWriteOptions.class))).thenReturn(mock(BulkWriteResult.class));
+        secondaryReads(true);
+
+        // Ingestion writes through Spring Boot's template on the same database factory, which has no read preference
+        ArticleWriteBehind writeBehind = new ArticleWriteBehind();
+        ReflectionTestUtils.setField(writeBehind, "mongoTemplate", new MongoTemplate(mongoDatabaseFactory, mongoConverter));
+        ReflectionTestUtils.setField(writeBehind, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(writeBehind, "queueCapacity", 10);
+        ReflectionTestUtils.setField(writeBehind, "batchSize", 10);
+        ReflectionTestUtils.setField(writeBehind, "flushIntervalMillis", 1000L);
+        ReflectionTestUtils.setField(writeBehind, "offerTimeoutMillis", 10L);
+        ReflectionTestUtils.setField(writeBehind, "retryBackoffMillis", 10L);
+        ReflectionTestUtils.invokeMethod(writeBehind, "init");
+
+        writeBehind.enqueue(List.of(ArticleETagsTest.article("a", "A")));
+        ReflectionTestUtils.invokeMethod(writeBehind, "shutdown"); // Writes what is still queued
+
+        verify(primaryCollection).bulkWrite(anyList(), any(BulkWriteOptions.class));
+        verify(primaryCollection, never()).withReadPreference(any());
+        verifyNoInteractions(secondaryCollection);
+    }
+}
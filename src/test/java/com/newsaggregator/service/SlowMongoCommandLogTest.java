@@ -0,0 +1,128 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.concurrent.TimeUnit;
+import com.mongodb.event.CommandFailedEvent;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+/*
+ * SlowMongoCommandLogTest.java
+ *
+ * Unit tests for the slow MongoDB command log: query shapes, the threshold and the size of the kept log.
+ */
+class SlowMongoCommandLogTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private SlowMongoCommandLog log;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        log = new SlowMongoCommandLog();
+        ReflectionTestUtils.setField(log, "mongoTemplate", mock(ObjectProvider.class)); // Explains fail quietly
+        ReflectionTestUtils.setField(log, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(log, "slowCommandMillis", 100L);
+        ReflectionTestUtils.setField(log, "logSize", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(log, "shutdown");
+    }
+
+    // Run a find through the listener: started, then succeeded after elapsedMillis
+    private void find(int requestId, String filter, long elapsedMillis) {
+        CommandStartedEvent started = mock(CommandStartedEvent.class);
+        when(started.getCommandName()).thenReturn("find");
+        when(started.getRequestId()).thenReturn(requestId);
+        when(started.getCommand()).thenReturn(BsonDocument.parse("{\"find\": \"news_articles\", \"filter\": " + filter + ", \"$db\": \"news\"}"));
+        log.commandStarted(started);
+
+        CommandSucceededEvent succeeded = mock(CommandSucceededEvent.class);
+        when(succeeded.getCommandName()).thenReturn("find");
+        when(succeeded.getDatabaseName()).thenReturn("news");
+        when(succeeded.getRequestId()).thenReturn(requestId);
+        when(succeeded.getElapsedTime(TimeUnit.MILLISECONDS)).thenReturn(elapsedMillis);
+        log.commandSucceeded(succeeded);
+    }
+
+    @Test
+    void shapesKeepTheQueryStructureButNoValues() {
+        BsonDocument command = BsonDocument.parse("""
+            {"find": "news_articles",
+             "filter": {"sourceName": "BBC News", "publishedAt": {"$gte": "2024-05-01"}, "url": {"$in": ["a", "b"]},
+                        "$or": [{"title": {"$regex": "mars", "$options": "i"}}, {"isHeadline": true}]},
+             "sort": {"publishedAt": -1},
+             "limit": 20, "lsid": {"id": "session"}}""");
+
+        BsonDocument shape = SlowMongoCommandLog.shapeOf(command);
+
+        assertThat(shape).isEqualTo(BsonDocument.parse("""
+            {"filter": {"sourceName": "?", "publishedAt": {"$gte": "?"}, "url": {"$in": "[?]"},
+                        "$or": [{"title": "/?/"}, {"isHeadline": "?"}]},
+             "sort": {"publishedAt": "?"}}"""));
+    }
+
+    @Test
+    void pipelinesAreMaskedStageByStage() {
+        BsonDocument command = BsonDocument.parse("""
+            {"aggregate": "news_articles",
+             "pipeline": [{"$match": {"title": {"$regularExpression": {"pattern": "mars", "options": "i"}}}}, {"$limit": 5}]}""");
+
+        assertThat(SlowMongoCommandLog.shapeOf(command)).isEqualTo(BsonDocument.parse("""
+            {"pipeline": [{"$match": {"title": "/?/"}}, {"$limit": "?"}]}"""));
+    }
+
+    @Test
+    void onlyCommandsAtOrAboveTheThresholdAreRecorded() {
+        find(1, "{\"url\": \"https://example.com/a\"}", 99);
+        find(2, "{\"url\": \"https://example.com/b\"}", 100);
+
+        assertThat(log.getRecent()).hasSize(1);
+        SlowMongoCommandLog.SlowCommand slow = log.getRecent().get(0);
+        assertThat(slow.getCommand()).isEqualTo("find");
+        assertThat(slow.getCollection()).isEqualTo("news_articles");
+        assertThat(slow.getElapsedMillis()).isEqualTo(100);
+        assertThat(slow.getShape()).contains("\"url\": \"?\"").doesNotContain("example.com");
+        assertThat(slow.getRepositoryMethod()).isEqualTo("none"); // Not issued through a repository
+        assertThat(meterRegistry.get("mongodb.slow.commands").tag("collection", "news_articles").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void failedCommandsAreRecordedWithTheirError() {
+        CommandFailedEvent failed = mock(CommandFailedEvent.class);
+        when(failed.getCommandName()).thenReturn("update");
+        when(failed.getRequestId()).thenReturn(1);
+        when(failed.getElapsedTime(TimeUnit.MILLISECONDS)).thenReturn(500L);
+        when(failed.getThrowable()).thenReturn(new IllegalStateException("timeout"));
+
+        log.commandFailed(failed);
+
+        assertThat(log.getRecent()).singleElement().satisfies(slow -> {
+            assertThat(slow.getError()).isEqualTo("IllegalStateException");
+            assertThat(slow.getShape()).isNull(); // Only reads are kept until they finish
+        });
+    }
+
+    @Test
+    void onlyTheMostRecentSlowCommandsAreKept() {
+        for (int i = 1; i <= 5; i++) {
+            find(i, "{\"n\": " + i + "}", 100 + i);
+        }
+
+        assertThat(log.getRecent()).extracting(SlowMongoCommandLog.SlowCommand::getElapsedMillis).containsExactly(105L, 104L, 103L);
+    }
+}
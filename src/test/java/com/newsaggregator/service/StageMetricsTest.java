@@ -0,0 +1,85 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+/*
+ * StageMetricsTest.java
+ *
+ * Unit tests for publishing stage timings: the Server-Timing header format and the per-stage timers.
+ */
+class StageMetricsTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private StageMetrics stageMetrics;
+
+    @BeforeEach
+    void setUp() {
+        stageMetrics = new StageMetrics();
+        ReflectionTestUtils.setField(stageMetrics, "meterRegistry", meterRegistry);
+    }
+
+    // Timings with exact durations instead of measured ones
+    @SuppressWarnings("unchecked")
+    private static StageTimings timings(Object... stagesAndNanos) {
+        StageTimings timings = new StageTimings();
+        Map<String, Long> nanosByStage = (Map<String, Long>) ReflectionTestUtils.getField(timings, "nanosByStage");
+        for (int i = 0; i < stagesAndNanos.length; i += 2) {
+            nanosByStage.put((String) stagesAndNanos[i], ((Number) stagesAndNanos[i + 1]).longValue());
+        }
+        return timings;
+    }
+
+    @Test
+    void stagesAreFormattedAsNameAndDurationInMillisInTheOrderTheyRan() {
+        StageTimings timings = timings("upstream", 812_430_000L, "decode", 3_060_000L, "db-read", 40_000L);
+
+        assertThat(stageMetrics.publish("search", timings)).isEqualTo("upstream;dur=812.4, decode;dur=3.1, db-read;dur=0.0");
+    }
+
+    @Test
+    void descriptionsAreQuotedBeforeTheDuration() {
+        StageTimings timings = timings("cache", 120_000L, "total", 1_500_000L);
+        timings.describe("cache", "hit");
+
+        assertThat(stageMetrics.publish("top-headlines", timings)).isEqualTo("cache;desc=\"hit\";dur=0.1, total;dur=1.5");
+    }
+
+    @Test
+    void measuredStagesAccumulateAndMatchTheHeaderSyntax() {
+        StageTimings timings = new StageTimings();
+        timings.record("db-read", System.nanoTime() - 2_000_000);
+        timings.record("db-read", System.nanoTime() - 1_000_000); // A stage that runs twice is one entry
+        timings.record("total", System.nanoTime() - 5_000_000);
+
+        String header = stageMetrics.publish("search", timings);
+
+        assertThat(header).matches("db-read;dur=\\d+\\.\\d, total;dur=\\d+\\.\\d");
+        assertThat(Double.parseDouble(header.substring("db-read;dur=".length(), header.indexOf(',')))).isGreaterThanOrEqualTo(3.0);
+    }
+
+    @Test
+    void eachStageIsRecordedInATimerTaggedByEndpointAndStage() {
+        stageMetrics.publish("search", timings("upstream", 200_000_000L, "total", 250_000_000L));
+        stageMetrics.publish("search", timings("upstream", 100_000_000L));
+
+        Timer upstream = meterRegistry.get("news.request.stage").tag("endpoint", "search").tag("stage", "upstream").timer();
+        assertThat(upstream.count()).isEqualTo(2);
+        assertThat(upstream.totalTime(TimeUnit.MILLISECONDS)).isEqualTo(300.0);
+        assertThat(meterRegistry.get("news.request.stage").tag("stage", "total").timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void noStagesGiveAnEmptyHeader() {
+        assertThat(stageMetrics.publish("search", new StageTimings())).isEmpty();
+    }
+}
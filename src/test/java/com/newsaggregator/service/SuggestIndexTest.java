@@ -0,0 +1,140 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * SuggestIndexTest.java
+ *
+ * Unit tests for the autocomplete top lists, their decay, and when searches are suggested.
+ */
+class SuggestIndexTest {
+
+    private SuggestIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new SuggestIndex();
+        ReflectionTestUtils.setField(index, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(index, "maxTerms", 1000);
+        ReflectionTestUtils.setField(index, "queryWeight", 5);
+        ReflectionTestUtils.setField(index, "minQueryClients", 3);
+        ReflectionTestUtils.invokeMethod(index, "init");
+    }
+
+    // Ingest the word in this many article titles
+    private void ingest(String word, int articles) {
+        List<NewsArticle> changed = new ArrayList<>();
+        for (int i = 0; i < articles; i++) {
+            changed.add(new NewsArticle(word, null, "https://example.com/" + word + i, null, null, null, null, true));
+        }
+        index.onNewsIngested(new NewsIngestedEvent("us", true, changed, changed.size()));
+    }
+
+    @Test
+    void theTenMostFrequentSuggestionsAreKeptInOrder() {
+        for (int i = 1; i <= 12; i++) {
+            ingest("ma" + (char) ('a' + i), i); // mab once ... mam 12 times
+        }
+
+        assertThat(index.suggest("ma", 20)).containsExactly("mam", "mal", "mak", "maj", "mai", "mah", "mag", "maf", "mae", "mad");
+        assertThat(index.suggest("MA", 3)).containsExactly("mam", "mal", "mak");
+        assertThat(index.suggest("mab", 10)).containsExactly("mab");
+        assertThat(index.suggest("mx", 10)).isEmpty();
+    }
+
+    @Test
+    void suggestionsMoveUpAsTheyGrow() {
+        for (int i = 1; i <= 12; i++) {
+            ingest("ma" + (char) ('a' + i), i);
+        }
+
+        ingest("mab", 11); // 12, ties with mam
+        assertThat(index.suggest("ma", 3)).containsExactly("mam", "mab", "mal");
+
+        ingest("mac", 20); // 22, from outside the top list to the first place
+        assertThat(index.suggest("ma", 3)).containsExactly("mac", "mam", "mab");
+    }
+
+    @Test
+    void decayHalvesFrequenciesAndDropsRareSuggestions() {
+        ingest("mars", 9);
+        ingest("mask", 4);
+        ingest("maple", 1);
+
+        index.decay();
+        assertThat(index.suggest("ma", 10)).containsExactly("mars", "mask"); // 4 and 2
+        assertThat(index.size()).isEqualTo(2);
+
+        ingest("mask", 6); // 8
+        assertThat(index.suggest("ma", 10)).containsExactly("mask", "mars");
+
+        index.decay();
+        index.decay();
+        index.decay();
+        assertThat(index.suggest("ma", 10)).containsExactly("mask"); // 1 and 0
+    }
+
+    @Test
+    void searchesAreSuggestedOnlyAfterEnoughClientsMadeThem() {
+        index.recordQuery("Mars  Rover", "10.0.0.1");
+        index.recordQuery("mars rover", "10.0.0.1");
+        index.recordQuery("mars rover", "10.0.0.2");
+        assertThat(index.suggest("mars", 10)).isEmpty();
+
+        index.recordQuery("mars rover", null); // Background searches do not count
+        assertThat(index.suggest("mars", 10)).isEmpty();
+
+        index.recordQuery("mars rover", "user-3");
+        assertThat(index.suggest("mars", 10)).containsExactly("mars rover");
+    }
+
+    @Test
+    void searchesHaveToReachTheMinimumClientsWithinOneDecayPeriod() {
+        index.recordQuery("mars rover", "10.0.0.1");
+        index.recordQuery("mars rover", "10.0.0.2");
+        index.decay();
+        index.recordQuery("mars rover", "10.0.0.3");
+
+        assertThat(index.suggest("mars", 10)).isEmpty();
+    }
+
+    @Test
+    void lookupsRunWhileTheTrieIsUpdatedAndRebuilt() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int round = 0; round < 200; round++) {
+                    ingest("ma" + (char) ('a' + round % 26) + (char) ('a' + round / 26), round % 7 + 1);
+                    if (round % 20 == 0) {
+                        index.decay();
+                    }
+                }
+            });
+            Future<?> reader = executor.submit(() -> {
+                while (!writer.isDone()) {
+                    assertThat(index.suggest("ma", 10)).hasSizeLessThanOrEqualTo(10).doesNotContainNull();
+                }
+            });
+            writer.get(30, TimeUnit.SECONDS);
+            reader.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(index.suggest("ma", 10)).hasSize(10);
+    }
+}
@@ -0,0 +1,71 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+
+/*
+ * TokenBucketTest.java
+ *
+ * Unit tests for the GCRA token bucket: burst capacity, refill, refunds and the full-bucket check.
+ */
+class TokenBucketTest {
+
+    @Test
+    void newBucketAllowsABurstOfItsCapacity() {
+        TokenBucket limit = new TokenBucket(1.0 / 3600, 3); // Refills far too slowly to matter during the test
+        AtomicLong bucket = limit.newBucket();
+
+        assertThat(limit.available(bucket)).isEqualTo(3);
+        assertThat(limit.tryAcquire(bucket)).isTrue();
+        assertThat(limit.tryAcquire(bucket)).isTrue();
+        assertThat(limit.tryAcquire(bucket)).isTrue();
+        assertThat(limit.tryAcquire(bucket)).isFalse();
+        assertThat(limit.available(bucket)).isZero();
+    }
+
+    @Test
+    void emptyBucketRefillsAtItsRate() throws Exception {
+        TokenBucket limit = new TokenBucket(100, 1); // One token every 10 ms
+        AtomicLong bucket = limit.newBucket();
+
+        assertThat(limit.tryAcquire(bucket)).isTrue();
+        assertThat(limit.tryAcquire(bucket)).isFalse();
+        Thread.sleep(30);
+        assertThat(limit.tryAcquire(bucket)).isTrue();
+    }
+
+    @Test
+    void bucketIsFullUntilUsedAndAgainOnceRefilled() throws Exception {
+        TokenBucket limit = new TokenBucket(100, 2);
+        AtomicLong bucket = limit.newBucket();
+        assertThat(limit.isFull(bucket)).isTrue();
+
+        limit.tryAcquire(bucket);
+        assertThat(limit.isFull(bucket)).isFalse();
+
+        Thread.sleep(40);
+        assertThat(limit.isFull(bucket)).isTrue();
+        assertThat(limit.available(bucket)).isEqualTo(2);
+    }
+
+    @Test
+    void refundGivesBackATakenToken() {
+        TokenBucket limit = new TokenBucket(1.0 / 3600, 1);
+        AtomicLong bucket = limit.newBucket();
+
+        assertThat(limit.tryAcquire(bucket)).isTrue();
+        limit.refund(bucket);
+        assertThat(limit.isFull(bucket)).isTrue();
+        assertThat(limit.tryAcquire(bucket)).isTrue();
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThatThrownBy(() -> new TokenBucket(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucket(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
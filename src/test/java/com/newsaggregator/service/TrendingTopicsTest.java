@@ -0,0 +1,159 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.newsaggregator.dto.TrendingTopic;
+import com.newsaggregator.event.NewsIngestedEvent;
+import com.newsaggregator.model.NewsArticle;
+
+
+/*
+ * TrendingTopicsTest.java
+ *
+ * Unit tests for the trending terms (Count-Min sketch and Space-Saving candidates): accuracy for heavy hitters,
+ * candidate eviction, and the sliding window. Periods are passed explicitly instead of waiting for the clock.
+ */
+class TrendingTopicsTest {
+
+    private static final long NOW = 1000; // The current period in most tests
+
+    private TrendingTopics trendingTopics;
+
+    @BeforeEach
+    void setUp() {
+        trendingTopics = newTopics(200);
+    }
+
+    private static TrendingTopics newTopics(int candidates) {
+        TrendingTopics trendingTopics = new TrendingTopics();
+        ReflectionTestUtils.setField(trendingTopics, "bucketMinutes", 60L);
+        ReflectionTestUtils.setField(trendingTopics, "bucketCount", 6);
+        ReflectionTestUtils.setField(trendingTopics, "candidates", candidates);
+        ReflectionTestUtils.setField(trendingTopics, "maxCountries", 2);
+        return trendingTopics;
+    }
+
+    // Articles whose title is a single word, so each article counts exactly one term
+    private static List<NewsArticle> articles(String word, int count) {
+        List<NewsArticle> articles = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            NewsArticle article = ArticleETagsTest.article(word + "-" + i, word);
+            article.setDescription(null);
+            articles.add(article);
+        }
+        return articles;
+    }
+
+    private static void ingest(TrendingTopics trendingTopics, String country, boolean isHeadline, List<NewsArticle> articles, long bucket) {
+        trendingTopics.add(new NewsIngestedEvent(country, isHeadline, articles, articles.size()), bucket);
+    }
+
+    private static List<String> terms(List<TrendingTopic> topics) {
+        return topics.stream().map(TrendingTopic::getTerm).toList();
+    }
+
+    @Test
+    void heavyHittersAreFoundAmongManyRareTermsWithCloseCounts() {
+        List<NewsArticle> stream = new ArrayList<>();
+        stream.addAll(articles("election", 60));
+        stream.addAll(articles("storm", 40));
+        stream.addAll(articles("markets", 25));
+        for (int i = 0; i < 1500; i++) {
+            stream.addAll(articles("rare" + i, 1 + i % 3));
+        }
+        Collections.shuffle(stream, new Random(7));
+        TrendingTopics small = newTopics(50); // Far fewer candidates than distinct terms
+
+        for (int from = 0; from < stream.size(); from += 20) {
+            ingest(small, "us", true, stream.subList(from, Math.min(from + 20, stream.size())), NOW);
+        }
+
+        List<TrendingTopic> top = small.top("us", 3, NOW);
+        assertThat(terms(top)).containsExactly("election", "storm", "markets");
+        // Count-Min never underestimates; with conservative update the error stays small
+        assertThat(top.get(0).getCount()).isBetween(60L, 63L);
+        assertThat(top.get(1).getCount()).isBetween(40L, 43L);
+        assertThat(top.get(2).getCount()).isBetween(25L, 28L);
+    }
+
+    @Test
+    void wordsAndAdjacentPairsCountOncePerArticle() {
+        NewsArticle article = ArticleETagsTest.article("a", "Rate cut, rate cut");
+        article.setDescription(null);
+
+        ingest(trendingTopics, "us", true, List.of(article), NOW);
+
+        assertThat(trendingTopics.top("us", 10, NOW))
+            .extracting(TrendingTopic::getTerm, TrendingTopic::getCount)
+            .containsExactlyInAnyOrder(
+                tuple("rate", 1L),
+                tuple("cut", 1L),
+                tuple("rate cut", 1L),
+                tuple("cut rate", 1L));
+    }
+
+    @Test
+    void aNewTermEvictsTheLeastFrequentCandidateOnceItCountsMore() {
+        TrendingTopics small = newTopics(3);
+        ingest(small, "us", true, articles("alpha", 5), NOW);
+        ingest(small, "us", true, articles("bravo", 4), NOW);
+        ingest(small, "us", true, articles("charlie", 3), NOW);
+
+        ingest(small, "us", true, articles("delta", 3), NOW); // Only as frequent as the least candidate
+        assertThat(terms(small.top("us", 10, NOW))).containsExactly("alpha", "bravo", "charlie");
+
+        ingest(small, "us", true, articles("delta", 1), NOW); // Now more frequent
+        assertThat(terms(small.top("us", 10, NOW))).containsExactly("alpha", "bravo", "delta");
+    }
+
+    @Test
+    void countsAreSummedOverTheBucketsOfTheWindow() {
+        ingest(trendingTopics, "us", true, articles("election", 3), NOW - 5);
+        ingest(trendingTopics, "us", true, articles("election", 2), NOW);
+
+        assertThat(trendingTopics.top("us", 1, NOW)).singleElement()
+            .satisfies(topic -> assertThat(topic.getCount()).isEqualTo(5));
+    }
+
+    @Test
+    void termsDecayOutOfTheWindow() {
+        ingest(trendingTopics, "us", true, articles("storm", 10), NOW);
+        ingest(trendingTopics, "us", true, articles("election", 2), NOW + 3);
+
+        assertThat(terms(trendingTopics.top("us", 10, NOW + 5))).containsExactly("storm", "election");
+        assertThat(terms(trendingTopics.top("us", 10, NOW + 6))).containsExactly("election"); // Six buckets later
+
+        // The bucket of the expired period is cleared before it is reused
+        ingest(trendingTopics, "us", true, articles("markets", 1), NOW + 6);
+        assertThat(trendingTopics.top("us", 10, NOW + 6)).extracting(TrendingTopic::getTerm, TrendingTopic::getCount)
+            .containsExactly(tuple("election", 2L), tuple("markets", 1L));
+    }
+
+    @Test
+    void headlinesCountForTheirCountryAndAllButSearchResultsOnlyForAll() {
+        ingest(trendingTopics, "us", true, articles("election", 2), NOW);
+        ingest(trendingTopics, null, false, articles("storm", 3), NOW);
+
+        assertThat(terms(trendingTopics.top("us", 10, NOW))).containsExactly("election");
+        assertThat(terms(trendingTopics.top(TrendingTopics.ALL, 10, NOW))).containsExactly("storm", "election");
+        assertThat(trendingTopics.top("gb", 10, NOW)).isEmpty();
+    }
+
+    @Test
+    void countriesBeyondTheBoundAreOnlyCountedUnderAll() {
+        ingest(trendingTopics, "us", true, articles("election", 1), NOW); // "all" and "us" fill the two windows
+        ingest(trendingTopics, "gb", true, articles("storm", 1), NOW);
+
+        assertThat(trendingTopics.top("gb", 10, NOW)).isEmpty();
+        assertThat(terms(trendingTopics.top(TrendingTopics.ALL, 10, NOW))).contains("storm");
+    }
+}
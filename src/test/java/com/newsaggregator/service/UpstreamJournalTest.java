@@ -0,0 +1,174 @@
+package com.newsaggregator.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+
+/*
+ * UpstreamJournalTest.java
+ *
+ * Unit tests for the upstream journal: records written to segments in a temporary directory are read back,
+ * and a replay passes them to NewsService.ingestResponse as if they had just been fetched.
+ */
+class UpstreamJournalTest {
+
+    private static final String HEADLINES = "{\"status\":\"ok\",\"articles\":[{\"title\":\"Headline\",\"url\":\"https://example.com/h\"}]}";
+    private static final String SEARCH = "{\"status\":\"ok\",\"articles\":[{\"title\":\"Föhn storm – search\",\"url\":\"https://example.com/s\"}]}";
+
+    @TempDir
+    Path directory;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final NewsService newsService = mock(NewsService.class);
+    private UpstreamJournal journal;
+
+    @BeforeEach
+    void setUp() {
+        journal = new UpstreamJournal();
+        ReflectionTestUtils.setField(journal, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", directory);
+        ReflectionTestUtils.setField(journal, "segmentSizeMb", 1);
+        ReflectionTestUtils.setField(journal, "retentionHours", 72L);
+        ReflectionTestUtils.invokeMethod(journal, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        ReflectionTestUtils.invokeMethod(journal, "shutdown");
+    }
+
+    private static URI uri(String path) {
+        return URI.create("https://newsapi.org" + path);
+    }
+
+    private void replay(Instant from, Instant to) throws InterruptedException {
+        ArticleWriteBehind articleWriteBehind = mock(ArticleWriteBehind.class); // Queue depth 0: nothing to wait for
+        UpstreamJournalReplayer replayer = new UpstreamJournalReplayer();
+        ReflectionTestUtils.setField(replayer, "upstreamJournal", journal);
+        ReflectionTestUtils.setField(replayer, "newsService", newsService);
+        ReflectionTestUtils.setField(replayer, "articleWriteBehind", articleWriteBehind);
+        ReflectionTestUtils.setField(replayer, "enabled", true);
+        ReflectionTestUtils.setField(replayer, "from", from);
+        ReflectionTestUtils.setField(replayer, "to", to);
+        ReflectionTestUtils.setField(replayer, "exitWhenDone", false);
+        replayer.run(null);
+    }
+
+    private List<UpstreamJournal.JournalRecord> readAll() {
+        List<UpstreamJournal.JournalRecord> records = new ArrayList<>();
+        journal.read(0, Long.MAX_VALUE, records::add);
+        return records;
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.sorted().toList();
+        }
+    }
+
+    // A body that deflate cannot shrink much, so a few of them fill a segment
+    private static String incompressible(int length, long seed) {
+        Random random = new Random(seed);
+        StringBuilder body = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            body.append((char) ('!' + random.nextInt(94)));
+        }
+        return body.toString();
+    }
+
+    @Test
+    void aReplayReingestsTheJournaledResponsesInOrder() throws Exception {
+        when(newsService.ingestResponse(anyString(), anyBoolean(), any(), any())).thenReturn(List.of());
+
+        journal.append(uri("/v2/top-headlines?country=us&pageSize=20&apiKey=secret"), true, "us", HEADLINES);
+        journal.append(uri("/v2/everything?q=storm&apiKey=secret"), false, null, SEARCH);
+        journal.append(uri("/v2/top-headlines?country=gb&pageSize=20&apiKey=secret"), true, "gb", HEADLINES);
+        replay(Instant.EPOCH, Instant.now().plusSeconds(60));
+
+        InOrder inOrder = inOrder(newsService);
+        inOrder.verify(newsService).ingestResponse(eq(HEADLINES), eq(true), eq("us"), any(FetchContext.class));
+        inOrder.verify(newsService).ingestResponse(eq(SEARCH), eq(false), isNull(), any(FetchContext.class));
+        inOrder.verify(newsService).ingestResponse(eq(HEADLINES), eq(true), eq("gb"), any(FetchContext.class));
+        verify(newsService, times(3)).ingestResponse(anyString(), anyBoolean(), any(), any());
+    }
+
+    @Test
+    void aReplayOnlyCoversItsTimeRange() throws Exception {
+        journal.append(uri("/v2/top-headlines?country=us"), true, "us", HEADLINES);
+        Instant after = Instant.now().plusSeconds(60);
+
+        replay(after, after.plusSeconds(60));
+
+        verify(newsService, never()).ingestResponse(anyString(), anyBoolean(), any(), any());
+    }
+
+    @Test
+    void theApiKeyIsNotJournaled() {
+        journal.append(uri("/v2/top-headlines?country=us&apiKey=secret&pageSize=20"), true, "us", HEADLINES);
+
+        assertThat(readAll()).singleElement().satisfies(record -> {
+            assertThat(record.getPath()).isEqualTo("https://newsapi.org/v2/top-headlines?country=us&pageSize=20");
+            assertThat(record.getBody()).isEqualTo(HEADLINES);
+        });
+    }
+
+    @Test
+    void aFullSegmentIsContinuedInANewOne() throws Exception {
+        String first = incompressible(700_000, 1);
+        String second = incompressible(700_000, 2);
+
+        journal.append(uri("/v2/everything?q=a"), false, null, first);
+        journal.append(uri("/v2/everything?q=b"), false, null, second);
+
+        assertThat(segments()).hasSize(2);
+        assertThat(readAll()).extracting(UpstreamJournal.JournalRecord::getBody).containsExactly(first, second);
+    }
+
+    @Test
+    void readingStopsAtACorruptRecord() throws Exception {
+        journal.append(uri("/v2/top-headlines?country=us"), true, "us", HEADLINES);
+        journal.append(uri("/v2/top-headlines?country=gb"), true, "gb", HEADLINES);
+        ReflectionTestUtils.invokeMethod(journal, "shutdown"); // Flush the segment before changing the file
+
+        try (FileChannel file = FileChannel.open(segments().get(0), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            file.read(length, 0);
+            long second = 8 + length.flip().getInt(); // Header of the second record
+            file.write(ByteBuffer.wrap(new byte[] {(byte) 0xFF}), second + 8 + 20); // A byte inside its payload
+        }
+
+        assertThat(readAll()).extracting(UpstreamJournal.JournalRecord::getCountry).containsExactly("us");
+    }
+}